@@ -84,6 +84,61 @@ public class AICUtilConfiguration extends Configuration {
 	// Note: Intended to work the same as java.math.MathContext.roundingMode 
 	public static final String  KEY_RAIONAL_APPROXIMATION_ROUNDING_MODE                                   = "aic.util.rational.approximation.rounding.mode";
 	public static final RoundingMode DEFAULT_VALUE_RATIONAL_APPROXIMATION_ROUNDING_MODE                   = MathContext.DECIMAL128.getRoundingMode(); 
+	// Note: if true, approximations use a fixed width binary float (63 significant bit mantissa, 32 bit exponent) instead of the above precision.
+	// Its relative error of at most 2^-63 (~1e-19) per operation is weaker than the ~1e-34 of the default (DECIMAL128) precision above.
+	public static final String  KEY_RATIONAL_APPROXIMATION_BINARY_FLOAT_ENABLED                           = "aic.util.rational.approximation.binary.float.enabled";
+	public static final Boolean DEFAULT_VALUE_RATIONAL_APPROXIMATION_BINARY_FLOAT_ENABLED                 = Boolean.FALSE;
+	// Note: if > 0 and approximation is not enabled, rationals are exact until their numerators or denominators exceed this bit length, and approximate from then on.
+	public static final String  KEY_RATIONAL_HYBRID_EXACT_BIT_LENGTH_LIMIT                                = "aic.util.rational.hybrid.exact.bit.length.limit";
+	public static final Integer DEFAULT_VALUE_RATIONAL_HYBRID_EXACT_BIT_LENGTH_LIMIT                      = Integer.valueOf(0);
+	// Note: only takes effect when the configured approximation (if any) can represent every long exactly.
+	public static final String  KEY_RATIONAL_LONG_FAST_PATH_ENABLED                                       = "aic.util.rational.long.fast.path.enabled";
+	public static final Boolean DEFAULT_VALUE_RATIONAL_LONG_FAST_PATH_ENABLED                             = Boolean.TRUE;
+	// Note: Rational.computeWithLazyNormalization() can be used to enable this for the scope of a computation only.
+	public static final String  KEY_RATIONAL_LAZY_NORMALIZATION_ENABLED                                   = "aic.util.rational.lazy.normalization.enabled";
+	public static final Boolean DEFAULT_VALUE_RATIONAL_LAZY_NORMALIZATION_ENABLED                         = Boolean.FALSE;
+	//
+	public static final String  KEY_RATIONAL_LAZY_NORMALIZATION_THRESHOLD_IN_BITS                         = "aic.util.rational.lazy.normalization.threshold.in.bits";
+	public static final Integer DEFAULT_VALUE_RATIONAL_LAZY_NORMALIZATION_THRESHOLD_IN_BITS               = Integer.valueOf(256);
+	// Note: Rational.computeWithBoundedArithmetic() can be used to enable this for the scope of a computation only.
+	public static final String  KEY_RATIONAL_BOUNDED_ARITHMETIC_ENABLED                                   = "aic.util.rational.bounded.arithmetic.enabled";
+	public static final Boolean DEFAULT_VALUE_RATIONAL_BOUNDED_ARITHMETIC_ENABLED                         = Boolean.FALSE;
+	// Note: exact results whose denominators exceed this bit length are replaced by the simplest rational within the relative error below.
+	public static final String  KEY_RATIONAL_BOUNDED_ARITHMETIC_THRESHOLD_IN_BITS                         = "aic.util.rational.bounded.arithmetic.threshold.in.bits";
+	public static final Integer DEFAULT_VALUE_RATIONAL_BOUNDED_ARITHMETIC_THRESHOLD_IN_BITS               = Integer.valueOf(256);
+	// Note: the relative error allowed by bounded arithmetic is 2^-(this value).
+	public static final String  KEY_RATIONAL_BOUNDED_ARITHMETIC_PRECISION_IN_BITS                         = "aic.util.rational.bounded.arithmetic.precision.in.bits";
+	public static final Integer DEFAULT_VALUE_RATIONAL_BOUNDED_ARITHMETIC_PRECISION_IN_BITS               = Integer.valueOf(128);
+	// Note: rationals with |numerator| and denominator <= this bound are interned in a preallocated grid, 0 disables the grid.
+	public static final String  KEY_RATIONAL_INTERN_GRID_BOUND                                            = "aic.util.rational.intern.grid.bound";
+	public static final Integer DEFAULT_VALUE_RATIONAL_INTERN_GRID_BOUND                                  = Integer.valueOf(256);
+	// Note: Util.sumArbitraryPrecision(Collection) sums collections of at least this size pairwise (see RationalSummation), <= 0 disables.
+	public static final String  KEY_RATIONAL_PAIRWISE_SUMMATION_THRESHOLD                                 = "aic.util.rational.pairwise.summation.threshold";
+	public static final Integer DEFAULT_VALUE_RATIONAL_PAIRWISE_SUMMATION_THRESHOLD                       = Integer.valueOf(1024);
+	// Note: pairwise summations of at least this many terms are run in parallel on the common fork-join pool, <= 0 disables.
+	public static final String  KEY_RATIONAL_PARALLEL_SUMMATION_THRESHOLD                                 = "aic.util.rational.parallel.summation.threshold";
+	public static final Integer DEFAULT_VALUE_RATIONAL_PARALLEL_SUMMATION_THRESHOLD                       = Integer.valueOf(65536);
+	// Note: RationalVector operations on vectors of at least this size are run in parallel on the common fork-join pool, <= 0 disables.
+	public static final String  KEY_RATIONAL_VECTOR_PARALLEL_THRESHOLD                                    = "aic.util.rational.vector.parallel.threshold";
+	public static final Integer DEFAULT_VALUE_RATIONAL_VECTOR_PARALLEL_THRESHOLD                          = Integer.valueOf(65536);
+	// Note: if set to an existing file (see BernoulliNumber.saveTable()), the Bernoulli number table is loaded from it on first use.
+	public static final String  KEY_BERNOULLI_NUMBER_TABLE_FILE                                           = "aic.util.bernoulli.number.table.file";
+	public static final String  DEFAULT_VALUE_BERNOULLI_NUMBER_TABLE_FILE                                 = "";
+	// Note: ArithmeticStatistics.setEnabled() can be used to change this at runtime.
+	public static final String  KEY_ARITHMETIC_STATISTICS_ENABLED                                         = "aic.util.arithmetic.statistics.enabled";
+	public static final Boolean DEFAULT_VALUE_ARITHMETIC_STATISTICS_ENABLED                               = Boolean.FALSE;
+	// Note: on average one in this many normalizations is timed when arithmetic statistics are enabled, <= 0 disables timing.
+	public static final String  KEY_ARITHMETIC_STATISTICS_NORMALIZATION_SAMPLING_INTERVAL                 = "aic.util.arithmetic.statistics.normalization.sampling.interval";
+	public static final Integer DEFAULT_VALUE_ARITHMETIC_STATISTICS_NORMALIZATION_SAMPLING_INTERVAL       = Integer.valueOf(1024);
+	// Note: if true, arithmetic statistics are registered with the platform MBean server (see ArithmeticStatistics.OBJECT_NAME).
+	public static final String  KEY_ARITHMETIC_STATISTICS_JMX_ENABLED                                     = "aic.util.arithmetic.statistics.jmx.enabled";
+	public static final Boolean DEFAULT_VALUE_ARITHMETIC_STATISTICS_JMX_ENABLED                           = Boolean.FALSE;
+	// Note: StackedHashMap/StackedTreeMap chains at least this deep flatten their lower layers into a snapshot once lookups amortize it, <= 0 disables.
+	public static final String  KEY_STACKED_MAP_COMPACTION_DEPTH                                          = "aic.util.stacked.map.compaction.depth";
+	public static final Integer DEFAULT_VALUE_STACKED_MAP_COMPACTION_DEPTH                                = Integer.valueOf(32);
+	// Note: stacked map chains of any depth are flattened after this many lookups per layer missing their top map, <= 0 disables.
+	public static final String  KEY_STACKED_MAP_COMPACTION_LOOKUPS_PER_LAYER                              = "aic.util.stacked.map.compaction.lookups.per.layer";
+	public static final Integer DEFAULT_VALUE_STACKED_MAP_COMPACTION_LOOKUPS_PER_LAYER                    = Integer.valueOf(16);
 	
 	public static String getTestConfigurationScriptSettings() {
 		String result = getString(KEY_TEST_CONFIGURATION_SCRIPT_SETTINGS, DEFAULT_TEST_CONFIGURATION_SCRIPT_SETTINGS);
@@ -143,4 +198,112 @@ public class AICUtilConfiguration extends Configuration {
 		
 		return result;
 	}
+	
+	public static boolean isRationalApproximationBinaryFloatEnabled() {
+		boolean result = getBoolean(KEY_RATIONAL_APPROXIMATION_BINARY_FLOAT_ENABLED, DEFAULT_VALUE_RATIONAL_APPROXIMATION_BINARY_FLOAT_ENABLED);
+		
+		return result;
+	}
+	
+	public static int getRationalHybridExactBitLengthLimit() {
+		int result = getInt(KEY_RATIONAL_HYBRID_EXACT_BIT_LENGTH_LIMIT, DEFAULT_VALUE_RATIONAL_HYBRID_EXACT_BIT_LENGTH_LIMIT);
+		
+		return result;
+	}
+	
+	public static boolean isRationalLongFastPathEnabled() {
+		boolean result = getBoolean(KEY_RATIONAL_LONG_FAST_PATH_ENABLED, DEFAULT_VALUE_RATIONAL_LONG_FAST_PATH_ENABLED);
+		
+		return result;
+	}
+	
+	public static boolean isRationalLazyNormalizationEnabled() {
+		boolean result = getBoolean(KEY_RATIONAL_LAZY_NORMALIZATION_ENABLED, DEFAULT_VALUE_RATIONAL_LAZY_NORMALIZATION_ENABLED);
+		
+		return result;
+	}
+	
+	public static int getRationalLazyNormalizationThresholdInBits() {
+		int result = getInt(KEY_RATIONAL_LAZY_NORMALIZATION_THRESHOLD_IN_BITS, DEFAULT_VALUE_RATIONAL_LAZY_NORMALIZATION_THRESHOLD_IN_BITS);
+		
+		return result;
+	}
+	
+	public static boolean isRationalBoundedArithmeticEnabled() {
+		boolean result = getBoolean(KEY_RATIONAL_BOUNDED_ARITHMETIC_ENABLED, DEFAULT_VALUE_RATIONAL_BOUNDED_ARITHMETIC_ENABLED);
+		
+		return result;
+	}
+	
+	public static int getRationalBoundedArithmeticThresholdInBits() {
+		int result = getInt(KEY_RATIONAL_BOUNDED_ARITHMETIC_THRESHOLD_IN_BITS, DEFAULT_VALUE_RATIONAL_BOUNDED_ARITHMETIC_THRESHOLD_IN_BITS);
+		
+		return result;
+	}
+	
+	public static int getRationalBoundedArithmeticPrecisionInBits() {
+		int result = getInt(KEY_RATIONAL_BOUNDED_ARITHMETIC_PRECISION_IN_BITS, DEFAULT_VALUE_RATIONAL_BOUNDED_ARITHMETIC_PRECISION_IN_BITS);
+		
+		return result;
+	}
+	
+	public static int getRationalInternGridBound() {
+		int result = getInt(KEY_RATIONAL_INTERN_GRID_BOUND, DEFAULT_VALUE_RATIONAL_INTERN_GRID_BOUND);
+		
+		return result;
+	}
+	
+	public static int getRationalPairwiseSummationThreshold() {
+		int result = getInt(KEY_RATIONAL_PAIRWISE_SUMMATION_THRESHOLD, DEFAULT_VALUE_RATIONAL_PAIRWISE_SUMMATION_THRESHOLD);
+		
+		return result;
+	}
+	
+	public static int getRationalParallelSummationThreshold() {
+		int result = getInt(KEY_RATIONAL_PARALLEL_SUMMATION_THRESHOLD, DEFAULT_VALUE_RATIONAL_PARALLEL_SUMMATION_THRESHOLD);
+		
+		return result;
+	}
+	
+	public static int getRationalVectorParallelThreshold() {
+		int result = getInt(KEY_RATIONAL_VECTOR_PARALLEL_THRESHOLD, DEFAULT_VALUE_RATIONAL_VECTOR_PARALLEL_THRESHOLD);
+		
+		return result;
+	}
+	
+	public static String getBernoulliNumberTableFile() {
+		String result = getString(KEY_BERNOULLI_NUMBER_TABLE_FILE, DEFAULT_VALUE_BERNOULLI_NUMBER_TABLE_FILE);
+		
+		return result;
+	}
+	
+	public static boolean isArithmeticStatisticsEnabled() {
+		boolean result = getBoolean(KEY_ARITHMETIC_STATISTICS_ENABLED, DEFAULT_VALUE_ARITHMETIC_STATISTICS_ENABLED);
+		
+		return result;
+	}
+	
+	public static int getArithmeticStatisticsNormalizationSamplingInterval() {
+		int result = getInt(KEY_ARITHMETIC_STATISTICS_NORMALIZATION_SAMPLING_INTERVAL, DEFAULT_VALUE_ARITHMETIC_STATISTICS_NORMALIZATION_SAMPLING_INTERVAL);
+		
+		return result;
+	}
+	
+	public static boolean isArithmeticStatisticsJMXEnabled() {
+		boolean result = getBoolean(KEY_ARITHMETIC_STATISTICS_JMX_ENABLED, DEFAULT_VALUE_ARITHMETIC_STATISTICS_JMX_ENABLED);
+		
+		return result;
+	}
+	
+	public static int getStackedMapCompactionDepth() {
+		int result = getInt(KEY_STACKED_MAP_COMPACTION_DEPTH, DEFAULT_VALUE_STACKED_MAP_COMPACTION_DEPTH);
+		
+		return result;
+	}
+	
+	public static int getStackedMapCompactionLookupsPerLayer() {
+		int result = getInt(KEY_STACKED_MAP_COMPACTION_LOOKUPS_PER_LAYER, DEFAULT_VALUE_STACKED_MAP_COMPACTION_LOOKUPS_PER_LAYER);
+		
+		return result;
+	}
 }
@@ -86,6 +86,8 @@ import com.sri.ai.util.base.PairOf;
 import com.sri.ai.util.base.TernaryFunction;
 import com.sri.ai.util.collect.EZIterator;
 import com.sri.ai.util.math.Rational;
+import com.sri.ai.util.math.RationalAccumulator;
+import com.sri.ai.util.math.RationalSummation;
 
 /**
  * A suite of general purpose utility routines related to handling errors,
@@ -2025,15 +2027,21 @@ public class Util {
 	}
 
 	public static Rational sumArbitraryPrecision(Iterator<Number> numbersIt) {
-		Rational sum = Rational.ZERO;
+		// optimization: accumulate in place, normalizing only at the end (or if the intermediate value grows large).
+		RationalAccumulator sum = new RationalAccumulator();
 		while (numbersIt.hasNext()) {
 			Rational number = (Rational) numbersIt.next();
-			sum = sum.add(number);
+			sum.add(number);
 		}
-		return sum;
+		return sum.toRational();
 	}
 
 	public static Rational sumArbitraryPrecision(Collection<Number> numbers) {
+		// optimization: large collections are summed pairwise (in parallel if very large).
+		int pairwiseSummationThreshold = AICUtilConfiguration.getRationalPairwiseSummationThreshold();
+		if (pairwiseSummationThreshold > 0 && numbers.size() >= pairwiseSummationThreshold) {
+			return RationalSummation.sum(numbers);
+		}
 		return sumArbitraryPrecision(numbers.iterator());
 	}
 
@@ -2079,15 +2087,16 @@ public class Util {
 	}
 
 	public static Rational productArbitraryPrecision(Iterator<Number> numbersIt) {
-		Rational product = Rational.ONE;
+		// optimization: accumulate in place, normalizing only at the end (or if the intermediate value grows large).
+		RationalAccumulator product = new RationalAccumulator(Rational.ONE);
 		while (numbersIt.hasNext()) {
 			Rational number = (Rational) numbersIt.next();
-			product = product.multiply(number);
-			if (product.equals(0)) {
+			product.multiply(number);
+			if (product.isZero()) {
 				break;
 			}
 		}
-		return product;
+		return product.toRational();
 	}
 
 	public static Rational productArbitraryPrecision(Collection<Number> numbers) {
@@ -38,18 +38,42 @@
 package com.sri.ai.util.collect;
 
 import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.google.common.annotations.Beta;
+import com.sri.ai.util.AICUtilConfiguration;
 
 /**
  * A partial implementation of {@link StackedMap}.
  * 
  * IMPORTANT: this currently does not fulfill the Map contract perfectly because keySet() and entrySet()
  * are NOT backed by the map.
+ * <p>
+ * Lookups missing the top map fall through to the base, so they cost one probe per layer
+ * in deep chains of stacked maps. To bound that, a stacked map flattens the top maps of
+ * its lower layers into a snapshot (<i>compaction</i>) once the chain is at least
+ * {@link AICUtilConfiguration#getStackedMapCompactionDepth()} layers deep, or once it has had
+ * {@link AICUtilConfiguration#getStackedMapCompactionLookupsPerLayer()} such lookups per layer
+ * (see {@link #setCompactionPolicy(int, int)}), so that later lookups probe the top map, the snapshot
+ * and the first base that is not an AbstractStackedMap only.
+ * The snapshot is discarded when any lower layer is changed, either through its stacked map methods
+ * or through the map returned by its {@link #getTop()}.
+ * Top maps given to {@link #AbstractStackedMap(Map, Map)} or {@link #setTop(Map)} may be changed
+ * directly by their owners, so they are never part of snapshots (lookups probe them instead).
+ * As with other maps, stacked maps may be read concurrently as long as they are not changed at the same time.
+ * See {@link #getNumberOfCompactions()} and related methods for counters showing how often
+ * compaction happens and what it saves.
  *
  * @author braz
  * 
@@ -67,6 +91,47 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 
 	/** Base map. */
 	protected Map<K, V> base = null;
+	
+	// chains of fewer layers have nothing to gain from compaction.
+	private static final int MINIMUM_COMPACTION_DEPTH = 3;
+	
+	private static int compactionDepth;
+	private static int compactionLookupsPerLayer;
+	//
+	private static final LongAdder NUMBER_OF_COMPACTIONS                 = new LongAdder();
+	private static final LongAdder NUMBER_OF_COMPACTED_LAYERS            = new LongAdder();
+	private static final LongAdder NUMBER_OF_INVALIDATED_COMPACTIONS     = new LongAdder();
+	private static final LongAdder NUMBER_OF_LOOKUPS_THROUGH_COMPACTIONS = new LongAdder();
+	private static final LongAdder NUMBER_OF_PROBES_SAVED_BY_COMPACTIONS = new LongAdder();
+	
+	static {
+		resetCompactionPolicyFromAICUtilConfiguration();
+	}
+	
+	/** Number of AbstractStackedMap layers in the chain, including this one. */
+	private int depth = 1;
+	/** Whether another AbstractStackedMap was stacked on this one, so its changes must invalidate their compactions. */
+	private boolean usedAsBase = false;
+	/** Modification counter shared by the layers of a chain. */
+	private Version version = new Version();
+	//
+	/** Whether the top map was given by the caller, who may change it directly, so it cannot be part of snapshots. */
+	private boolean topIsShared = false;
+	//
+	private transient volatile Compaction<K, V> compaction;
+	private transient volatile long numberOfLookupsSinceCompaction;
+	private transient volatile long numberOfInvalidations;
+	private transient TopView topView;
+	//
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<AbstractStackedMap, Compaction> COMPACTION =
+			AtomicReferenceFieldUpdater.newUpdater(AbstractStackedMap.class, Compaction.class, "compaction");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicLongFieldUpdater<AbstractStackedMap> NUMBER_OF_LOOKUPS_SINCE_COMPACTION =
+			AtomicLongFieldUpdater.newUpdater(AbstractStackedMap.class, "numberOfLookupsSinceCompaction");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicLongFieldUpdater<AbstractStackedMap> NUMBER_OF_INVALIDATIONS =
+			AtomicLongFieldUpdater.newUpdater(AbstractStackedMap.class, "numberOfInvalidations");
 
 	abstract Map<K, V> makeMap();
 
@@ -85,6 +150,7 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 	public AbstractStackedMap(Map<K, V> base) {
 		this();
 		this.base = base;
+		joinChainOf(base);
 	}
 
 	/**
@@ -98,16 +164,79 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 	public AbstractStackedMap(Map<K, V> top, Map<K, V> base) {
 		this.top  = top;
 		this.base = base;
+		this.topIsShared = true;
+		joinChainOf(base);
+	}
+
+	/**
+	 * Sets the compaction policy of all stacked maps (see class documentation).
+	 * @param depth the depth of chains that are compacted as soon as lookups amortize it, <= 0 disables
+	 * @param lookupsPerLayer the number of lookups per layer after which chains of any depth are compacted, <= 0 disables
+	 */
+	public static void setCompactionPolicy(int depth, int lookupsPerLayer) {
+		compactionDepth           = depth;
+		compactionLookupsPerLayer = lookupsPerLayer;
+	}
+	
+	/**
+	 * Sets the compaction policy from {@link AICUtilConfiguration}.
+	 */
+	public static void resetCompactionPolicyFromAICUtilConfiguration() {
+		setCompactionPolicy(AICUtilConfiguration.getStackedMapCompactionDepth(), AICUtilConfiguration.getStackedMapCompactionLookupsPerLayer());
+	}
+	
+	/** @return the number of times chains were flattened into snapshots. */
+	public static long getNumberOfCompactions() {
+		return NUMBER_OF_COMPACTIONS.sum();
+	}
+	
+	/** @return the total number of layers flattened into snapshots. */
+	public static long getNumberOfCompactedLayers() {
+		return NUMBER_OF_COMPACTED_LAYERS.sum();
+	}
+	
+	/** @return the number of snapshots discarded because a lower layer changed. */
+	public static long getNumberOfInvalidatedCompactions() {
+		return NUMBER_OF_INVALIDATED_COMPACTIONS.sum();
+	}
+	
+	/** @return the number of lookups answered by snapshots. */
+	public static long getNumberOfLookupsThroughCompactions() {
+		return NUMBER_OF_LOOKUPS_THROUGH_COMPACTIONS.sum();
+	}
+	
+	/** @return the number of top map probes that lookups answered by snapshots would have made otherwise. */
+	public static long getNumberOfProbesSavedByCompactions() {
+		return NUMBER_OF_PROBES_SAVED_BY_COMPACTIONS.sum();
 	}
 	
+	/** Resets all compaction counters to zero. */
+	public static void resetCompactionStatistics() {
+		NUMBER_OF_COMPACTIONS.reset();
+		NUMBER_OF_COMPACTED_LAYERS.reset();
+		NUMBER_OF_INVALIDATED_COMPACTIONS.reset();
+		NUMBER_OF_LOOKUPS_THROUGH_COMPACTIONS.reset();
+		NUMBER_OF_PROBES_SAVED_BY_COMPACTIONS.reset();
+	}
+	
+	/**
+	 * Returns a view of the top map whose changes are followed by the maps stacked on this one.
+	 */
 	@Override
 	public Map<K, V> getTop() {
-		return top;
+		TopView result = topView;
+		if (result == null || result.map != top) {
+			result = new TopView(top);
+			topView = result;
+		}
+		return result;
 	}
 
 	@Override
 	public void setTop(Map<K, V> top) {
+		modified();
 		this.top = top;
+		topIsShared = true;
 	}
 
 	@Override
@@ -117,11 +246,23 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 
 	@Override
 	public void setBase(Map<K, V> base) {
+		if (usedAsBase) {
+			// maps stacked on this one must now follow changes in the new chain as well.
+			Version oldVersion = version.compressedRepresentative();
+			Version newVersion = base instanceof AbstractStackedMap ? ((AbstractStackedMap<K, V>) base).version.compressedRepresentative() : new Version();
+			if (newVersion != oldVersion) {
+				oldVersion.forward = newVersion;
+			}
+			newVersion.count++;
+		}
 		this.base = base;
+		compaction = null;
+		joinChainOf(base);
 	}
 
 	@Override
 	public void clear() {
+		modified();
 		top.clear();
 		if (base != null) {
 			base.clear();
@@ -130,11 +271,13 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 
 	@Override
 	public V put(K key, V value) {
+		modified();
 		return top.put(key, value);
 	}
 
 	@Override
 	public void putAll(Map<? extends K, ? extends V> map) {
+		modified();
 		top.putAll(map);
 	}
 
@@ -143,7 +286,8 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 		V result = top.get(key);
 		if (result == null) {
 			if ( ! top.containsKey(key) && base != null) {
-				result = base.get(key);
+				Compaction<K, V> compaction = getCompactionForLookup();
+				result = compaction == null ? getFromBase(key) : compaction.get(key);
 			}
 		}
 		return result;
@@ -151,7 +295,14 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 
 	@Override
 	public boolean containsKey(Object key) {
-		boolean result = top.containsKey(key) || (base != null && base.containsKey(key));
+		if (top.containsKey(key)) {
+			return true;
+		}
+		if (base == null) {
+			return false;
+		}
+		Compaction<K, V> compaction = getCompactionForLookup();
+		boolean result = compaction == null ? baseContainsKey(key) : compaction.containsKey(key);
 		return result;
 	}
 
@@ -170,6 +321,7 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 	@Override
 	public V remove(Object key) {
 		if (top.containsKey(key)) {
+			modified();
 			return top.remove(key);
 		}
 		if (base != null) {
@@ -188,9 +340,14 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 		Map<K, V> result = makeMap();
 		result.putAll(top);
 		if (base != null) {
-			for (Map.Entry<K, V> entry : base.entrySet()) {
-				if ( ! top.containsKey(entry.getKey())) {
-					result.put(entry.getKey(), entry.getValue());
+			Compaction<K, V> compaction = getValidCompaction();
+			if (compaction == null) {
+				putAllAbsent(base, result);
+			}
+			else {
+				putAllAbsent(compaction.snapshot, result);
+				if (compaction.bottom != null) {
+					putAllAbsent(compaction.bottom, result);
 				}
 			}
 		}
@@ -202,7 +359,16 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 		Set<K> result = makeSetForKeySet();
 		result.addAll(top.keySet());
 		if (base != null) {
-			result.addAll(base.keySet());
+			Compaction<K, V> compaction = getValidCompaction();
+			if (compaction == null) {
+				result.addAll(base.keySet());
+			}
+			else {
+				result.addAll(compaction.snapshot.keySet());
+				if (compaction.bottom != null) {
+					result.addAll(compaction.bottom.keySet());
+				}
+			}
 		}
 		return result;
 	}
@@ -243,4 +409,373 @@ public abstract class AbstractStackedMap<K, V> implements StackedMap<K, V>, Seri
 		 Map<K, V> auxiliary = new LinkedHashMap<K, V>(this);
 		 return auxiliary.toString();
 	 }
+
+	//
+	// PRIVATE
+	//
+	private void joinChainOf(Map<K, V> base) {
+		if (base instanceof AbstractStackedMap) {
+			AbstractStackedMap<K, V> stackedBase = (AbstractStackedMap<K, V>) base;
+			stackedBase.usedAsBase = true;
+			depth   = stackedBase.depth + 1;
+			version = stackedBase.version;
+		}
+		else if (depth > 1) {
+			depth   = 1;
+			version = new Version();
+		}
+	}
+	
+	private void modified() {
+		if (usedAsBase) {
+			version.compressedRepresentative().count++;
+		}
+	}
+	
+	private V getFromBase(Object key) {
+		V result = getFrom(base, key);
+		return result;
+	}
+	
+	private boolean baseContainsKey(Object key) {
+		boolean result = containsKeyIn(base, key);
+		return result;
+	}
+	
+	/**
+	 * Looks the key up in a map and, if it is an AbstractStackedMap, in the layers below it, iteratively
+	 * and without counting the lookup towards their own compaction (only the layer being queried
+	 * decides whether to compact), but using their compactions if they have valid ones.
+	 */
+	private static <K, V> V getFrom(Map<K, V> map, Object key) {
+		while (map instanceof AbstractStackedMap) {
+			AbstractStackedMap<K, V> layer = (AbstractStackedMap<K, V>) map;
+			V result = layer.top.get(key);
+			if (result != null || layer.top.containsKey(key)) {
+				return result;
+			}
+			if (layer.base == null) {
+				return null;
+			}
+			Compaction<K, V> compaction = isCompactionEnabled() ? layer.getValidCompaction() : null;
+			if (compaction != null) {
+				return compaction.get(key);
+			}
+			map = layer.base;
+		}
+		V result = map == null ? null : map.get(key);
+		return result;
+	}
+	
+	/** Same as {@link #getFrom(Map, Object)}, for {@link #containsKey(Object)}. */
+	private static <K, V> boolean containsKeyIn(Map<K, V> map, Object key) {
+		while (map instanceof AbstractStackedMap) {
+			AbstractStackedMap<K, V> layer = (AbstractStackedMap<K, V>) map;
+			if (layer.top.containsKey(key)) {
+				return true;
+			}
+			if (layer.base == null) {
+				return false;
+			}
+			Compaction<K, V> compaction = isCompactionEnabled() ? layer.getValidCompaction() : null;
+			if (compaction != null) {
+				return compaction.containsKey(key);
+			}
+			map = layer.base;
+		}
+		boolean result = map != null && map.containsKey(key);
+		return result;
+	}
+	
+	private static <K, V> void putAllAbsent(Map<K, V> from, Map<K, V> to) {
+		for (Map.Entry<K, V> entry : from.entrySet()) {
+			if ( ! to.containsKey(entry.getKey())) {
+				to.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+	
+	private Compaction<K, V> getValidCompaction() {
+		Compaction<K, V> result = compaction;
+		if (result != null && ! result.isValid()) {
+			// only the thread discarding the snapshot counts the invalidation.
+			if (COMPACTION.compareAndSet(this, result, null)) {
+				NUMBER_OF_INVALIDATIONS.incrementAndGet(this);
+				NUMBER_OF_INVALIDATED_COMPACTIONS.increment();
+			}
+			result = null;
+		}
+		return result;
+	}
+	
+	private static boolean isCompactionEnabled() {
+		boolean result = compactionDepth > 0 || compactionLookupsPerLayer > 0;
+		return result;
+	}
+	
+	private Compaction<K, V> getCompactionForLookup() {
+		// optimization: when compaction is disabled, lookups do not touch any state.
+		if ( ! isCompactionEnabled()) {
+			return null;
+		}
+		Compaction<K, V> result = getValidCompaction();
+		if (result == null && depth >= MINIMUM_COMPACTION_DEPTH) {
+			long numberOfLookups = NUMBER_OF_LOOKUPS_SINCE_COMPACTION.incrementAndGet(this);
+			// only the thread restarting the count compacts.
+			if (isCompactionDue(numberOfLookups) && NUMBER_OF_LOOKUPS_SINCE_COMPACTION.compareAndSet(this, numberOfLookups, 0)) {
+				result = compact();
+				if (result != null) {
+					compaction = result;
+				}
+			}
+		}
+		return result;
+	}
+	
+	private boolean isCompactionDue(long numberOfLookupsSinceCompaction) {
+		// a snapshot costs about as much as depth lookups through depth layers, and each invalidation makes the next one wait longer.
+		final long numberOfInvalidations = this.numberOfInvalidations;
+		boolean result =
+				(compactionDepth > 0 && depth >= compactionDepth && numberOfLookupsSinceCompaction >= (numberOfInvalidations + 1)*depth)
+				||
+				(compactionLookupsPerLayer > 0 && numberOfLookupsSinceCompaction >= (numberOfInvalidations + 1)*compactionLookupsPerLayer*(long) depth);
+		return result;
+	}
+	
+	/**
+	 * Flattens the top maps of the layers below this one, down to the first one that is not an
+	 * AbstractStackedMap or whose top map is shared, or returns null if that would save nothing.
+	 */
+	private Compaction<K, V> compact() {
+		Version representative = version.representative();
+		long count = representative.count;
+		List<Map<K, V>> tops = new ArrayList<Map<K, V>>();
+		Map<K, V> bottom = base;
+		while (bottom instanceof AbstractStackedMap && ! ((AbstractStackedMap<K, V>) bottom).topIsShared) {
+			AbstractStackedMap<K, V> layer = (AbstractStackedMap<K, V>) bottom;
+			tops.add(layer.top);
+			bottom = layer.base;
+		}
+		if (tops.size() < MINIMUM_COMPACTION_DEPTH - 1) {
+			return null;
+		}
+		Map<K, V> snapshot = makeMap();
+		for (int i = tops.size() - 1; i >= 0; i--) {
+			snapshot.putAll(tops.get(i));
+		}
+		NUMBER_OF_COMPACTIONS.increment();
+		NUMBER_OF_COMPACTED_LAYERS.add(tops.size());
+		Compaction<K, V> result = new Compaction<K, V>(snapshot, bottom, tops.size(), representative, count);
+		return result;
+	}
+	
+	/**
+	 * The view of a top map returned by {@link AbstractStackedMap#getTop()}, which counts its changes
+	 * (including the ones through its entries, keys and values) as changes of the stacked map.
+	 */
+	private final class TopView extends AbstractMap<K, V> {
+		final Map<K, V> map;
+		
+		TopView(Map<K, V> map) {
+			this.map = map;
+		}
+		
+		@Override
+		public int size() {
+			return map.size();
+		}
+		
+		@Override
+		public boolean isEmpty() {
+			return map.isEmpty();
+		}
+		
+		@Override
+		public V get(Object key) {
+			return map.get(key);
+		}
+		
+		@Override
+		public boolean containsKey(Object key) {
+			return map.containsKey(key);
+		}
+		
+		@Override
+		public boolean containsValue(Object value) {
+			return map.containsValue(value);
+		}
+		
+		@Override
+		public V put(K key, V value) {
+			modified();
+			return map.put(key, value);
+		}
+		
+		@Override
+		public V remove(Object key) {
+			modified();
+			return map.remove(key);
+		}
+		
+		@Override
+		public void putAll(Map<? extends K, ? extends V> other) {
+			modified();
+			map.putAll(other);
+		}
+		
+		@Override
+		public void clear() {
+			modified();
+			map.clear();
+		}
+		
+		@Override
+		public Set<Map.Entry<K, V>> entrySet() {
+			return new AbstractSet<Map.Entry<K, V>>() {
+				@Override
+				public int size() {
+					return map.size();
+				}
+				
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					final Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+					return new Iterator<Map.Entry<K, V>>() {
+						@Override
+						public boolean hasNext() {
+							return iterator.hasNext();
+						}
+						
+						@Override
+						public Map.Entry<K, V> next() {
+							return new TopEntry(iterator.next());
+						}
+						
+						@Override
+						public void remove() {
+							modified();
+							iterator.remove();
+						}
+					};
+				}
+			};
+		}
+	}
+	
+	/** An entry of a {@link TopView}, counting changes of its value as changes of the stacked map. */
+	private final class TopEntry implements Map.Entry<K, V> {
+		final Map.Entry<K, V> entry;
+		
+		TopEntry(Map.Entry<K, V> entry) {
+			this.entry = entry;
+		}
+		
+		@Override
+		public K getKey() {
+			return entry.getKey();
+		}
+		
+		@Override
+		public V getValue() {
+			return entry.getValue();
+		}
+		
+		@Override
+		public V setValue(V value) {
+			modified();
+			return entry.setValue(value);
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return entry.equals(other);
+		}
+		
+		@Override
+		public int hashCode() {
+			return entry.hashCode();
+		}
+		
+		@Override
+		public String toString() {
+			return entry.toString();
+		}
+	}
+	
+	/**
+	 * A modification counter shared by the layers of a chain.
+	 * When a layer with maps stacked on it is moved to another chain, its counter is forwarded
+	 * to the one of the new chain, so a chain is represented by the last counter in a forwarding path.
+	 */
+	private static final class Version implements Serializable {
+		private static final long serialVersionUID = 1L;
+		
+		private Version forward;
+		private long count;
+		
+		/** The counter representing the chain (without changing the forwarding path, so safe for concurrent reads). */
+		Version representative() {
+			Version result = this;
+			while (result.forward != null) {
+				result = result.forward;
+			}
+			return result;
+		}
+		
+		/** Same as {@link #representative()}, compressing the forwarding path (only used by changes). */
+		Version compressedRepresentative() {
+			Version result = representative();
+			for (Version version = this; version != result; ) {
+				Version next = version.forward;
+				version.forward = result;
+				version = next;
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * The merged top maps of the AbstractStackedMap layers below a stacked map,
+	 * and the first base below them that is not an AbstractStackedMap or has a shared top map.
+	 */
+	private static final class Compaction<K, V> {
+		final Map<K, V> snapshot;
+		final Map<K, V> bottom;
+		final int numberOfLayers;
+		final Version version;
+		final long count;
+		
+		Compaction(Map<K, V> snapshot, Map<K, V> bottom, int numberOfLayers, Version version, long count) {
+			this.snapshot       = snapshot;
+			this.bottom         = bottom;
+			this.numberOfLayers = numberOfLayers;
+			this.version        = version;
+			this.count          = count;
+		}
+		
+		boolean isValid() {
+			boolean result = version.forward == null && version.count == count;
+			return result;
+		}
+		
+		V get(Object key) {
+			recordLookup();
+			V result = snapshot.get(key);
+			if (result == null && bottom != null && ! snapshot.containsKey(key)) {
+				result = getFrom(bottom, key);
+			}
+			return result;
+		}
+		
+		boolean containsKey(Object key) {
+			recordLookup();
+			boolean result = snapshot.containsKey(key) || (bottom != null && containsKeyIn(bottom, key));
+			return result;
+		}
+		
+		private void recordLookup() {
+			NUMBER_OF_LOOKUPS_THROUGH_COMPACTIONS.increment();
+			NUMBER_OF_PROBES_SAVED_BY_COMPACTIONS.add(numberOfLayers - 1);
+		}
+	}
 }
@@ -38,64 +38,124 @@
 package com.sri.ai.util.collect;
 
 import java.util.AbstractSet;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 
 import com.google.common.annotations.Beta;
+import com.sri.ai.util.Util;
 
 /**
- * Analogous to {@link java.util.LinkedHashSet}, but with an {@link java.util.ArrayList} instead of a {@link java.util.LinkedList},
- * offering the same advantages (random access) and disadvantages (slower addition and removal of elements),
+ * Analogous to {@link java.util.LinkedHashSet}, but with an array instead of a {@link java.util.LinkedList},
+ * offering the same advantages (random access) as an {@link java.util.ArrayList},
  * but with the extra advantage of offering an iterator that is actually a {@link java.util.ListIterator}.
+ * <p>
+ * Each element is mapped to its position in the array, so {@link #contains(Object)} and {@link #remove(Object)}
+ * take constant time. How removal keeps the array dense is chosen at construction (see {@link RemovalPolicy}):
+ * <ul>
+ * <li> {@link RemovalPolicy#PRESERVE_ORDER} (the default) replaces removed elements by tombstones,
+ * which are skipped by iterators and discarded by compacting the array when they outnumber the elements,
+ * so removal takes constant amortized time and insertion order is preserved.
+ * Indexed access ({@link #get(int)}, {@link #set(int, Object)} and {@link #listIterator(int)})
+ * takes constant time when there are no tombstones, and logarithmic time otherwise
+ * (through a Fenwick tree counting elements by position, built on demand);
+ * <li> {@link RemovalPolicy#SWAP_WITH_LAST} moves the last element to the position of the removed one,
+ * so removal and indexed access always take constant time, but the order of elements is not preserved.
+ * </ul>
+ * Inserting elements with {@link ListIterator#add(Object)} in the middle of the array takes linear time
+ * when preserving order (unless it fills a tombstone right before the iterator's position).
  * @author braz
  *
  * @param <E> the type of the elements
  */
 @Beta
 public class ArrayHashSet<E> extends AbstractSet<E> implements ArraySet<E> {
+	
+	/** How an {@link ArrayHashSet} removes elements from its array. */
+	public static enum RemovalPolicy {
+		/** Leave tombstones to be compacted later, preserving the order of the remaining elements. */
+		PRESERVE_ORDER,
+		/** Move the last element to the position of the removed one. */
+		SWAP_WITH_LAST
+	}
+	
+	private static final Object TOMBSTONE = new Object();
+	
+	private static final int DEFAULT_CAPACITY = 10;
+	// avoids compacting small arrays over and over.
+	private static final int MINIMUM_NUMBER_OF_TOMBSTONES_FOR_COMPACTION = 16;
 
-	private HashSet<E>   set;
-	private ArrayList<E> arrayList;
+	private RemovalPolicy        removalPolicy;
+	private HashMap<E, Integer>  indices;
+	private Object[]             elements;
+	/** The number of used positions in elements, including tombstones. */
+	private int                  end;
+	private int                  numberOfTombstones;
+	private int                  modificationCount;
+	/** Fenwick tree counting elements (not tombstones) by position, or null if not needed or stale. */
+	private int[]                elementCounts;
 	
 	public ArrayHashSet() {
-		this.set  = new HashSet<E>();
-		this.arrayList = new ArrayList<E>();
+		this(DEFAULT_CAPACITY, RemovalPolicy.PRESERVE_ORDER);
 	}
 	
 	public ArrayHashSet(int capacity) {
-		this.set  = new HashSet<E>();
-		this.arrayList = new ArrayList<E>(capacity);
+		this(capacity, RemovalPolicy.PRESERVE_ORDER);
+	}
+	
+	public ArrayHashSet(RemovalPolicy removalPolicy) {
+		this(DEFAULT_CAPACITY, removalPolicy);
+	}
+	
+	public ArrayHashSet(int capacity, RemovalPolicy removalPolicy) {
+		this.removalPolicy = removalPolicy;
+		this.indices  = new HashMap<E, Integer>();
+		this.elements = new Object[Math.max(capacity, 1)];
+		this.end = 0;
+		this.numberOfTombstones = 0;
+		this.modificationCount = 0;
 	}
 	
 	public ArrayHashSet(Collection<E> collection) {
-		this();
+		this(Math.max(collection.size(), DEFAULT_CAPACITY), RemovalPolicy.PRESERVE_ORDER);
 		addAll(collection);
 	}
 	
+	public RemovalPolicy getRemovalPolicy() {
+		return removalPolicy;
+	}
+	
 	// ArraySet methods
 	
 	@Override
 	public ArrayHashSetIterator listIterator() {
-		return new ArrayHashSetIterator(arrayList.listIterator());
+		return new ArrayHashSetIterator(0, 0);
 	}
 
 	@Override
 	public ArrayHashSetIterator listIterator(int index) {
-		return new ArrayHashSetIterator(arrayList.listIterator(index));
+		if (index < 0 || index > size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		int position = index == size() ? end : positionOf(index);
+		return new ArrayHashSetIterator(position, index);
 	}
 
 	@Override
 	public E get(int index) {
-		return listIterator(index).next();
+		checkElementIndex(index);
+		@SuppressWarnings("unchecked")
+		E result = (E) elements[positionOf(index)];
+		return result;
 	}
 
 	@Override
 	public void set(int index, E element) {
-		ArrayHashSet<E>.ArrayHashSetIterator listIterator = listIterator(index);
-		listIterator.next();
-		listIterator.set(element);
+		checkElementIndex(index);
+		replace(positionOf(index), element);
 	}
 
 	// end of ArraySet methods
@@ -104,21 +164,26 @@ public class ArrayHashSet<E> extends AbstractSet<E> implements ArraySet<E> {
 	
 	@Override
 	public boolean add(E element) {
-		boolean modified = set.add(element);
-		if (modified) {
-			arrayList.add(element);
+		if (indices.containsKey(element)) {
+			return false;
 		}
-		return modified;
+		ensureCapacityForOneMore(true);
+		elements[end] = element;
+		indices.put(element, end);
+		updateElementCounts(end, +1);
+		end++;
+		modificationCount++;
+		return true;
 	}
 
 	@Override
 	public ArrayHashSetIterator iterator() {
-		return new ArrayHashSetIterator(arrayList.listIterator());
+		return new ArrayHashSetIterator(0, 0);
 	}
 
 	@Override
 	public int size() {
-		return set.size();
+		return indices.size();
 	}
 	
 	// end of required implementations
@@ -127,105 +192,342 @@ public class ArrayHashSet<E> extends AbstractSet<E> implements ArraySet<E> {
 	
 	@Override
 	public boolean contains(Object o) {
-		return set.contains(o);
+		return indices.containsKey(o);
 	}
 	
 	@Override
 	public Object[] toArray() {
-		return arrayList.toArray();
+		Object[] result = new Object[size()];
+		copyElementsTo(result);
+		return result;
 	}
 	
 	@Override
 	public <T> T[] toArray(T[] a) {
-		return arrayList.toArray(a);
+		T[] result = a.length >= size() ? a : Arrays.copyOf(a, size());
+		copyElementsTo(result);
+		if (result.length > size()) {
+			result[size()] = null;
+		}
+		return result;
 	}
 	
 	@Override
 	public boolean remove(Object o) {
-		boolean removed = set.remove(o);
-		if (removed) {
-			arrayList.remove(o);
+		Integer position = indices.remove(o);
+		if (position == null) {
+			return false;
+		}
+		removeAt(position);
+		if (numberOfTombstones >= MINIMUM_NUMBER_OF_TOMBSTONES_FOR_COMPACTION && numberOfTombstones > size()) {
+			compact();
 		}
-		return removed;
+		return true;
 	}
 	
 	@Override
 	public void clear() {
-		set.clear();
-		arrayList.clear();
+		indices.clear();
+		Arrays.fill(elements, 0, end, null);
+		end = 0;
+		numberOfTombstones = 0;
+		elementCounts = null;
+		modificationCount++;
 	}
 	
 	// end of methods not required to be implemented, but more efficient
 
+	//
+	// PRIVATE
+	//
+	private void checkElementIndex(int index) {
+		if (index < 0 || index >= size()) {
+			throw new NoSuchElementException("No element at index " + index + " of " + getClass().getSimpleName() + " of size " + size());
+		}
+	}
+	
+	/** The position in the array of the element at the given (valid) index. */
+	private int positionOf(int index) {
+		if (numberOfTombstones == 0) {
+			return index;
+		}
+		if (elementCounts == null) {
+			buildElementCounts();
+		}
+		// finds the largest prefix of positions with index elements, by binary lifting in the Fenwick tree.
+		int result = 0;
+		int remaining = index + 1;
+		for (int step = Integer.highestOneBit(elementCounts.length - 1); step != 0; step >>= 1) {
+			int next = result + step;
+			if (next < elementCounts.length && elementCounts[next] < remaining) {
+				result = next;
+				remaining -= elementCounts[next];
+			}
+		}
+		return result;
+	}
+	
+	private void buildElementCounts() {
+		elementCounts = new int[elements.length + 1];
+		for (int position = 0; position != end; position++) {
+			if (elements[position] != TOMBSTONE) {
+				elementCounts[position + 1]++;
+			}
+		}
+		for (int i = 1; i != elementCounts.length; i++) {
+			int parent = i + (i & -i);
+			if (parent < elementCounts.length) {
+				elementCounts[parent] += elementCounts[i];
+			}
+		}
+	}
+	
+	private void updateElementCounts(int position, int delta) {
+		if (elementCounts != null) {
+			for (int i = position + 1; i < elementCounts.length; i += i & -i) {
+				elementCounts[i] += delta;
+			}
+		}
+	}
+	
+	private void ensureCapacityForOneMore(boolean compactionAllowed) {
+		if (end == elements.length) {
+			if (compactionAllowed && numberOfTombstones > end/2) {
+				compact();
+			}
+			else {
+				elements = Arrays.copyOf(elements, elements.length + (elements.length >> 1) + 1);
+				elementCounts = null;
+			}
+		}
+	}
+	
+	/** Replaces the element at a position, keeping elements unique. */
+	private void replace(int position, E element) {
+		@SuppressWarnings("unchecked")
+		E previous = (E) elements[position];
+		if (Util.equals(element, previous)) {
+			// no need to do anything
+		}
+		else {
+			if (indices.containsKey(element)) {
+				// cannot add because element would appear more than once
+				throw new IllegalArgumentException("Cannot set already-present element in a different position in ArrayHashSet.");
+			}
+			else {
+				elements[position] = element;
+				indices.remove(previous);
+				indices.put(element, position);
+			}
+		}
+	}
+	
+	/**
+	 * Removes the element at a position, already removed from indices, according to the removal policy.
+	 * @return the position of the element moved to the given position, or -1 if no element was moved.
+	 */
+	private int removeAt(int position) {
+		int result = -1;
+		modificationCount++;
+		updateElementCounts(position, -1);
+		if (position == end - 1) {
+			elements[--end] = null;
+		}
+		else if (removalPolicy == RemovalPolicy.SWAP_WITH_LAST) {
+			result = end - 1;
+			@SuppressWarnings("unchecked")
+			E last = (E) elements[result];
+			elements[position] = last;
+			elements[--end] = null;
+			indices.put(last, position);
+		}
+		else {
+			elements[position] = TOMBSTONE;
+			numberOfTombstones++;
+		}
+		return result;
+	}
+	
+	/** Moves elements over tombstones, preserving their order. */
+	private void compact() {
+		int newEnd = 0;
+		for (int position = 0; position != end; position++) {
+			Object element = elements[position];
+			if (element != TOMBSTONE) {
+				if (newEnd != position) {
+					elements[newEnd] = element;
+					@SuppressWarnings("unchecked")
+					E movedElement = (E) element;
+					indices.put(movedElement, newEnd);
+				}
+				newEnd++;
+			}
+		}
+		Arrays.fill(elements, newEnd, end, null);
+		end = newEnd;
+		numberOfTombstones = 0;
+		elementCounts = null;
+		modificationCount++;
+	}
+	
+	private void copyElementsTo(Object[] array) {
+		if (numberOfTombstones == 0) {
+			System.arraycopy(elements, 0, array, 0, end);
+		}
+		else {
+			int i = 0;
+			for (int position = 0; position != end; position++) {
+				if (elements[position] != TOMBSTONE) {
+					array[i++] = elements[position];
+				}
+			}
+		}
+	}
+	
 	private class ArrayHashSetIterator implements ListIterator<E> {
 
-		private ListIterator<E> arrayListIterator;
-		private E lastElementProvided;
+		/** The position of the next element (or of tombstones before it). */
+		private int cursor;
+		private int nextIndex;
+		private int lastPosition = -1;
+		private int expectedModificationCount = modificationCount;
 		
-		public ArrayHashSetIterator(ListIterator<E> arrayListIterator) {
-			this.arrayListIterator = arrayListIterator;
+		public ArrayHashSetIterator(int position, int index) {
+			this.cursor    = position;
+			this.nextIndex = index;
 		}
 		
 		@Override
 		public boolean hasNext() {
-			return arrayListIterator.hasNext();
+			return nextIndex < size();
 		}
 
 		@Override
 		public E next() {
-			return lastElementProvided = arrayListIterator.next();
+			checkForModification();
+			if ( ! hasNext()) {
+				throw new NoSuchElementException();
+			}
+			while (elements[cursor] == TOMBSTONE) {
+				cursor++;
+			}
+			lastPosition = cursor++;
+			nextIndex++;
+			@SuppressWarnings("unchecked")
+			E result = (E) elements[lastPosition];
+			return result;
 		}
 
 		@Override
 		public void add(E element) {
-			if (set.add(element)) {
-				arrayListIterator.add(element);
+			checkForModification();
+			if (indices.containsKey(element)) {
+				return;
+			}
+			if (cursor > 0 && elements[cursor - 1] == TOMBSTONE) {
+				// optimization: reuses the tombstone right before the cursor.
+				elements[cursor - 1] = element;
+				indices.put(element, cursor - 1);
+				numberOfTombstones--;
+				updateElementCounts(cursor - 1, +1);
+			}
+			else {
+				// compaction would invalidate the cursor.
+				ensureCapacityForOneMore(false);
+				if (removalPolicy == RemovalPolicy.SWAP_WITH_LAST && cursor != end) {
+					// the element at the cursor is moved to the end, where it will still be iterated over.
+					@SuppressWarnings("unchecked")
+					E moved = (E) elements[cursor];
+					elements[end] = moved;
+					indices.put(moved, end);
+					updateElementCounts(end, +1);
+				}
+				else {
+					elementCounts = null;
+					System.arraycopy(elements, cursor, elements, cursor + 1, end - cursor);
+					for (int position = cursor + 1; position <= end; position++) {
+						if (elements[position] != TOMBSTONE) {
+							@SuppressWarnings("unchecked")
+							E shifted = (E) elements[position];
+							indices.put(shifted, position);
+						}
+					}
+				}
+				elements[cursor] = element;
+				indices.put(element, cursor);
+				end++;
+				cursor++;
 			}
+			nextIndex++;
+			lastPosition = -1;
+			expectedModificationCount = ++modificationCount;
 		}
 
 		@Override
 		public boolean hasPrevious() {
-			return arrayListIterator.hasPrevious();
+			return nextIndex > 0;
 		}
 
 		@Override
 		public int nextIndex() {
-			return arrayListIterator.nextIndex();
+			return nextIndex;
 		}
 
 		@Override
 		public E previous() {
-			return lastElementProvided = arrayListIterator.previous();
+			checkForModification();
+			if ( ! hasPrevious()) {
+				throw new NoSuchElementException();
+			}
+			cursor--;
+			while (elements[cursor] == TOMBSTONE) {
+				cursor--;
+			}
+			lastPosition = cursor;
+			nextIndex--;
+			@SuppressWarnings("unchecked")
+			E result = (E) elements[lastPosition];
+			return result;
 		}
 
 		@Override
 		public int previousIndex() {
-			return arrayListIterator.previousIndex();
+			return nextIndex - 1;
 		}
 
 		@Override
 		public void remove() {
-			arrayListIterator.remove();
-			set.remove(lastElementProvided);
+			if (lastPosition == -1) {
+				throw new IllegalStateException();
+			}
+			checkForModification();
+			boolean lastMoveWasNext = lastPosition < cursor;
+			indices.remove(elements[lastPosition]);
+			int movedPosition = removeAt(lastPosition);
+			if (lastMoveWasNext) {
+				nextIndex--;
+				if (movedPosition != -1 || lastPosition == end) {
+					// the element moved to (or the end now at) the removed position is the next one.
+					cursor = lastPosition;
+				}
+			}
+			lastPosition = -1;
+			expectedModificationCount = modificationCount;
 		}
 
 		@Override
 		public void set(E element) {
-			if (element.equals(lastElementProvided)) {
-				// no need to do anything
+			if (lastPosition == -1) {
+				throw new IllegalStateException();
 			}
-			else {
-				if (set.contains(element)) {
-					// cannot add because element would appear more than once
-					throw new IllegalArgumentException("Cannot set already-present element in a different position in ArrayHashSet.");
-				}
-				else {
-					arrayListIterator.set(element);
-					set.remove(lastElementProvided);
-					set.add(element);
-				}
+			checkForModification();
+			replace(lastPosition, element);
+		}
+		
+		private void checkForModification() {
+			if (modificationCount != expectedModificationCount) {
+				throw new ConcurrentModificationException();
 			}
 		}
 	}
 }
-
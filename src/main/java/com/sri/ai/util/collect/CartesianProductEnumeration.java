@@ -43,9 +43,12 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.google.common.annotations.Beta;
 import com.sri.ai.util.math.MixedRadixNumber;
+import com.sri.ai.util.math.MixedRadixSpliterator;
 
 /**
  * A utility class for enumerating over the cartesian product of lists of lists
@@ -86,6 +89,7 @@ import com.sri.ai.util.math.MixedRadixNumber;
 public class CartesianProductEnumeration<E> implements Enumeration<List<E>> {
 
 	private boolean          enumerateFastestFromRightToLeft = true;
+	private int[]            radices                         = null;
 	private MixedRadixNumber mixedRadixNumber                = null;
 	private List<E>          currentElements                 = new ArrayList<E>();
 	private List<List<E>>    elementValues                   = new ArrayList<List<E>>();
@@ -112,7 +116,7 @@ public class CartesianProductEnumeration<E> implements Enumeration<List<E>> {
 			}
 		}
 
-		int[] radices = new int[elementValues.size()];
+		radices = new int[elementValues.size()];
 		for (int i = 0; i < elementValues.size(); i++) {
 			int size = elementValues.get(i).size();
 			if (size == 0) {
@@ -136,6 +140,22 @@ public class CartesianProductEnumeration<E> implements Enumeration<List<E>> {
 		return sizeOfCrossProduct;
 	}
 
+	/**
+	 * Returns a stream over all the elements of the cartesian product, in
+	 * the same order as they are enumerated, independent of the current
+	 * position of this enumeration. A parallel stream splits the product
+	 * into disjoint ranges (see {@link MixedRadixSpliterator}).
+	 * 
+	 * @param parallel
+	 *            whether the returned stream is parallel.
+	 * @return a stream over the elements of the cartesian product, each
+	 *         element being a new list.
+	 */
+	public Stream<List<E>> stream(boolean parallel) {
+		Stream<List<E>> result = StreamSupport.stream(new MixedRadixSpliterator(radices), parallel).map(numerals -> elementsFor(numerals));
+		return result;
+	}
+
 	//
 	// START - Enumeration Interface
 	@Override
@@ -187,4 +207,22 @@ public class CartesianProductEnumeration<E> implements Enumeration<List<E>> {
 
 	// END - Enumerate Interface
 	//
+
+	//
+	// PRIVATE
+	//
+	private List<E> elementsFor(int[] numerals) {
+		List<E> result = new ArrayList<E>(numerals.length);
+		if (enumerateFastestFromRightToLeft) {
+			for (int i = 0; i < numerals.length; i++) {
+				result.add(elementValues.get(i).get(numerals[i]));
+			}
+		} 
+		else {
+			for (int i = numerals.length -1; i >= 0; i--) {
+				result.add(elementValues.get(i).get(numerals[i]));
+			}
+		}
+		return result;
+	}
 }
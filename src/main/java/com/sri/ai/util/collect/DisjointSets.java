@@ -37,9 +37,9 @@
  */
 package com.sri.ai.util.collect;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -48,25 +48,20 @@ import java.util.Set;
 import com.google.common.annotations.Beta;
 
 /**
- * A basic implementation of a disjoint-set data structure for maintaining a
- * collection of disjoint dynamic sets. This is based on the algorithm
+ * An implementation of a disjoint-set (union-find) data structure for maintaining a
+ * collection of disjoint dynamic sets, based on the algorithm
  * description in Chapter 21 of 'Introduction to Algorithm 2nd Edition' (by
- * Cormen, Leriserson, Rivest, and Stein) for Disjoint-sets taking into account
- * some of the heuristic ideas described. However, this implementation relies on
- * the constant time performance of the HashMap's get and put operations, and
- * HashSet's add, remove, contains and size operations as an alternative
- * implementation approach. This provides a cleaner separation between the
- * elements and the implementation (i.e. the idea of a representative for a
- * particular disjoint set is not used) and an easier to use API (i.e. direct
- * access to the disjoint set that an element belongs to and no need to
- * understand how the internals work with respect to a representative) but will
- * not perform as fast (proper analysis required but likely O(m + n lg n) as
- * detailed in Theorem 21.1 on page 504 of 'Introduction to Algorithm 2nd
- * Edition').
- * 
- * Note: the internal implementation of this class can likely be improved to use
- * all the techniques outlined in section 21.3 in order to get optimal
- * performance.
+ * Cormen, Leriserson, Rivest, and Stein), using both heuristics of section 21.3:
+ * union by rank and path compression (here, path halving), so that a sequence of m operations
+ * on n elements takes O(m &alpha;(n)) time.
+ * <p>
+ * Elements are mapped to consecutive int ids, and the forest is kept in int arrays
+ * of parents and ranks, so {@link #findRepresentative(Object)}, {@link #sameSet(Object, Object)}
+ * and {@link #union(Object, Object)} do not allocate.
+ * The members of each set are also kept in a circular linked list (an int array of successors,
+ * spliced in constant time by unions), so the sets themselves are only materialized on demand,
+ * by {@link #find(Object)}, {@link #getElementToDisjointSet()} and {@link #getDisjointSets()},
+ * in time linear in their sizes.
  * 
  * @author oreilly
  * 
@@ -75,9 +70,17 @@ import com.google.common.annotations.Beta;
  */
 @Beta
 public class DisjointSets<E> {
+	
+	private static final int INITIAL_CAPACITY = 16;
 
-	private Map<E, Set<E>> elementToSet = new LinkedHashMap<E, Set<E>>();
-	private Set<Set<E>>    disjointSets = new LinkedHashSet<Set<E>>();
+	private Map<E, Integer> ids = new HashMap<E, Integer>();
+	private Object[] elements   = new Object[INITIAL_CAPACITY];
+	private int[]    parents    = new int[INITIAL_CAPACITY];
+	private int[]    ranks      = new int[INITIAL_CAPACITY];
+	/** Successor of each element in the circular list of the members of its set. */
+	private int[]    successors = new int[INITIAL_CAPACITY];
+	private int numberOfElements = 0;
+	private int numberOfDisjointSets = 0;
 
 	/**
 	 * Default Constructor.
@@ -124,16 +127,21 @@ public class DisjointSets<E> {
 	 *            constructed.
 	 */
 	public void makeSet(E element) {
-		if (!elementToSet.containsKey(element)) {
-			// Note: It is necessary to use an identity based hash set
-			// whose equal and hashCode method are based on the Sets
-			// identity and not its elements as we are adding
-			// this set to a set but changing its values as unions
-			// occur.
-			Set<E> set = new IdentityHashSet<E>();
-			set.add(element);
-			elementToSet.put(element, set);
-			disjointSets.add(set);
+		if (!ids.containsKey(element)) {
+			if (numberOfElements == elements.length) {
+				int newCapacity = 2*elements.length;
+				elements   = Arrays.copyOf(elements,   newCapacity);
+				parents    = Arrays.copyOf(parents,    newCapacity);
+				ranks      = Arrays.copyOf(ranks,      newCapacity);
+				successors = Arrays.copyOf(successors, newCapacity);
+			}
+			int id = numberOfElements++;
+			ids.put(element, id);
+			elements[id]   = element;
+			parents[id]    = id;
+			ranks[id]      = 0;
+			successors[id] = id;
+			numberOfDisjointSets++;
 		}
 	}
 
@@ -151,33 +159,64 @@ public class DisjointSets<E> {
 	 *             beforehand).
 	 */
 	public void union(E element1, E element2) {
-		Set<E> set1 = elementToSet.get(element1);
-		if (set1 == null) {
-			throw new IllegalArgumentException(
-					"element 1 is not associated with a disjoint set, call makeSet() first.");
-		}
-		Set<E> set2 = elementToSet.get(element2);
-		if (set2 == null) {
-			throw new IllegalArgumentException(
-					"element 2 is not associated with a disjoint set, call makeSet() first.");
-		}
-		if (set1 != set2) {
-			// simple weighted union heuristic
-			if (set1.size() < set2.size()) {
-				set2.addAll(set1);
-				for (E element : set1) {
-					disjointSets.remove(elementToSet.put(element, set2));
-				}
-			} 
+		int root1 = findRoot(idOf(element1, "element 1"));
+		int root2 = findRoot(idOf(element2, "element 2"));
+		if (root1 != root2) {
+			// union by rank
+			if (ranks[root1] < ranks[root2]) {
+				parents[root1] = root2;
+			}
 			else {
-				// i.e. set1 >= set2
-				set1.addAll(set2);
-				for (E element : set2) {
-					Set<E> pe = elementToSet.put(element, set1);
-					disjointSets.remove(pe);
+				parents[root2] = root1;
+				if (ranks[root1] == ranks[root2]) {
+					ranks[root1]++;
 				}
 			}
+			// splices the two circular lists of members
+			int successor1 = successors[root1];
+			successors[root1] = successors[root2];
+			successors[root2] = successor1;
+			numberOfDisjointSets--;
+		}
+	}
+
+	/**
+	 * Find the representative of the disjoint set that an element belongs to,
+	 * which is the same for all elements of the set until it is united with another one.
+	 * 
+	 * @param element
+	 *            the element whose disjoint set representative is being sought.
+	 * @return the representative of the disjoint set for the element or null if makeSet(element) was
+	 *         not previously called.
+	 */
+	public E findRepresentative(E element) {
+		Integer id = ids.get(element);
+		if (id == null) {
+			return null;
 		}
+		@SuppressWarnings("unchecked")
+		E result = (E) elements[findRoot(id)];
+		return result;
+	}
+
+	/**
+	 * Indicates whether two elements belong to the same disjoint set.
+	 * 
+	 * @param element1
+	 *        the first element.
+	 * @param element2
+	 *        the second element.
+	 * @return whether both elements belong to the same disjoint set.
+	 * @throws IllegalArgumentException
+	 *             if element1 or element 2 is not already associated with a
+	 *             disjoint set (i.e. makeSet() was not called for the argument
+	 *             beforehand).
+	 */
+	public boolean sameSet(E element1, E element2) {
+		int root1 = findRoot(idOf(element1, "element 1"));
+		int root2 = findRoot(idOf(element2, "element 2"));
+		boolean result = root1 == root2;
+		return result;
 	}
 
 	/**
@@ -189,11 +228,11 @@ public class DisjointSets<E> {
 	 *         not previously called.
 	 */
 	public Set<E> find(E element) {
-		// Note: Instantiate normal sets to ensure IdentityHashSet
-		// is not exposed outside of this class.
-		// This also ensures the internal logic cannot
-		// be corrupted externally due to changing sets.
-		return new LinkedHashSet<E>(elementToSet.get(element));
+		Integer id = ids.get(element);
+		if (id == null) {
+			return null;
+		}
+		return members(id);
 	}
 
 	/**
@@ -202,13 +241,14 @@ public class DisjointSets<E> {
 	 *         belongs to.
 	 */
 	public Map<E, Set<E>> getElementToDisjointSet() {
-		// Note: Instantiate normal sets to ensure IdentityHashSet
-		// is not exposed outside of this class.
-		// This also ensures the internal logic cannot
-		// be corrupted externally due to changing sets.
+		// Note: each element gets its own copy of its set,
+		// so that changes to one of them do not affect the others.
+		Set<E>[] setsByRoot = materializeSetsByRoot();
 		Map<E, Set<E>> result = new LinkedHashMap<E, Set<E>>();
-		for (Map.Entry<E, Set<E>> entry : elementToSet.entrySet()) {
-			result.put(entry.getKey(), new LinkedHashSet<E>(entry.getValue()));
+		for (int id = 0; id != numberOfElements; id++) {
+			@SuppressWarnings("unchecked")
+			E element = (E) elements[id];
+			result.put(element, new LinkedHashSet<E>(setsByRoot[findRoot(id)]));
 		}
 		return result;
 	}
@@ -218,14 +258,15 @@ public class DisjointSets<E> {
 	 * @return the set of disjoint sets being maintained.
 	 */
 	public Set<Set<E>> getDisjointSets() {
-		// Note: Instantiate normal sets to ensure IdentityHashSet
-		// is not exposed outside of this class.
-		// This also ensures the internal logic cannot
-		// be corrupted externally due to changing sets.
+		Set<E>[] setsByRoot = materializeSetsByRoot();
 		Set<Set<E>> result = new LinkedHashSet<Set<E>>();
-		Iterator<Set<E>> it = disjointSets.iterator();
-		while (it.hasNext()) {
-			result.add(new LinkedHashSet<E>(it.next()));
+		// sets are listed in the order of their first elements.
+		for (int id = 0; id != numberOfElements; id++) {
+			int root = findRoot(id);
+			if (setsByRoot[root] != null) {
+				result.add(setsByRoot[root]);
+				setsByRoot[root] = null;
+			}
 		}
 		return result;
 	}
@@ -235,36 +276,63 @@ public class DisjointSets<E> {
 	 * @return the number of disjoint sets.
 	 */
 	public int numberDisjointSets() {
-		return disjointSets.size();
+		return numberOfDisjointSets;
 	}
 
 	/**
 	 * Remove all the disjoint sets.
 	 */
 	public void clear() {
-		elementToSet.clear();
-		disjointSets.clear();
+		ids.clear();
+		Arrays.fill(elements, 0, numberOfElements, null);
+		numberOfElements = 0;
+		numberOfDisjointSets = 0;
 	}
 
 	//
 	// PRIVATE METHODS
 	//
-
-	// Override hashCode and equals so that
-	// the Set itself and not its elements
-	// are used to determine its hashCode
-	// and equality.
-	private class IdentityHashSet<H> extends HashSet<H> {
-		private static final long serialVersionUID = 1L;
-
-		@Override
-		public int hashCode() {
-			return System.identityHashCode(this);
+	
+	private int idOf(E element, String description) {
+		Integer result = ids.get(element);
+		if (result == null) {
+			throw new IllegalArgumentException(
+					description + " is not associated with a disjoint set, call makeSet() first.");
 		}
-
-		@Override
-		public boolean equals(Object o) {
-			return this == o;
+		return result;
+	}
+	
+	private int findRoot(int id) {
+		// path halving: makes every other node on the path point to its grandparent.
+		while (parents[id] != id) {
+			parents[id] = parents[parents[id]];
+			id = parents[id];
+		}
+		return id;
+	}
+	
+	private Set<E> members(int id) {
+		Set<E> result = new LinkedHashSet<E>();
+		int member = id;
+		do {
+			@SuppressWarnings("unchecked")
+			E element = (E) elements[member];
+			result.add(element);
+			member = successors[member];
+		} while (member != id);
+		return result;
+	}
+	
+	/** The set of each root, indexed by id (null for ids that are not roots). */
+	private Set<E>[] materializeSetsByRoot() {
+		@SuppressWarnings("unchecked")
+		Set<E>[] result = (Set<E>[]) new Set<?>[numberOfElements];
+		for (int id = 0; id != numberOfElements; id++) {
+			int root = findRoot(id);
+			if (result[root] == null) {
+				result[root] = members(root);
+			}
 		}
+		return result;
 	}
 }
@@ -39,8 +39,8 @@ package com.sri.ai.util.collect;
 
 import static com.sri.ai.util.Util.forAll;
 import static com.sri.ai.util.Util.join;
-import static com.sri.ai.util.collect.NestedIterator.nestedIterator;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -55,6 +55,13 @@ import com.sri.ai.util.Util;
  * sharing elements with a pre-existing given list.
  * The immutability allows a faster implementation
  * through caching, as opposed to non-immutable {@link StackedLinkedList}.
+ * <p>
+ * When the base is itself an ImmutableStackedLinkedList or a {@link PersistentVector}
+ * (that is, for lists built by stacking many extensions),
+ * random access, searches, iteration and {@link #toArray()} go through a {@link PersistentVector}
+ * with all the elements, built on first use by appending the extension to the vector of the base,
+ * so that stacked lists share structure and these operations do not walk the whole stack.
+ * The vector is also used for {@link #listIterator()} and {@link #subList(int, int)}.
  *
  * @author braz
  */
@@ -78,6 +85,35 @@ public class ImmutableStackedLinkedList<E> implements List<E> {
 	public List<E> getBase() {
 		return base;
 	}
+	
+	private PersistentVector<E> vector;
+	
+	/**
+	 * @return a {@link PersistentVector} with the elements of this list (cached).
+	 */
+	public PersistentVector<E> toPersistentVector() {
+		if (vector == null) {
+			// iterative, since stacks of lists can be too deep for recursion
+			List<ImmutableStackedLinkedList<E>> listsWithoutVector = new ArrayList<ImmutableStackedLinkedList<E>>();
+			List<E> list = this;
+			while (list instanceof ImmutableStackedLinkedList && ((ImmutableStackedLinkedList<E>) list).vector == null) {
+				listsWithoutVector.add((ImmutableStackedLinkedList<E>) list);
+				list = ((ImmutableStackedLinkedList<E>) list).base;
+			}
+			PersistentVector<E> result = list instanceof ImmutableStackedLinkedList ? ((ImmutableStackedLinkedList<E>) list).vector : PersistentVector.copyOf(list);
+			for (int i = listsWithoutVector.size() - 1; i >= 0; i--) {
+				ImmutableStackedLinkedList<E> listWithoutVector = listsWithoutVector.get(i);
+				result = result.appendAll(listWithoutVector.extension);
+				listWithoutVector.vector = result;
+			}
+		}
+		return vector;
+	}
+	
+	private boolean usesVector() {
+		boolean result = base instanceof ImmutableStackedLinkedList || base instanceof PersistentVector;
+		return result;
+	}
 
 	private boolean sizeIsCached = false;
 	private int cachedSize;
@@ -105,12 +141,18 @@ public class ImmutableStackedLinkedList<E> implements List<E> {
 
 	@Override
 	public boolean contains(Object o) {
+		if (usesVector()) {
+			return toPersistentVector().contains(o);
+		}
 		boolean result = extension.contains(o) || base.contains(o);
 		return result;
 	}
 
 	@Override
 	public Iterator<E> iterator() {
+		if (usesVector()) {
+			return toPersistentVector().iterator();
+		}
 		return new NestedIterator<E>(base, extension);
 	}
 
@@ -118,6 +160,9 @@ public class ImmutableStackedLinkedList<E> implements List<E> {
 	
 	@Override
 	public Object[] toArray() {
+		if (array == null && usesVector()) {
+			array = toPersistentVector().toArray();
+		}
 		if (array == null) {
 			array = new Object[size()];
 			base.toArray(array);
@@ -132,6 +177,10 @@ public class ImmutableStackedLinkedList<E> implements List<E> {
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T> T[] toArray(T[] a) {
+		if (usesVector()) {
+			return toPersistentVector().toArray(a);
+		}
+		
 		T[] result;
 		
 		if (a.length < size()) {
@@ -197,6 +246,10 @@ public class ImmutableStackedLinkedList<E> implements List<E> {
 
 	@Override
 	public E get(int index) {
+		if (usesVector()) {
+			return toPersistentVector().get(index);
+		}
+		
 		E result;
 		if (index < base.size()) {
 			result = base.get(index);
@@ -224,6 +277,10 @@ public class ImmutableStackedLinkedList<E> implements List<E> {
 
 	@Override
 	public int indexOf(Object o) {
+		if (usesVector()) {
+			return toPersistentVector().indexOf(o);
+		}
+		
 		int result = base.indexOf(o);
 		if (result == -1) {
 			result = extension.indexOf(o) + base.size();
@@ -233,6 +290,10 @@ public class ImmutableStackedLinkedList<E> implements List<E> {
 
 	@Override
 	public int lastIndexOf(Object o) {
+		if (usesVector()) {
+			return toPersistentVector().lastIndexOf(o);
+		}
+		
 		int result = extension.indexOf(o);
 		if (result == -1) {
 			result = base.indexOf(o);
@@ -245,22 +306,22 @@ public class ImmutableStackedLinkedList<E> implements List<E> {
 
 	@Override
 	public ListIterator<E> listIterator() {
-		throw new UnsupportedOperationException("List iterators not supported for " + getClass());
+		return toPersistentVector().listIterator();
 	}
 
 	@Override
 	public ListIterator<E> listIterator(int index) {
-		throw new UnsupportedOperationException("List iterators not supported for " + getClass());
+		return toPersistentVector().listIterator(index);
 	}
 
 	@Override
 	public List<E> subList(int fromIndex, int toIndex) {
-		throw new UnsupportedOperationException("subList not supported for " + getClass());
+		return toPersistentVector().subList(fromIndex, toIndex);
 	}
 	
 	@Override
 	public String toString() {
-		return "[" + join(", ", nestedIterator(base, extension)) + "]";
+		return "[" + join(", ", iterator()) + "]";
 	}
 
 	@Override
@@ -0,0 +1,755 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.collect;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link StackedMap} backed by a persistent hash array mapped trie (in the
+ * compressed, "CHAMP" layout, with separate bitmaps for entries and sub-nodes).
+ * <p>
+ * Unlike {@link AbstractStackedMap}, which looks entries up layer by layer and
+ * merges all layers to compute {@link #size()} or to iterate, each
+ * PersistentStackedMap holds a single trie with the merged contents of itself
+ * and all its bases. {@link #push()} creates a new scope sharing that trie
+ * with its base in constant time, modifications copy only the path
+ * (of at most seven nodes) to the modified entry, and {@link #pop()} simply returns the base.
+ * Therefore {@link #get(Object)}, {@link #containsKey(Object)} and {@link #put(Object, Object)}
+ * are O(log<sub>32</sub> n), {@link #size()} is O(1), and iteration is O(n),
+ * independently of the depth of the stack.
+ * <p>
+ * IMPORTANT: because scopes share structure rather than delegate to their bases,
+ * a base is a <i>snapshot</i>: changes to a base made after a scope is pushed on it
+ * are not reflected in that scope, and changes to a scope (including {@link #remove(Object)}
+ * and {@link #clear()}) never modify its base.
+ * Base maps that are not PersistentStackedMaps are copied when given to a constructor
+ * or to {@link #setBase(Map)}. Iteration order is hash order, and
+ * {@link #entrySet()} iterators are not affected by concurrent modifications,
+ * since they iterate over the trie as it was when they were created.
+ *
+ * @param <K>
+ * 			the type of the keys.
+ * @param <V>
+ *          the type of the values.
+ */
+@Beta
+public class PersistentStackedMap<K, V> extends AbstractMap<K, V> implements StackedMap<K, V>, Serializable {
+	private static final long serialVersionUID = 1L;
+	
+	private static final int BITS_PER_LEVEL = 5;
+	private static final int LEVEL_MASK     = (1 << BITS_PER_LEVEL) - 1;
+	private static final int MAXIMUM_SHIFT  = 30;
+	// seven bitmap levels (shifts 0 to 30) plus one level of collision nodes.
+	private static final int MAXIMUM_DEPTH  = 8;
+	
+	private static final Object NOT_FOUND = new Object();
+	
+	private PersistentStackedMap<K, V> base;
+	private Node root;
+	private int  size;
+	private int  depth;
+	
+	private transient Set<Map.Entry<K, V>> entrySet;
+
+	public PersistentStackedMap() {
+		this.base  = null;
+		this.root  = BitmapIndexedNode.EMPTY;
+		this.size  = 0;
+		this.depth = 0;
+	}
+	
+	/**
+	 * Constructor receiving a base map.
+	 * 
+	 * @param base
+	 *            the base Map that this Map stacks itself on top of
+	 *            (copied if not a PersistentStackedMap).
+	 */
+	public PersistentStackedMap(Map<K, V> base) {
+		this();
+		setBaseAndRoot(base);
+	}
+
+	/**
+	 * Constructor receiving top and base maps
+	 * 
+	 * @param top
+	 *            the entries this Map adds to its base.
+	 * @param base
+	 *            the base Map that this Map stacks itself on top of
+	 *            (copied if not a PersistentStackedMap).
+	 */
+	public PersistentStackedMap(Map<K, V> top, Map<K, V> base) {
+		this(base);
+		putAll(top);
+	}
+	
+	/**
+	 * Convenience for {@link #PersistentStackedMap(Map)}.
+	 * @param base the base map
+	 * @param <K> the key type
+	 * @param <V> the value type
+	 * @return a persistent stacked map on the given base, with no entries of its own
+	 */
+	public static <K, V> PersistentStackedMap<K, V> persistentStackedMap(Map<K, V> base) {
+		return new PersistentStackedMap<K, V>(base);
+	}
+	
+	/**
+	 * Creates a new scope on top of this map, in constant time.
+	 * @return a new map with the same entries as this one, and this one as its base.
+	 */
+	public PersistentStackedMap<K, V> push() {
+		PersistentStackedMap<K, V> result = new PersistentStackedMap<K, V>(this);
+		return result;
+	}
+	
+	/**
+	 * Discards this scope.
+	 * @return the base of this map, or null if there is none.
+	 */
+	public PersistentStackedMap<K, V> pop() {
+		return base;
+	}
+	
+	/**
+	 * @return the number of bases below this map.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Computes the entries of this map that are not in its base (or are mapped to different values in it).
+	 * Sub-tries shared with the base are skipped, so this is proportional to the number of
+	 * changes made since this scope was pushed rather than to the size of the map.
+	 * Note that removals of base entries cannot be represented in the returned map.
+	 */
+	@Override
+	public Map<K, V> getTop() {
+		Map<Object, Object> differences = new LinkedHashMap<Object, Object>();
+		Node baseRoot = base == null ? BitmapIndexedNode.EMPTY : base.root;
+		addDifferences(root, baseRoot, baseRoot, differences);
+		@SuppressWarnings("unchecked")
+		Map<K, V> result = (Map<K, V>) differences;
+		return result;
+	}
+
+	/**
+	 * Replaces the entries of this map by the ones of its base plus the given ones.
+	 */
+	@Override
+	public void setTop(Map<K, V> top) {
+		root = base == null ? BitmapIndexedNode.EMPTY : base.root;
+		size = base == null ? 0 : base.size;
+		putAll(top);
+	}
+
+	@Override
+	public Map<K, V> getBase() {
+		return base;
+	}
+
+	/**
+	 * Stacks the entries of {@link #getTop()} on a new base.
+	 */
+	@Override
+	public void setBase(Map<K, V> base) {
+		Map<K, V> top = getTop();
+		setBaseAndRoot(base);
+		putAll(top);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public V get(Object key) {
+		Object value = root.get(key, hash(key), 0);
+		@SuppressWarnings("unchecked")
+		V result = value == NOT_FOUND ? null : (V) value;
+		return result;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		boolean result = root.get(key, hash(key), 0) != NOT_FOUND;
+		return result;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		Change change = new Change();
+		root = root.put(key, value, hash(key), 0, change);
+		if (change.sizeChanged) {
+			size++;
+		}
+		@SuppressWarnings("unchecked")
+		V result = (V) change.previousValue;
+		return result;
+	}
+
+	@Override
+	public V remove(Object key) {
+		Change change = new Change();
+		root = root.remove(key, hash(key), 0, change);
+		if (change.sizeChanged) {
+			size--;
+		}
+		@SuppressWarnings("unchecked")
+		V result = (V) change.previousValue;
+		return result;
+	}
+
+	/**
+	 * Removes all entries from this map, leaving its base unchanged.
+	 */
+	@Override
+	public void clear() {
+		root = BitmapIndexedNode.EMPTY;
+		size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Map.Entry<K, V>>() {
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return new EntryIterator(root);
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+
+				@Override
+				public boolean contains(Object object) {
+					if ( ! (object instanceof Map.Entry)) {
+						return false;
+					}
+					Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+					Object value = root.get(entry.getKey(), hash(entry.getKey()), 0);
+					boolean result = value != NOT_FOUND && Objects.equals(value, entry.getValue());
+					return result;
+				}
+
+				@Override
+				public void clear() {
+					PersistentStackedMap.this.clear();
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		// optimization: scopes without changes of their own share their base's trie.
+		if (other instanceof PersistentStackedMap && ((PersistentStackedMap<?, ?>) other).root == root) {
+			return true;
+		}
+		return super.equals(other);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode();
+	}
+
+	//
+	// PRIVATE
+	//
+	private void setBaseAndRoot(Map<K, V> base) {
+		if (base == null) {
+			this.base = null;
+		}
+		else if (base instanceof PersistentStackedMap) {
+			this.base = (PersistentStackedMap<K, V>) base;
+		}
+		else {
+			this.base = new PersistentStackedMap<K, V>();
+			this.base.putAll(base);
+		}
+		this.root  = this.base == null ? BitmapIndexedNode.EMPTY : this.base.root;
+		this.size  = this.base == null ? 0 : this.base.size;
+		this.depth = this.base == null ? 0 : this.base.depth + 1;
+	}
+	
+	private static int hash(Object key) {
+		int hashCode = key == null ? 0 : key.hashCode();
+		int result = hashCode ^ (hashCode >>> 16);
+		return result;
+	}
+	
+	private static int bitFor(int hash, int shift) {
+		return 1 << ((hash >>> shift) & LEVEL_MASK);
+	}
+	
+	private static void addDifferences(Node node, Node baseNode, Node baseRoot, Map<Object, Object> differences) {
+		if (node == baseNode) {
+			return;
+		}
+		for (int i = 0; i != node.dataArity(); i++) {
+			Object key   = node.getKey(i);
+			Object value = node.getValue(i);
+			Object baseValue = baseRoot.get(key, hash(key), 0);
+			if (baseValue == NOT_FOUND || ! Objects.equals(baseValue, value)) {
+				differences.put(key, value);
+			}
+		}
+		if (node instanceof BitmapIndexedNode) {
+			BitmapIndexedNode bitmapIndexedNode = (BitmapIndexedNode) node;
+			int remainingBits = bitmapIndexedNode.nodeMap;
+			for (int i = 0; remainingBits != 0; i++) {
+				int bit = Integer.lowestOneBit(remainingBits);
+				remainingBits ^= bit;
+				Node baseChild = baseNode instanceof BitmapIndexedNode ? ((BitmapIndexedNode) baseNode).getNodeAt(bit) : null;
+				addDifferences(bitmapIndexedNode.getNode(i), baseChild, baseRoot, differences);
+			}
+		}
+	}
+	
+	/** Reports the effect of an update on a trie. */
+	private static class Change {
+		boolean sizeChanged;
+		Object previousValue;
+	}
+	
+	private static abstract class Node implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		/** Returns the value associated to the key, or {@link PersistentStackedMap#NOT_FOUND}. */
+		abstract Object get(Object key, int hash, int shift);
+		
+		/** Returns a node with the given association (this node if nothing changes). */
+		abstract Node put(Object key, Object value, int hash, int shift, Change change);
+
+		/** Returns a node without the key (this node if it is absent). */
+		abstract Node remove(Object key, int hash, int shift, Change change);
+		
+		abstract int dataArity();
+		
+		abstract Object getKey(int index);
+
+		abstract Object getValue(int index);
+
+		abstract int nodeArity();
+		
+		abstract Node getNode(int index);
+	}
+	
+	/**
+	 * A node with up to 32 slots, each one either empty, an entry or a sub-node,
+	 * as indicated by two bitmaps. Entries are stored as key-value pairs from the start of the
+	 * content array, and sub-nodes from its end, so both are accessed by the
+	 * number of bits set before their slot.
+	 */
+	private static final class BitmapIndexedNode extends Node {
+		private static final long serialVersionUID = 1L;
+		
+		static final BitmapIndexedNode EMPTY = new BitmapIndexedNode(0, 0, new Object[0]);
+
+		final int dataMap;
+		final int nodeMap;
+		final Object[] content;
+		
+		BitmapIndexedNode(int dataMap, int nodeMap, Object[] content) {
+			this.dataMap = dataMap;
+			this.nodeMap = nodeMap;
+			this.content = content;
+		}
+
+		@Override
+		Object get(Object key, int hash, int shift) {
+			int bit = bitFor(hash, shift);
+			if ((dataMap & bit) != 0) {
+				int index = dataIndex(bit);
+				Object result = Objects.equals(content[2*index], key) ? content[2*index + 1] : NOT_FOUND;
+				return result;
+			}
+			if ((nodeMap & bit) != 0) {
+				return getNode(nodeIndex(bit)).get(key, hash, shift + BITS_PER_LEVEL);
+			}
+			return NOT_FOUND;
+		}
+
+		@Override
+		Node put(Object key, Object value, int hash, int shift, Change change) {
+			int bit = bitFor(hash, shift);
+			if ((dataMap & bit) != 0) {
+				int index = dataIndex(bit);
+				Object existingKey = content[2*index];
+				if (Objects.equals(existingKey, key)) {
+					Object existingValue = content[2*index + 1];
+					change.previousValue = existingValue;
+					if (existingValue == value) {
+						return this;
+					}
+					Object[] newContent = content.clone();
+					newContent[2*index + 1] = value;
+					return new BitmapIndexedNode(dataMap, nodeMap, newContent);
+				}
+				change.sizeChanged = true;
+				Node subNode = merge(existingKey, content[2*index + 1], hash(existingKey), key, value, hash, shift + BITS_PER_LEVEL);
+				return copyAndMigrateFromDataToNode(bit, index, subNode);
+			}
+			if ((nodeMap & bit) != 0) {
+				int index = nodeIndex(bit);
+				Node subNode = getNode(index);
+				Node newSubNode = subNode.put(key, value, hash, shift + BITS_PER_LEVEL, change);
+				if (newSubNode == subNode) {
+					return this;
+				}
+				return copyAndSetNode(index, newSubNode);
+			}
+			change.sizeChanged = true;
+			return copyAndInsertData(bit, key, value);
+		}
+
+		@Override
+		Node remove(Object key, int hash, int shift, Change change) {
+			int bit = bitFor(hash, shift);
+			if ((dataMap & bit) != 0) {
+				int index = dataIndex(bit);
+				if ( ! Objects.equals(content[2*index], key)) {
+					return this;
+				}
+				change.sizeChanged   = true;
+				change.previousValue = content[2*index + 1];
+				return copyAndRemoveData(bit, index);
+			}
+			if ((nodeMap & bit) != 0) {
+				int index = nodeIndex(bit);
+				Node subNode = getNode(index);
+				Node newSubNode = subNode.remove(key, hash, shift + BITS_PER_LEVEL, change);
+				if (newSubNode == subNode) {
+					return this;
+				}
+				if (newSubNode.nodeArity() == 0 && newSubNode.dataArity() == 1) {
+					// keeps the trie canonical: single entries are stored inline.
+					return copyAndMigrateFromNodeToData(bit, index, newSubNode.getKey(0), newSubNode.getValue(0));
+				}
+				return copyAndSetNode(index, newSubNode);
+			}
+			return this;
+		}
+
+		@Override
+		int dataArity() {
+			return Integer.bitCount(dataMap);
+		}
+
+		@Override
+		Object getKey(int index) {
+			return content[2*index];
+		}
+
+		@Override
+		Object getValue(int index) {
+			return content[2*index + 1];
+		}
+
+		@Override
+		int nodeArity() {
+			return Integer.bitCount(nodeMap);
+		}
+
+		@Override
+		Node getNode(int index) {
+			return (Node) content[content.length - 1 - index];
+		}
+		
+		Node getNodeAt(int bit) {
+			Node result = (nodeMap & bit) != 0 ? getNode(nodeIndex(bit)) : null;
+			return result;
+		}
+		
+		private int dataIndex(int bit) {
+			return Integer.bitCount(dataMap & (bit - 1));
+		}
+		
+		private int nodeIndex(int bit) {
+			return Integer.bitCount(nodeMap & (bit - 1));
+		}
+		
+		private Node copyAndSetNode(int index, Node node) {
+			Object[] newContent = content.clone();
+			newContent[content.length - 1 - index] = node;
+			return new BitmapIndexedNode(dataMap, nodeMap, newContent);
+		}
+		
+		private Node copyAndInsertData(int bit, Object key, Object value) {
+			int index = 2*dataIndex(bit);
+			Object[] newContent = new Object[content.length + 2];
+			System.arraycopy(content, 0, newContent, 0, index);
+			newContent[index]     = key;
+			newContent[index + 1] = value;
+			System.arraycopy(content, index, newContent, index + 2, content.length - index);
+			return new BitmapIndexedNode(dataMap | bit, nodeMap, newContent);
+		}
+		
+		private Node copyAndRemoveData(int bit, int dataIndex) {
+			int index = 2*dataIndex;
+			Object[] newContent = new Object[content.length - 2];
+			System.arraycopy(content, 0, newContent, 0, index);
+			System.arraycopy(content, index + 2, newContent, index, content.length - index - 2);
+			return new BitmapIndexedNode(dataMap ^ bit, nodeMap, newContent);
+		}
+		
+		private Node copyAndMigrateFromDataToNode(int bit, int dataIndex, Node node) {
+			// content goes from [data before, entry, data after, nodes after, nodes before]
+			// to [data before, data after, nodes after, node, nodes before].
+			int oldIndex = 2*dataIndex;
+			int newIndex = content.length - 2 - nodeIndex(bit);
+			Object[] newContent = new Object[content.length - 1];
+			System.arraycopy(content, 0, newContent, 0, oldIndex);
+			System.arraycopy(content, oldIndex + 2, newContent, oldIndex, newIndex - oldIndex);
+			newContent[newIndex] = node;
+			System.arraycopy(content, newIndex + 2, newContent, newIndex + 1, content.length - newIndex - 2);
+			return new BitmapIndexedNode(dataMap ^ bit, nodeMap | bit, newContent);
+		}
+		
+		private Node copyAndMigrateFromNodeToData(int bit, int nodeIndex, Object key, Object value) {
+			// the reverse of copyAndMigrateFromDataToNode.
+			int oldIndex = content.length - 1 - nodeIndex;
+			int newIndex = 2*dataIndex(bit);
+			Object[] newContent = new Object[content.length + 1];
+			System.arraycopy(content, 0, newContent, 0, newIndex);
+			newContent[newIndex]     = key;
+			newContent[newIndex + 1] = value;
+			System.arraycopy(content, newIndex, newContent, newIndex + 2, oldIndex - newIndex);
+			System.arraycopy(content, oldIndex + 1, newContent, oldIndex + 2, content.length - oldIndex - 1);
+			return new BitmapIndexedNode(dataMap | bit, nodeMap ^ bit, newContent);
+		}
+
+		private static Node merge(Object key1, Object value1, int hash1, Object key2, Object value2, int hash2, int shift) {
+			if (shift > MAXIMUM_SHIFT) {
+				return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+			}
+			int bit1 = bitFor(hash1, shift);
+			int bit2 = bitFor(hash2, shift);
+			if (bit1 == bit2) {
+				Node subNode = merge(key1, value1, hash1, key2, value2, hash2, shift + BITS_PER_LEVEL);
+				return new BitmapIndexedNode(0, bit1, new Object[] { subNode });
+			}
+			Object[] content = Integer.compareUnsigned(bit1, bit2) < 0
+					? new Object[] { key1, value1, key2, value2 }
+					: new Object[] { key2, value2, key1, value1 };
+			return new BitmapIndexedNode(bit1 | bit2, 0, content);
+		}
+	}
+	
+	/** A leaf holding the entries of distinct keys with the same (full) hash. */
+	private static final class CollisionNode extends Node {
+		private static final long serialVersionUID = 1L;
+		
+		final int hash;
+		final Object[] content;
+		
+		CollisionNode(int hash, Object[] content) {
+			this.hash = hash;
+			this.content = content;
+		}
+
+		@Override
+		Object get(Object key, int hash, int shift) {
+			int index = indexOf(key);
+			Object result = index == -1 ? NOT_FOUND : content[index + 1];
+			return result;
+		}
+
+		@Override
+		Node put(Object key, Object value, int hash, int shift, Change change) {
+			int index = indexOf(key);
+			if (index == -1) {
+				change.sizeChanged = true;
+				Object[] newContent = new Object[content.length + 2];
+				System.arraycopy(content, 0, newContent, 0, content.length);
+				newContent[content.length]     = key;
+				newContent[content.length + 1] = value;
+				return new CollisionNode(this.hash, newContent);
+			}
+			change.previousValue = content[index + 1];
+			if (content[index + 1] == value) {
+				return this;
+			}
+			Object[] newContent = content.clone();
+			newContent[index + 1] = value;
+			return new CollisionNode(this.hash, newContent);
+		}
+
+		@Override
+		Node remove(Object key, int hash, int shift, Change change) {
+			int index = indexOf(key);
+			if (index == -1) {
+				return this;
+			}
+			change.sizeChanged   = true;
+			change.previousValue = content[index + 1];
+			Object[] newContent = new Object[content.length - 2];
+			System.arraycopy(content, 0, newContent, 0, index);
+			System.arraycopy(content, index + 2, newContent, index, content.length - index - 2);
+			return new CollisionNode(this.hash, newContent);
+		}
+
+		@Override
+		int dataArity() {
+			return content.length/2;
+		}
+
+		@Override
+		Object getKey(int index) {
+			return content[2*index];
+		}
+
+		@Override
+		Object getValue(int index) {
+			return content[2*index + 1];
+		}
+
+		@Override
+		int nodeArity() {
+			return 0;
+		}
+
+		@Override
+		Node getNode(int index) {
+			throw new IndexOutOfBoundsException("Collision nodes have no sub-nodes");
+		}
+		
+		private int indexOf(Object key) {
+			for (int i = 0; i < content.length; i += 2) {
+				if (Objects.equals(content[i], key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+	
+	/**
+	 * Iterates depth-first over a trie, visiting the entries of each node before its sub-nodes.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+		private final Node[] nodes       = new Node[MAXIMUM_DEPTH];
+		private final int[]  nodeIndices = new int[MAXIMUM_DEPTH];
+		private int level;
+		private Node dataNode;
+		private int  dataIndex;
+		private K lastKey;
+		private boolean canRemove;
+		
+		EntryIterator(Node root) {
+			nodes[0] = root;
+			level = 0;
+			dataNode = root;
+			dataIndex = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (dataIndex == dataNode.dataArity()) {
+				if ( ! advanceToNextNode()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public Map.Entry<K, V> next() {
+			if ( ! hasNext()) {
+				throw new NoSuchElementException();
+			}
+			@SuppressWarnings("unchecked")
+			K key = (K) dataNode.getKey(dataIndex);
+			@SuppressWarnings("unchecked")
+			V value = (V) dataNode.getValue(dataIndex);
+			dataIndex++;
+			lastKey = key;
+			canRemove = true;
+			return new AbstractMap.SimpleImmutableEntry<K, V>(key, value);
+		}
+
+		/** Removes the last entry from the map (the iteration itself is not affected). */
+		@Override
+		public void remove() {
+			if ( ! canRemove) {
+				throw new IllegalStateException();
+			}
+			PersistentStackedMap.this.remove(lastKey);
+			canRemove = false;
+		}
+		
+		private boolean advanceToNextNode() {
+			while (level >= 0) {
+				Node node = nodes[level];
+				if (nodeIndices[level] < node.nodeArity()) {
+					Node child = node.getNode(nodeIndices[level]++);
+					level++;
+					nodes[level] = child;
+					nodeIndices[level] = 0;
+					dataNode = child;
+					dataIndex = 0;
+					return true;
+				}
+				level--;
+			}
+			return false;
+		}
+	}
+}
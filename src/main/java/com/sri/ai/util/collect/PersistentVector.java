@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.collect;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * An immutable, persistent {@link List} stored in a 32-way trie, so that
+ * {@link #get(int)} takes O(log<sub>32</sub> n) time (at most six levels),
+ * {@link #size()} and {@link #subList(int, int)} take constant time,
+ * iteration takes constant time per element, and
+ * {@link #append(Object)}, {@link #prepend(Object)} and {@link #replace(int, Object)}
+ * return new vectors sharing all but the O(log<sub>32</sub> n) nodes on the path to the changed element.
+ * <p>
+ * The elements are stored at consecutive positions of the trie starting at an <i>origin</i>,
+ * which allows sub-lists to share the trie of their list, and prepending to grow the trie to the left
+ * (by moving the root to the second slot of a new root) just as appending grows it to the right.
+ * Note that a sub-list therefore keeps the whole trie of its list reachable.
+ * <p>
+ * The methods of {@link List} modifying the list throw {@link UnsupportedOperationException}.
+ *
+ * @param <E> the type of the elements.
+ */
+@Beta
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess, Serializable {
+	private static final long serialVersionUID = 1L;
+	
+	private static final int BITS_PER_LEVEL = 5;
+	private static final int WIDTH          = 1 << BITS_PER_LEVEL;
+	private static final int LEVEL_MASK     = WIDTH - 1;
+	// keeps positions within int range: the trie has at most 2^30 positions.
+	private static final int MAXIMUM_SHIFT  = 25;
+	
+	private static final PersistentVector<?> EMPTY = new PersistentVector<Object>(new Object[WIDTH], 0, 0, 0);
+	
+	/** The root node; nodes at shift 0 are arrays of elements, and other nodes arrays of nodes (null if not yet needed). */
+	private final Object[] root;
+	private final int shift;
+	private final int origin;
+	private final int size;
+	
+	private PersistentVector(Object[] root, int shift, int origin, int size) {
+		this.root   = root;
+		this.shift  = shift;
+		this.origin = origin;
+		this.size   = size;
+	}
+	
+	/**
+	 * @param <E> the type of the elements
+	 * @return the empty vector
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentVector<E> empty() {
+		return (PersistentVector<E>) EMPTY;
+	}
+	
+	/**
+	 * Makes a vector with the elements of a collection, in its iteration order,
+	 * in time linear in its size (or constant if it is already a PersistentVector).
+	 * @param collection the collection
+	 * @param <E> the type of the elements
+	 * @return a vector with the elements of the collection
+	 */
+	public static <E> PersistentVector<E> copyOf(Collection<? extends E> collection) {
+		if (collection instanceof PersistentVector) {
+			@SuppressWarnings("unchecked")
+			PersistentVector<E> result = (PersistentVector<E>) collection;
+			return result;
+		}
+		Object[] elements = collection.toArray();
+		if (elements.length == 0) {
+			return empty();
+		}
+		// builds the trie bottom-up, from the leaves holding the elements.
+		Object[] nodes = elements;
+		int shift = -BITS_PER_LEVEL;
+		do {
+			Object[] parents = new Object[(nodes.length + WIDTH - 1)/WIDTH];
+			for (int i = 0; i != parents.length; i++) {
+				Object[] parent = new Object[WIDTH];
+				System.arraycopy(nodes, i*WIDTH, parent, 0, Math.min(WIDTH, nodes.length - i*WIDTH));
+				parents[i] = parent;
+			}
+			nodes = parents;
+			shift += BITS_PER_LEVEL;
+		} while (nodes.length > 1);
+		checkShift(shift);
+		PersistentVector<E> result = new PersistentVector<E>((Object[]) nodes[0], shift, 0, elements.length);
+		return result;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public E get(int index) {
+		checkIndex(index, size);
+		Object[] leaf = leafFor(origin + index);
+		@SuppressWarnings("unchecked")
+		E result = (E) leaf[(origin + index) & LEVEL_MASK];
+		return result;
+	}
+	
+	/**
+	 * @param element the element to add at the end
+	 * @return a vector with the elements of this one followed by the given element
+	 */
+	public PersistentVector<E> append(E element) {
+		int position = origin + size;
+		Object[] newRoot  = root;
+		int      newShift = shift;
+		if (position == capacity(shift)) {
+			checkShift(shift + BITS_PER_LEVEL);
+			newRoot = new Object[WIDTH];
+			newRoot[0] = root;
+			newShift += BITS_PER_LEVEL;
+		}
+		PersistentVector<E> result = new PersistentVector<E>(set(newRoot, newShift, position, element), newShift, origin, size + 1);
+		return result;
+	}
+	
+	/**
+	 * @param element the element to add at the beginning
+	 * @return a vector with the given element followed by the elements of this one
+	 */
+	public PersistentVector<E> prepend(E element) {
+		Object[] newRoot   = root;
+		int      newShift  = shift;
+		int      newOrigin = origin;
+		if (origin == 0) {
+			checkShift(shift + BITS_PER_LEVEL);
+			newRoot = new Object[WIDTH];
+			newRoot[1] = root;
+			newShift += BITS_PER_LEVEL;
+			newOrigin = capacity(shift);
+		}
+		newOrigin--;
+		PersistentVector<E> result = new PersistentVector<E>(set(newRoot, newShift, newOrigin, element), newShift, newOrigin, size + 1);
+		return result;
+	}
+	
+	/**
+	 * @param elements the elements to add at the end
+	 * @return a vector with the elements of this one followed by the given ones
+	 */
+	public PersistentVector<E> appendAll(Collection<? extends E> elements) {
+		if (size == 0) {
+			return copyOf(elements);
+		}
+		PersistentVector<E> result = this;
+		for (E element : elements) {
+			result = result.append(element);
+		}
+		return result;
+	}
+	
+	/**
+	 * @param index the index of the element to replace
+	 * @param element the new element
+	 * @return a vector with the elements of this one, but for the given element at the given index
+	 */
+	public PersistentVector<E> replace(int index, E element) {
+		checkIndex(index, size);
+		PersistentVector<E> result = new PersistentVector<E>(set(root, shift, origin + index, element), shift, origin, size);
+		return result;
+	}
+	
+	/**
+	 * Returns the elements from fromIndex (inclusive) to toIndex (exclusive), in constant time,
+	 * sharing the trie of this vector.
+	 */
+	@Override
+	public PersistentVector<E> subList(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("Sub-list from " + fromIndex + " to " + toIndex + " of vector of size " + size);
+		}
+		PersistentVector<E> result = new PersistentVector<E>(root, shift, origin + fromIndex, toIndex - fromIndex);
+		return result;
+	}
+	
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private int index = 0;
+			private Object[] leaf = null;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public E next() {
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				int position = origin + index;
+				// optimization: descends the trie once per leaf.
+				if (leaf == null || (position & LEVEL_MASK) == 0) {
+					leaf = leafFor(position);
+				}
+				index++;
+				@SuppressWarnings("unchecked")
+				E result = (E) leaf[position & LEVEL_MASK];
+				return result;
+			}
+		};
+	}
+	
+	@Override
+	public int indexOf(Object object) {
+		int index = 0;
+		for (E element : this) {
+			if (object == null ? element == null : object.equals(element)) {
+				return index;
+			}
+			index++;
+		}
+		return -1;
+	}
+	
+	@Override
+	public boolean contains(Object object) {
+		return indexOf(object) != -1;
+	}
+
+	//
+	// PRIVATE
+	//
+	private static int capacity(int shift) {
+		return WIDTH << shift;
+	}
+	
+	private static void checkShift(int shift) {
+		if (shift > MAXIMUM_SHIFT) {
+			throw new IllegalStateException(PersistentVector.class.getSimpleName() + " cannot hold more than " + capacity(MAXIMUM_SHIFT) + " positions");
+		}
+	}
+	
+	private static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " of vector of size " + size);
+		}
+	}
+	
+	private Object[] leafFor(int position) {
+		Object[] result = root;
+		for (int level = shift; level > 0; level -= BITS_PER_LEVEL) {
+			result = (Object[]) result[(position >>> level) & LEVEL_MASK];
+		}
+		return result;
+	}
+	
+	/** Returns a copy of the given node (or a new one if null) with the given value at the given position. */
+	private static Object[] set(Object[] node, int shift, int position, Object value) {
+		Object[] result = node == null ? new Object[WIDTH] : node.clone();
+		if (shift == 0) {
+			result[position & LEVEL_MASK] = value;
+		}
+		else {
+			int index = (position >>> shift) & LEVEL_MASK;
+			result[index] = set((Object[]) result[index], shift - BITS_PER_LEVEL, position, value);
+		}
+		return result;
+	}
+}
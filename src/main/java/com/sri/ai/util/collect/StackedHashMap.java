@@ -37,8 +37,6 @@
  */
 package com.sri.ai.util.collect;
 
-import static com.sri.ai.util.Util.map;
-
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -103,7 +101,10 @@ public class StackedHashMap<K, V> extends AbstractStackedMap<K, V> {
 	 * @return a stacked map with the a top map with the given key and value, and given base map.
 	 */
 	public static <K, V> StackedHashMap<K, V> stackedHashMap(K key, V value, Map<K, V> base) {
-		return new StackedHashMap<K, V>(map(key, value), base);
+		// note: the top map is not given to the constructor, as it would then be shared (see AbstractStackedMap).
+		StackedHashMap<K, V> result = new StackedHashMap<K, V>(base);
+		result.put(key, value);
+		return result;
 	}
 
 	@Override
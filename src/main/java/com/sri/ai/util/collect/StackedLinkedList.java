@@ -42,9 +42,9 @@ import static com.sri.ai.util.Util.join;
 import static com.sri.ai.util.Util.thereExists;
 import static com.sri.ai.util.collect.NestedIterator.nestedIterator;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -55,7 +55,12 @@ import com.sri.ai.util.Util;
  * An implementation of {@link List}
  * sharing elements with a pre-existing given list.
  * <p>
- * This works by receiving the base list at construction time and keeping a linked list of additional elements.
+ * This works by receiving the base list at construction time and keeping a list of additional elements
+ * (an {@link ArrayList} unless given, for constant-time random access).
+ * Random access to a base built by stacking {@link ImmutableStackedLinkedList}s goes through their {@link PersistentVector}.
+ * Unlike those, this list does not cache a vector of its elements, since its base and the list of
+ * additional elements it was given may be changed by their owners without its knowledge;
+ * {@link #size()} and {@link #get(int)} therefore walk the stacked lists below it (once).
  * <p>
  * Modification of the base list is not allowed and
  * will throw a {@link UnsupportedOperationException}.
@@ -72,7 +77,7 @@ public class StackedLinkedList<E> implements List<E> {
 	
 	public StackedLinkedList(List<E> base) {
 		this.base = base;
-		this.extension = new LinkedList<E>();
+		this.extension = new ArrayList<E>();
 	}
 	
 	public StackedLinkedList(E top, List<E> base) {
@@ -91,7 +96,16 @@ public class StackedLinkedList<E> implements List<E> {
 	
 	@Override
 	public int size() {
-		return base.size() + extension.size();
+		// iterative, since stacks of lists can be too deep for recursion
+		int result = 0;
+		List<E> list = this;
+		while (list instanceof StackedLinkedList) {
+			StackedLinkedList<E> stacked = (StackedLinkedList<E>) list;
+			result += stacked.extension.size();
+			list = stacked.base;
+		}
+		result += list.size();
+		return result;
 	}
 
 	@Override
@@ -207,13 +221,21 @@ public class StackedLinkedList<E> implements List<E> {
 
 	@Override
 	public E get(int index) {
-		E result;
-		if (index < base.size()) {
-			result = base.get(index);
-		}
-		else {
-			result = extension.get(index - base.size());
+		// optimization: walks down the stack once, obtaining the size of each base from the size of the
+		// list above it, instead of recursively computing the size of each base on the way.
+		List<E> list = this;
+		int size = size();
+		while (list instanceof StackedLinkedList) {
+			StackedLinkedList<E> stacked = (StackedLinkedList<E>) list;
+			int baseSize = size - stacked.extension.size();
+			if (index >= baseSize) {
+				E result = stacked.extension.get(index - baseSize);
+				return result;
+			}
+			size = baseSize;
+			list = stacked.base;
 		}
+		E result = list.get(index);
 		return result;
 	}
 
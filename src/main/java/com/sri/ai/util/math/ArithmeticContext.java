@@ -0,0 +1,610 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.sri.ai.util.AICUtilConfiguration;
+import com.sri.ai.util.base.NullaryFunction;
+
+/**
+ * The settings under which {@link Rational} (and underlying
+ * {@link BigIntegerNumber}) arithmetic is performed, i.e. whether it is exact
+ * or approximate and, if approximate, its precision and rounding mode or
+ * whether it uses a fixed width binary float instead (see
+ * {@link BigIntegerNumberApproximateBinary}). Exact arithmetic can also be
+ * hybrid, i.e. degrade to approximations once numbers exceed a bit length
+ * limit (see {@link BigIntegerNumberHybrid}).<br>
+ * <br>
+ * Contexts are immutable and canonical (see
+ * {@link #valueOf(boolean, int, RoundingMode)}), and each one holds its own
+ * precomputed constants and interned values, so that arithmetic under
+ * different contexts can take place at the same time (e.g. in different
+ * threads) without interfering with one another. The context used by an
+ * arithmetic operation is the one bound to the current thread by
+ * {@link #compute(NullaryFunction)}, if any, or the default context
+ * otherwise (see {@link Rational#resetApproximationConfiguration(boolean, int, RoundingMode)}).<br>
+ * Note that {@link Rational#ZERO}, {@link Rational#ONE} and
+ * {@link Rational#MINUS_ONE} belong to the default context, whereas
+ * {@link Rational#valueOf(long)} returns the current context's values.<br>
+ * <br>
+ * For example:
+ * 
+ * <pre>
+ * Rational exactSum = ArithmeticContext.exact().compute(() -&gt; a.add(b));
+ * </pre>
+ */
+@Beta
+public final class ArithmeticContext {
+	/**
+	 * Number of decimal digits that any long value fits in (i.e. 19).
+	 */
+	private final static int LONG_MAX_DECIMAL_DIGITS = 19;
+	//
+	/**
+	 * The canonical contexts, keyed by their settings.
+	 */
+	private static final ConcurrentMap<List<Object>, ArithmeticContext> CONTEXTS = new ConcurrentHashMap<List<Object>, ArithmeticContext>();
+	/**
+	 * The context used by threads that do not have one bound to them.
+	 */
+	private static volatile ArithmeticContext defaultContext;
+	/**
+	 * Number of threads that currently have a context bound to them, so that
+	 * threads without one do not need to look up THREAD_CONTEXT.
+	 */
+	private static final AtomicInteger NUMBER_OF_THREADS_WITH_BOUND_CONTEXT = new AtomicInteger(0);
+	private static final ThreadLocal<ArithmeticContext> THREAD_CONTEXT = new ThreadLocal<ArithmeticContext>();
+	//
+	private final boolean     approximationEnabled;
+	private final boolean     binaryFloatEnabled;
+	private final int         hybridExactBitLengthLimit; // 0 if not hybrid
+	private final MathContext mathContext;
+	//
+	/**
+	 * Whether or not newly computed values whose numerator and denominator fit in
+	 * longs are represented and operated on using longs. Only enabled when doing so
+	 * gives the same results as this context's BigIntegerNumber representation
+	 * (i.e. exact, or approximate with a precision that can hold any long) and
+	 * {@link AICUtilConfiguration#isRationalLongFastPathEnabled()} is true.
+	 */
+	final boolean longFastPathEnabled;
+	//
+	// Interning related constants
+	/**
+	 * Rationals held as longs with |numerator| and denominator &lt;=
+	 * internGridBound have a canonical instance in internGrid (see
+	 * {@link AICUtilConfiguration#getRationalInternGridBound()}).
+	 */
+	final int internGridBound;
+	/**
+	 * Canonical instances of small rationals, indexed by
+	 * (numerator + internGridBound) * internGridBound + denominator - 1,
+	 * created on first use.
+	 */
+	final AtomicReferenceArray<Rational> internGrid;
+	/**
+	 * Canonical instances of all other interned rationals, only weakly held.
+	 */
+	final Interner<Rational> interner;
+	//
+	// Constants internally used by Rational, for convenience and speed
+	// (see the corresponding Rational methods for their use).
+	final BigIntegerNumber bigIntegerZero;
+	final BigIntegerNumber bigIntegerOne;
+	final BigIntegerNumber bigIntegerMinusOne;
+	final BigIntegerNumber bigIntegerTwo;
+	final BigIntegerNumber bigIntegerMinusTwo;
+	final BigIntegerNumber bigIntegerTen;
+	final BigIntegerNumber bigIntegerSixteen;
+	final BigIntegerNumber bigIntegerTwoPower64;
+	//
+	final BigIntegerNumber bigIntegerPosMaxSmallIntExponentValue;
+	final BigIntegerNumber bigIntegerNegMaxSmallIntExponentValue;
+	//
+	final Rational zero;
+	final Rational one;
+	final Rational minusOne;
+	final Rational two;
+	final Rational ten;
+	final Rational sixteen;
+	final Rational twoPower64;
+	final Rational logarithmTenGuess;
+	final Rational logarithmSixteen;
+	//
+	final Rational rationalPosMaxSmallIntExponentValue;
+	final Rational rationalLogDoubleMaxValue;
+	final Rational rationalDoubleMaxValue;
+
+	/**
+	 * The context for exact arithmetic.
+	 * 
+	 * @return the context for exact arithmetic.
+	 */
+	public static ArithmeticContext exact() {
+		ArithmeticContext result = valueOf(false, false, 0, MathContext.UNLIMITED.getPrecision(), MathContext.UNLIMITED.getRoundingMode());
+		return result;
+	}
+
+	/**
+	 * The context for approximate arithmetic with a given precision and
+	 * rounding mode.
+	 * 
+	 * @param precision
+	 *        the number of significant decimal digits kept by approximations.
+	 * @param roundingMode
+	 *        the rounding mode used by approximations.
+	 * @return the corresponding context.
+	 */
+	public static ArithmeticContext approximate(int precision, RoundingMode roundingMode) {
+		ArithmeticContext result = valueOf(true, precision, roundingMode);
+		return result;
+	}
+
+	/**
+	 * The context for approximate arithmetic using a fixed width binary float
+	 * (see {@link BigIntegerNumberApproximateBinary}), with logarithms computed
+	 * to MathContext.DECIMAL64.
+	 * 
+	 * @return the context for binary float approximate arithmetic.
+	 */
+	public static ArithmeticContext approximateBinaryFloat() {
+		ArithmeticContext result = valueOf(true, true, 0, MathContext.DECIMAL64.getPrecision(), MathContext.DECIMAL64.getRoundingMode());
+		return result;
+	}
+
+	/**
+	 * The context for hybrid arithmetic, which is exact until numbers exceed
+	 * a given bit length, and approximate with a given precision and rounding
+	 * mode (or binary floats, if enabled by {@link AICUtilConfiguration}) from
+	 * then on (see {@link BigIntegerNumberHybrid}).
+	 * 
+	 * @param exactBitLengthLimit
+	 *        the bit length (&gt; 0) up to which numbers are kept exact.
+	 * @param precision
+	 *        the number of significant decimal digits kept by approximations.
+	 * @param roundingMode
+	 *        the rounding mode used by approximations.
+	 * @return the corresponding context.
+	 */
+	public static ArithmeticContext hybrid(int exactBitLengthLimit, int precision, RoundingMode roundingMode) {
+		if (exactBitLengthLimit <= 0) {
+			throw new IllegalArgumentException("Illegal hybrid exact bit length limit: " + exactBitLengthLimit);
+		}
+		ArithmeticContext result = valueOf(false, AICUtilConfiguration.isRationalApproximationBinaryFloatEnabled(), exactBitLengthLimit, precision, roundingMode);
+		return result;
+	}
+
+	/**
+	 * The context with the given settings (and the current
+	 * {@link AICUtilConfiguration} binary float, hybrid, long fast path and
+	 * intern grid settings). If binary floats are enabled, the precision and
+	 * rounding mode only apply to logarithms and conversions.
+	 * Contexts are cached, so the same instance, and therefore the same
+	 * precomputed constants and interned values, are returned for the same
+	 * settings.
+	 * 
+	 * @param approximationEnabled
+	 *        whether arithmetic is approximate (true) or exact (false).
+	 * @param precision
+	 *        the number of significant decimal digits kept by approximations.
+	 * @param roundingMode
+	 *        the rounding mode used by approximations.
+	 * @return the corresponding context.
+	 */
+	public static ArithmeticContext valueOf(boolean approximationEnabled, int precision, RoundingMode roundingMode) {
+		ArithmeticContext result = valueOf(approximationEnabled, AICUtilConfiguration.isRationalApproximationBinaryFloatEnabled(), AICUtilConfiguration.getRationalHybridExactBitLengthLimit(), precision, roundingMode);
+		return result;
+	}
+
+	private static ArithmeticContext valueOf(boolean approximationEnabled, boolean binaryFloatEnabled, int hybridExactBitLengthLimit, int precision, RoundingMode roundingMode) {
+		boolean longFastPathConfigured = AICUtilConfiguration.isRationalLongFastPathEnabled();
+		int     internGridBound        = AICUtilConfiguration.getRationalInternGridBound();
+		// hybrid arithmetic only applies to otherwise exact arithmetic,
+		// and binary floats only matter when approximating
+		hybridExactBitLengthLimit = approximationEnabled ? 0 : Math.max(0, hybridExactBitLengthLimit);
+		binaryFloatEnabled        = binaryFloatEnabled && (approximationEnabled || hybridExactBitLengthLimit > 0);
+		
+		List<Object> key = Arrays.<Object>asList(approximationEnabled, binaryFloatEnabled, hybridExactBitLengthLimit, precision, roundingMode, longFastPathConfigured, internGridBound);
+		ArithmeticContext result = CONTEXTS.get(key);
+		if (result == null) {
+			// note: construction is idempotent, so a lost race only costs the construction.
+			ArithmeticContext newContext = new ArithmeticContext(approximationEnabled, binaryFloatEnabled, hybridExactBitLengthLimit, new MathContext(precision, roundingMode), longFastPathConfigured, internGridBound);
+			result = CONTEXTS.putIfAbsent(key, newContext);
+			if (result == null) {
+				result = newContext;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The context described by the current {@link AICUtilConfiguration}.
+	 * 
+	 * @return the context described by the current configuration.
+	 */
+	public static ArithmeticContext fromAICUtilConfiguration() {
+		ArithmeticContext result = valueOf(AICUtilConfiguration.isRationalApproximationEnabled(),
+										   AICUtilConfiguration.getRationalApproximationPrecision(),
+										   AICUtilConfiguration.getRationalApproximationRoundingMode());
+		return result;
+	}
+
+	/**
+	 * The context used by threads that do not have one bound to them.
+	 * 
+	 * @return the default context.
+	 */
+	public static ArithmeticContext getDefault() {
+		return defaultContext;
+	}
+
+	/**
+	 * Sets the context used by threads that do not have one bound to them.
+	 * Note: values created under the previous default context remain valid
+	 * (approximate and exact values interoperate) but keep their own
+	 * representation.
+	 * 
+	 * @param context
+	 *        the new default context.
+	 */
+	public static void setDefault(ArithmeticContext context) {
+		if (context == null) {
+			throw new IllegalArgumentException("Default arithmetic context cannot be null");
+		}
+		defaultContext = context;
+	}
+
+	/**
+	 * The context in which arithmetic performed by the current thread takes place.
+	 * 
+	 * @return the context bound to the current thread, if any, otherwise the default one.
+	 */
+	public static ArithmeticContext getCurrent() {
+		ArithmeticContext result;
+		// optimization: only look up the thread local if some thread has bound a context.
+		if (NUMBER_OF_THREADS_WITH_BOUND_CONTEXT.get() == 0 || (result = THREAD_CONTEXT.get()) == null) {
+			result = defaultContext;
+		}
+		return result;
+	}
+
+	/**
+	 * Performs a computation with this context bound to the current thread,
+	 * restoring the previously bound context (if any) afterwards. Calls can be
+	 * nested.
+	 * 
+	 * @param computation
+	 *        the computation to be performed.
+	 * @return the result of the computation.
+	 * @param <T> the type of the result of the computation.
+	 */
+	public <T> T compute(NullaryFunction<T> computation) {
+		ArithmeticContext previous = bind(this);
+		try {
+			T result = computation.apply();
+			return result;
+		}
+		finally {
+			bind(previous);
+		}
+	}
+
+	/**
+	 * Whether arithmetic under this context is approximate.
+	 * 
+	 * @return true if approximate, false if exact.
+	 */
+	public boolean isApproximationEnabled() {
+		return approximationEnabled;
+	}
+
+	/**
+	 * Whether approximations under this context use a fixed width binary float
+	 * (see {@link BigIntegerNumberApproximateBinary}).
+	 * 
+	 * @return true if approximate with binary floats.
+	 */
+	public boolean isBinaryFloatEnabled() {
+		return binaryFloatEnabled;
+	}
+
+	/**
+	 * The bit length up to which numbers are kept exact, if this context is
+	 * hybrid (see {@link BigIntegerNumberHybrid}).
+	 * 
+	 * @return the hybrid exact bit length limit, or 0 if this context is not hybrid.
+	 */
+	public int getHybridExactBitLengthLimit() {
+		return hybridExactBitLengthLimit;
+	}
+
+	/**
+	 * The precision and rounding mode used by approximations under this context.
+	 * 
+	 * @return the math context used by approximations.
+	 */
+	public MathContext getMathContext() {
+		return mathContext;
+	}
+
+	/**
+	 * Whether values under this context are held as longs when they fit.
+	 * 
+	 * @return true if the long fast path is enabled in this context.
+	 */
+	public boolean isLongFastPathEnabled() {
+		return longFastPathEnabled;
+	}
+
+	@Override
+	public String toString() {
+		String approximation = binaryFloatEnabled ? "binary float" : mathContext.getPrecision() + ", " + mathContext.getRoundingMode();
+		String result = hybridExactBitLengthLimit > 0 ? "hybrid(" + hybridExactBitLengthLimit + ", " + approximation + ")" : approximationEnabled ? "approximate(" + approximation + ")" : "exact";
+		return result;
+	}
+
+	//
+	// PACKAGE METHODS
+	//
+
+	BigIntegerNumber bigIntegerNumberValueOf(long l) {
+		BigIntegerNumber result;
+
+		if (hybridExactBitLengthLimit > 0) {
+			result = hybrid(new BigIntegerNumberExact(l));
+		}
+		else if (binaryFloatEnabled) {
+			result = new BigIntegerNumberApproximateBinary(l);
+		}
+		else if (approximationEnabled) {
+			result = new BigIntegerNumberApproximate(l, mathContext);
+		}
+		else {
+			result = new BigIntegerNumberExact(l);
+		}
+		
+		return result;
+	}
+	
+	BigIntegerNumber bigIntegerNumberValueOf(BigInteger value) {
+		BigIntegerNumber result;
+	
+		if (hybridExactBitLengthLimit > 0) {
+			result = hybrid(new BigIntegerNumberExact(value));
+		}
+		else if (binaryFloatEnabled) {
+			result = new BigIntegerNumberApproximateBinary(value);
+		}
+		else if (approximationEnabled) {
+			result = new BigIntegerNumberApproximate(new BigDecimal(value, mathContext), mathContext);
+		}
+		else {
+			result = new BigIntegerNumberExact(value);
+		}
+				
+		return result;
+	}
+	
+	BigIntegerNumber bigIntegerNumberValueOf(String strNumber, int radix) {
+		BigIntegerNumber result;
+	
+		if (hybridExactBitLengthLimit > 0) {
+			result = hybrid(new BigIntegerNumberExact(strNumber, radix));
+		}
+		else if (binaryFloatEnabled) {
+			result = new BigIntegerNumberApproximateBinary(strNumber, radix);
+		}
+		else if (approximationEnabled) {
+			result = new BigIntegerNumberApproximate(strNumber, radix, mathContext);
+		}
+		else {
+			result = new BigIntegerNumberExact(strNumber, radix);
+		}
+				
+		return result;
+	}
+	
+	Rational rationalValueOf(BigDecimal bigDecimal) {
+		Rational result;
+		
+		if (binaryFloatEnabled && hybridExactBitLengthLimit == 0) {
+			result = new Rational(new BigIntegerNumberApproximateBinary(bigDecimal));
+		}
+		else if (approximationEnabled) {
+			result = new Rational(new BigIntegerNumberApproximate(bigDecimal, mathContext));
+		}
+		else {
+			if (bigDecimal.scale() <= 0) {
+				result = new Rational(hybrid(new BigIntegerNumberExact(bigDecimal.toBigIntegerExact())));
+			}
+			else {
+				BigIntegerNumberExact numerator   = new BigIntegerNumberExact(bigDecimal.scaleByPowerOfTen(bigDecimal.scale()).toBigIntegerExact());
+				BigIntegerNumberExact denominator = new BigIntegerNumberExact(BigDecimal.ONE.scaleByPowerOfTen(bigDecimal.scale()).toBigIntegerExact());
+				
+				result = new Rational(hybrid(numerator), hybrid(denominator));
+			}
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Whether a number has this context's representation.
+	 */
+	boolean isRepresentationOf(BigIntegerNumber number) {
+		boolean result;
+		if (hybridExactBitLengthLimit > 0) {
+			result = number instanceof BigIntegerNumberHybrid;
+		}
+		else if (binaryFloatEnabled) {
+			result = number instanceof BigIntegerNumberApproximateBinary;
+		}
+		else if (approximationEnabled) {
+			result = number instanceof BigIntegerNumberApproximate;
+		}
+		else {
+			result = number instanceof BigIntegerNumberExact;
+		}
+		return result;
+	}
+
+	/**
+	 * Index in the intern grid of a normalized long numerator and denominator,
+	 * or -1 if outside of it.
+	 */
+	int internGridIndex(long numerator, long denominator) {
+		final int bound = internGridBound;
+		if (numerator < -bound || numerator > bound || denominator > bound) {
+			return -1;
+		}
+		return (int) ((numerator + bound) * bound + denominator - 1);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * An exact number as a hybrid one, if this context is hybrid.
+	 */
+	private BigIntegerNumber hybrid(BigIntegerNumberExact number) {
+		BigIntegerNumber result = number;
+		if (hybridExactBitLengthLimit > 0) {
+			result = new BigIntegerNumberHybrid(number, hybridExactBitLengthLimit, binaryFloatEnabled ? null : mathContext);
+		}
+		return result;
+	}
+	
+	private ArithmeticContext(boolean approximationEnabled, boolean binaryFloatEnabled, int hybridExactBitLengthLimit, MathContext mathContext, boolean longFastPathConfigured, int internGridBound) {
+		if (internGridBound < 0 || (2L * internGridBound + 1) * internGridBound > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Illegal intern grid bound: " + internGridBound);
+		}
+		
+		this.approximationEnabled      = approximationEnabled;
+		this.binaryFloatEnabled        = binaryFloatEnabled;
+		this.hybridExactBitLengthLimit = hybridExactBitLengthLimit;
+		this.mathContext               = mathContext;
+		// note: binary floats cannot represent every long exactly, and hybrid numbers
+		// only keep every long exact if their limit is at least 64 bits.
+		if (hybridExactBitLengthLimit > 0) {
+			this.longFastPathEnabled = longFastPathConfigured && hybridExactBitLengthLimit >= Long.SIZE;
+		}
+		else {
+			this.longFastPathEnabled = longFastPathConfigured && !binaryFloatEnabled && (!approximationEnabled || mathContext.getPrecision() == 0 || mathContext.getPrecision() >= LONG_MAX_DECIMAL_DIGITS);
+		}
+		this.internGridBound      = internGridBound;
+		this.internGrid           = new AtomicReferenceArray<Rational>((2 * internGridBound + 1) * internGridBound);
+		this.interner             = Interners.newWeakInterner();
+		
+		// Private Big Integer Numbers
+		bigIntegerZero       = bigIntegerNumberValueOf(0);
+		bigIntegerOne        = bigIntegerNumberValueOf(1);
+		bigIntegerMinusOne   = bigIntegerNumberValueOf(-1);
+		bigIntegerTwo        = bigIntegerNumberValueOf(2);
+		bigIntegerMinusTwo   = bigIntegerNumberValueOf(-2);
+		bigIntegerTen        = bigIntegerNumberValueOf(10);
+		bigIntegerSixteen    = bigIntegerNumberValueOf(16);
+		bigIntegerTwoPower64 = bigIntegerNumberValueOf(2).pow(64);
+		// Private log() related constants
+		bigIntegerPosMaxSmallIntExponentValue = bigIntegerNumberValueOf(Rational.POS_MAX_SMALL_INT_EXPONENT_VALUE);
+		bigIntegerNegMaxSmallIntExponentValue = bigIntegerNumberValueOf(Rational.NEG_MAX_SMALL_INT_EXPONENT_VALUE);
+		
+		// The rational constants are built under this context, so that they use its representation.
+		ArithmeticContext previous = bind(this);
+		try {
+			zero                = new Rational(0);
+			one                 = new Rational(1);
+			minusOne            = new Rational(-1);
+			two                 = new Rational(2);
+			ten                 = new Rational(10);
+			sixteen             = new Rational(16);
+			twoPower64          = new Rational(bigIntegerTwoPower64);
+			logarithmTenGuess   = new Rational(1741647, 524288);
+			logarithmSixteen    = new Rational(4);
+			//
+			rationalPosMaxSmallIntExponentValue = new Rational(bigIntegerPosMaxSmallIntExponentValue);
+			rationalLogDoubleMaxValue           = new Rational(""+Math.log(Double.MAX_VALUE));
+			rationalDoubleMaxValue              = new Rational(""+Double.MAX_VALUE);
+		}
+		finally {
+			bind(previous);
+		}
+		
+		// Ensure the constants are the interned instances of their values
+		for (Rational constant : new Rational[] {zero, one, minusOne, two, ten, sixteen}) {
+			final int index = constant.isHeldAsLongs() ? internGridIndex(constant.getLongNumerator(), constant.getLongDenominator()) : -1;
+			if (index != -1) {
+				internGrid.set(index, constant);
+			}
+		}
+	}
+
+	/**
+	 * Binds a context (or none, if null) to the current thread, returning the
+	 * previously bound one.
+	 */
+	private static ArithmeticContext bind(ArithmeticContext context) {
+		ArithmeticContext result = THREAD_CONTEXT.get();
+		if (context != result) {
+			if (context == null) {
+				THREAD_CONTEXT.remove();
+				NUMBER_OF_THREADS_WITH_BOUND_CONTEXT.decrementAndGet();
+			}
+			else {
+				THREAD_CONTEXT.set(context);
+				if (result == null) {
+					NUMBER_OF_THREADS_WITH_BOUND_CONTEXT.incrementAndGet();
+				}
+			}
+		}
+		return result;
+	}
+}
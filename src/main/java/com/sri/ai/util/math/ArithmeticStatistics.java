@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.AICUtilConfiguration;
+
+/**
+ * Optional instrumentation of {@link Rational} arithmetic: counts of
+ * operations, histograms of the bit lengths of their (BigIntegerNumber)
+ * operands and sampled normalization times, for telling whether slowdowns
+ * come from the growth of rationals.
+ * <p>
+ * Recording is disabled by default (see
+ * {@link AICUtilConfiguration#isArithmeticStatisticsEnabled()}), in which case
+ * it costs a single static field test per operation. When enabled, counters are
+ * striped {@link LongAdder}s, so threads do not contend on them, and only one
+ * in {@link AICUtilConfiguration#getArithmeticStatisticsNormalizationSamplingInterval()}
+ * normalizations (chosen at random) is timed.
+ * <p>
+ * The statistics can be read with {@link #snapshot()} and, if
+ * {@link AICUtilConfiguration#isArithmeticStatisticsJMXEnabled()} (or after
+ * {@link #registerMBean()}), through JMX as {@link #OBJECT_NAME}.
+ */
+@Beta
+public final class ArithmeticStatistics {
+	
+	/**
+	 * The recorded operations (subtractions are recorded as additions).
+	 */
+	public enum Operation {
+		ADD, MULTIPLY, DIVIDE, NORMALIZE, GCD, COMPARE, POW
+	}
+	
+	/**
+	 * Number of buckets of the bit length histograms: bucket 0 counts operands
+	 * of bit length 0, and bucket i > 0 those of bit length in [2^(i-1), 2^i).
+	 */
+	public static final int NUMBER_OF_BIT_LENGTH_BUCKETS = Integer.SIZE;
+	
+	/**
+	 * The name under which the statistics are registered with the platform MBean server.
+	 */
+	public static final String OBJECT_NAME = "com.sri.ai.util.math:type=ArithmeticStatistics";
+	
+	/**
+	 * The management interface of the statistics.
+	 */
+	public interface ArithmeticStatisticsMXBean {
+		boolean isEnabled();
+		void setEnabled(boolean enabled);
+		int getNormalizationSamplingInterval();
+		void setNormalizationSamplingInterval(int normalizationSamplingInterval);
+		Map<String, Long> getCounts();
+		Map<String, long[]> getBitLengthHistograms();
+		long getNumberOfSampledNormalizations();
+		double getMeanSampledNormalizationTimeInNanoseconds();
+		long getMaximumSampledNormalizationTimeInNanoseconds();
+		void reset();
+	}
+	
+	/**
+	 * An immutable copy of the statistics at some point in time.
+	 */
+	public static final class Snapshot {
+		private final long[]   counts;
+		private final long[][] bitLengthHistograms;
+		private final long     numberOfSampledNormalizations;
+		private final long     totalSampledNormalizationTimeInNanoseconds;
+		private final long     maximumSampledNormalizationTimeInNanoseconds;
+		
+		private Snapshot() {
+			final Operation[] operations = Operation.values();
+			counts              = new long[operations.length];
+			bitLengthHistograms = new long[operations.length][NUMBER_OF_BIT_LENGTH_BUCKETS];
+			for (int i = 0; i < operations.length; i++) {
+				counts[i] = COUNTS[i].sum();
+				for (int bucket = 0; bucket < NUMBER_OF_BIT_LENGTH_BUCKETS; bucket++) {
+					bitLengthHistograms[i][bucket] = BIT_LENGTH_HISTOGRAMS[i][bucket].sum();
+				}
+			}
+			numberOfSampledNormalizations                = NUMBER_OF_SAMPLED_NORMALIZATIONS.sum();
+			totalSampledNormalizationTimeInNanoseconds   = TOTAL_SAMPLED_NORMALIZATION_TIME_IN_NANOSECONDS.sum();
+			maximumSampledNormalizationTimeInNanoseconds = MAXIMUM_SAMPLED_NORMALIZATION_TIME_IN_NANOSECONDS.get();
+		}
+		
+		public long getCount(Operation operation) {
+			return counts[operation.ordinal()];
+		}
+		
+		/**
+		 * The bit length histogram of an operation's operands (see {@link ArithmeticStatistics#NUMBER_OF_BIT_LENGTH_BUCKETS}).
+		 */
+		public long[] getBitLengthHistogram(Operation operation) {
+			return bitLengthHistograms[operation.ordinal()].clone();
+		}
+		
+		public long getNumberOfSampledNormalizations() {
+			return numberOfSampledNormalizations;
+		}
+		
+		public long getTotalSampledNormalizationTimeInNanoseconds() {
+			return totalSampledNormalizationTimeInNanoseconds;
+		}
+		
+		public double getMeanSampledNormalizationTimeInNanoseconds() {
+			double result = numberOfSampledNormalizations == 0 ? 0 : ((double) totalSampledNormalizationTimeInNanoseconds) / numberOfSampledNormalizations;
+			return result;
+		}
+		
+		public long getMaximumSampledNormalizationTimeInNanoseconds() {
+			return maximumSampledNormalizationTimeInNanoseconds;
+		}
+		
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder();
+			for (Operation operation : Operation.values()) {
+				long[] histogram = bitLengthHistograms[operation.ordinal()];
+				int lastBucket = histogram.length - 1;
+				while (lastBucket > 0 && histogram[lastBucket] == 0) {
+					lastBucket--;
+				}
+				result.append(operation).append(": ").append(getCount(operation));
+				result.append(", bit lengths < 2^i: ").append(Arrays.toString(Arrays.copyOf(histogram, lastBucket + 1))).append("\n");
+			}
+			result.append("sampled normalizations: ").append(numberOfSampledNormalizations);
+			result.append(", mean = ").append(getMeanSampledNormalizationTimeInNanoseconds()).append("ns");
+			result.append(", maximum = ").append(maximumSampledNormalizationTimeInNanoseconds).append("ns");
+			return result.toString();
+		}
+	}
+	
+	//
+	// STATE
+	//
+	// note: read on every Rational operation, so deliberately neither final nor volatile.
+	static boolean ENABLED;
+	//
+	private static int NORMALIZATION_SAMPLING_INTERVAL;
+	//
+	private static final LongAdder[]      COUNTS                                            = newLongAdders(Operation.values().length);
+	private static final LongAdder[][]    BIT_LENGTH_HISTOGRAMS                             = new LongAdder[Operation.values().length][];
+	private static final LongAdder        NUMBER_OF_SAMPLED_NORMALIZATIONS                  = new LongAdder();
+	private static final LongAdder        TOTAL_SAMPLED_NORMALIZATION_TIME_IN_NANOSECONDS   = new LongAdder();
+	private static final LongAccumulator  MAXIMUM_SAMPLED_NORMALIZATION_TIME_IN_NANOSECONDS = new LongAccumulator(Math::max, 0);
+	//
+	private static final long NOT_SAMPLED = Long.MIN_VALUE;
+	
+	static {
+		for (int i = 0; i < BIT_LENGTH_HISTOGRAMS.length; i++) {
+			BIT_LENGTH_HISTOGRAMS[i] = newLongAdders(NUMBER_OF_BIT_LENGTH_BUCKETS);
+		}
+		resetFromAICUtilConfiguration();
+	}
+	
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+	
+	public static void setEnabled(boolean enabled) {
+		ENABLED = enabled;
+	}
+	
+	public static int getNormalizationSamplingInterval() {
+		return NORMALIZATION_SAMPLING_INTERVAL;
+	}
+	
+	/**
+	 * Sets the (average) number of normalizations per timed one, <= 0 disables timing.
+	 */
+	public static void setNormalizationSamplingInterval(int normalizationSamplingInterval) {
+		NORMALIZATION_SAMPLING_INTERVAL = normalizationSamplingInterval;
+	}
+	
+	/**
+	 * Sets whether statistics are recorded and the sampling interval from
+	 * {@link AICUtilConfiguration}, and registers the statistics with JMX if so
+	 * configured.
+	 */
+	public static void resetFromAICUtilConfiguration() {
+		setEnabled(AICUtilConfiguration.isArithmeticStatisticsEnabled());
+		setNormalizationSamplingInterval(AICUtilConfiguration.getArithmeticStatisticsNormalizationSamplingInterval());
+		if (AICUtilConfiguration.isArithmeticStatisticsJMXEnabled()) {
+			registerMBean();
+		}
+	}
+	
+	/**
+	 * Zeroes all statistics.
+	 */
+	public static void reset() {
+		for (int i = 0; i < COUNTS.length; i++) {
+			COUNTS[i].reset();
+			for (LongAdder bucket : BIT_LENGTH_HISTOGRAMS[i]) {
+				bucket.reset();
+			}
+		}
+		NUMBER_OF_SAMPLED_NORMALIZATIONS.reset();
+		TOTAL_SAMPLED_NORMALIZATION_TIME_IN_NANOSECONDS.reset();
+		MAXIMUM_SAMPLED_NORMALIZATION_TIME_IN_NANOSECONDS.reset();
+	}
+	
+	/**
+	 * A copy of the current statistics (not atomic with respect to operations running concurrently).
+	 */
+	public static Snapshot snapshot() {
+		return new Snapshot();
+	}
+	
+	/**
+	 * Registers the statistics with the platform MBean server as {@link #OBJECT_NAME}, if not already registered.
+	 */
+	public static synchronized void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new StandardMBean(new MXBean(), ArithmeticStatisticsMXBean.class, true), name);
+			}
+		}
+		catch (JMException jmException) {
+			throw new IllegalStateException(jmException);
+		}
+	}
+	
+	public static synchronized void unregisterMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		}
+		catch (JMException jmException) {
+			throw new IllegalStateException(jmException);
+		}
+	}
+	
+	//
+	// PACKAGE METHODS (used by Rational, only when ENABLED)
+	//
+	static void record(Operation operation, int operandBitLength) {
+		final int index = operation.ordinal();
+		COUNTS[index].increment();
+		BIT_LENGTH_HISTOGRAMS[index][bucket(operandBitLength)].increment();
+	}
+	
+	/**
+	 * Records a normalization and returns the time it starts at, if it is to
+	 * be timed, to be passed to {@link #endNormalization(long)}.
+	 */
+	static long startNormalization(int operandBitLength) {
+		record(Operation.NORMALIZE, operandBitLength);
+		final int interval = NORMALIZATION_SAMPLING_INTERVAL;
+		long result = NOT_SAMPLED;
+		if (interval > 0 && (interval == 1 || ThreadLocalRandom.current().nextInt(interval) == 0)) {
+			result = System.nanoTime();
+		}
+		return result;
+	}
+	
+	static void endNormalization(long start) {
+		if (start != NOT_SAMPLED) {
+			final long time = System.nanoTime() - start;
+			NUMBER_OF_SAMPLED_NORMALIZATIONS.increment();
+			TOTAL_SAMPLED_NORMALIZATION_TIME_IN_NANOSECONDS.add(time);
+			MAXIMUM_SAMPLED_NORMALIZATION_TIME_IN_NANOSECONDS.accumulate(time);
+		}
+	}
+	
+	static int bitLength(long value) {
+		return Long.SIZE - Long.numberOfLeadingZeros(value < 0 ? ~value : value);
+	}
+	
+	//
+	// PRIVATE
+	//
+	private ArithmeticStatistics() {
+	}
+	
+	private static int bucket(int bitLength) {
+		return Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(bitLength, 0));
+	}
+	
+	private static LongAdder[] newLongAdders(int length) {
+		LongAdder[] result = new LongAdder[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = new LongAdder();
+		}
+		return result;
+	}
+	
+	private static class MXBean implements ArithmeticStatisticsMXBean {
+		@Override
+		public boolean isEnabled() {
+			return ArithmeticStatistics.isEnabled();
+		}
+		
+		@Override
+		public void setEnabled(boolean enabled) {
+			ArithmeticStatistics.setEnabled(enabled);
+		}
+		
+		@Override
+		public int getNormalizationSamplingInterval() {
+			return ArithmeticStatistics.getNormalizationSamplingInterval();
+		}
+		
+		@Override
+		public void setNormalizationSamplingInterval(int normalizationSamplingInterval) {
+			ArithmeticStatistics.setNormalizationSamplingInterval(normalizationSamplingInterval);
+		}
+		
+		@Override
+		public Map<String, Long> getCounts() {
+			Snapshot snapshot = snapshot();
+			Map<String, Long> result = new LinkedHashMap<>();
+			for (Operation operation : Operation.values()) {
+				result.put(operation.name(), snapshot.getCount(operation));
+			}
+			return Collections.unmodifiableMap(result);
+		}
+		
+		@Override
+		public Map<String, long[]> getBitLengthHistograms() {
+			Snapshot snapshot = snapshot();
+			Map<String, long[]> result = new LinkedHashMap<>();
+			for (Operation operation : Operation.values()) {
+				result.put(operation.name(), snapshot.getBitLengthHistogram(operation));
+			}
+			return Collections.unmodifiableMap(result);
+		}
+		
+		@Override
+		public long getNumberOfSampledNormalizations() {
+			return NUMBER_OF_SAMPLED_NORMALIZATIONS.sum();
+		}
+		
+		@Override
+		public double getMeanSampledNormalizationTimeInNanoseconds() {
+			return snapshot().getMeanSampledNormalizationTimeInNanoseconds();
+		}
+		
+		@Override
+		public long getMaximumSampledNormalizationTimeInNanoseconds() {
+			return MAXIMUM_SAMPLED_NORMALIZATION_TIME_IN_NANOSECONDS.get();
+		}
+		
+		@Override
+		public void reset() {
+			ArithmeticStatistics.reset();
+		}
+	}
+}
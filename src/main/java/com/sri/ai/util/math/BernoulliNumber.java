@@ -37,35 +37,47 @@
  */
 package com.sri.ai.util.math;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
 
 import com.google.common.annotations.Beta;
+import com.sri.ai.util.AICUtilConfiguration;
 
 /**
  * Compute Bernoulli number:<br>
  * https://en.wikipedia.org/wiki/Bernoulli_number
+ * <br>
+ * The (exact) values are kept in a table shared by all threads, which only
+ * grows: all missing values up to a requested index are computed in one pass
+ * of the Akiyama-Tanigawa algorithm, which continues from where the previous
+ * extension stopped. The table can be saved to and loaded from a compact binary
+ * file (see {@link #saveTable(OutputStream)}), which is loaded on first use if
+ * {@link AICUtilConfiguration#getBernoulliNumberTableFile()} names an existing
+ * file.
  * 
  * @author oreilly
  *
  */
 @Beta
 public class BernoulliNumber {
-	private static final Map<Integer, Rational> _precomputed = new HashMap<>();
-	static {
-		_precomputed.put(2,  new Rational(      1,    6));
-		_precomputed.put(4,  new Rational(     -1,   30));
-		_precomputed.put(6,  new Rational(      1,   42));
-		_precomputed.put(8,  new Rational(     -1,   30));
-		_precomputed.put(10, new Rational(      5,   66));
-		_precomputed.put(12, new Rational(   -691, 2730));
-		_precomputed.put(14, new Rational(      7,    6));
-		_precomputed.put(16, new Rational(  -3617,  510));
-		_precomputed.put(18, new Rational(  43867,  798));
-		_precomputed.put(20, new Rational(-174611,  330)); 
-	}
+	//
+	private static final int TABLE_FILE_MAGIC_NUMBER = 0x42455231; // "BER1"
+	//
 	private static final Rational _firstB1  = new Rational(-1, 2);
 	private static final Rational _secondB1 = new Rational( 1, 2);
+	//
+	private static final int MINIMUM_TABLE_SIZE = 32;
+	// B_n (with B_1 = +1/2) as reduced numerators and (positive) denominators, null until first used.
+	private static volatile Table _table = null;
 
 	/**
 	 * Compute the first Bernoulli numbers (i.e. B<sub>1</sub> = -1/2).
@@ -90,6 +102,117 @@ public class BernoulliNumber {
 		return compute(n, _secondB1);
 	}
 	
+	/**
+	 * Ensure the Bernoulli numbers up to n are in the table, computing all
+	 * the missing ones in one pass.
+	 * 
+	 * @param n
+	 *        the largest index needed.
+	 */
+	public static void precompute(int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("n must be >= 0");
+		}
+		table(n);
+	}
+	
+	/**
+	 * 
+	 * @return the number of Bernoulli numbers currently in the table (i.e. B<sub>0</sub> up to B<sub>size - 1</sub>).
+	 */
+	public static int getTableSize() {
+		Table table = _table;
+		return table == null ? 0 : table.numerators.length;
+	}
+	
+	/**
+	 * Save the current table to a file.
+	 * 
+	 * @param file
+	 *        the file to write to.
+	 * @throws IOException
+	 *         if the file can't be written.
+	 */
+	public static void saveTable(File file) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			saveTable(out);
+		}
+	}
+	
+	/**
+	 * Write the current table in a compact binary format: a magic number, the
+	 * number of entries and the numerator and denominator of each even indexed
+	 * entry from B<sub>2</sub> on (those not implied), as length prefixed two's complement bytes.
+	 * 
+	 * @param outputStream
+	 *        the stream to write to (which is not closed).
+	 * @throws IOException
+	 *         if the stream can't be written.
+	 */
+	public static void saveTable(OutputStream outputStream) throws IOException {
+		Table table = table(0);
+		DataOutputStream out = new DataOutputStream(outputStream);
+		out.writeInt(TABLE_FILE_MAGIC_NUMBER);
+		out.writeInt(table.numerators.length);
+		for (int i = 2; i < table.numerators.length; i += 2) {
+			writeBigInteger(out, table.numerators[i]);
+			writeBigInteger(out, table.denominators[i]);
+		}
+		out.flush();
+	}
+	
+	/**
+	 * Load a table saved with {@link #saveTable(File)}, if it is larger than
+	 * the current table.
+	 * 
+	 * @param file
+	 *        the file to read from.
+	 * @throws IOException
+	 *         if the file can't be read or is not a Bernoulli number table.
+	 */
+	public static void loadTable(File file) throws IOException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			loadTable(in);
+		}
+	}
+	
+	/**
+	 * Load a table written with {@link #saveTable(OutputStream)}, if it is
+	 * larger than the current table.
+	 * 
+	 * @param inputStream
+	 *        the stream to read from (which is not closed).
+	 * @throws IOException
+	 *         if the stream can't be read or is not a Bernoulli number table.
+	 */
+	public static void loadTable(InputStream inputStream) throws IOException {
+		DataInputStream in = new DataInputStream(inputStream);
+		if (in.readInt() != TABLE_FILE_MAGIC_NUMBER) {
+			throw new IOException("Not a Bernoulli number table");
+		}
+		int size = in.readInt();
+		if (size < 2) {
+			throw new IOException("Invalid Bernoulli number table size: " + size);
+		}
+		BigInteger[] numerators   = new BigInteger[size];
+		BigInteger[] denominators = new BigInteger[size];
+		setImpliedValues(numerators, denominators);
+		for (int i = 2; i < size; i += 2) {
+			numerators[i]   = readBigInteger(in);
+			denominators[i] = readBigInteger(in);
+			if (denominators[i].signum() <= 0) {
+				throw new IOException("Invalid Bernoulli number table denominator at " + i);
+			}
+		}
+		synchronized (BernoulliNumber.class) {
+			Table table = _table;
+			if (table == null || table.numerators.length < size) {
+				// note: the algorithm's state is not saved, so extending a loaded table starts again from B_0.
+				_table = new Table(numerators, denominators, null);
+			}
+		}
+	}
+	
 	//
 	// PRIVATE
 	//
@@ -108,21 +231,149 @@ public class BernoulliNumber {
 			result = Rational.ZERO;
 		}
 		else {
-			result = _precomputed.get(n);
-			if (result == null) {
-				// NOTE: Simple implementation based on:
-				// https://en.wikipedia.org/wiki/Bernoulli_number#Algorithmic_description
-				Rational[] a = new Rational[n+1];
-				for (int m = 0; m <= n; m++) {
-					a[m] = Rational.ONE.divide(m+1);
-					for (int j = m; j >= 1; j--) {
-						a[j-1] = new Rational(j).multiply(a[j-1].subtract(a[j]));
-					}
+			Table table = table(n);
+			result = rationalValueOf(table.numerators[n], table.denominators[n]);
+		}
+		
+		return result;
+	}
+	
+	private static Rational rationalValueOf(BigInteger numerator, BigInteger denominator) {
+		Rational result;
+		if (numerator.bitLength() < Long.SIZE && denominator.bitLength() < Long.SIZE) {
+			result = Rational.valueOf(numerator.longValue(), denominator.longValue());
+		}
+		else {
+			ArithmeticContext context = ArithmeticContext.getCurrent();
+			result = new Rational(context.bigIntegerNumberValueOf(numerator), context.bigIntegerNumberValueOf(denominator));
+		}
+		return result;
+	}
+	
+	private static Table table(int n) {
+		Table result = _table;
+		if (result == null || n >= result.numerators.length) {
+			result = extendTable(n);
+		}
+		return result;
+	}
+	
+	private static synchronized Table extendTable(int n) {
+		if (_table == null) {
+			loadConfiguredTableFile();
+		}
+		Table result = _table;
+		if (result == null || n >= result.numerators.length) {
+			result = akiyamaTanigawa(result, Math.max(n, MINIMUM_TABLE_SIZE));
+			_table = result;
+		}
+		return result;
+	}
+	
+	private static void loadConfiguredTableFile() {
+		String fileName = AICUtilConfiguration.getBernoulliNumberTableFile();
+		if (!fileName.isEmpty()) {
+			File file = new File(fileName);
+			if (file.exists()) {
+				try {
+					loadTable(file);
+				}
+				catch (IOException ioException) {
+					throw new Error("Unable to load Bernoulli number table from " + file, ioException);
 				}
-				result = a[0];
 			}
 		}
-		
+	}
+	
+	/**
+	 * Extends the given table up to B_n, with the Akiyama-Tanigawa algorithm
+	 * (https://en.wikipedia.org/wiki/Bernoulli_number#Algorithmic_description),
+	 * continuing from the given table's row if it has one.
+	 */
+	private static Table akiyamaTanigawa(Table table, int n) {
+		BigInteger[] numerators   = new BigInteger[n + 1];
+		BigInteger[] denominators = new BigInteger[n + 1];
+		// the row a[0..m] of the algorithm after step m, as numerators and denominators.
+		BigInteger[] rowNumerators   = new BigInteger[n + 1];
+		BigInteger[] rowDenominators = new BigInteger[n + 1];
+		int start = 0;
+		if (table != null && table.rowNumerators != null) {
+			start = table.numerators.length;
+			System.arraycopy(table.numerators,      0, numerators,      0, start);
+			System.arraycopy(table.denominators,    0, denominators,    0, start);
+			System.arraycopy(table.rowNumerators,   0, rowNumerators,   0, start);
+			System.arraycopy(table.rowDenominators, 0, rowDenominators, 0, start);
+		}
+		for (int m = start; m <= n; m++) {
+			rowNumerators[m]   = BigInteger.ONE;
+			rowDenominators[m] = BigInteger.valueOf(m + 1);
+			for (int j = m; j >= 1; j--) {
+				// a[j-1] = j * (a[j-1] - a[j])
+				BigInteger numerator   = rowNumerators[j - 1].multiply(rowDenominators[j]).subtract(rowNumerators[j].multiply(rowDenominators[j - 1])).multiply(BigInteger.valueOf(j));
+				BigInteger denominator = rowDenominators[j - 1].multiply(rowDenominators[j]);
+				BigInteger gcd = numerator.gcd(denominator);
+				if (gcd.signum() != 0 && !gcd.equals(BigInteger.ONE)) {
+					numerator   = numerator.divide(gcd);
+					denominator = denominator.divide(gcd);
+				}
+				rowNumerators[j - 1]   = numerator;
+				rowDenominators[j - 1] = denominator;
+			}
+			numerators[m]   = rowNumerators[0];
+			denominators[m] = rowDenominators[0];
+		}
+		Table result = new Table(numerators, denominators, new BigInteger[][] { rowNumerators, rowDenominators });
 		return result;
 	}
-}
\ No newline at end of file
+	
+	private static void setImpliedValues(BigInteger[] numerators, BigInteger[] denominators) {
+		for (int i = 0; i < numerators.length; i++) {
+			if (i == 0) {
+				numerators[i]   = BigInteger.ONE;
+				denominators[i] = BigInteger.ONE;
+			}
+			else if (i == 1) {
+				numerators[i]   = BigInteger.ONE;
+				denominators[i] = BigInteger.valueOf(2);
+			}
+			else if (i % 2 == 1) {
+				numerators[i]   = BigInteger.ZERO;
+				denominators[i] = BigInteger.ONE;
+			}
+		}
+	}
+	
+	private static void writeBigInteger(DataOutputStream out, BigInteger value) throws IOException {
+		byte[] bytes = value.toByteArray();
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static BigInteger readBigInteger(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length <= 0) {
+			throw new IOException("Invalid Bernoulli number table entry length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new BigInteger(bytes);
+	}
+	
+	/**
+	 * An immutable snapshot of the table (a new one is published on each extension).
+	 */
+	private static class Table {
+		private BigInteger[] numerators;
+		private BigInteger[] denominators;
+		// the Akiyama-Tanigawa row after the last step, null if not known (e.g. for loaded tables).
+		private BigInteger[] rowNumerators;
+		private BigInteger[] rowDenominators;
+		
+		public Table(BigInteger[] numerators, BigInteger[] denominators, BigInteger[][] row) {
+			this.numerators      = numerators;
+			this.denominators    = denominators;
+			this.rowNumerators   = row == null ? null : row[0];
+			this.rowDenominators = row == null ? null : row[1];
+		}
+	}
+}
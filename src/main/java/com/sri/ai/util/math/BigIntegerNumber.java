@@ -37,8 +37,12 @@
  */
 package com.sri.ai.util.math;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.nio.ByteBuffer;
 
 /**
  * An alternative base class to java.math.BigInteger that doesn't commit
@@ -53,6 +57,7 @@ import java.math.MathContext;
 public abstract class BigIntegerNumber extends Number implements Comparable<BigIntegerNumber> {
 	private static final long serialVersionUID = 1;
 	
+	public abstract boolean isExact(); // i.e. not an approximation
 	public abstract BigIntegerNumber abs();
 	public abstract BigIntegerNumber add(BigIntegerNumber val);
 	public abstract int bitLength();
@@ -60,6 +65,8 @@ public abstract class BigIntegerNumber extends Number implements Comparable<BigI
 	public abstract BigIntegerNumber[] divideAndRemainder(BigIntegerNumber val);
 	public abstract BigIntegerNumber gcd(BigIntegerNumber val);
 	public abstract int intValueExact();
+	public abstract long longValueExact();
+	public abstract boolean fitsInLong(); // i.e. longValueExact() will not throw an ArithmeticException
 	public abstract BigIntegerNumber multiply(BigIntegerNumber val);
 	public abstract BigIntegerNumber negate();
 	public abstract BigIntegerNumber pow(int exponent);
@@ -68,4 +75,59 @@ public abstract class BigIntegerNumber extends Number implements Comparable<BigI
 	public abstract BigDecimal log(MathContext logMathContext);
 	public abstract BigIntegerNumber subtract(BigIntegerNumber val);
 	public abstract String toString(int radix);
+	
+	/**
+	 * Writes this number in a compact binary format that, unlike Java serialization,
+	 * takes only a few bytes for small values. Approximations keep their precision and exponent.
+	 * 
+	 * @param output
+	 *        the output to write to.
+	 * @throws IOException
+	 *         if the output cannot be written to.
+	 */
+	public void writeTo(DataOutput output) throws IOException {
+		NumberCodec.write(this, output);
+	}
+	
+	/**
+	 * Writes this number in the format of {@link #writeTo(DataOutput)}.
+	 * 
+	 * @param buffer
+	 *        the buffer to write to.
+	 * @throws java.nio.BufferOverflowException
+	 *         if the buffer does not have enough space left.
+	 */
+	public void writeTo(ByteBuffer buffer) {
+		NumberCodec.write(this, buffer);
+	}
+	
+	/**
+	 * Reads a number written by {@link #writeTo(DataOutput)}, in the representation it was written in.
+	 * 
+	 * @param input
+	 *        the input to read from.
+	 * @return the number read.
+	 * @throws IOException
+	 *         if the input cannot be read or does not hold a valid number.
+	 */
+	public static BigIntegerNumber readFrom(DataInput input) throws IOException {
+		BigIntegerNumber result = NumberCodec.readBigIntegerNumber(input);
+		return result;
+	}
+	
+	/**
+	 * Reads a number written by {@link #writeTo(ByteBuffer)}, in the representation it was written in.
+	 * 
+	 * @param buffer
+	 *        the buffer to read from.
+	 * @return the number read.
+	 * @throws java.nio.BufferUnderflowException
+	 *         if the buffer ends before the number does.
+	 * @throws IllegalArgumentException
+	 *         if the buffer does not hold a valid number.
+	 */
+	public static BigIntegerNumber readFrom(ByteBuffer buffer) {
+		BigIntegerNumber result = NumberCodec.readBigIntegerNumber(buffer);
+		return result;
+	}
 }
@@ -61,6 +61,10 @@ public class BigIntegerNumberApproximate extends BigIntegerNumber {
 	// NOTE: Based on BigDecimal restrictions on pow(int) argument. 
 	private static int MAX_INT_EXPONENT_VALUE =  999999999;
 	//
+	private static final int        LONG_MAX_DECIMAL_DIGITS = 19;
+	private static final BigDecimal LONG_MIN_VALUE          = BigDecimal.valueOf(Long.MIN_VALUE);
+	private static final BigDecimal LONG_MAX_VALUE          = BigDecimal.valueOf(Long.MAX_VALUE);
+	//
 	private BigDecimal value;
 	private MathContext mathContext;
 	
@@ -138,6 +142,11 @@ public class BigIntegerNumberApproximate extends BigIntegerNumber {
 	
 	//
 	// BigIntegerNumber
+	@Override
+	public boolean isExact() {
+		return false;
+	}
+	
 	@Override
 	public BigIntegerNumber abs() {
 		BigIntegerNumber result = this;
@@ -225,6 +234,36 @@ public class BigIntegerNumberApproximate extends BigIntegerNumber {
 		return result;
 	}
 	
+	@Override
+	public long longValueExact() {
+		long result = value.longValueExact();
+		return result;
+	}
+	
+	@Override
+	public boolean fitsInLong() {
+		boolean result;
+		// number of digits to the left of the decimal point
+		int integerDigits = value.precision() - value.scale();
+		if (value.signum() == 0) {
+			result = true;
+		}
+		else if (integerDigits > LONG_MAX_DECIMAL_DIGITS) {
+			result = false;
+		}
+		else if (value.scale() > 0 && value.stripTrailingZeros().scale() > 0) {
+			// has a fractional part (can be the case for approximations, e.g. logs).
+			result = false;
+		}
+		else if (integerDigits == LONG_MAX_DECIMAL_DIGITS) {
+			result = value.compareTo(LONG_MIN_VALUE) >= 0 && value.compareTo(LONG_MAX_VALUE) <= 0;
+		}
+		else {
+			result = true;
+		}
+		return result;
+	}
+	
 	@Override
 	public BigIntegerNumber multiply(BigIntegerNumber val) {
 		BigDecimal       product = value.multiply(approx(val), mathContext);
@@ -325,16 +364,35 @@ public class BigIntegerNumberApproximate extends BigIntegerNumber {
 		return result;
 	}
 	
+	BigDecimal getBigDecimal() {
+		return value;
+	}
+	
+	MathContext getMathContext() {
+		return mathContext;
+	}
+	
 	BigIntegerNumberExact toBigIntegerNumberExact() {
 		BigIntegerNumberExact result = new BigIntegerNumberExact(value.toBigIntegerExact());
 		return result;
 	}
 	
+	BigIntegerNumberApproximateBinary toBigIntegerNumberApproximateBinary() {
+		BigIntegerNumberApproximateBinary result = new BigIntegerNumberApproximateBinary(value);
+		return result;
+	}
+	
 	private BigDecimal approx(BigIntegerNumber val) {
+		if (val instanceof BigIntegerNumberHybrid) {
+			val = ((BigIntegerNumberHybrid) val).getValue();
+		}
 		BigDecimal result;
 		if (val instanceof BigIntegerNumberApproximate) {
 			result = ((BigIntegerNumberApproximate) val).value;
 		}
+		else if (val instanceof BigIntegerNumberApproximateBinary) {
+			result = ((BigIntegerNumberApproximateBinary)val).toBigIntegerNumberApproximate(mathContext).value;
+		}
 		else {
 			result = ((BigIntegerNumberExact)val).toBigIntegerNumberApproximate(mathContext).value;
 		}
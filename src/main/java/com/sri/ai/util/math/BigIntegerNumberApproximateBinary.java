@@ -0,0 +1,859 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * An implementation of BigIntegerNumber with approximate semantics, using a
+ * fixed width binary float representation: a 64 bit (long) mantissa, holding
+ * 63 significant bits, and a separate 32 bit (int) binary exponent. This makes
+ * arithmetic on very large (or small) magnitudes almost as fast as long
+ * arithmetic, without the overflow and underflow of doubles.<br>
+ * <br>
+ * Each arithmetic operation is rounded (to nearest, ties to even) to 63
+ * significant bits, i.e. has a relative error of at most 2^-63 (about 1.1e-19,
+ * or 19 significant decimal digits). Note that this bound is weaker than that
+ * of the default BigIntegerNumberApproximate precision (MathContext.DECIMAL128,
+ * i.e. 34 significant decimal digits, a relative error of about 1e-34), though
+ * stronger than that of MathContext.DECIMAL64 (16 digits), and that log() is
+ * computed in double precision (a relative error of about 1e-16). All longs
+ * are represented exactly. As with BigIntegerNumberApproximate, divide(),
+ * divideAndRemainder() and remainder() truncate towards zero, and are exact
+ * (as is gcd()) when both operands are integers that fit in a long. An
+ * ArithmeticException is thrown if a result's binary exponent does not fit
+ * in an int.
+ *
+ * Intended for use internally by Rational.
+ *
+ */
+@Beta
+public class BigIntegerNumberApproximateBinary extends BigIntegerNumber {
+	private static final long serialVersionUID = 1L;
+	//
+	// NOTE: loge = is used to indicate natural logarithm, i.e. log base e.
+	private static final double LOGE_2 = Math.log(2);
+	//
+	/**
+	 * Number of fraction bits in the mantissa, i.e. |this| = |mantissa|*2^(exponent-FRACTION_SIZE).
+	 */
+	static final int FRACTION_SIZE = Long.SIZE - 2;
+	/**
+	 * Digits of the BigDecimal approximation shown by toString() (enough to tell any two values apart).
+	 */
+	private static final MathContext TO_STRING_MATH_CONTEXT = new MathContext(20, RoundingMode.HALF_EVEN);
+	//
+	// NOTE: Based on BigDecimal restrictions on pow(int) argument.
+	private static final int MAX_INT_EXPONENT_VALUE =  999999999;
+	/**
+	 * Largest exponent for which powers of ten are computed exactly before
+	 * being rounded (as powers computed by squaring accumulate rounding errors).
+	 */
+	private static final int MAX_EXACT_POWER_OF_TEN_EXPONENT = 100000;
+	/**
+	 * Largest (absolute) binary exponent for which toBigDecimal() computes the
+	 * exact value before rounding it.
+	 */
+	private static final int MAX_EXACT_POWER_OF_TWO_EXPONENT = 4096;
+	/**
+	 * 2^-FRACTION_SIZE, exactly (as 1/2^k has a finite decimal expansion).
+	 */
+	private static final BigDecimal MANTISSA_ULP = BigDecimal.ONE.divide(new BigDecimal(BigInteger.ONE.shiftLeft(FRACTION_SIZE)));
+	//
+	private static final long LOW_32_BITS_MASK = 0xFFFFFFFFL;
+	//
+	/**
+	 * The mantissa, with 2^62 &lt;= |mantissa| &lt; 2^63, or 0 (in which case exponent is 0 too).
+	 */
+	private long mantissa;
+	/**
+	 * The binary exponent, with 2^exponent &lt;= |this| &lt; 2^(exponent+1).
+	 */
+	private int  exponent;
+	
+	public BigIntegerNumberApproximateBinary(long val) {
+		set(val, 0);
+	}
+	
+	public BigIntegerNumberApproximateBinary(BigInteger value) {
+		if (value.bitLength() < Long.SIZE) {
+			set(value.longValue(), 0);
+		}
+		else {
+			set(value.signum() < 0, value.abs(), false, 0);
+		}
+	}
+	
+	public BigIntegerNumberApproximateBinary(String strNumber, int radix) {
+		this(new BigInteger(strNumber, radix));
+	}
+	
+	public BigIntegerNumberApproximateBinary(BigDecimal value) {
+		// value = unscaled*10^(-scale)
+		BigInteger unscaled = value.unscaledValue();
+		if (value.signum() == 0) {
+			set(0, 0);
+		}
+		else if (value.scale() <= 0 && -value.scale() <= MAX_EXACT_POWER_OF_TEN_EXPONENT) {
+			set(value.signum() < 0, value.toBigInteger().abs(), false, 0);
+		}
+		else if (value.scale() > 0 && value.scale() <= MAX_EXACT_POWER_OF_TEN_EXPONENT) {
+			// correctly rounded from an integer quotient of at least 64 bits, whose remainder is the sticky bit.
+			BigInteger magnitude  = unscaled.abs();
+			BigInteger powerOfTen = BigInteger.TEN.pow(value.scale());
+			int        shift      = Math.max(Long.SIZE + powerOfTen.bitLength() - magnitude.bitLength(), 0);
+			BigInteger[] quotientAndRemainder = magnitude.shiftLeft(shift).divideAndRemainder(powerOfTen);
+			set(value.signum() < 0, quotientAndRemainder[0], quotientAndRemainder[1].signum() != 0, -shift);
+		}
+		else {
+			BigIntegerNumberApproximateBinary approximateUnscaled = new BigIntegerNumberApproximateBinary(unscaled);
+			BigIntegerNumberApproximateBinary powerOfTen          = powerOfTen(Math.abs((long) value.scale()));
+			BigIntegerNumberApproximateBinary approximateValue    = value.scale() < 0 ? approximateUnscaled.multiply(powerOfTen) : approximateUnscaled.quotient(powerOfTen);
+			this.mantissa = approximateValue.mantissa;
+			this.exponent = approximateValue.exponent;
+		}
+	}
+	
+	//
+	// Object
+	@Override
+	public boolean equals(Object o) {
+		boolean result = false;
+		if (o instanceof BigIntegerNumber) {
+			BigIntegerNumberApproximateBinary other = binary((BigIntegerNumber) o);
+			result = mantissa == other.mantissa && exponent == other.exponent;
+		}
+		return result;
+	}
+	
+	@Override
+	public int hashCode() {
+		int result = 31 * (int) (mantissa ^ (mantissa >>> 32)) + exponent;
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		String result = toBigDecimal(TO_STRING_MATH_CONTEXT).toString();
+		return result;
+	}
+	
+	//
+	// Number
+	@Override
+	public int intValue() {
+		int result = (int) longValue();
+		return result;
+	}
+	
+	@Override
+	public long longValue() {
+		// Note: like BigInteger, returns the low order 64 bits (of the integer part) if too big.
+		long result;
+		if (exponent < 0) {
+			result = 0;
+		}
+		else if (exponent <= FRACTION_SIZE) {
+			result = mantissa / (1L << (FRACTION_SIZE - exponent));
+		}
+		else if (exponent - FRACTION_SIZE >= Long.SIZE) {
+			result = 0;
+		}
+		else {
+			result = mantissa << (exponent - FRACTION_SIZE);
+		}
+		return result;
+	}
+	
+	@Override
+	public float floatValue() {
+		float result = (float) doubleValue();
+		return result;
+	}
+	
+	@Override
+	public double doubleValue() {
+		// note: the conversion of the mantissa is correctly rounded, and scalb() overflows to infinity.
+		double result = Math.scalb((double) mantissa, (int) Math.max((long) exponent - FRACTION_SIZE, Integer.MIN_VALUE));
+		return result;
+	}
+	
+	//
+	// Comparable
+	@Override
+	public int compareTo(BigIntegerNumber o) {
+		BigIntegerNumberApproximateBinary other = binary(o);
+		
+		int result;
+		int signum = signum();
+		if (signum != other.signum()) {
+			result = signum < other.signum() ? -1 : 1;
+		}
+		else if (signum == 0) {
+			result = 0;
+		}
+		else if (exponent != other.exponent) {
+			result = (exponent < other.exponent ? -1 : 1) * signum;
+		}
+		else {
+			result = Long.compare(mantissa, other.mantissa);
+		}
+		return result;
+	}
+	
+	//
+	// BigIntegerNumber
+	@Override
+	public boolean isExact() {
+		return false;
+	}
+	
+	@Override
+	public BigIntegerNumber abs() {
+		BigIntegerNumber result = this;
+		if (mantissa < 0) {
+			result = newNormalized(-mantissa, exponent);
+		}
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber add(BigIntegerNumber val) {
+		BigIntegerNumber result = add(binary(val), false);
+		return result;
+	}
+	
+	@Override
+	public int bitLength() {
+		// NOTE BigInteger.bitLength() is computed as:
+		// ceil(log2(this < 0 ? -this : this+1))
+		int result;
+		if (mantissa == 0) {
+			result = 0;
+		}
+		else if (mantissa == -(1L << FRACTION_SIZE)) {
+			// i.e. -2^exponent
+			result = exponent;
+		}
+		else {
+			result = Math.addExact(exponent, 1);
+		}
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber divide(BigIntegerNumber val) {
+		BigIntegerNumberApproximateBinary divisor = nonZeroDivisor(val);
+		
+		BigIntegerNumber result;
+		if (isLongInteger() && divisor.isLongInteger()) {
+			result = new BigIntegerNumberApproximateBinary(longIntegerValue() / divisor.longIntegerValue());
+		}
+		else {
+			result = truncatedQuotient(divisor);
+		}
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber[] divideAndRemainder(BigIntegerNumber val) {
+		BigIntegerNumberApproximateBinary divisor = nonZeroDivisor(val);
+		
+		BigIntegerNumber[] result;
+		if (isLongInteger() && divisor.isLongInteger()) {
+			long dividend = longIntegerValue();
+			long longDivisor = divisor.longIntegerValue();
+			result = new BigIntegerNumber[] {
+				new BigIntegerNumberApproximateBinary(dividend / longDivisor),
+				new BigIntegerNumberApproximateBinary(dividend % longDivisor)
+			};
+		}
+		else {
+			BigIntegerNumberApproximateBinary quotient = truncatedQuotient(divisor);
+			result = new BigIntegerNumber[] {
+				quotient,
+				subtract(quotient.multiply(divisor))
+			};
+		}
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber gcd(BigIntegerNumber val) {
+		BigIntegerNumberApproximateBinary other = binary(val);
+		
+		BigIntegerNumber result;
+		if (signum() == 0) {
+			result = other.abs();
+		}
+		else if (other.signum() == 0) {
+			result = abs();
+		}
+		else if (isLongInteger() && other.isLongInteger()) {
+			result = new BigIntegerNumberApproximateBinary(Rational.longGCD(Math.abs(longIntegerValue()), Math.abs(other.longIntegerValue())));
+		}
+		else {
+			// Analogous to BigIntegerNumberApproximate, which computes the gcd of the
+			// significant digits and scales it, we compute the gcd of the odd parts of
+			// the (integer) mantissas and scale it by the smaller power of two, i.e.:
+			// gcd(o1*2^k1, o2*2^k2) = gcd(o1, o2)*2^min(k1, k2), with o1, o2 odd.
+			long thisMantissa  = Math.abs(mantissa);
+			long otherMantissa = Math.abs(other.mantissa);
+			int  thisZeros     = Long.numberOfTrailingZeros(thisMantissa);
+			int  otherZeros    = Long.numberOfTrailingZeros(otherMantissa);
+			long gcd           = Rational.longGCD(thisMantissa >>> thisZeros, otherMantissa >>> otherZeros);
+			long scale         = Math.min((long) exponent - FRACTION_SIZE + thisZeros, (long) other.exponent - FRACTION_SIZE + otherZeros);
+			result = newNormalized(gcd, scale + FRACTION_SIZE);
+		}
+		return result;
+	}
+	
+	@Override
+	public int intValueExact() {
+		long value = longValueExact();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new ArithmeticException("Overflow");
+		}
+		int result = (int) value;
+		return result;
+	}
+	
+	@Override
+	public long longValueExact() {
+		if (!isIntegral()) {
+			throw new ArithmeticException("Rounding necessary");
+		}
+		if (!fitsInLong()) {
+			throw new ArithmeticException("Overflow");
+		}
+		long result = exponent == Long.SIZE - 1 ? Long.MIN_VALUE : longIntegerValue();
+		return result;
+	}
+	
+	@Override
+	public boolean fitsInLong() {
+		boolean result;
+		if (mantissa == 0) {
+			result = true;
+		}
+		else if (!isIntegral()) {
+			// has a fractional part (can be the case for approximations, e.g. logs).
+			result = false;
+		}
+		else if (exponent < Long.SIZE - 1) {
+			result = true;
+		}
+		else {
+			// i.e. Long.MIN_VALUE
+			result = mantissa == -(1L << FRACTION_SIZE) && exponent == Long.SIZE - 1;
+		}
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber multiply(BigIntegerNumber val) {
+		BigIntegerNumber result = multiply(binary(val));
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber negate() {
+		BigIntegerNumber result = newNormalized(-mantissa, exponent);
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber pow(int exponent) {
+		if (exponent < 0) {
+			// We are simulating a big integer, not a big decimal
+			throw new ArithmeticException("Negative exponent");
+		}
+		BigIntegerNumber result = powUnbounded(exponent);
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber remainder(BigIntegerNumber val) {
+		BigIntegerNumber result = divideAndRemainder(val)[1];
+		return result;
+	}
+	
+	@Override
+	public int signum() {
+		int result = Long.signum(mantissa);
+		return result;
+	}
+	
+	@Override
+	public BigDecimal log(MathContext logMathContext) {
+		if (mantissa < 0) {
+			throw new UnsupportedOperationException("Cannot compute the log for a negative number: "+toString());
+		}
+		if (mantissa == 0) {
+			throw new UnsupportedOperationException("Cannot compute the log of zero");
+		}
+		
+		// loge(mantissa*2^(exponent-FRACTION_SIZE)) = loge(mantissa) + (exponent-FRACTION_SIZE)*loge(2)
+		double log = Math.log(mantissa) + ((long) exponent - FRACTION_SIZE)*LOGE_2;
+		
+		BigDecimal result = new BigDecimal(log, logMathContext);
+		
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber subtract(BigIntegerNumber val) {
+		BigIntegerNumber result = add(binary(val), true);
+		return result;
+	}
+	
+	@Override
+	public String toString(int radix) {
+		String result;
+		if (isIntegral()) {
+			result = toBigInteger().toString(radix);
+		}
+		else if (radix == 10) {
+			result = toBigDecimal(MathContext.UNLIMITED).toPlainString();
+		}
+		else {
+			throw new ArithmeticException("Rounding necessary");
+		}
+		return result;
+	}
+	
+	/**
+	 * The mantissa, i.e. this = getMantissa()*2^(getExponent()-FRACTION_SIZE).
+	 */
+	long getMantissa() {
+		return mantissa;
+	}
+	
+	int getExponent() {
+		return exponent;
+	}
+	
+	/**
+	 * A number equal to mantissa*2^(exponent-FRACTION_SIZE), rounded if the mantissa is not normalized.
+	 */
+	static BigIntegerNumberApproximateBinary newNormalized(long mantissa, long exponent) {
+		BigIntegerNumberApproximateBinary result = new BigIntegerNumberApproximateBinary(0);
+		result.set(mantissa, exponent - FRACTION_SIZE);
+		return result;
+	}
+	
+	BigIntegerNumberExact toBigIntegerNumberExact() {
+		if (!isIntegral()) {
+			throw new ArithmeticException("Rounding necessary");
+		}
+		BigIntegerNumberExact result = new BigIntegerNumberExact(toBigInteger());
+		return result;
+	}
+	
+	BigIntegerNumberApproximate toBigIntegerNumberApproximate(MathContext mathContext) {
+		BigIntegerNumberApproximate result = new BigIntegerNumberApproximate(toBigDecimal(mathContext), mathContext);
+		return result;
+	}
+	
+	/**
+	 * This value as a BigDecimal, rounded to a given math context (which is
+	 * exact if the math context's precision is 0, i.e. unlimited).
+	 */
+	BigDecimal toBigDecimal(MathContext mathContext) {
+		BigDecimal result;
+		long shift = (long) exponent - FRACTION_SIZE;
+		if (shift >= 0 && shift <= MAX_EXACT_POWER_OF_TWO_EXPONENT) {
+			result = new BigDecimal(BigInteger.valueOf(mantissa).shiftLeft((int) shift)).round(mathContext);
+		}
+		else if (shift < 0 && shift >= -MAX_EXACT_POWER_OF_TWO_EXPONENT) {
+			// mantissa*2^shift = mantissa*5^-shift*10^shift, exactly.
+			result = new BigDecimal(BigInteger.valueOf(mantissa).multiply(BigInteger.valueOf(5).pow((int) -shift)), (int) -shift).round(mathContext);
+		}
+		else {
+			MathContext guardedMathContext = mathContext.getPrecision() == 0 ? mathContext : new MathContext(mathContext.getPrecision() + 3, RoundingMode.HALF_EVEN);
+			result = BigDecimal.valueOf(mantissa).multiply(MANTISSA_ULP).multiply(powerOfTwo(exponent, guardedMathContext), mathContext);
+		}
+		return result;
+	}
+	
+	//
+	// PRIVATE
+	//
+	/**
+	 * Sets this number to value*2^exponent, rounded to nearest (ties to even).
+	 */
+	private void set(long value, long exponent) {
+		// note: -Long.MIN_VALUE, as an unsigned long, is its magnitude.
+		set(value < 0, 0, value < 0 ? -value : value, false, exponent);
+	}
+	
+	/**
+	 * Sets this number to +/-magnitude*2^exponent, rounded to nearest (ties to
+	 * even), where sticky indicates whether the magnitude is truncated (i.e. the
+	 * exact magnitude is slightly more than the given one).
+	 */
+	private void set(boolean negative, BigInteger magnitude, boolean sticky, long exponent) {
+		// the top 64 bits are enough to round to FRACTION_SIZE + 1 bits, given the sticky bit.
+		int  shift = Math.max(magnitude.bitLength() - Long.SIZE, 0);
+		long top   = magnitude.shiftRight(shift).longValue();
+		if (shift > 0 && magnitude.getLowestSetBit() < shift) {
+			sticky = true;
+		}
+		set(negative, 0, top, sticky, exponent + shift);
+	}
+	
+	/**
+	 * Sets this number to +/-(high*2^64 + low)*2^exponent, for unsigned high
+	 * and low words, rounded to nearest (ties to even), where sticky indicates
+	 * whether the exact magnitude is slightly more than the given one. This is the
+	 * single place where results are rounded.
+	 */
+	private void set(boolean negative, long high, long low, boolean sticky, long exponent) {
+		if (high == 0 && low == 0) {
+			this.mantissa = 0;
+			this.exponent = 0;
+		}
+		else {
+			// normalize so that the top bit is bit FRACTION_SIZE of the high word
+			int shift = (high != 0 ? Long.numberOfLeadingZeros(high) : Long.SIZE + Long.numberOfLeadingZeros(low)) - 1;
+			if (shift < 0) {
+				sticky = sticky || (low & 1) != 0;
+				low    = (low >>> 1) | (high << (Long.SIZE - 1));
+				high >>>= 1;
+			}
+			else if (shift >= Long.SIZE) {
+				high = low << (shift - Long.SIZE);
+				low  = 0;
+			}
+			else if (shift > 0) {
+				high = (high << shift) | (low >>> (Long.SIZE - shift));
+				low <<= shift;
+			}
+			long normalizedExponent = exponent - shift + Long.SIZE + FRACTION_SIZE;
+			
+			// the low word holds the discarded bits: round up if more than half an ulp, or exactly half with an odd high word.
+			if (low < 0 && (low != Long.MIN_VALUE || sticky || (high & 1) != 0)) {
+				high++;
+				if (high == 1L << (FRACTION_SIZE + 1)) {
+					high = 1L << FRACTION_SIZE;
+					normalizedExponent++;
+				}
+			}
+			this.mantissa = negative ? -high : high;
+			this.exponent = (int) checkedExponent(normalizedExponent);
+		}
+	}
+	
+	private BigIntegerNumberApproximateBinary add(BigIntegerNumberApproximateBinary other, boolean subtract) {
+		long otherMantissa = subtract ? -other.mantissa : other.mantissa;
+		
+		BigIntegerNumberApproximateBinary result;
+		if (otherMantissa == 0) {
+			result = this;
+		}
+		else if (mantissa == 0) {
+			result = subtract ? newNormalized(otherMantissa, other.exponent) : other;
+		}
+		else {
+			// order the operands by magnitude
+			boolean thisIsLarger = exponent > other.exponent || (exponent == other.exponent && Math.abs(mantissa) >= Math.abs(otherMantissa));
+			long largerMantissa  = thisIsLarger ? mantissa : otherMantissa;
+			long smallerMantissa = thisIsLarger ? otherMantissa : mantissa;
+			int  largerExponent  = thisIsLarger ? exponent : other.exponent;
+			long exponentDifference = Math.abs((long) exponent - other.exponent);
+			if (exponentDifference > Long.SIZE) {
+				// the smaller operand is less than half an ulp of the larger one
+				result = thisIsLarger ? this : (subtract ? newNormalized(otherMantissa, other.exponent) : other);
+			}
+			else {
+				// the exact sum of the larger magnitude, as the high word, and the aligned smaller
+				// one fits in two words (whatever the signs), so it is rounded only once.
+				int  difference     = (int) exponentDifference;
+				long largerHigh     = Math.abs(largerMantissa);
+				long smallerHigh    = difference == Long.SIZE ? 0 : Math.abs(smallerMantissa) >>> difference;
+				long smallerLow     = difference == 0 ? 0 : Math.abs(smallerMantissa) << (Long.SIZE - difference);
+				long high;
+				long low;
+				if ((largerMantissa < 0) == (smallerMantissa < 0)) {
+					high = largerHigh + smallerHigh;
+					low  = smallerLow;
+				}
+				else {
+					high = largerHigh - smallerHigh - (smallerLow == 0 ? 0 : 1);
+					low  = -smallerLow;
+				}
+				result = new BigIntegerNumberApproximateBinary(0);
+				result.set(largerMantissa < 0, high, low, false, (long) largerExponent - FRACTION_SIZE - Long.SIZE);
+			}
+		}
+		return result;
+	}
+	
+	private BigIntegerNumberApproximateBinary multiply(BigIntegerNumberApproximateBinary other) {
+		BigIntegerNumberApproximateBinary result = new BigIntegerNumberApproximateBinary(0);
+		if (mantissa != 0 && other.mantissa != 0) {
+			long thisMagnitude  = Math.abs(mantissa);
+			long otherMagnitude = Math.abs(other.mantissa);
+			result.set((mantissa < 0) != (other.mantissa < 0), multiplyHigh(thisMagnitude, otherMagnitude), thisMagnitude * otherMagnitude, false, (long) exponent + other.exponent - 2 * FRACTION_SIZE);
+		}
+		return result;
+	}
+	
+	/**
+	 * The quotient this/divisor (divisor not zero), rounded to nearest.
+	 */
+	private BigIntegerNumberApproximateBinary quotient(BigIntegerNumberApproximateBinary divisor) {
+		BigIntegerNumberApproximateBinary result = new BigIntegerNumberApproximateBinary(0);
+		if (mantissa != 0) {
+			// two words of |mantissa|*2^(Long.SIZE-1)/|divisor mantissa|, whose final remainder is the sticky bit.
+			long   dividendMagnitude = Math.abs(mantissa);
+			long   divisorMagnitude  = Math.abs(divisor.mantissa);
+			long[] remainder         = new long[1];
+			long   high              = divideUnsigned(dividendMagnitude >>> 1, dividendMagnitude << (Long.SIZE - 1), divisorMagnitude, remainder);
+			long   low               = divideUnsigned(remainder[0], 0, divisorMagnitude, remainder);
+			result.set((mantissa < 0) != (divisor.mantissa < 0), high, low, remainder[0] != 0, (long) exponent - divisor.exponent - 2 * Long.SIZE + 1);
+		}
+		return result;
+	}
+	
+	private BigIntegerNumberApproximateBinary truncatedQuotient(BigIntegerNumberApproximateBinary divisor) {
+		BigIntegerNumberApproximateBinary quotient = quotient(divisor);
+		
+		BigIntegerNumberApproximateBinary result;
+		if (quotient.exponent >= FRACTION_SIZE) {
+			// already an integer
+			result = quotient;
+		}
+		else if (quotient.exponent < 0) {
+			result = new BigIntegerNumberApproximateBinary(0);
+		}
+		else {
+			// clear the fraction bits of the magnitude (which keeps its top bit)
+			long magnitude = Math.abs(quotient.mantissa) & (-1L << (FRACTION_SIZE - quotient.exponent));
+			result = newNormalized(quotient.mantissa < 0 ? -magnitude : magnitude, quotient.exponent);
+		}
+		return result;
+	}
+	
+	private BigIntegerNumberApproximateBinary nonZeroDivisor(BigIntegerNumber val) {
+		BigIntegerNumberApproximateBinary result = binary(val);
+		if (result.signum() == 0) {
+			throw new ArithmeticException("Division by zero");
+		}
+		return result;
+	}
+	
+	private BigIntegerNumberApproximateBinary powUnbounded(long exponent) {
+		// square and multiply, rounding at each step.
+		BigIntegerNumberApproximateBinary result = new BigIntegerNumberApproximateBinary(1);
+		BigIntegerNumberApproximateBinary base   = this;
+		while (exponent > 0) {
+			if ((exponent & 1) == 1) {
+				result = result.multiply(base);
+			}
+			exponent >>= 1;
+			if (exponent > 0) {
+				base = base.multiply(base);
+			}
+		}
+		return result;
+	}
+	
+	private static BigIntegerNumberApproximateBinary powerOfTen(long exponent) {
+		BigIntegerNumberApproximateBinary result;
+		if (exponent <= MAX_EXACT_POWER_OF_TEN_EXPONENT) {
+			// 10^exponent = 5^exponent * 2^exponent
+			BigIntegerNumberApproximateBinary powerOfFive = new BigIntegerNumberApproximateBinary(BigInteger.valueOf(5).pow((int) exponent));
+			result = newNormalized(powerOfFive.mantissa, powerOfFive.exponent + exponent);
+		}
+		else {
+			result = new BigIntegerNumberApproximateBinary(10).powUnbounded(exponent);
+		}
+		return result;
+	}
+	
+	private static long checkedExponent(long exponent) {
+		if (exponent > Integer.MAX_VALUE) {
+			throw new ArithmeticException("Overflow");
+		}
+		if (exponent < Integer.MIN_VALUE) {
+			throw new ArithmeticException("Underflow");
+		}
+		return exponent;
+	}
+	
+	/**
+	 * The high word of the (128 bit) product of two non-negative longs.
+	 */
+	private static long multiplyHigh(long x, long y) {
+		long xHigh = x >>> 32;
+		long xLow  = x & LOW_32_BITS_MASK;
+		long yHigh = y >>> 32;
+		long yLow  = y & LOW_32_BITS_MASK;
+		long lowProduct = xLow * yLow;
+		long middle1    = xHigh * yLow + (lowProduct >>> 32);
+		long middle2    = xLow * yHigh + (middle1 & LOW_32_BITS_MASK);
+		long result     = xHigh * yHigh + (middle1 >>> 32) + (middle2 >>> 32);
+		return result;
+	}
+	
+	/**
+	 * The quotient of the unsigned two word (high*2^64 + low) dividend by an
+	 * unsigned divisor, where high &lt; divisor (unsigned) so that it fits in a
+	 * long, with the remainder stored in remainder[0] (the long division by
+	 * 32 bit digits of Hacker's Delight, divlu).
+	 */
+	private static long divideUnsigned(long high, long low, long divisor, long[] remainder) {
+		final long digitBase = 1L << 32;
+		
+		// normalize the divisor so that its top bit is set
+		int shift = Long.numberOfLeadingZeros(divisor);
+		divisor <<= shift;
+		long divisorHigh = divisor >>> 32;
+		long divisorLow  = divisor & LOW_32_BITS_MASK;
+		long dividendTop = shift == 0 ? high : (high << shift) | (low >>> (Long.SIZE - shift));
+		long dividendLow = low << shift;
+		long dividendDigit1 = dividendLow >>> 32;
+		long dividendDigit0 = dividendLow & LOW_32_BITS_MASK;
+		
+		long quotientDigit1 = Long.divideUnsigned(dividendTop, divisorHigh);
+		long estimateRemainder = dividendTop - quotientDigit1 * divisorHigh;
+		while (Long.compareUnsigned(quotientDigit1, digitBase) >= 0 || Long.compareUnsigned(quotientDigit1 * divisorLow, digitBase * estimateRemainder + dividendDigit1) > 0) {
+			quotientDigit1--;
+			estimateRemainder += divisorHigh;
+			if (estimateRemainder >= digitBase) {
+				break;
+			}
+		}
+		
+		long partialRemainder = dividendTop * digitBase + dividendDigit1 - quotientDigit1 * divisor;
+		long quotientDigit0 = Long.divideUnsigned(partialRemainder, divisorHigh);
+		estimateRemainder = partialRemainder - quotientDigit0 * divisorHigh;
+		while (Long.compareUnsigned(quotientDigit0, digitBase) >= 0 || Long.compareUnsigned(quotientDigit0 * divisorLow, digitBase * estimateRemainder + dividendDigit0) > 0) {
+			quotientDigit0--;
+			estimateRemainder += divisorHigh;
+			if (estimateRemainder >= digitBase) {
+				break;
+			}
+		}
+		
+		remainder[0] = (partialRemainder * digitBase + dividendDigit0 - quotientDigit0 * divisor) >>> shift;
+		long result = quotientDigit1 * digitBase + quotientDigit0;
+		return result;
+	}
+	
+	private boolean isIntegral() {
+		boolean result;
+		if (mantissa == 0 || exponent >= FRACTION_SIZE) {
+			result = true;
+		}
+		else if (exponent < 0) {
+			result = false;
+		}
+		else {
+			result = (Math.abs(mantissa) & ((1L << (FRACTION_SIZE - exponent)) - 1)) == 0;
+		}
+		return result;
+	}
+	
+	/**
+	 * Whether this is an integer whose magnitude is less than 2^63.
+	 */
+	private boolean isLongInteger() {
+		boolean result = exponent < Long.SIZE - 1 && isIntegral();
+		return result;
+	}
+	
+	/**
+	 * The value of this, assuming isLongInteger().
+	 */
+	private long longIntegerValue() {
+		long result = mantissa / (1L << (FRACTION_SIZE - exponent));
+		return result;
+	}
+	
+	private BigInteger toBigInteger() {
+		// assumes isIntegral()
+		BigInteger result;
+		if (exponent < Long.SIZE - 1) {
+			result = BigInteger.valueOf(longIntegerValue());
+		}
+		else {
+			result = BigInteger.valueOf(mantissa).shiftLeft(exponent - FRACTION_SIZE);
+		}
+		return result;
+	}
+	
+	private BigIntegerNumberApproximateBinary binary(BigIntegerNumber val) {
+		if (val instanceof BigIntegerNumberHybrid) {
+			val = ((BigIntegerNumberHybrid) val).getValue();
+		}
+		BigIntegerNumberApproximateBinary result;
+		if (val instanceof BigIntegerNumberApproximateBinary) {
+			result = (BigIntegerNumberApproximateBinary) val;
+		}
+		else if (val instanceof BigIntegerNumberExact) {
+			result = ((BigIntegerNumberExact) val).toBigIntegerNumberApproximateBinary();
+		}
+		else {
+			result = ((BigIntegerNumberApproximate) val).toBigIntegerNumberApproximateBinary();
+		}
+		return result;
+	}
+	
+	// 2^exponent = 2^exponent, for exponent > 0, and 5^-exponent * 10^exponent otherwise.
+	private static BigDecimal powerOfTwo(int exponent, MathContext mathContext) {
+		BigDecimal base      = BigDecimal.valueOf(exponent < 0 ? 5 : 2);
+		long       remaining = Math.abs((long) exponent);
+		BigDecimal result    = BigDecimal.ONE;
+		while (remaining > 0) {
+			int chunk = (int) Math.min(remaining, MAX_INT_EXPONENT_VALUE);
+			result     = result.multiply(base.pow(chunk, mathContext), mathContext);
+			remaining -= chunk;
+		}
+		if (exponent < 0) {
+			result = result.scaleByPowerOfTen(exponent);
+		}
+		return result;
+	}
+}
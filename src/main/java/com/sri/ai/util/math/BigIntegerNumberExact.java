@@ -127,6 +127,11 @@ public class BigIntegerNumberExact extends BigIntegerNumber {
 	
 	//
 	// BigIntegerNumber
+	@Override
+	public boolean isExact() {
+		return true;
+	}
+	
 	@Override
 	public BigIntegerNumber abs() {
 		BigIntegerNumber result = this;
@@ -180,6 +185,18 @@ public class BigIntegerNumberExact extends BigIntegerNumber {
 		return result;
 	}
 	
+	@Override
+	public long longValueExact() {
+		long result = value.longValueExact();
+		return result;
+	}
+	
+	@Override
+	public boolean fitsInLong() {
+		boolean result = value.bitLength() < 64;
+		return result;
+	}
+	
 	@Override
 	public BigIntegerNumber multiply(BigIntegerNumber val) {
 		BigInteger       product = value.multiply(exact(val));
@@ -251,16 +268,31 @@ public class BigIntegerNumberExact extends BigIntegerNumber {
 		return result;
 	}
 	
+	BigInteger getBigInteger() {
+		return value;
+	}
+	
 	BigIntegerNumberApproximate toBigIntegerNumberApproximate(MathContext mathContext) {
 		BigIntegerNumberApproximate result = new BigIntegerNumberApproximate(new BigDecimal(value, mathContext), mathContext);
 		return result;
 	}
 	
+	BigIntegerNumberApproximateBinary toBigIntegerNumberApproximateBinary() {
+		BigIntegerNumberApproximateBinary result = new BigIntegerNumberApproximateBinary(value);
+		return result;
+	}
+	
 	private BigInteger exact(BigIntegerNumber val) {
+		if (val instanceof BigIntegerNumberHybrid) {
+			val = ((BigIntegerNumberHybrid) val).getValue();
+		}
 		BigInteger result;
 		if (val instanceof BigIntegerNumberExact) {
 			result = ((BigIntegerNumberExact) val).value;
 		}
+		else if (val instanceof BigIntegerNumberApproximateBinary) {
+			result = ((BigIntegerNumberApproximateBinary)val).toBigIntegerNumberExact().value;
+		}
 		else {
 			result = ((BigIntegerNumberApproximate)val).toBigIntegerNumberExact().value;
 		}
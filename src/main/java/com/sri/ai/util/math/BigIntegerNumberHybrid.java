@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * An implementation of BigIntegerNumber that is exact (i.e. a
+ * BigIntegerNumberExact) while its bit length does not exceed a given limit,
+ * and degrades to an approximation (i.e. a BigIntegerNumberApproximate with a
+ * given math context, or a BigIntegerNumberApproximateBinary) once it does.
+ * Results of operations involving an approximation are approximations too,
+ * and {@link #isExact()} indicates whether a value is still exact.<br>
+ * <br>
+ * Operations whose exact result is bound to exceed the limit (e.g. the
+ * product of two numbers whose bit lengths add up to more than the limit + 1,
+ * or a large power) are performed approximately to begin with, which caps the
+ * cost of arithmetic on exploding values.
+ * 
+ * Intended for use internally by Rational.
+ *
+ */
+@Beta
+public class BigIntegerNumberHybrid extends BigIntegerNumber {
+	private static final long serialVersionUID = 1L;
+	//
+	private BigIntegerNumber value; // a BigIntegerNumberExact, BigIntegerNumberApproximate or BigIntegerNumberApproximateBinary
+	private int              exactBitLengthLimit;
+	private MathContext      mathContext; // null if approximations are binary floats
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param value
+	 *        the value, as an exact or approximate (but not hybrid) number.
+	 * @param exactBitLengthLimit
+	 *        the bit length up to which values are kept exact.
+	 * @param mathContext
+	 *        the math context of approximations, or null if approximations
+	 *        are binary floats.
+	 */
+	public BigIntegerNumberHybrid(BigIntegerNumber value, int exactBitLengthLimit, MathContext mathContext) {
+		if (value instanceof BigIntegerNumberHybrid) {
+			value = ((BigIntegerNumberHybrid) value).value;
+		}
+		this.exactBitLengthLimit = exactBitLengthLimit;
+		this.mathContext         = mathContext;
+		this.value               = value.isExact() && value.bitLength() > exactBitLengthLimit ? approximation(value) : value;
+	}
+	
+	/**
+	 * The underlying exact or approximate number.
+	 * 
+	 * @return the underlying number.
+	 */
+	public BigIntegerNumber getValue() {
+		return value;
+	}
+	
+	int getExactBitLengthLimit() {
+		return exactBitLengthLimit;
+	}
+	
+	MathContext getMathContext() {
+		return mathContext;
+	}
+	
+	//
+	// Object
+	@Override
+	public boolean equals(Object o) {
+		boolean result = false;
+		if (o instanceof BigIntegerNumber) {
+			result = compareTo((BigIntegerNumber) o) == 0;
+		}
+		return result;
+	}
+	
+	@Override
+	public int hashCode() {
+		int result = value.hashCode();
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		String result = value.toString();
+		return result;
+	}
+	
+	//
+	// Number
+	@Override
+	public int intValue() {
+		int result = value.intValue();
+		return result;
+	}
+	
+	@Override
+	public long longValue() {
+		long result = value.longValue();
+		return result;
+	}
+	
+	@Override
+	public float floatValue() {
+		float result = value.floatValue();
+		return result;
+	}
+	
+	@Override
+	public double doubleValue() {
+		double result = value.doubleValue();
+		return result;
+	}
+	
+	//
+	// Comparable
+	@Override
+	public int compareTo(BigIntegerNumber o) {
+		BigIntegerNumber other = unwrap(o);
+		
+		int result;
+		if (value.isExact() && other.isExact()) {
+			result = value.compareTo(other);
+		}
+		else {
+			result = approximation(value).compareTo(approximation(other));
+		}
+		return result;
+	}
+	
+	//
+	// BigIntegerNumber
+	@Override
+	public boolean isExact() {
+		boolean result = value.isExact();
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber abs() {
+		BigIntegerNumber result = value.signum() < 0 ? newHybrid(value.abs()) : this;
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber add(BigIntegerNumber val) {
+		BigIntegerNumber other = unwrap(val);
+		
+		BigIntegerNumber result;
+		if (isExactWithin(other, Math.max(value.bitLength(), other.bitLength()) - 1)) {
+			result = newHybrid(value.add(other));
+		}
+		else {
+			result = newHybrid(approximation(value).add(approximation(other)));
+		}
+		return result;
+	}
+	
+	@Override
+	public int bitLength() {
+		int result = value.bitLength();
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber divide(BigIntegerNumber val) {
+		BigIntegerNumber other = unwrap(val);
+		
+		BigIntegerNumber result;
+		if (value.isExact() && other.isExact()) {
+			result = newHybrid(value.divide(other));
+		}
+		else {
+			result = newHybrid(approximation(value).divide(approximation(other)));
+		}
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber[] divideAndRemainder(BigIntegerNumber val) {
+		BigIntegerNumber other = unwrap(val);
+		
+		BigIntegerNumber[] quotientAndRemainder;
+		if (value.isExact() && other.isExact()) {
+			quotientAndRemainder = value.divideAndRemainder(other);
+		}
+		else {
+			quotientAndRemainder = approximation(value).divideAndRemainder(approximation(other));
+		}
+		BigIntegerNumber[] result = new BigIntegerNumber[] {newHybrid(quotientAndRemainder[0]), newHybrid(quotientAndRemainder[1])};
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber gcd(BigIntegerNumber val) {
+		BigIntegerNumber other = unwrap(val);
+		
+		BigIntegerNumber result;
+		if (value.isExact() && other.isExact()) {
+			result = newHybrid(value.gcd(other));
+		}
+		else {
+			result = newHybrid(approximation(value).gcd(approximation(other)));
+		}
+		return result;
+	}
+	
+	@Override
+	public int intValueExact() {
+		int result = value.intValueExact();
+		return result;
+	}
+	
+	@Override
+	public long longValueExact() {
+		long result = value.longValueExact();
+		return result;
+	}
+	
+	@Override
+	public boolean fitsInLong() {
+		boolean result = value.fitsInLong();
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber multiply(BigIntegerNumber val) {
+		BigIntegerNumber other = unwrap(val);
+		
+		BigIntegerNumber result;
+		// note: the bit length of a product is at least the sum of the bit lengths of its factors minus one.
+		if (isExactWithin(other, (long) value.bitLength() + other.bitLength() - 1)) {
+			result = newHybrid(value.multiply(other));
+		}
+		else {
+			result = newHybrid(approximation(value).multiply(approximation(other)));
+		}
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber negate() {
+		BigIntegerNumber result = newHybrid(value.negate());
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber pow(int exponent) {
+		BigIntegerNumber result;
+		// note: the bit length of a power is at least (the bit length of its base - 1) times the exponent + 1.
+		if (value.isExact() && ((long) value.bitLength() - 1) * exponent + 1 <= exactBitLengthLimit) {
+			result = newHybrid(value.pow(exponent));
+		}
+		else {
+			result = newHybrid(approximation(value).pow(exponent));
+		}
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber remainder(BigIntegerNumber val) {
+		BigIntegerNumber result = divideAndRemainder(val)[1];
+		return result;
+	}
+	
+	@Override
+	public int signum() {
+		int result = value.signum();
+		return result;
+	}
+	
+	@Override
+	public BigDecimal log(MathContext logMathContext) {
+		BigDecimal result = value.log(logMathContext);
+		return result;
+	}
+	
+	@Override
+	public BigIntegerNumber subtract(BigIntegerNumber val) {
+		BigIntegerNumber other = unwrap(val);
+		
+		BigIntegerNumber result;
+		if (isExactWithin(other, Math.max(value.bitLength(), other.bitLength()) - 1)) {
+			result = newHybrid(value.subtract(other));
+		}
+		else {
+			result = newHybrid(approximation(value).subtract(approximation(other)));
+		}
+		return result;
+	}
+	
+	@Override
+	public String toString(int radix) {
+		String result = value.toString(radix);
+		return result;
+	}
+	
+	//
+	// PRIVATE
+	//
+	private BigIntegerNumberHybrid newHybrid(BigIntegerNumber value) {
+		BigIntegerNumberHybrid result = new BigIntegerNumberHybrid(value, exactBitLengthLimit, mathContext);
+		return result;
+	}
+	
+	/**
+	 * Whether this and another number are exact and a result with a given
+	 * lower bound on its bit length may not exceed the limit (if it does
+	 * anyway, newHybrid() approximates it).
+	 */
+	private boolean isExactWithin(BigIntegerNumber other, long minimumResultBitLength) {
+		boolean result = value.isExact() && other.isExact() && minimumResultBitLength <= exactBitLengthLimit;
+		return result;
+	}
+	
+	private BigIntegerNumber approximation(BigIntegerNumber number) {
+		BigIntegerNumber result;
+		if (mathContext == null) {
+			if (number instanceof BigIntegerNumberApproximateBinary) {
+				result = number;
+			}
+			else if (number instanceof BigIntegerNumberExact) {
+				result = ((BigIntegerNumberExact) number).toBigIntegerNumberApproximateBinary();
+			}
+			else {
+				result = ((BigIntegerNumberApproximate) number).toBigIntegerNumberApproximateBinary();
+			}
+		}
+		else {
+			if (number instanceof BigIntegerNumberApproximate) {
+				result = number;
+			}
+			else if (number instanceof BigIntegerNumberExact) {
+				result = ((BigIntegerNumberExact) number).toBigIntegerNumberApproximate(mathContext);
+			}
+			else {
+				result = ((BigIntegerNumberApproximateBinary) number).toBigIntegerNumberApproximate(mathContext);
+			}
+		}
+		return result;
+	}
+	
+	private static BigIntegerNumber unwrap(BigIntegerNumber number) {
+		BigIntegerNumber result = number instanceof BigIntegerNumberHybrid ? ((BigIntegerNumberHybrid) number).value : number;
+		return result;
+	}
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Factorials, binomial and multinomial coefficients.<br>
+ * <br>
+ * Factorials up to {@link #FACTORIAL_TABLE_MAXIMUM_SIZE} are kept in a table
+ * that grows (thread safely) as larger ones are needed. Binomial and
+ * multinomial coefficients are computed from the exponents of the primes in
+ * their factorization, using Legendre's formula (the exponent of prime p in
+ * n! is the sum of floor(n / p^i) for i >= 1), so that the (much larger)
+ * factorials in their definitions are never formed. The same applies to
+ * factorials beyond the table.<br>
+ * <br>
+ * Coefficients are returned as {@link Rational}s of the current
+ * {@link ArithmeticContext}, and the products of prime powers are computed in
+ * its representation (so approximate contexts don't form exact products).
+ * {@link #logFactorial(int)} and {@link #logMultinomial(int...)} are double
+ * precision fast paths for when only magnitudes are needed.
+ */
+@Beta
+public final class Combinatorics {
+	/**
+	 * The maximum number of factorials (0!, 1!, ...) held in the factorial table.
+	 */
+	public static final int FACTORIAL_TABLE_MAXIMUM_SIZE = 1024;
+	//
+	private static final double LOG_SQRT_TWO_PI = 0.5 * Math.log(2 * Math.PI);
+	//
+	private static volatile BigInteger[] factorialTable    = new BigInteger[] { BigInteger.ONE };
+	private static volatile double[]     logFactorialTable = new double[] { 0.0 };
+	private static volatile int[]        primeTable        = new int[0];
+	private static volatile int          primeTableLimit   = 1; // primeTable holds all primes <= this limit
+
+	/**
+	 * Computes n!.
+	 * 
+	 * @param n
+	 *        a non negative integer.
+	 * @return n!.
+	 */
+	public static Rational factorial(int n) {
+		checkNonNegative(n);
+		Rational result;
+		if (n < FACTORIAL_TABLE_MAXIMUM_SIZE) {
+			result = rationalValueOf(factorialFromTable(n));
+		}
+		else {
+			int[] primes = primesUpTo(n);
+			int[] exponents = new int[primes.length];
+			for (int i = 0; i < primes.length && primes[i] <= n; i++) {
+				exponents[i] = legendreExponent(n, primes[i]);
+			}
+			result = productOfPrimePowers(primes, exponents);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the binomial coefficient <code>choose(n, k) = n! / (k! (n - k)!)</code>.
+	 * 
+	 * @param n
+	 *        the number of elements (non negative).
+	 * @param k
+	 *        the number of elements selected.
+	 * @return the binomial coefficient, which is 0 if k &lt; 0 or k &gt; n.
+	 */
+	public static Rational binomial(int n, int k) {
+		checkNonNegative(n);
+		Rational result;
+		if (k < 0 || k > n) {
+			result = Rational.ZERO;
+		}
+		else {
+			result = multinomial(new int[] { k, n - k }, 0, 2);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the binomial coefficient <code>choose(n, k)</code> exactly,
+	 * irrespective of the current {@link ArithmeticContext} (e.g. for ranking).
+	 * 
+	 * @param n
+	 *        the number of elements (non negative).
+	 * @param k
+	 *        the number of elements selected.
+	 * @return the binomial coefficient, which is 0 if k &lt; 0 or k &gt; n.
+	 */
+	public static BigInteger exactBinomial(int n, int k) {
+		checkNonNegative(n);
+		BigInteger result;
+		if (k < 0 || k > n) {
+			result = BigInteger.ZERO;
+		}
+		else if (n < FACTORIAL_TABLE_MAXIMUM_SIZE) {
+			result = factorialFromTable(n).divide(factorialFromTable(k).multiply(factorialFromTable(n - k)));
+		}
+		else {
+			k = Math.min(k, n - k);
+			result = BigInteger.ONE;
+			for (int i = 1; i <= k; i++) {
+				// note: exact, as the product of i consecutive integers is divisible by i!.
+				result = result.multiply(BigInteger.valueOf(n - k + i)).divide(BigInteger.valueOf(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the multinomial coefficient <code>(c_1 + ... + c_m)! / (c_1! ... c_m!)</code>.
+	 * 
+	 * @param counts
+	 *        the (non negative) class sizes c_1, ..., c_m.
+	 * @return the multinomial coefficient.
+	 */
+	public static Rational multinomial(int... counts) {
+		return multinomial(counts, 0, counts.length);
+	}
+
+	/**
+	 * Computes the multinomial coefficient of the class sizes in <code>counts[from, to)</code>.
+	 * 
+	 * @param counts
+	 *        an array of (non negative) class sizes.
+	 * @param from
+	 *        the index of the first class size.
+	 * @param to
+	 *        the index after the last class size.
+	 * @return the multinomial coefficient.
+	 */
+	public static Rational multinomial(int[] counts, int from, int to) {
+		int n = sum(counts, from, to);
+		int largest = 0;
+		for (int i = from; i < to; i++) {
+			largest = Math.max(largest, counts[i]);
+		}
+		Rational result;
+		// optimization: a single non empty class.
+		if (largest == n) {
+			result = Rational.ONE;
+		}
+		else {
+			int[] primes = primesUpTo(n);
+			int[] exponents = new int[primes.length];
+			for (int i = 0; i < primes.length && primes[i] <= n; i++) {
+				int prime = primes[i];
+				int exponent = legendreExponent(n, prime);
+				// note: the final exponent is non negative, so once 0 it stays 0.
+				for (int j = from; j < to && exponent > 0; j++) {
+					exponent -= legendreExponent(counts[j], prime);
+				}
+				exponents[i] = exponent;
+			}
+			result = productOfPrimePowers(primes, exponents);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the natural logarithm of n!.
+	 * 
+	 * @param n
+	 *        a non negative integer.
+	 * @return the natural logarithm of n!.
+	 */
+	public static double logFactorial(int n) {
+		checkNonNegative(n);
+		double result;
+		if (n < FACTORIAL_TABLE_MAXIMUM_SIZE) {
+			double[] table = logFactorialTable;
+			if (n >= table.length) {
+				table = growLogFactorialTable(n);
+			}
+			result = table[n];
+		}
+		else {
+			// Stirling's series, whose truncation error is far below double precision for n this large.
+			double x = n;
+			double inverse = 1.0 / x;
+			double inverseSquared = inverse * inverse;
+			result = (x + 0.5) * Math.log(x) - x + LOG_SQRT_TWO_PI + inverse * (1.0 / 12 - inverseSquared * (1.0 / 360 - inverseSquared / 1260));
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the natural logarithm of the multinomial coefficient of the given class sizes.
+	 * 
+	 * @param counts
+	 *        the (non negative) class sizes.
+	 * @return the natural logarithm of the multinomial coefficient.
+	 */
+	public static double logMultinomial(int... counts) {
+		return logMultinomial(counts, 0, counts.length);
+	}
+
+	/**
+	 * Computes the natural logarithm of the multinomial coefficient of the class sizes in <code>counts[from, to)</code>.
+	 * 
+	 * @param counts
+	 *        an array of (non negative) class sizes.
+	 * @param from
+	 *        the index of the first class size.
+	 * @param to
+	 *        the index after the last class size.
+	 * @return the natural logarithm of the multinomial coefficient.
+	 */
+	public static double logMultinomial(int[] counts, int from, int to) {
+		double result = logFactorial(sum(counts, from, to));
+		for (int i = from; i < to; i++) {
+			result -= logFactorial(counts[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the exponent of a prime in the factorization of n! (Legendre's formula).
+	 * 
+	 * @param n
+	 *        a non negative integer.
+	 * @param prime
+	 *        a prime number.
+	 * @return the exponent of the prime in n!.
+	 */
+	public static int legendreExponent(int n, int prime) {
+		int result = 0;
+		for (int quotient = n / prime; quotient > 0; quotient /= prime) {
+			result += quotient;
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE
+	//
+	private Combinatorics() {
+	}
+
+	private static void checkNonNegative(int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Argument must be non negative: " + n);
+		}
+	}
+
+	private static int sum(int[] counts, int from, int to) {
+		int result = 0;
+		for (int i = from; i < to; i++) {
+			checkNonNegative(counts[i]);
+			result = Math.addExact(result, counts[i]);
+		}
+		return result;
+	}
+
+	private static BigInteger factorialFromTable(int n) {
+		BigInteger[] table = factorialTable;
+		if (n >= table.length) {
+			table = growFactorialTable(n);
+		}
+		return table[n];
+	}
+
+	private static synchronized BigInteger[] growFactorialTable(int n) {
+		BigInteger[] result = factorialTable;
+		if (n >= result.length) {
+			int oldLength = result.length;
+			result = Arrays.copyOf(result, Math.min(Math.max(n + 1, 2 * oldLength), FACTORIAL_TABLE_MAXIMUM_SIZE));
+			for (int i = oldLength; i < result.length; i++) {
+				result[i] = result[i - 1].multiply(BigInteger.valueOf(i));
+			}
+			factorialTable = result;
+		}
+		return result;
+	}
+
+	private static synchronized double[] growLogFactorialTable(int n) {
+		double[] result = logFactorialTable;
+		if (n >= result.length) {
+			int oldLength = result.length;
+			result = Arrays.copyOf(result, Math.min(Math.max(n + 1, 2 * oldLength), FACTORIAL_TABLE_MAXIMUM_SIZE));
+			for (int i = oldLength; i < result.length; i++) {
+				result[i] = result[i - 1] + Math.log(i);
+			}
+			logFactorialTable = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the primes in increasing order, including all those <= n (and possibly larger ones).
+	 */
+	private static int[] primesUpTo(int n) {
+		if (n > primeTableLimit) {
+			growPrimeTable(n);
+		}
+		return primeTable;
+	}
+
+	private static synchronized void growPrimeTable(int n) {
+		if (n > primeTableLimit) {
+			// sieve of Eratosthenes
+			int limit = (int) Math.min(Integer.MAX_VALUE - 1, Math.max((long) n, 2L * primeTableLimit));
+			boolean[] composite = new boolean[limit + 1];
+			int[] primes = new int[16];
+			int count = 0;
+			for (int i = 2; i <= limit; i++) {
+				if (!composite[i]) {
+					if (count == primes.length) {
+						primes = Arrays.copyOf(primes, 2 * count);
+					}
+					primes[count++] = i;
+					for (long j = (long) i * i; j <= limit; j += i) {
+						composite[(int) j] = true;
+					}
+				}
+			}
+			// note: the table is published before its limit, so readers seeing the new limit see the new table.
+			primeTable      = Arrays.copyOf(primes, count);
+			primeTableLimit = limit;
+		}
+	}
+
+	private static Rational productOfPrimePowers(int[] primes, int[] exponents) {
+		ArithmeticContext context = ArithmeticContext.getCurrent();
+		List<BigIntegerNumber> factors = new ArrayList<BigIntegerNumber>();
+		// optimization: primes with exponent 1 (the majority) are multiplied together in longs.
+		long product = 1;
+		for (int i = 0; i < primes.length; i++) {
+			int exponent = exponents[i];
+			if (exponent == 1) {
+				if (product > Long.MAX_VALUE / primes[i]) {
+					factors.add(context.bigIntegerNumberValueOf(product));
+					product = 1;
+				}
+				product *= primes[i];
+			}
+			else if (exponent > 1) {
+				factors.add(context.bigIntegerNumberValueOf(primes[i]).pow(exponent));
+			}
+		}
+		
+		Rational result;
+		if (factors.isEmpty()) {
+			result = Rational.valueOf(product);
+		}
+		else {
+			if (product != 1) {
+				factors.add(context.bigIntegerNumberValueOf(product));
+			}
+			result = new Rational(balancedProduct(factors, 0, factors.size()));
+		}
+		return result;
+	}
+
+	private static BigIntegerNumber balancedProduct(List<BigIntegerNumber> factors, int from, int to) {
+		BigIntegerNumber result;
+		if (to - from == 1) {
+			result = factors.get(from);
+		}
+		else {
+			int middle = (from + to) >>> 1;
+			result = balancedProduct(factors, from, middle).multiply(balancedProduct(factors, middle, to));
+		}
+		return result;
+	}
+
+	private static Rational rationalValueOf(BigInteger value) {
+		Rational result;
+		if (value.bitLength() < Long.SIZE) {
+			result = Rational.valueOf(value.longValue());
+		}
+		else {
+			result = new Rational(ArithmeticContext.getCurrent().bigIntegerNumberValueOf(value));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.math.MathContext;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * An immutable number held in log-space, i.e. as a sign plus the (natural)
+ * log of its magnitude, intended for long multiplicative chains of (e.g.
+ * probability) values whose {@link Rational} representation would grow to
+ * thousands of bits. Multiplication, division and powers are O(1) operations
+ * on the log-magnitude, and addition is performed with the log-sum-exp trick,
+ * so that values far below {@link Double#MIN_VALUE} (or above
+ * {@link Double#MAX_VALUE}) are represented without underflow (or overflow).<br>
+ * <br>
+ * <b>Note:</b> the log-magnitude is held as a double, so conversion from a
+ * Rational rounds its log to double precision. Conversion to a Rational is
+ * exact with respect to that log-magnitude, up to the precision of
+ * exponentiating it in double precision.
+ */
+@Beta
+public class LogRational extends Number implements Comparable<LogRational> {
+	private static final long serialVersionUID = 1L;
+	//
+	private static final double      LOG_2                 = Math.log(2);
+	private static final MathContext LOG_MATH_CONTEXT      = MathContext.DECIMAL64;
+	//
+	public static final LogRational ZERO      = new LogRational(0, Double.NEGATIVE_INFINITY);
+	public static final LogRational ONE       = new LogRational(1, 0);
+	public static final LogRational MINUS_ONE = new LogRational(-1, 0);
+	//
+	private final int    sign;         // -1, 0 or 1
+	private final double logMagnitude; // natural log of the magnitude, Double.NEGATIVE_INFINITY if zero
+	
+	/**
+	 * Construct from a sign and the natural log of a magnitude.
+	 * 
+	 * @param sign
+	 *        the sign of the value (negative, zero or positive).
+	 * @param logMagnitude
+	 *        the natural log of the magnitude of the value (ignored if sign is zero).
+	 * @return the log-space number with the given sign and log-magnitude.
+	 */
+	public static LogRational fromLog(int sign, double logMagnitude) {
+		if (Double.isNaN(logMagnitude) || logMagnitude == Double.POSITIVE_INFINITY) {
+			throw new IllegalArgumentException("Illegal log magnitude: " + logMagnitude);
+		}
+		LogRational result;
+		if (sign == 0 || logMagnitude == Double.NEGATIVE_INFINITY) {
+			result = ZERO;
+		}
+		else {
+			result = new LogRational(Integer.signum(sign), logMagnitude);
+		}
+		return result;
+	}
+	
+	/**
+	 * Construct from a positive value's natural log.
+	 * 
+	 * @param logValue
+	 *        the natural log of a positive value (negative infinity for zero).
+	 * @return the log-space number whose natural log is the given value.
+	 */
+	public static LogRational fromLog(double logValue) {
+		return fromLog(1, logValue);
+	}
+	
+	public static LogRational valueOf(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new IllegalArgumentException("Cannot convert to a LogRational: " + value);
+		}
+		LogRational result = fromLog(value < 0 ? -1 : (value > 0 ? 1 : 0), Math.log(Math.abs(value)));
+		return result;
+	}
+	
+	public static LogRational valueOf(Rational value) {
+		LogRational result;
+		int sign = value.signum();
+		if (sign == 0) {
+			result = ZERO;
+		}
+		else {
+			double doubleValue = value.doubleValue();
+			if (doubleValue != 0 && !Double.isInfinite(doubleValue) && Math.abs(doubleValue) >= Double.MIN_NORMAL) {
+				// optimization: value is within the (normal) range of doubles.
+				result = new LogRational(sign, Math.log(Math.abs(doubleValue)));
+			}
+			else {
+				// log(n/d) = log(|n|) - log(d), computed without overflow/underflow for large n and d.
+				double logNumerator   = value.getNumerator().abs().log(LOG_MATH_CONTEXT).doubleValue();
+				double logDenominator = value.getDenominator().log(LOG_MATH_CONTEXT).doubleValue();
+				result = new LogRational(sign, logNumerator - logDenominator);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @return the sign of this number (-1, 0 or 1).
+	 */
+	public int signum() {
+		return sign;
+	}
+	
+	/**
+	 * 
+	 * @return the natural log of the magnitude of this number (negative infinity if zero).
+	 */
+	public double getLogMagnitude() {
+		return logMagnitude;
+	}
+	
+	public boolean isZero() {
+		return sign == 0;
+	}
+	
+	public boolean isOne() {
+		return sign == 1 && logMagnitude == 0;
+	}
+	
+	public LogRational multiply(LogRational that) {
+		LogRational result;
+		if (sign == 0 || that.sign == 0) {
+			result = ZERO;
+		}
+		else {
+			result = fromLog(sign * that.sign, logMagnitude + that.logMagnitude);
+		}
+		return result;
+	}
+	
+	public LogRational divide(LogRational that) {
+		if (that.sign == 0) {
+			throw new ArithmeticException("division by zero");
+		}
+		LogRational result;
+		if (sign == 0) {
+			result = ZERO;
+		}
+		else {
+			result = fromLog(sign * that.sign, logMagnitude - that.logMagnitude);
+		}
+		return result;
+	}
+	
+	public LogRational invert() {
+		return ONE.divide(this);
+	}
+	
+	public LogRational pow(int exponent) {
+		LogRational result;
+		if (exponent == 0) {
+			result = ONE;
+		}
+		else if (sign == 0) {
+			if (exponent < 0) {
+				throw new ArithmeticException("division by zero");
+			}
+			result = ZERO;
+		}
+		else {
+			int resultSign = (sign < 0 && exponent % 2 != 0) ? -1 : 1;
+			result = fromLog(resultSign, logMagnitude * exponent);
+		}
+		return result;
+	}
+	
+	public LogRational pow(double exponent) {
+		LogRational result;
+		if (exponent == Math.rint(exponent) && Math.abs(exponent) <= Integer.MAX_VALUE) {
+			result = pow((int) exponent);
+		}
+		else if (sign < 0) {
+			throw new ArithmeticException("Cannot raise a negative number to a non-integer exponent: " + exponent);
+		}
+		else if (sign == 0) {
+			if (exponent < 0) {
+				throw new ArithmeticException("division by zero");
+			}
+			result = ZERO;
+		}
+		else {
+			result = fromLog(1, logMagnitude * exponent);
+		}
+		return result;
+	}
+	
+	/**
+	 * Add using the log-sum-exp trick, i.e. for a &gt;= b:
+	 * log(e<sup>a</sup> + e<sup>b</sup>) = a + log(1 + e<sup>b - a</sup>).
+	 * 
+	 * @param that
+	 *        the number to be added to this one.
+	 * @return the sum of this and that.
+	 */
+	public LogRational add(LogRational that) {
+		LogRational result;
+		if (that.sign == 0) {
+			result = this;
+		}
+		else if (sign == 0) {
+			result = that;
+		}
+		else {
+			LogRational larger  = logMagnitude >= that.logMagnitude ? this : that;
+			LogRational smaller = larger == this ? that : this;
+			double      ratio   = Math.exp(smaller.logMagnitude - larger.logMagnitude); // in (0, 1]
+			if (sign == that.sign) {
+				result = fromLog(sign, larger.logMagnitude + Math.log1p(ratio));
+			}
+			else if (ratio == 1) {
+				result = ZERO;
+			}
+			else {
+				result = fromLog(larger.sign, larger.logMagnitude + Math.log1p(-ratio));
+			}
+		}
+		return result;
+	}
+	
+	public LogRational subtract(LogRational that) {
+		return add(that.negate());
+	}
+	
+	public LogRational negate() {
+		LogRational result = sign == 0 ? this : new LogRational(-sign, logMagnitude);
+		return result;
+	}
+	
+	public LogRational abs() {
+		LogRational result = sign >= 0 ? this : negate();
+		return result;
+	}
+	
+	/**
+	 * Convert to a Rational. The magnitude is computed as 2<sup>k</sup>m where
+	 * k = floor(log-magnitude / log(2)) and m = e<sup>log-magnitude - k log(2)</sup>
+	 * (i.e. in [1, 2)) is computed in double precision, so that magnitudes
+	 * outside of the range of doubles are converted without overflow or underflow.
+	 * 
+	 * @return a Rational representation of this number.
+	 */
+	public Rational toRational() {
+		Rational result;
+		if (sign == 0) {
+			result = Rational.ZERO;
+		}
+		else {
+			double twoExponent = Math.floor(logMagnitude / LOG_2);
+			if (Math.abs(twoExponent) > Integer.MAX_VALUE - 1) {
+				throw new ArithmeticException("Magnitude too large to be converted to a Rational: exp(" + logMagnitude + ")");
+			}
+			double mantissa = Math.exp(logMagnitude - twoExponent * LOG_2);
+			result = Rational.valueOf(mantissa).multiply(Rational.valueOf(2).pow((int) twoExponent));
+			if (sign < 0) {
+				result = result.negate();
+			}
+		}
+		return result;
+	}
+	
+	@Override
+	public double doubleValue() {
+		return sign * Math.exp(logMagnitude);
+	}
+	
+	@Override
+	public float floatValue() {
+		return (float) doubleValue();
+	}
+	
+	@Override
+	public long longValue() {
+		return (long) doubleValue();
+	}
+	
+	@Override
+	public int intValue() {
+		return (int) doubleValue();
+	}
+	
+	@Override
+	public int compareTo(LogRational that) {
+		int result;
+		if (sign != that.sign) {
+			result = sign < that.sign ? -1 : 1;
+		}
+		else if (sign == 0) {
+			result = 0;
+		}
+		else {
+			result = sign * Double.compare(logMagnitude, that.logMagnitude);
+		}
+		return result;
+	}
+	
+	@Override
+	public boolean equals(Object object) {
+		boolean result = false;
+		if (object == this) {
+			result = true;
+		}
+		else if (object instanceof LogRational) {
+			LogRational that = (LogRational) object;
+			result = sign == that.sign && (sign == 0 || Double.compare(logMagnitude, that.logMagnitude) == 0);
+		}
+		return result;
+	}
+	
+	@Override
+	public int hashCode() {
+		int result = sign == 0 ? 0 : 31 * sign + Double.hashCode(logMagnitude);
+		return result;
+	}
+	
+	/**
+	 * Represented as "0", "exp(x)" or "-exp(x)", where x is the log-magnitude.
+	 */
+	@Override
+	public String toString() {
+		String result;
+		if (sign == 0) {
+			result = "0";
+		}
+		else {
+			result = (sign < 0 ? "-" : "") + "exp(" + logMagnitude + ")";
+		}
+		return result;
+	}
+	
+	//
+	// PRIVATE
+	//
+	private LogRational(int sign, double logMagnitude) {
+		this.sign         = sign;
+		this.logMagnitude = logMagnitude;
+	}
+}
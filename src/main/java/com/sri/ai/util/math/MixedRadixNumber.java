@@ -48,6 +48,11 @@ import com.google.common.annotations.Beta;
  * >Mixed Radix Number Representations.</a>
  * 
  * Will proceed from right to left in sequence based on the radix values provided.
+ * <br>
+ * If the maximum value that can be represented by the radices fits in a long,
+ * the value is held as a long and maintained incrementally, otherwise it is
+ * held as a BigInteger. See {@link MixedRadixSpliterator} for enumerating
+ * (sub-ranges of) the values in parallel.
  * 
  * @author Ciaran O'Reilly
  */
@@ -62,6 +67,10 @@ public class MixedRadixNumber extends Number {
 	private int[] currentNumeralValue = null;
 	private BigInteger[] cachedRadixValues = null;
 	private boolean recalculateValue = false;
+	// optimization: used instead of the BigIntegers above if the maximum value fits in a long.
+	private boolean isLong = false;
+	private long longValue = 0;
+	private long longMaxValue = 0;
 
 	/**
 	 * Constructs a mixed radix number with a specified value and a specified
@@ -142,12 +151,40 @@ public class MixedRadixNumber extends Number {
 	 */
 	public BigInteger getValue() {
 		if (recalculateValue) {
-			value = getValueFor(currentNumeralValue);
+			value = isLong ? BigInteger.valueOf(longValue) : getValueFor(currentNumeralValue);
 			recalculateValue = false;
 		}
 		return value;
 	}
 
+	/**
+	 * 
+	 * @return true if the maximum value (and therefore the current value) of
+	 *         this mixed radix number fits in a long, in which case
+	 *         {@link #longValue()} is exact and does not allocate.
+	 */
+	public boolean isHeldAsLong() {
+		return isLong;
+	}
+
+	/**
+	 * 
+	 * @return a copy of the current numerals of the mixed radix number.
+	 */
+	public int[] getCurrentNumeralValues() {
+		int[] result = new int[currentNumeralValue.length];
+		System.arraycopy(currentNumeralValue, 0, result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * 
+	 * @return the radices of the mixed radix number (which must not be modified).
+	 */
+	int[] getRadices() {
+		return radices;
+	}
+
 	/**
 	 * Returns the maximum value which can be represented by the current array
 	 * of radices.
@@ -179,6 +216,11 @@ public class MixedRadixNumber extends Number {
 					"Radix values not same size as Radices.");
 		}
 
+		// optimization: accumulate in a long if the value can't overflow it.
+		if (isLong) {
+			return BigInteger.valueOf(getLongValueFor(radixValues));
+		}
+
 		BigInteger cvalue = BigInteger.ZERO;
 		BigInteger mvalue = BigInteger.ONE;
 		for (int i = radixValues.length-1; i >= 0; i--) {
@@ -203,7 +245,18 @@ public class MixedRadixNumber extends Number {
 	 *            the numerals of the mixed radix number
 	 */
 	public void setCurrentValueFor(int[] radixValues) {
-		this.value = getValueFor(radixValues);
+		if (isLong) {
+			if (radixValues.length != radices.length) {
+				throw new IllegalArgumentException(
+						"Radix values not same size as Radices.");
+			}
+			this.longValue = getLongValueFor(radixValues);
+			this.recalculateValue = true;
+		}
+		else {
+			this.value = getValueFor(radixValues);
+			this.recalculateValue = false;
+		}
 		System.arraycopy(radixValues, 0, this.currentNumeralValue, 0,
 				radixValues.length);
 	}
@@ -214,6 +267,10 @@ public class MixedRadixNumber extends Number {
 	 *         otherwise.
 	 */
     public boolean canIncrement() {
+        // optimization
+        if (isLong) {
+            return longValue < longMaxValue;
+        }
         boolean canIncrement = false;
         for (int i = 0; i < radices.length; i++) {
             if (currentNumeralValue[i] != radices[i] - 1) {
@@ -245,6 +302,8 @@ public class MixedRadixNumber extends Number {
 					break;
 				}
 			}
+			// note: incrementing always adds one to the value.
+			longValue++;
 			recalculateValue = true;
 		}
 
@@ -257,6 +316,10 @@ public class MixedRadixNumber extends Number {
 	 *         otherwise.
 	 */
 	public boolean canDecrement() {
+		// optimization
+		if (isLong) {
+			return longValue > 0;
+		}
 		boolean canDecrement = false;
 		for (int i = radices.length-1; i >= 0; i--) {
 	        if (currentNumeralValue[i] != 0) {
@@ -287,6 +350,8 @@ public class MixedRadixNumber extends Number {
 					break;
 				}
 			}
+			// note: decrementing always subtracts one from the value.
+			longValue--;
 			recalculateValue = true;
 		}
 
@@ -312,21 +377,33 @@ public class MixedRadixNumber extends Number {
 	// START-Number
 	@Override
 	public int intValue() {
+		if (isLong) {
+			return (int) longValue;
+		}
 		return getValue().intValue();
 	}
 
 	@Override
 	public long longValue() {
+		if (isLong) {
+			return longValue;
+		}
 		return getValue().longValue();
 	}
 
 	@Override
 	public float floatValue() {
+		if (isLong) {
+			return (float) longValue;
+		}
 		return getValue().floatValue();
 	}
 
 	@Override
 	public double doubleValue() {
+		if (isLong) {
+			return (double) longValue;
+		}
 		return getValue().doubleValue();
 	}
 
@@ -349,6 +426,19 @@ public class MixedRadixNumber extends Number {
 	//
 	// PRIVATE
 	//
+	
+	private long getLongValueFor(int[] radixValues) {
+		long result = 0;
+		for (int i = 0; i < radixValues.length; i++) {
+			if (radixValues[i] < 0 || radixValues[i] >= radices[i]) {
+				throw new IllegalArgumentException("Radix numeral value " + i
+						+ " is out of range for radix at this position");
+			}
+			// note: can't overflow as the result is <= longMaxValue.
+			result = result * radices[i] + radixValues[i];
+		}
+		return result;
+	}
 
 	/**
 	 * Sets the maximum value which can be represented by the current array of
@@ -391,6 +481,10 @@ public class MixedRadixNumber extends Number {
 			maxValue = maxValue.multiply(cachedRadixValues[radices[i]]);
 		}
 		maxValue = maxValue.subtract(BigInteger.ONE);
+		isLong = maxValue.bitLength() < Long.SIZE;
+		if (isLong) {
+			longMaxValue = maxValue.longValue();
+		}
 
 		if (value.max(maxValue) != maxValue && !value.equals(maxValue)) {
 			throw new IllegalArgumentException(
@@ -403,6 +497,15 @@ public class MixedRadixNumber extends Number {
 		currentNumeralValue = new int[radices.length];
 		// Now set the current numeral values based on
 		// the current value of the mixed radix number
+		if (isLong) {
+			longValue = value.longValue();
+			long longQuotient = longValue;
+			for (int i = radices.length -1; i >= 0; i--) {
+				currentNumeralValue[i] = (int) (longQuotient % radices[i]);
+				longQuotient = longQuotient / radices[i];
+			}
+			return;
+		}
 		BigInteger quotient = value;
 		for (int i = radices.length -1; i >= 0; i--) {
 			if (!quotient.equals(BigInteger.ZERO)) {
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.math.BigInteger;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link Spliterator} over the numerals of a range of values of a
+ * {@link MixedRadixNumber}, in increasing order, which splits the range into
+ * disjoint sub-ranges so that they can be enumerated in parallel (e.g. with
+ * {@link StreamSupport#stream(Spliterator, boolean)}).<br>
+ * <br>
+ * Each element is a new array, so elements may be kept or modified by their
+ * consumers.
+ */
+@Beta
+public class MixedRadixSpliterator implements Spliterator<int[]> {
+	//
+	private static final BigInteger LONG_MAX_VALUE = BigInteger.valueOf(Long.MAX_VALUE);
+	//
+	private MixedRadixNumber next;              // positioned at the next value to be returned
+	private long             remaining;         // if bigRemaining is null
+	private BigInteger       bigRemaining;      // only used if the number of remaining values does not fit in a long
+
+	/**
+	 * Constructs a spliterator over all the values that can be represented
+	 * with the given radices.
+	 * 
+	 * @param radices
+	 *            the radices of the mixed radix numbers.
+	 */
+	public MixedRadixSpliterator(int[] radices) {
+		this(new MixedRadixNumber(BigInteger.ZERO, radices));
+	}
+
+	/**
+	 * Constructs a spliterator over the values from the given mixed radix
+	 * number's current value up to its maximum allowed value. The given mixed
+	 * radix number is used (and modified) by the spliterator.
+	 * 
+	 * @param from
+	 *            a mixed radix number set to the first value to be returned.
+	 */
+	public MixedRadixSpliterator(MixedRadixNumber from) {
+		this(from, from.getMaxAllowedValue().subtract(from.getValue()).add(BigInteger.ONE));
+	}
+
+	/**
+	 * Constructs a spliterator over the values in [from, to).
+	 * 
+	 * @param from
+	 *            the first value to be returned.
+	 * @param to
+	 *            the value after the last value to be returned.
+	 * @param radices
+	 *            the radices of the mixed radix numbers.
+	 */
+	public MixedRadixSpliterator(BigInteger from, BigInteger to, int[] radices) {
+		this(new MixedRadixNumber(from, radices), to.subtract(from).max(BigInteger.ZERO));
+	}
+
+	//
+	// START-Spliterator
+	@Override
+	public boolean tryAdvance(Consumer<? super int[]> action) {
+		if (remaining == 0 && bigRemaining == null) {
+			return false;
+		}
+		action.accept(next.getCurrentNumeralValues());
+		advance();
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super int[]> action) {
+		// optimization: avoid the per element checks of tryAdvance when the count fits in a long.
+		if (bigRemaining == null) {
+			while (remaining > 0) {
+				action.accept(next.getCurrentNumeralValues());
+				remaining--;
+				if (remaining > 0) {
+					next.increment();
+				}
+			}
+		}
+		else {
+			while (tryAdvance(action)) {
+			}
+		}
+	}
+
+	@Override
+	public Spliterator<int[]> trySplit() {
+		BigInteger size = bigRemaining == null ? BigInteger.valueOf(remaining) : bigRemaining;
+		if (size.compareTo(BigInteger.ONE) <= 0) {
+			return null;
+		}
+		BigInteger half = size.shiftRight(1);
+		BigInteger from = next.getValue();
+		// the prefix is handed over, this spliterator continues with the suffix.
+		MixedRadixSpliterator result = new MixedRadixSpliterator(next, half);
+		next = new MixedRadixNumber(from.add(half), next.getRadices());
+		setRemaining(size.subtract(half));
+		return result;
+	}
+
+	@Override
+	public long estimateSize() {
+		return bigRemaining == null ? remaining : Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		int result = ORDERED | NONNULL | IMMUTABLE;
+		if (bigRemaining == null) {
+			result |= SIZED | SUBSIZED;
+		}
+		return result;
+	}
+	// END-Spliterator
+	//
+
+	//
+	// PRIVATE
+	//
+	private MixedRadixSpliterator(MixedRadixNumber next, BigInteger remaining) {
+		this.next = next;
+		setRemaining(remaining);
+	}
+
+	private void setRemaining(BigInteger remaining) {
+		if (remaining.compareTo(LONG_MAX_VALUE) <= 0) {
+			this.remaining    = remaining.longValue();
+			this.bigRemaining = null;
+		}
+		else {
+			this.remaining    = 0;
+			this.bigRemaining = remaining;
+		}
+	}
+
+	private void advance() {
+		if (bigRemaining == null) {
+			remaining--;
+		}
+		else {
+			setRemaining(bigRemaining.subtract(BigInteger.ONE));
+		}
+		if (remaining > 0 || bigRemaining != null) {
+			next.increment();
+		}
+	}
+}
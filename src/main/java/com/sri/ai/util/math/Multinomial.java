@@ -37,12 +37,11 @@
  */
 package com.sri.ai.util.math;
 
-import static com.sri.ai.util.Util.binomialCoefficient;
-import static com.sri.ai.util.Util.factorial;
 import static com.sri.ai.util.Util.join;
 import static com.sri.ai.util.Util.myAssert;
 import static com.sri.ai.util.math.Rational.ONE;
 
+import java.math.BigInteger;
 import java.util.Collections;
 import java.util.List;
 
@@ -180,6 +179,16 @@ public class Multinomial implements Cloneable {
 		this.counters = counters;
 	}
 	
+	/**
+	 * Constructs a multinomial as {@link #Multinomial(int[])}, with an already known multinomial coefficient.
+	 * @param counters an array with the counters for each class
+	 * @param choose the multinomial coefficient of the counters
+	 */
+	Multinomial(int[] counters, Rational choose) {
+		this(counters, 0);
+		this.choose = choose;
+	}
+
 	@Override
 	public Multinomial clone() {
 		Multinomial result = new Multinomial(counters.clone());
@@ -253,6 +262,117 @@ public class Multinomial implements Cloneable {
 		return result;
 	}
 
+	///////////////////////////////////////////// RANKING ////////////////////////////////
+
+	/**
+	 * Returns the number of distributions of n objects into m classes, that is,
+	 * <code>choose(n + m - 1, m - 1)</code>.
+	 * @param n the number of objects
+	 * @param m the number of classes (at least 1)
+	 * @return the number of distributions of n objects into m classes.
+	 */
+	public static BigInteger numberOfDistributions(int n, int m) {
+		return Combinatorics.exactBinomial(n + m - 1, m - 1);
+	}
+
+	/**
+	 * Returns the position (from 0) of this multinomial's distribution in the order
+	 * generated by {@link #iterate()} from the first distribution of <code>getN()</code> objects
+	 * in <code>getM()</code> classes.
+	 * @return the rank of this multinomial's distribution.
+	 */
+	public BigInteger rank() {
+		return rank(counters, myIndex);
+	}
+
+	/**
+	 * Returns the position (from 0) of a distribution in the order generated by {@link #iterate()}.
+	 * @param counters the counters of the distribution
+	 * @return the rank of the distribution.
+	 */
+	public static BigInteger rank(int[] counters) {
+		return rank(counters, 0);
+	}
+
+	/**
+	 * Returns the distribution at a given position in the order generated by {@link #iterate()}
+	 * (the inverse of {@link #rank(int[])}).
+	 * @param rank the position of the distribution, in <code>[0, numberOfDistributions(n, m))</code>
+	 * @param n the number of objects
+	 * @param m the number of classes (at least 1)
+	 * @return the counters of the distribution at the given rank.
+	 */
+	public static int[] unrank(BigInteger rank, int n, int m) {
+		myAssert(() -> m > 0, () -> "number of classes must be greater than 0.");
+		if (rank.signum() < 0 || rank.compareTo(numberOfDistributions(n, m)) >= 0) {
+			throw new IllegalArgumentException("rank " + rank + " is out of range for " + n + " objects in " + m + " classes");
+		}
+		int[] result = new int[m];
+		int remaining = n;
+		for (int i = 0; i != m - 1; i++) {
+			// the largest counter whose preceding distributions are <= rank (binary search, as they increase with the counter).
+			int classes = m - i;
+			BigInteger all = Combinatorics.exactBinomial(remaining + classes - 1, classes - 1);
+			int low = 0;
+			int high = remaining;
+			while (low < high) {
+				int middle = (low + high + 1) >>> 1;
+				if (all.subtract(Combinatorics.exactBinomial(remaining - middle + classes - 1, classes - 1)).compareTo(rank) <= 0) {
+					low = middle;
+				}
+				else {
+					high = middle - 1;
+				}
+			}
+			result[i] = low;
+			rank = rank.subtract(all.subtract(Combinatorics.exactBinomial(remaining - low + classes - 1, classes - 1)));
+			remaining -= low;
+		}
+		result[m - 1] = remaining;
+		return result;
+	}
+
+	/**
+	 * Iterates the counters of a distribution to their successor in the order of {@link #iterate()},
+	 * without the need for a Multinomial object.
+	 * @param counters the counters of the distribution, modified in place
+	 * @return the position of the last non zero counter before iterating (so that the coefficient of the successor is
+	 * the coefficient of the original distribution times <code>counters[t] / (counters[t - 1] + 1)</code>, in terms of the original counters),
+	 * or -1 if the distribution has no successor (and the counters are unchanged).
+	 */
+	static int iterate(int[] counters) {
+		int last = counters.length - 1;
+		int result = last;
+		while (result > 0 && counters[result] == 0) {
+			result--;
+		}
+		if (result > 0) {
+			int moved = counters[result];
+			counters[result - 1]++;
+			counters[result] = 0;
+			counters[last] = moved - 1;
+		}
+		else {
+			result = -1;
+		}
+		return result;
+	}
+
+	private static BigInteger rank(int[] counters, int from) {
+		BigInteger result = BigInteger.ZERO;
+		int remaining = 0;
+		for (int i = from; i != counters.length; i++) {
+			remaining += counters[i];
+		}
+		for (int i = from; i < counters.length - 1; i++) {
+			// the number of distributions with the same preceding counters and a smaller i-th counter.
+			int classes = counters.length - i;
+			result = result.add(Combinatorics.exactBinomial(remaining + classes - 1, classes - 1)).subtract(Combinatorics.exactBinomial(remaining - counters[i] + classes - 1, classes - 1));
+			remaining -= counters[i];
+		}
+		return result;
+	}
+
 	///////////////////////////////////// MULTINOMIAL COEFFICIENT ////////////////////////////////
 
 	private Rational choose = null;
@@ -296,9 +416,8 @@ public class Multinomial implements Cloneable {
 				
 			}
 			else {
-				Rational nFactorial = factorialOfN();
-				Rational productOfFactorials = productOfFactorials();
-				choose = nFactorial.divide(productOfFactorials);
+				// optimization: computed from prime exponents, without forming n! and the product of factorials.
+				choose = Combinatorics.multinomial(counters, myIndex, counters.length);
 
 				//		System.out.println("choose of : " + join(Ints.asList(counters)));	
 				//		System.out.println("n : " + getN());	
@@ -312,6 +431,15 @@ public class Multinomial implements Cloneable {
 		return choose;
 	}
 
+	/** 
+	 * Returns the natural logarithm of the multinomial coefficient for this distribution,
+	 * a double precision fast path for when only its magnitude is needed.
+	 * @return the natural logarithm of the multinomial coefficient for this distribution.
+	 */
+	public double logChoose() {
+		return Combinatorics.logMultinomial(counters, myIndex, counters.length);
+	}
+
 	private Rational binomialCoefficientOfFirstClass = null;
 	
 	/** 
@@ -322,7 +450,7 @@ public class Multinomial implements Cloneable {
 	 */
 	private Rational binomialCoefficientOfFirstClass() {
 		if (binomialCoefficientOfFirstClass == null) {
-			binomialCoefficientOfFirstClass = binomialCoefficient(getN(), counters[myIndex]);
+			binomialCoefficientOfFirstClass = Combinatorics.binomial(getN(), counters[myIndex]);
 			System.out.println("Computed binomial coefficient of n = " + getN() + " and n_0 = " + counters[myIndex] + " resulting in " + binomialCoefficientOfFirstClass);	
 		}
 		return binomialCoefficientOfFirstClass;
@@ -333,7 +461,7 @@ public class Multinomial implements Cloneable {
 	/** Calculates (at most once per object) the factorial of the number of objects. */
 	private Rational factorialOfN() {
 		if (factorialOfN == null) {
-			factorialOfN = factorial(getN());
+			factorialOfN = Combinatorics.factorial(getN());
 		}
 		return factorialOfN;
 	}
@@ -350,7 +478,7 @@ public class Multinomial implements Cloneable {
 				productOfFactorials = factorialOfN();
 			}
 			else {
-				Rational factorialOfMyFirstClassSize = factorial(counters[myIndex]);
+				Rational factorialOfMyFirstClassSize = Combinatorics.factorial(counters[myIndex]);
 				Rational productOfFactorialOfRemainingClassesSizes = subMultinomial.productOfFactorials();
 				productOfFactorials = factorialOfMyFirstClassSize.multiply(productOfFactorialOfRemainingClassesSizes);
 			}
@@ -38,6 +38,8 @@
 package com.sri.ai.util.math;
 
 import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.sri.ai.util.collect.EZIterator;
 
@@ -77,6 +79,20 @@ public class MultinomialIterator extends EZIterator<Multinomial> {
 		this(new Multinomial(counters));
 	}
 	
+	/**
+	 * Returns a stream over all the multinomials of n objects into m classes, in the order of this iterator.
+	 * Unlike this iterator, each element is a new {@link Multinomial} (with its coefficient already computed),
+	 * and a parallel stream partitions the distributions into balanced ranges (see {@link MultinomialSpliterator}).
+	 * @param n the number of elements being distributed
+	 * @param m the number of classes into which elements are being distributed
+	 * @param parallel whether the returned stream is parallel
+	 * @return a stream over the multinomials of n objects into m classes.
+	 */
+	public static Stream<Multinomial> stream(int n, int m, boolean parallel) {
+		Stream<Multinomial> result = StreamSupport.stream(new MultinomialSpliterator(n, m), parallel);
+		return result;
+	}
+	
 	@Override
 	protected Multinomial calculateNext() {
 		Multinomial result;
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.math.BigInteger;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link Spliterator} over (a range of) the distributions of n objects into m
+ * classes, in the order generated by {@link Multinomial#iterate()}, which
+ * splits its range into balanced halves (using {@link Multinomial#unrank(BigInteger, int, int)})
+ * so that the distributions can be enumerated in parallel (e.g. with
+ * {@link StreamSupport#stream(Spliterator, boolean)}).<br>
+ * <br>
+ * Each spliterator updates the multinomial coefficient of its current
+ * distribution incrementally (moving to the successor multiplies it by a
+ * small rational), recomputing it from scratch only when counters other than
+ * the last two change, so that rounding errors can't accumulate in
+ * approximate contexts. Coefficients are computed in the
+ * {@link ArithmeticContext} current when the spliterator was constructed.<br>
+ * <br>
+ * Each element is a new {@link Multinomial}, with its coefficient already known.
+ */
+@Beta
+public class MultinomialSpliterator implements Spliterator<Multinomial> {
+	//
+	private static final BigInteger LONG_MAX_VALUE = BigInteger.valueOf(Long.MAX_VALUE);
+	//
+	private int               n;
+	private int[]             counters;     // of the next distribution to be returned
+	private Rational          coefficient;  // of counters, null if not yet computed
+	private long              remaining;    // if bigRemaining is null
+	private BigInteger        bigRemaining; // only used if the number of remaining distributions does not fit in a long
+	private ArithmeticContext context;
+
+	/**
+	 * Constructs a spliterator over all the distributions of n objects into m classes.
+	 * 
+	 * @param n
+	 *            the number of objects.
+	 * @param m
+	 *            the number of classes (at least 1).
+	 */
+	public MultinomialSpliterator(int n, int m) {
+		this(BigInteger.ZERO, Multinomial.numberOfDistributions(n, m), n, m);
+	}
+
+	/**
+	 * Constructs a spliterator over the distributions of n objects into m
+	 * classes with ranks in [from, to).
+	 * 
+	 * @param from
+	 *            the rank of the first distribution to be returned.
+	 * @param to
+	 *            the rank after the last distribution to be returned.
+	 * @param n
+	 *            the number of objects.
+	 * @param m
+	 *            the number of classes (at least 1).
+	 */
+	public MultinomialSpliterator(BigInteger from, BigInteger to, int n, int m) {
+		this(n, from.compareTo(to) < 0 ? Multinomial.unrank(from, n, m) : null, null, to.subtract(from).max(BigInteger.ZERO), ArithmeticContext.getCurrent());
+	}
+
+	//
+	// START-Spliterator
+	@Override
+	public boolean tryAdvance(Consumer<? super Multinomial> action) {
+		if (remaining == 0 && bigRemaining == null) {
+			return false;
+		}
+		action.accept(context.compute(() -> currentAndAdvance()));
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super Multinomial> action) {
+		context.compute(() -> {
+			while (remaining > 0 || bigRemaining != null) {
+				action.accept(currentAndAdvance());
+			}
+			return null;
+		});
+	}
+
+	@Override
+	public Spliterator<Multinomial> trySplit() {
+		BigInteger size = bigRemaining == null ? BigInteger.valueOf(remaining) : bigRemaining;
+		if (size.compareTo(BigInteger.ONE) <= 0) {
+			return null;
+		}
+		BigInteger half = size.shiftRight(1);
+		// the prefix is handed over, this spliterator continues with the suffix.
+		MultinomialSpliterator result = new MultinomialSpliterator(n, counters, coefficient, half, context);
+		counters    = Multinomial.unrank(Multinomial.rank(counters).add(half), n, counters.length);
+		coefficient = null;
+		setRemaining(size.subtract(half));
+		return result;
+	}
+
+	@Override
+	public long estimateSize() {
+		return bigRemaining == null ? remaining : Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		int result = ORDERED | NONNULL | IMMUTABLE;
+		if (bigRemaining == null) {
+			result |= SIZED | SUBSIZED;
+		}
+		return result;
+	}
+	// END-Spliterator
+	//
+
+	//
+	// PRIVATE
+	//
+	private MultinomialSpliterator(int n, int[] counters, Rational coefficient, BigInteger remaining, ArithmeticContext context) {
+		this.n           = n;
+		this.counters    = counters;
+		this.coefficient = coefficient;
+		this.context     = context;
+		setRemaining(remaining);
+	}
+
+	private void setRemaining(BigInteger remaining) {
+		if (remaining.compareTo(LONG_MAX_VALUE) <= 0) {
+			this.remaining    = remaining.longValue();
+			this.bigRemaining = null;
+		}
+		else {
+			this.remaining    = 0;
+			this.bigRemaining = remaining;
+		}
+	}
+
+	private Multinomial currentAndAdvance() {
+		if (coefficient == null) {
+			coefficient = Combinatorics.multinomial(counters);
+		}
+		Multinomial result = new Multinomial(counters.clone(), coefficient);
+
+		if (bigRemaining == null) {
+			remaining--;
+		}
+		else {
+			setRemaining(bigRemaining.subtract(BigInteger.ONE));
+		}
+		if (remaining > 0 || bigRemaining != null) {
+			int last = counters.length - 1;
+			int moved = counters[last];
+			int position = Multinomial.iterate(counters);
+			if (position == last) {
+				// optimization: only the last two counters changed, from (a, moved) to (a + 1, moved - 1).
+				coefficient = coefficient.multiply(Rational.valueOf(moved, counters[last - 1]));
+			}
+			else {
+				coefficient = null;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Compact binary encoding of {@link Rational}s and {@link BigIntegerNumber}s,
+ * used by their writeTo() and readFrom() methods.<br>
+ * <br>
+ * A number is written as a tag byte followed by:
+ * <ul>
+ * <li>an exact number that fits in a long: its value as a zigzag varint;
+ * <li>any other exact number: the length of its magnitude as a varint followed by the (big-endian) magnitude bytes, its sign being in the tag;
+ * <li>a decimal approximation: its precision (varint) and rounding mode (byte), its scale (zigzag varint) and its unscaled value as an exact number;
+ * <li>a binary approximation: its (long) mantissa (8 bytes) and its exponent (zigzag varint);
+ * <li>a hybrid number: its exact bit length limit (varint), the precision and rounding mode of its approximations (precision 0 if binary) and its value.
+ * </ul>
+ * A Rational is written either as its long numerator (zigzag varint) and denominator (varint) or,
+ * if not held as longs, as its reduced numerator and denominator. Numbers are read back
+ * in their recorded representation (exponent and precision included), whatever the
+ * {@link ArithmeticContext} in place when reading; Rationals should be read in the context
+ * they were written in, as their arithmetic (and normalization) follows the current context.<br>
+ * <br>
+ * Small values take 3 bytes or less, against the ~200 bytes of Java serialization of a single Rational.
+ */
+@Beta
+final class NumberCodec {
+	
+	private static final int RATIONAL_LONGS   = 0;
+	private static final int RATIONAL_NUMBERS = 1;
+	
+	private static final int EXACT_LONG         = 0;
+	private static final int EXACT_POSITIVE     = 1;
+	private static final int EXACT_NEGATIVE     = 2;
+	private static final int APPROXIMATE        = 3;
+	private static final int APPROXIMATE_BINARY = 4;
+	private static final int HYBRID             = 5;
+	
+	private static final RoundingMode[] ROUNDING_MODES = RoundingMode.values();
+	
+	/**
+	 * The minimal output needed by the encoding, so that it is shared by DataOutput and ByteBuffer.
+	 */
+	private interface Output {
+		void writeByte(int value) throws IOException;
+		void write(byte[] bytes, int offset, int length) throws IOException;
+		void writeLong(long value) throws IOException;
+	}
+	
+	/**
+	 * The minimal input needed by the encoding, so that it is shared by DataInput and ByteBuffer.
+	 */
+	private interface Input {
+		byte readByte() throws IOException;
+		void readFully(byte[] bytes) throws IOException;
+		long readLong() throws IOException;
+	}
+	
+	private static class DataOutputOutput implements Output {
+		private DataOutput output;
+		
+		public DataOutputOutput(DataOutput output) {
+			this.output = output;
+		}
+		
+		@Override
+		public void writeByte(int value) throws IOException {
+			output.writeByte(value);
+		}
+		
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			output.write(bytes, offset, length);
+		}
+		
+		@Override
+		public void writeLong(long value) throws IOException {
+			output.writeLong(value);
+		}
+	}
+	
+	private static class ByteBufferOutput implements Output {
+		private ByteBuffer buffer;
+		
+		public ByteBufferOutput(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public void writeByte(int value) {
+			buffer.put((byte) value);
+		}
+		
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			buffer.put(bytes, offset, length);
+		}
+		
+		@Override
+		public void writeLong(long value) {
+			buffer.putLong(value);
+		}
+	}
+	
+	private static class DataInputInput implements Input {
+		private DataInput input;
+		
+		public DataInputInput(DataInput input) {
+			this.input = input;
+		}
+		
+		@Override
+		public byte readByte() throws IOException {
+			return input.readByte();
+		}
+		
+		@Override
+		public void readFully(byte[] bytes) throws IOException {
+			input.readFully(bytes);
+		}
+		
+		@Override
+		public long readLong() throws IOException {
+			return input.readLong();
+		}
+	}
+	
+	private static class ByteBufferInput implements Input {
+		private ByteBuffer buffer;
+		
+		public ByteBufferInput(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public byte readByte() {
+			return buffer.get();
+		}
+		
+		@Override
+		public void readFully(byte[] bytes) {
+			buffer.get(bytes);
+		}
+		
+		@Override
+		public long readLong() {
+			return buffer.getLong();
+		}
+	}
+	
+	//
+	// Rational
+	
+	static void write(Rational rational, DataOutput output) throws IOException {
+		write(rational, new DataOutputOutput(output));
+	}
+	
+	static void write(Rational rational, ByteBuffer buffer) {
+		try {
+			write(rational, new ByteBufferOutput(buffer));
+		}
+		catch (IOException ioException) {
+			// cannot happen: a ByteBuffer signals problems with unchecked exceptions.
+			throw new UncheckedIOException(ioException);
+		}
+	}
+	
+	static Rational readRational(DataInput input) throws IOException {
+		Rational result = readRational(new DataInputInput(input));
+		return result;
+	}
+	
+	static Rational readRational(ByteBuffer buffer) {
+		try {
+			Rational result = readRational(new ByteBufferInput(buffer));
+			return result;
+		}
+		catch (IOException ioException) {
+			throw new IllegalArgumentException(ioException.getMessage(), ioException);
+		}
+	}
+	
+	//
+	// BigIntegerNumber
+	
+	static void write(BigIntegerNumber number, DataOutput output) throws IOException {
+		write(number, new DataOutputOutput(output));
+	}
+	
+	static void write(BigIntegerNumber number, ByteBuffer buffer) {
+		try {
+			write(number, new ByteBufferOutput(buffer));
+		}
+		catch (IOException ioException) {
+			// cannot happen: a ByteBuffer signals problems with unchecked exceptions.
+			throw new UncheckedIOException(ioException);
+		}
+	}
+	
+	static BigIntegerNumber readBigIntegerNumber(DataInput input) throws IOException {
+		BigIntegerNumber result = readBigIntegerNumber(new DataInputInput(input));
+		return result;
+	}
+	
+	static BigIntegerNumber readBigIntegerNumber(ByteBuffer buffer) {
+		try {
+			BigIntegerNumber result = readBigIntegerNumber(new ByteBufferInput(buffer));
+			return result;
+		}
+		catch (IOException ioException) {
+			throw new IllegalArgumentException(ioException.getMessage(), ioException);
+		}
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static void write(Rational rational, Output output) throws IOException {
+		if (rational.isHeldAsLongs()) {
+			output.writeByte(RATIONAL_LONGS);
+			writeZigZagVarLong(rational.getLongNumerator(), output);
+			writeVarLong(rational.getLongDenominator(), output);
+		}
+		else {
+			output.writeByte(RATIONAL_NUMBERS);
+			// note: getNumerator() and getDenominator() are those of the reduced form.
+			write(rational.getNumerator(), output);
+			write(rational.getDenominator(), output);
+		}
+	}
+	
+	private static Rational readRational(Input input) throws IOException {
+		Rational result;
+		int tag = input.readByte();
+		if (tag == RATIONAL_LONGS) {
+			long numerator   = readZigZagVarLong(input);
+			long denominator = readVarLong(input);
+			if (denominator <= 0) {
+				throw new IOException("Invalid rational denominator: " + denominator);
+			}
+			result = Rational.fromReducedLongs(numerator, denominator);
+		}
+		else if (tag == RATIONAL_NUMBERS) {
+			BigIntegerNumber numerator   = readBigIntegerNumber(input);
+			BigIntegerNumber denominator = readBigIntegerNumber(input);
+			if (denominator.signum() <= 0) {
+				throw new IOException("Invalid rational denominator: " + denominator);
+			}
+			result = Rational.fromReduced(numerator, denominator);
+		}
+		else {
+			throw new IOException("Invalid rational tag: " + tag);
+		}
+		return result;
+	}
+	
+	private static void write(BigIntegerNumber number, Output output) throws IOException {
+		if (number instanceof BigIntegerNumberExact) {
+			writeExact(((BigIntegerNumberExact) number).getBigInteger(), output);
+		}
+		else if (number instanceof BigIntegerNumberApproximate) {
+			BigIntegerNumberApproximate approximate = (BigIntegerNumberApproximate) number;
+			BigDecimal value = approximate.getBigDecimal();
+			output.writeByte(APPROXIMATE);
+			writeMathContext(approximate.getMathContext(), output);
+			writeZigZagVarLong(value.scale(), output);
+			writeExact(value.unscaledValue(), output);
+		}
+		else if (number instanceof BigIntegerNumberApproximateBinary) {
+			BigIntegerNumberApproximateBinary binary = (BigIntegerNumberApproximateBinary) number;
+			output.writeByte(APPROXIMATE_BINARY);
+			output.writeLong(binary.getMantissa());
+			writeZigZagVarLong(binary.getExponent(), output);
+		}
+		else {
+			BigIntegerNumberHybrid hybrid = (BigIntegerNumberHybrid) number;
+			output.writeByte(HYBRID);
+			writeVarLong(hybrid.getExactBitLengthLimit(), output);
+			if (hybrid.getMathContext() == null) {
+				writeVarLong(0, output);
+			}
+			else {
+				writeMathContext(hybrid.getMathContext(), output);
+			}
+			write(hybrid.getValue(), output);
+		}
+	}
+	
+	private static BigIntegerNumber readBigIntegerNumber(Input input) throws IOException {
+		BigIntegerNumber result;
+		int tag = input.readByte();
+		switch (tag) {
+		case EXACT_LONG:
+		case EXACT_POSITIVE:
+		case EXACT_NEGATIVE:
+			result = new BigIntegerNumberExact(readExact(tag, input));
+			break;
+		case APPROXIMATE:
+			MathContext mathContext = readMathContext(readVarInt(input), input);
+			int scale = (int) readZigZagVarLong(input);
+			BigInteger unscaledValue = readExact(input.readByte(), input);
+			result = new BigIntegerNumberApproximate(new BigDecimal(unscaledValue, scale), mathContext);
+			break;
+		case APPROXIMATE_BINARY:
+			long mantissa = input.readLong();
+			long exponent = readZigZagVarLong(input);
+			result = BigIntegerNumberApproximateBinary.newNormalized(mantissa, exponent);
+			break;
+		case HYBRID:
+			int exactBitLengthLimit = readVarInt(input);
+			int precision = readVarInt(input);
+			MathContext approximationMathContext = precision == 0 ? null : readMathContext(precision, input);
+			BigIntegerNumber value = readBigIntegerNumber(input);
+			if (value instanceof BigIntegerNumberHybrid) {
+				throw new IOException("Invalid nested hybrid number");
+			}
+			result = new BigIntegerNumberHybrid(value, exactBitLengthLimit, approximationMathContext);
+			break;
+		default:
+			throw new IOException("Invalid number tag: " + tag);
+		}
+		return result;
+	}
+	
+	private static void writeExact(BigInteger value, Output output) throws IOException {
+		if (value.bitLength() < Long.SIZE) {
+			output.writeByte(EXACT_LONG);
+			writeZigZagVarLong(value.longValue(), output);
+		}
+		else {
+			// note: the leading (sign) byte of the two's-complement form is skipped when 0.
+			byte[] bytes  = value.abs().toByteArray();
+			int    offset = bytes[0] == 0 ? 1 : 0;
+			output.writeByte(value.signum() < 0 ? EXACT_NEGATIVE : EXACT_POSITIVE);
+			writeVarLong(bytes.length - offset, output);
+			output.write(bytes, offset, bytes.length - offset);
+		}
+	}
+	
+	private static BigInteger readExact(int tag, Input input) throws IOException {
+		BigInteger result;
+		if (tag == EXACT_LONG) {
+			result = BigInteger.valueOf(readZigZagVarLong(input));
+		}
+		else if (tag == EXACT_POSITIVE || tag == EXACT_NEGATIVE) {
+			byte[] magnitude = new byte[readVarInt(input)];
+			input.readFully(magnitude);
+			result = new BigInteger(tag == EXACT_NEGATIVE ? -1 : 1, magnitude);
+		}
+		else {
+			throw new IOException("Invalid exact number tag: " + tag);
+		}
+		return result;
+	}
+	
+	private static void writeMathContext(MathContext mathContext, Output output) throws IOException {
+		// note: precision is written plus one so that 0 remains free to mark binary approximations.
+		writeVarLong(mathContext.getPrecision() + 1L, output);
+		output.writeByte(mathContext.getRoundingMode().ordinal());
+	}
+	
+	private static MathContext readMathContext(int precisionPlusOne, Input input) throws IOException {
+		int roundingMode = input.readByte();
+		if (precisionPlusOne <= 0 || roundingMode < 0 || roundingMode >= ROUNDING_MODES.length) {
+			throw new IOException("Invalid math context");
+		}
+		MathContext result = new MathContext(precisionPlusOne - 1, ROUNDING_MODES[roundingMode]);
+		return result;
+	}
+	
+	private static void writeZigZagVarLong(long value, Output output) throws IOException {
+		writeVarLong((value << 1) ^ (value >> 63), output);
+	}
+	
+	private static long readZigZagVarLong(Input input) throws IOException {
+		long zigZag = readVarLong(input);
+		long result = (zigZag >>> 1) ^ -(zigZag & 1);
+		return result;
+	}
+	
+	/**
+	 * Writes the (unsigned) value 7 bits at a time, least significant first,
+	 * the high bit of each byte indicating whether more bytes follow.
+	 */
+	private static void writeVarLong(long value, Output output) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			output.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte((int) value);
+	}
+	
+	private static long readVarLong(Input input) throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			byte b = input.readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return result;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+	
+	private static int readVarInt(Input input) throws IOException {
+		long value = readVarLong(input);
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new IOException("Varint out of int range: " + value);
+		}
+		int result = (int) value;
+		return result;
+	}
+}
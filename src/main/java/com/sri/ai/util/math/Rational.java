@@ -56,12 +56,20 @@
 */
 package com.sri.ai.util.math;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.MathContext;
+import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.google.common.annotations.Beta;
 import com.sri.ai.util.AICUtilConfiguration;
+import com.sri.ai.util.base.NullaryFunction;
+import com.sri.ai.util.math.ArithmeticStatistics.Operation;
 
 /**
  * Rational implements dynamically sized arbitrary precision immutable rational
@@ -189,105 +197,30 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	// constants are dependent on these being initialized beforehand.
 	private static final long serialVersionUID = 1L;
 
-	//
-	// Note: following constants can't be constructed using
-	// Rational.bigIntegerValueOf().
-	// That one _uses_ the constants (avoid circular dependencies).
-	/**
-	 * Constant internally used, for convenience and speed. Used as zero
-	 * numerator. Used for fast checks.
-	 */	
-	private static BigIntegerNumber BIG_INTEGER_ZERO;
-
-	/**
-	 * Constant internally used, for convenience and speed. Used as neutral
-	 * denominator. Used for fast checks.
-	 */		
-	private static BigIntegerNumber BIG_INTEGER_ONE;
-
-	/**
-	 * Constant internally used, for convenience and speed. Used for fast
-	 * checks.
-	 */		
-	private static BigIntegerNumber BIG_INTEGER_MINUS_ONE;
-
-	/**
-	 * Constant internally used, for convenience and speed. Used in rounding
-	 * zero numerator. _Not_ used for checks.
-	 */		
-	private static BigIntegerNumber BIG_INTEGER_TWO;
-
-	/**
-	 * Constant internally used, for convenience and speed. _Not_ used for
-	 * checks.
-	 */		
-	private static BigIntegerNumber BIG_INTEGER_MINUS_TWO;
-
-	/**
-	 * Constant internally used, for convenience and speed. Corresponds to
-	 * DEFAULT_RADIX, used in reading, scaling and printing. _Not_ used for
-	 * checks.
-	 */		
-	private static BigIntegerNumber BIG_INTEGER_TEN;
-
-	/**
-	 * Constant internally used, for convenience and speed. Used in reading,
-	 * scaling and printing. _Not_ used for checks.
-	 */		
-	private static BigIntegerNumber BIG_INTEGER_SIXTEEN;
-
 	/**
-	 * The constant two to the power of 64 (18446744073709551616). Used is
-	 * slicing larger [than double size] IEEE 754 values.
-	 */
-	private static BigIntegerNumber BIG_INTEGER_TWO_POWER_64;
-
-	// some more constants, often used as radixes/bases
-
-	/**
-	 * The constant two (2).
+	 * Number of explicit fraction bits in an IEEE 754 double (binary64) float,
+	 * 52.
 	 */
-	private static Rational TWO;
-
-	/**
-	 * The constant ten (10).
-	 */	
-	private static Rational TEN;
-
-	/**
-	 * The constant sixteen (16).
-	 */	
-	private static Rational SIXTEEN;
-
-	/**
-	 * The constant two to the power of 64 (18446744073709551616). Used is
-	 * slicing larger [than double size] IEEE 754 values.
-	 */	
-	private static Rational TWO_POWER_64;
+	private final static int DOUBLE_FLOAT_FRACTION_SIZE = 52;
 
 	/**
-	 * Constant internally used, for speed.
+	 * Number of exponent bits in an IEEE 754 double (binary64) float, 11.
 	 */
-	// calculated via Rational((float)(StrictMath.log(10)/StrictMath.log(2)))
-	// note: don't use float/double operations in this code though (except for
-	// test())
-	private static Rational LOGARITHM_TEN_GUESS;
-
+	private final static int DOUBLE_FLOAT_EXPONENT_SIZE = 11;
 	/**
-	 * Constant internally used, for speed.
+	 * Exponent bias of IEEE 754 double floats.
 	 */
-	private static Rational LOGARITHM_SIXTEEN;
-
+	private final static int DOUBLE_FLOAT_EXPONENT_BIAS = (1 << (DOUBLE_FLOAT_EXPONENT_SIZE - 1)) - 1;
 	/**
-	 * Number of explicit fraction bits in an IEEE 754 double (binary64) float,
-	 * 52.
+	 * Mantissa size (including the implicit leading bit) of IEEE 754 double
+	 * floats, i.e. integers up to 2^DOUBLE_FLOAT_MANTISSA_SIZE are exact doubles.
 	 */
-	private final static int DOUBLE_FLOAT_FRACTION_SIZE = 52;
-
+	private final static int DOUBLE_FLOAT_MANTISSA_SIZE = DOUBLE_FLOAT_FRACTION_SIZE + 1;
 	/**
-	 * Number of exponent bits in an IEEE 754 double (binary64) float, 11.
+	 * log2(10), for estimating the binary magnitude of decimal approximations.
 	 */
-	private final static int DOUBLE_FLOAT_EXPONENT_SIZE = 11;
+	private final static double LOG2_10 = Math.log(10) / Math.log(2);
+	private final static BigInteger FIVE = BigInteger.valueOf(5);
 
 	/**
 	 * Number of explicit fraction bits in an IEEE 754 single (binary32) float,
@@ -325,30 +258,112 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	
 	//
 	// log() related constants
-	private static int POS_MAX_SMALL_INT_EXPONENT_VALUE =  (Integer.MAX_VALUE-1); // NOTE: we subtract 1, so the 'negate' logic in pow does not overflow
-	private static int NEG_MAX_SMALL_INT_EXPONENT_VALUE = -(Integer.MIN_VALUE-1);
+	static final int POS_MAX_SMALL_INT_EXPONENT_VALUE =  (Integer.MAX_VALUE-1); // NOTE: we subtract 1, so the 'negate' logic in pow does not overflow
+	static final int NEG_MAX_SMALL_INT_EXPONENT_VALUE = -(Integer.MIN_VALUE-1);
+	//
+	// compareTo() related constants
+	// a bound on the relative error of doubleEstimate(), which accumulates
+	// three correctly rounded steps of at most 2^-53 each.
+	private static final double DOUBLE_ESTIMATE_RELATIVE_ERROR = 0x1.0p-50;
+	//
+	// Lazy normalization related constants
+	/**
+	 * Whether or not the results of add, subtract, multiply and divide are
+	 * globally left unreduced (i.e. without dividing out the gcd of their
+	 * numerator and denominator) until their reduced form is needed (see
+	 * {@link AICUtilConfiguration#isRationalLazyNormalizationEnabled()}).
+	 */
+	private static boolean LAZY_NORMALIZATION_ENABLED;
+	/**
+	 * The bit length that an unreduced numerator or denominator can grow to before
+	 * it is reduced regardless.
+	 */
+	private static int LAZY_NORMALIZATION_THRESHOLD_IN_BITS;
+	/**
+	 * Number of threads currently within a lazy normalization scope (see
+	 * computeWithLazyNormalization()), so that threads not in one do not need
+	 * to check LAZY_NORMALIZATION_SCOPE_DEPTH.
+	 */
+	private static final AtomicInteger NUMBER_OF_ACTIVE_LAZY_NORMALIZATION_SCOPES = new AtomicInteger(0);
+	private static final ThreadLocal<int[]> LAZY_NORMALIZATION_SCOPE_DEPTH = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
 	//
-	private static BigIntegerNumber BIGINT_POS_MAX_SMALL_INT_EXPONENT_VALUE;
-	private static BigIntegerNumber BIGINT_NEG_MAX_SMALL_INT_EXPONENT_VALUE;
-	//		
-	private static Rational RATIONAL_POS_MAX_SMALL_INT_EXPONENT_VALUE;
-	private static Rational RATIONAL_LOG_DOUBLE_MAX_VALUE;
-	private static Rational RATIONAL_DOUBLE_MAX_VALUE;
+	// Bounded arithmetic related constants
+	/**
+	 * Whether or not the exact results of add, subtract, multiply and divide
+	 * are globally replaced by the simplest rational within a relative error of
+	 * 2^-BOUNDED_ARITHMETIC_PRECISION_IN_BITS once their denominators exceed
+	 * BOUNDED_ARITHMETIC_THRESHOLD_IN_BITS (see
+	 * {@link AICUtilConfiguration#isRationalBoundedArithmeticEnabled()}).
+	 */
+	private static boolean BOUNDED_ARITHMETIC_ENABLED;
+	private static int     BOUNDED_ARITHMETIC_THRESHOLD_IN_BITS;
+	private static int     BOUNDED_ARITHMETIC_PRECISION_IN_BITS;
+	/**
+	 * Number of threads currently within a bounded arithmetic scope (see
+	 * computeWithBoundedArithmetic()), so that threads not in one do not need
+	 * to check BOUNDED_ARITHMETIC_SCOPE.
+	 */
+	private static final AtomicInteger NUMBER_OF_ACTIVE_BOUNDED_ARITHMETIC_SCOPES = new AtomicInteger(0);
+	/**
+	 * The threshold and precision (in bits) of the current thread's innermost
+	 * bounded arithmetic scope, with a threshold of 0 if there is none.
+	 */
+	private static final ThreadLocal<int[]> BOUNDED_ARITHMETIC_SCOPE = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[2];
+		}
+	};
 	//
 	//
 	/**
 	 * Numerator. Numerator may be negative. Numerator may be zero, in which
 	 * case denominator must be one. [Conditions are put in place by normalize().]
+	 * Note: is lazily created (see getNumerator()) if this rational is held as longs.
 	 */
 	private BigIntegerNumber numerator;
 	/**
 	 * Denominator (quotient). Denominator is never negative and never zero.
 	 * [Conditions are put in place by normalize().]
+	 * Note: is lazily created (see getDenominator()) if this rational is held as longs.
 	 */
 	private BigIntegerNumber denominator;
+	/**
+	 * Whether or not this rational is held in longNumerator and longDenominator.
+	 */
+	private boolean isLong = false;
+	/**
+	 * Long numerator, normalized under the same conditions as numerator and
+	 * never Long.MIN_VALUE (so that it can always be negated). Only valid if isLong.
+	 */
+	private long longNumerator;
+	/**
+	 * Long denominator, normalized under the same conditions as denominator. Only valid if isLong.
+	 */
+	private long longDenominator;
+	/**
+	 * Whether or not numerator and denominator have no common divisor. Only
+	 * false for results computed under lazy normalization, in which case only
+	 * signs are normalized and reduced() holds the reduced form once needed.
+	 */
+	private boolean isReduced = true;
+	/**
+	 * The reduced form of this rational, if it is not reduced and the reduced
+	 * form has been needed.
+	 */
+	private transient volatile Rational reducedForm = null;
 	// optimization, as instances are immmutable only
 	// calculate once when needed
 	private int hashCode = 0;
+	// optimization: a double estimate of this rational's value, used to
+	// decide comparisons without cross multiplying, calculated once when
+	// needed (NaN: not yet calculated, 0: not usable as an estimate).
+	private transient double doubleEstimate = Double.NaN;
 
 	//
 	// PUBLIC CONSTANTS
@@ -496,7 +511,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 *            the rational's numerator.
 	 */
 	public Rational(BigIntegerNumber numerator) {
-		this(numerator, BIG_INTEGER_ONE);
+		this(numerator, context().bigIntegerOne);
 	}
 
 	/**
@@ -509,18 +524,42 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 *            the rational's denominator (quotient)
 	 */
 	public Rational(long numerator, long denominator) {
-		this(bigIntegerValueOf(numerator), bigIntegerValueOf(denominator));
+		if (denominator == 0) {
+			throw new NumberFormatException("Denominator zero");
+		}
+
+		// optimization: stay with longs if possible.
+		if (!normalizeFromLongs(numerator, denominator)) {
+			normalizeFrom(bigIntegerValueOf(numerator), bigIntegerValueOf(denominator));
+		}
 	}
 
 	/**
 	 * Construct a Rational from a long fix number integer representing
 	 * numerator, denominator is defaulted to 1.
-	 * 
+	 *
 	 * @param numerator
 	 *            the rational's numerator.
 	 */
 	public Rational(long numerator) {
-		this(bigIntegerValueOf(numerator), BIG_INTEGER_ONE);
+		this(numerator, 1L);
+	}
+
+	/**
+	 * Construct an uninitialized Rational, to be set up by one of the
+	 * normalizeFrom methods.
+	 */
+	private Rational() {
+	}
+
+	/**
+	 * Construct a Rational directly from an already normalized long numerator
+	 * and denominator (see normalizeFromLongs()). Used by the long fast path.
+	 */
+	private Rational(long numerator, long denominator, boolean isNormalized) {
+		this.isLong          = true;
+		this.longNumerator   = numerator;
+		this.longDenominator = denominator;
 	}
 
 	/**
@@ -756,7 +795,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 					.add(fraction);
 		} 
 		else {
-			denominator = BIG_INTEGER_ONE;
+			denominator = context().bigIntegerOne;
 		}
 
 		if (negativeIntegerPart) {
@@ -818,7 +857,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 				scale);
 
 		normalizeFrom((negate ? bigIntegerMultiply(unscaledValue, scaleValue)
-				: unscaledValue), (negate ? BIG_INTEGER_ONE : scaleValue));
+				: unscaledValue), (negate ? context().bigIntegerOne : scaleValue));
 	}
 
 	/**
@@ -874,11 +913,17 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	//
 	
 	public BigIntegerNumber getNumerator() {
-		return numerator;
+		if (!isReduced) {
+			return reduced().getNumerator();
+		}
+		return rawNumerator();
 	}
-	
+
 	public BigIntegerNumber getDenominator() {
-		return denominator;
+		if (!isReduced) {
+			return reduced().getDenominator();
+		}
+		return rawDenominator();
 	}
 	
 	/**
@@ -932,7 +977,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	public boolean isZero() {
 		// optimization, first test is for speed.
-		if (this == ZERO || numerator == BIG_INTEGER_ZERO) {
+		if (this == ZERO || (isLong && longNumerator == 0)) {
 			return true;
 		}
 
@@ -956,6 +1001,11 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			return true;
 		}
 
+		// optimization: avoids reducing an unreduced rational.
+		if (!isReduced) {
+			return bigIntegerEquals(numerator, denominator);
+		}
+
 		return equals(ONE);
 	}
 
@@ -975,9 +1025,29 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			return true;
 		}
 
+		// optimization: avoids reducing an unreduced rational.
+		if (!isReduced) {
+			return numerator.signum() < 0 && bigIntegerEquals(numerator.negate(), denominator);
+		}
+
 		return equals(MINUS_ONE);
 	}
 
+	/**
+	 * Exactness predicate.
+	 * <p>
+	 * Indicates whether this Rational is exact, i.e. neither its numerator nor
+	 * its denominator is an approximation (see
+	 * {@link BigIntegerNumber#isExact()}).
+	 * 
+	 * @return true if the rational is exact.
+	 */
+	public boolean isExact() {
+		// optimization: values held as longs are exact.
+		boolean result = isLong || (rawNumerator().isExact() && rawDenominator().isExact());
+		return result;
+	}
+
 	/**
 	 * Integer predicate.
 	 * <p>
@@ -987,6 +1057,12 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 * @return true if the rational is an integer.
 	 */
 	public boolean isInteger() {
+		if (isLong) {
+			return longDenominator == 1;
+		}
+		if (!isReduced) {
+			return reduced().isInteger();
+		}
 		return bigIntegerIsOne(denominator);
 	}
 
@@ -1001,6 +1077,18 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	public String toString(int radix) {
 		checkRadixArgument(radix);
+		// optimization
+		if (isLong) {
+			final String s = Long.toString(longNumerator, radix);
+			if (longDenominator == 1) {
+				return s;
+			}
+			return s + "/" + Long.toString(longDenominator, radix);
+		}
+		if (!isReduced) {
+			return reduced().toString(radix);
+		}
+
 		final String s = stringValueOf(numerator, radix);
 
 		if (isInteger()) {
@@ -1233,6 +1321,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	// [Name: see class BigInteger.]
 	public Rational add(Rational that) {
+		if (ArithmeticStatistics.ENABLED) {
+			recordStatistics(Operation.ADD, that);
+		}
 		// optimization: second operand is zero (i.e. neutral element).
 		if (that.isZero()) {
 			return this;
@@ -1246,30 +1337,43 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		// note: not checking for that.equals(negate()),
 		// since that would involve creation of a temporary object
 
+		// optimization: both operands fit in longs.
+		if (isLongFastPathApplicable(that)) {
+			final Rational result = addLongs(longNumerator, longDenominator, that.longNumerator, that.longDenominator);
+			if (result != null) {
+				return result;
+			}
+		}
+
+		final BigIntegerNumber numerator        = rawNumerator();
+		final BigIntegerNumber denominator      = rawDenominator();
+		final BigIntegerNumber thatNumerator    = that.rawNumerator();
+		final BigIntegerNumber thatDenominator  = that.rawDenominator();
+
 		// note: the calculated numerator/denominator may be denormalized,
 		// implicit normalize() is needed.
 
 		// optimization: same denominator.
-		if (bigIntegerEquals(denominator, that.denominator)) {
-			return new Rational(numerator.add(that.numerator), denominator);
+		if (bigIntegerEquals(denominator, thatDenominator)) {
+			return newArithmeticResult(numerator.add(thatNumerator), denominator);
 		}
 
 		// optimization: second operand is an integer.
-		if (that.isInteger()) {
-			return new Rational(numerator.add(that.numerator
+		if (bigIntegerIsOne(thatDenominator)) {
+			return newArithmeticResult(numerator.add(thatNumerator
 					.multiply(denominator)), denominator);
 		}
 
 		// optimization: first operand is an integer.
-		if (isInteger()) {
-			return new Rational(numerator.multiply(that.denominator).add(
-					that.numerator), that.denominator);
+		if (bigIntegerIsOne(denominator)) {
+			return newArithmeticResult(numerator.multiply(thatDenominator).add(
+					thatNumerator), thatDenominator);
 		}
 
 		// default case. [this would handle all cases.]
-		return new Rational(numerator.multiply(that.denominator).add(
-				that.numerator.multiply(denominator)),
-				denominator.multiply(that.denominator));
+		return newArithmeticResult(numerator.multiply(thatDenominator).add(
+				thatNumerator.multiply(denominator)),
+				denominator.multiply(thatDenominator));
 	}
 
 	/**
@@ -1295,6 +1399,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	// [Name: see class BigInteger.]
 	public Rational subtract(Rational that) {
+		if (ArithmeticStatistics.ENABLED) {
+			recordStatistics(Operation.ADD, that);
+		}
 		// optimization: second operand is zero.
 		if (that.isZero()) {
 			return this;
@@ -1310,30 +1417,44 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			return ZERO;
 		}
 
+		// optimization: both operands fit in longs.
+		// note: longNumerator is never Long.MIN_VALUE, so can always be negated.
+		if (isLongFastPathApplicable(that)) {
+			final Rational result = addLongs(longNumerator, longDenominator, -that.longNumerator, that.longDenominator);
+			if (result != null) {
+				return result;
+			}
+		}
+
+		final BigIntegerNumber numerator        = rawNumerator();
+		final BigIntegerNumber denominator      = rawDenominator();
+		final BigIntegerNumber thatNumerator    = that.rawNumerator();
+		final BigIntegerNumber thatDenominator  = that.rawDenominator();
+
 		// note: the calculated n/q may be denormalized,
 		// implicit normalize() is needed.
 
 		// optimization: same denominator.
-		if (bigIntegerEquals(denominator, that.denominator)) {
-			return new Rational(numerator.subtract(that.numerator), denominator);
+		if (bigIntegerEquals(denominator, thatDenominator)) {
+			return newArithmeticResult(numerator.subtract(thatNumerator), denominator);
 		}
 
 		// optimization: second operand is an integer.
-		if (that.isInteger()) {
-			return new Rational(numerator.subtract(that.numerator
+		if (bigIntegerIsOne(thatDenominator)) {
+			return newArithmeticResult(numerator.subtract(thatNumerator
 					.multiply(denominator)), denominator);
 		}
 
 		// optimization: first operand is an integer.
-		if (isInteger()) {
-			return new Rational(numerator.multiply(that.denominator).subtract(
-					that.numerator), that.denominator);
+		if (bigIntegerIsOne(denominator)) {
+			return newArithmeticResult(numerator.multiply(thatDenominator).subtract(
+					thatNumerator), thatDenominator);
 		}
 
 		// default case. [this would handle all cases.]
-		return new Rational(numerator.multiply(that.denominator).subtract(
-				that.numerator.multiply(denominator)),
-				denominator.multiply(that.denominator));
+		return newArithmeticResult(numerator.multiply(thatDenominator).subtract(
+				thatNumerator.multiply(denominator)),
+				denominator.multiply(thatDenominator));
 	}
 
 	/**
@@ -1360,6 +1481,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	// [Name: see class BigInteger.]
 	public Rational multiply(Rational that) {
+		if (ArithmeticStatistics.ENABLED) {
+			recordStatistics(Operation.MULTIPLY, that);
+		}
 		// optimization: one or both operands are zero.
 		if (that.isZero() || isZero()) {
 			return ZERO;
@@ -1385,11 +1509,19 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			return that.negate();
 		}
 
+		// optimization: both operands fit in longs.
+		if (isLongFastPathApplicable(that)) {
+			final Rational result = multiplyLongs(longNumerator, longDenominator, that.longNumerator, that.longDenominator);
+			if (result != null) {
+				return result;
+			}
+		}
+
 		// note: the calculated numerator/denominator may be denormalized,
 		// implicit normalize() is needed.
 
-		return new Rational(bigIntegerMultiply(numerator, that.numerator),
-				bigIntegerMultiply(denominator, that.denominator));
+		return newArithmeticResult(bigIntegerMultiply(rawNumerator(), that.rawNumerator()),
+				bigIntegerMultiply(rawDenominator(), that.rawDenominator()));
 	}
 
 	/**
@@ -1416,6 +1548,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	// [Name: see class BigInteger.]
 	public Rational divide(Rational that) {
+		if (ArithmeticStatistics.ENABLED) {
+			recordStatistics(Operation.DIVIDE, that);
+		}
 		if (that.isZero()) {
 			throw new ArithmeticException("division by zero");
 		}
@@ -1445,11 +1580,22 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			return that.invert().negate();
 		}
 
+		// optimization: both operands fit in longs.
+		// note: dividing is multiplying by the inverse, whose sign is kept in the numerator.
+		if (isLongFastPathApplicable(that)) {
+			final Rational result = that.longNumerator < 0
+					? multiplyLongs(longNumerator, longDenominator, -that.longDenominator, -that.longNumerator)
+					: multiplyLongs(longNumerator, longDenominator, that.longDenominator, that.longNumerator);
+			if (result != null) {
+				return result;
+			}
+		}
+
 		// note: the calculated numerator/denominator may be denormalized,
 		// implicit normalize() is needed.
 
-		return new Rational(bigIntegerMultiply(numerator, that.denominator),
-				bigIntegerMultiply(denominator, that.numerator));
+		return newArithmeticResult(bigIntegerMultiply(rawNumerator(), that.rawDenominator()),
+				bigIntegerMultiply(rawDenominator(), that.rawNumerator()));
 	}
 
 	/**
@@ -1478,6 +1624,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	// [Name: see classes Math, BigInteger.]
 	public Rational pow(int exponent) {
+		if (ArithmeticStatistics.ENABLED) {
+			recordStatistics(Operation.POW, this);
+		}
 		Rational result;
 		if (exponent > POS_MAX_SMALL_INT_EXPONENT_VALUE || exponent < NEG_MAX_SMALL_INT_EXPONENT_VALUE) {
 			result = powLargeIntegerExponent(BigIntegerNumberFactory.valueOf(exponent));
@@ -1495,6 +1644,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		}
 		else {
 			// Fractional Case (i.e. nth root)			
+			if (ArithmeticStatistics.ENABLED) {
+				recordStatistics(Operation.POW, this);
+			}
 			result = powFractionalExponent(exponent);
 		}
 		
@@ -1502,6 +1654,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	}
 	
 	public Rational pow(BigIntegerNumber exponent) {
+		if (ArithmeticStatistics.ENABLED) {
+			recordStatistics(Operation.POW, this);
+		}
 		Rational result;
 		if (isMagnitudeWithinSmallIntExponent(exponent)) {
 			// Supported by pow(int)
@@ -1554,20 +1709,21 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			exponent = -exponent;
 		}
 
-		final BigIntegerNumber numerator   = bigIntegerPower(this.numerator, exponent);
-		final BigIntegerNumber denominator = bigIntegerPower(this.denominator, exponent);
+		final BigIntegerNumber numerator   = bigIntegerPower(getNumerator(), exponent);
+		final BigIntegerNumber denominator = bigIntegerPower(getDenominator(), exponent);
 
 		// note: the calculated numerator/denominator are not denormalized in
 		// the sense of having common factors, but numerator might be negative
 		// (and become denominator below)
 
-		boolean isGCDComputationRequired = BigIntegerNumberFactory.APPROXIMATION_ENABLED;
+		boolean isGCDComputationRequired = context().isApproximationEnabled();
 		return new Rational((negate ? denominator : numerator),
 				(negate ? numerator : denominator), isGCDComputationRequired);
 	}
 	
 	// NOTE: this logic will take an extremely long time to execute if running in exact mode (intended for approximate use only).
 	private Rational powLargeIntegerExponent(BigIntegerNumber exponent) {
+		final ArithmeticContext context = context();
 		Rational result;
 		
 		if (exponent.signum() < 0) {
@@ -1581,9 +1737,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			// b = Base (i.e. this)
 			// if e > m :
 			//    (b^m)^(e / m) * b^(e % m)
-			BigIntegerNumber[] exponentQuotientAndRemainder = exponent.divideAndRemainder(BIGINT_POS_MAX_SMALL_INT_EXPONENT_VALUE);		
+			BigIntegerNumber[] exponentQuotientAndRemainder = exponent.divideAndRemainder(context.bigIntegerPosMaxSmallIntExponentValue);		
 			// b^m
-			Rational quotientBase = pow(RATIONAL_POS_MAX_SMALL_INT_EXPONENT_VALUE);
+			Rational quotientBase = pow(context.rationalPosMaxSmallIntExponentValue);
 				
 			// (b^m)^(e / m)
 			Rational commonFactorsPow = quotientBase.pow(exponentQuotientAndRemainder[0].abs());
@@ -1628,7 +1784,8 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	}
 		
 	private static boolean isMagnitudeWithinSmallIntExponent(BigIntegerNumber bigInteger) {
-		boolean result = bigInteger.compareTo(BIGINT_POS_MAX_SMALL_INT_EXPONENT_VALUE) <= 0 && bigInteger.compareTo(BIGINT_NEG_MAX_SMALL_INT_EXPONENT_VALUE) >= 0;
+		final ArithmeticContext context = context();
+		boolean result = bigInteger.compareTo(context.bigIntegerPosMaxSmallIntExponentValue) <= 0 && bigInteger.compareTo(context.bigIntegerNegMaxSmallIntExponentValue) >= 0;
 		return result;
 	}
 	
@@ -1637,6 +1794,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	// and leverage existing supporting routines as opposed to implementing the algorithm 
 	// from scratch, e.g: https://en.wikipedia.org/wiki/Nth_root_algorithm
 	private Rational nthRoot(BigIntegerNumber n, Rational b) {
+		final ArithmeticContext context = context();
 // TODO - log(b) of a negative b is not supported but you can compute roots of negative numbers	
 // i.e. if n is odd, no solution for even n, see: https://en.wikipedia.org/wiki/Exponentiation#Rational_exponents
 		// root(n, b) = exp(log(root(n, b))) = exp(log(b)/n)
@@ -1645,7 +1803,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		
 		Rational result;
 		// log(Double.MAX_VALUE) = 709.782712893384
-		if (logBDividedByN.compareTo(RATIONAL_LOG_DOUBLE_MAX_VALUE) <= 0) {
+		if (logBDividedByN.compareTo(context.rationalLogDoubleMaxValue) <= 0) {
 			// The result will be <= Double.MAX_VALUE so we can use Math.pow() directly.
 			double pow = Math.pow(Math.E, logBDividedByN.doubleValue());
 			result = new Rational(pow);
@@ -1654,10 +1812,10 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			// if logBDividedByN > log(Double.MAX_VALUE): 
 			//    // We will exceed Double.MAX_VALUE in our result so break it down as:
 			//    Double.MAX_VALUE^(logBDividedByN / Math.log(Double.MAX_VALUE)) * e^(logBDividedByN % Math.log(Double.MAX_VALUE))			
-			Rational quotient = logBDividedByN.divide(RATIONAL_DOUBLE_MAX_VALUE);
+			Rational quotient = logBDividedByN.divide(context.rationalDoubleMaxValue);
 			Rational[] quotientIntegerAndFractionalPart = quotient.integerAndFractionalPart();
 
-			Rational doubleMaxValuePowIntQuotient = RATIONAL_DOUBLE_MAX_VALUE.pow(quotientIntegerAndFractionalPart[0].bigIntegerValue());
+			Rational doubleMaxValuePowIntQuotient = context.rationalDoubleMaxValue.pow(quotientIntegerAndFractionalPart[0].bigIntegerValue());
 			//
 			double moduloExponent     = Double.MAX_VALUE * quotientIntegerAndFractionalPart[0].doubleValue();
 			double ePowModuloExponent = Math.pow(Math.E, moduloExponent);
@@ -1686,7 +1844,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		
 	private Rational log(BigIntegerNumber b) {
 		
-		BigDecimal log = b.log(BigIntegerNumberFactory.APPROXIMATION_MATH_CONTEXT);
+		BigDecimal log = b.log(context().getMathContext());
 		
 		Rational result = BigIntegerNumberFactory.rationalValueOf(log);
 		
@@ -1826,6 +1984,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	// [Name: see class BigInteger.]
 	public int signum() {
 		// note: denominator is positive.
+		if (isLong) {
+			return Long.signum(longNumerator);
+		}
 		return numerator.signum();
 	}
 
@@ -1845,10 +2006,15 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			return ONE;
 		}
 
+		// optimization
+		if (isLong) {
+			return newLongRational(-longNumerator, longDenominator);
+		}
+
 		// note: the calculated numerator/denominator are not denormalized,
 		// implicit normalize() would not be needed.
 
-		return new Rational(numerator.negate(), denominator, false);
+		return newWithSameReduction(numerator.negate(), denominator);
 	}
 
 	/**
@@ -1872,10 +2038,15 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			return ONE;
 		}
 
+		// optimization
+		if (isLong) {
+			return newLongRational(-longNumerator, longDenominator);
+		}
+
 		// note: the calculated numerator/denominator are not denormalized,
 		// implicit normalize() would not be needed.
 
-		return new Rational(numerator.negate(), denominator, false);
+		return newWithSameReduction(numerator.negate(), denominator);
 	}
 
 	/**
@@ -1891,11 +2062,18 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			return this;
 		}
 
+		// optimization
+		if (isLong) {
+			return longNumerator < 0
+					? newLongRational(-longDenominator, -longNumerator)
+					: newLongRational(longDenominator, longNumerator);
+		}
+
 		// note: the calculated numerator/denominator are not denormalized in
 		// the sense of having common factors, but numerator might be negative
 		// (and become denominator below)
 
-		return new Rational(denominator, numerator, false);
+		return newWithSameReduction(denominator, numerator);
 	}
 
 	/**
@@ -1968,13 +2146,22 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		final Rational that = (Rational) object;
 
 		// optimization
-		if (that.numerator == numerator && that.denominator == denominator) {
+		if (isLong && that.isLong) {
+			return longNumerator == that.longNumerator && longDenominator == that.longDenominator;
+		}
+
+		// optimization
+		if (that.numerator == numerator && that.denominator == denominator && numerator != null) {
 			return true;
 		}
 
+		if (!isReduced || !that.isReduced) {
+			return reduced().equals(that.reduced());
+		}
+
 		boolean result =
-				bigIntegerEquals(that.numerator,   numerator) &&
-				bigIntegerEquals(that.denominator, denominator);
+				bigIntegerEquals(that.getNumerator(),   getNumerator()) &&
+				bigIntegerEquals(that.getDenominator(), getDenominator());
 
 		return result;
 	}
@@ -1990,11 +2177,46 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	public int hashCode() {
 		// lazy init for optimization
 		if (hashCode == 0) {
-			hashCode = ((numerator.hashCode() + 1) * (denominator.hashCode() + 2));
+			// note: computed from the exact reduced value, so that it does not depend
+			// on the context's representation, nor on whether the value is held as longs.
+			final Rational reduced = reduced();
+			if (reduced.isLong) {
+				hashCode = ((Long.hashCode(reduced.longNumerator) + 1) * (Long.hashCode(reduced.longDenominator) + 2));
+			}
+			else {
+				hashCode = ((exactHashCode(reduced.exactNumerator()) + 1) * (exactHashCode(reduced.exactDenominator()) + 2));
+			}
 		}
 		return hashCode;
 	}
 
+	/**
+	 * Hash code of an exact integer, the same as the one of the equal long when it fits in one.
+	 */
+	private static int exactHashCode(BigInteger value) {
+		final int result = value.bitLength() < Long.SIZE ? Long.hashCode(value.longValue()) : value.hashCode();
+		return result;
+	}
+
+	/**
+	 * Returns the canonical instance of this Rational's value, so that equal
+	 * interned values are identical (and compared for equality by reference).
+	 * [Similar to String.intern(), however only small values are held on to
+	 * indefinitely, all others are only weakly held.]
+	 * 
+	 * @return the canonical instance equal to this Rational.
+	 */
+	public Rational intern() {
+		// optimization: small values are interned in a grid.
+		if (isLong) {
+			final Rational result = internedLongRational(longNumerator, longDenominator);
+			if (result != null) {
+				return result;
+			}
+		}
+		return context().interner.intern(reduced());
+	}
+
 	/**
 	 * Compare this Rational to another Rational.
 	 * 
@@ -2004,6 +2226,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 *         less than, equal to, or greater than the specified object.
 	 */
 	public int compareTo(Rational that) {
+		if (ArithmeticStatistics.ENABLED) {
+			recordStatistics(Operation.COMPARE, this);
+		}
 		// optimization
 		if (that == this) {
 			return 0;
@@ -2021,10 +2246,97 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			return 0;
 		}
 
-		// note: both denominators are positive.
-		return bigIntegerMultiply(numerator, that.denominator)
+		// optimization: both operands fit in longs.
+		if (isLong && that.isLong) {
+			// optimization: same denominator.
+			if (longDenominator == that.longDenominator) {
+				return Long.compare(longNumerator, that.longNumerator);
+			}
+			try {
+				// note: both denominators are positive.
+				return Long.compare(
+						Math.multiplyExact(longNumerator, that.longDenominator),
+						Math.multiplyExact(that.longNumerator, longDenominator));
+			} catch (ArithmeticException overflow) {
+				// fall through to the BigIntegerNumber computation.
+			}
+		}
+
+		// optimization: tiered comparison of exact values, the exact cross
+		// multiplication below is only needed if the cheap estimates can't decide.
+		if (isExact() && that.isExact()) {
+			// note: the double estimates are cached in the instances, so are tried
+			// first (they decide any magnitude difference the bit lengths would).
+			final double thisEstimate = doubleEstimate();
+			final double thatEstimate = that.doubleEstimate();
+			if (thisEstimate != 0 && thatEstimate != 0) {
+				final double difference = thisEstimate - thatEstimate;
+				final double errorBound = (Math.abs(thisEstimate) + Math.abs(thatEstimate)) * DOUBLE_ESTIMATE_RELATIVE_ERROR;
+				if (difference > errorBound) {
+					return 1;
+				}
+				if (difference < -errorBound) {
+					return -1;
+				}
+			}
+			else {
+				// |this| lies strictly between 2^(magnitude - 2) and 2^(magnitude + 1),
+				// (the -2 allowing for negative powers of two having one bit less).
+				final int thisMagnitude = magnitudeBitLength();
+				final int thatMagnitude = that.magnitudeBitLength();
+				if (thisMagnitude - thatMagnitude > 2) {
+					return thisSignum;
+				}
+				if (thatMagnitude - thisMagnitude > 2) {
+					return -thisSignum;
+				}
+			}
+		}
+
+		// note: both denominators are positive (and need not be reduced).
+		return bigIntegerMultiply(rawNumerator(), that.rawDenominator())
 				.compareTo(
-				bigIntegerMultiply(that.numerator, denominator));
+				bigIntegerMultiply(that.rawNumerator(), rawDenominator()));
+	}
+
+	/**
+	 * The bit length of the numerator's magnitude minus the bit length of the denominator,
+	 * which bounds the binary logarithm of this (non zero) rational's magnitude.
+	 */
+	private int magnitudeBitLength() {
+		int result;
+		if (isLong) {
+			result = Long.numberOfLeadingZeros(longDenominator) - Long.numberOfLeadingZeros(Math.abs(longNumerator));
+		}
+		else {
+			result = rawNumerator().bitLength() - rawDenominator().bitLength();
+		}
+		return result;
+	}
+
+	/**
+	 * An estimate of this rational's value, with a relative error of at most
+	 * {@link #DOUBLE_ESTIMATE_RELATIVE_ERROR}, or 0 if no such estimate is
+	 * available (i.e. the numerator or denominator are out of double's range,
+	 * or the value is zero or a subnormal double).
+	 */
+	private double doubleEstimate() {
+		double result = doubleEstimate;
+		if (Double.isNaN(result)) {
+			// note: conversions to double (and the division) are correctly rounded,
+			// so each contributes a relative error of at most 2^-53.
+			if (isLong) {
+				result = ((double) longNumerator) / ((double) longDenominator);
+			}
+			else {
+				result = rawNumerator().doubleValue() / rawDenominator().doubleValue();
+			}
+			if (Double.isNaN(result) || Double.isInfinite(result) || Math.abs(result) < Double.MIN_NORMAL) {
+				result = 0;
+			}
+			doubleEstimate = result;
+		}
+		return result;
 	}
 
 	/**
@@ -2106,7 +2418,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	// @PrecisionLoss
 	public BigIntegerNumber bigIntegerValue() {
 		// [rounding step, possible loss of precision step]
-		return round().numerator;
+		return round().getNumerator();
 	}
 
 	/**
@@ -2161,9 +2473,15 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	// @PrecisionLoss
 	@Override
 	public double doubleValue() {
-		return Double.longBitsToDouble(
+		// optimization: both parts are exact doubles, so their (IEEE 754) quotient is correctly rounded.
+		if (isLong && Math.abs(longNumerator) <= 1L << DOUBLE_FLOAT_MANTISSA_SIZE && longDenominator <= 1L << DOUBLE_FLOAT_MANTISSA_SIZE) {
+			return (double) longNumerator / (double) longDenominator;
+		}
 		// [rounding step, possible loss of precision step]
-				doubleBitsValue());
+		final double result = isLong
+				? doubleValueOfQuotient(BigInteger.valueOf(longNumerator), BigInteger.valueOf(longDenominator), 0)
+				: doubleValueOfQuotient(rawNumerator(), rawDenominator());
+		return result;
 	}
 
 	/**
@@ -2199,8 +2517,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	// @PrecisionLoss
 	public long doubleBitsValue() {
 		// [rounding step, possible loss of precision step]
-		return (toIEEE754(this, DOUBLE_FLOAT_FRACTION_SIZE,
-				DOUBLE_FLOAT_EXPONENT_SIZE)[0]);
+		return Double.doubleToRawLongBits(doubleValue());
 	}
 
 	/**
@@ -2401,6 +2718,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 * @return a rational representation of the given value.
 	 */
 	public static Rational valueOf(long value) {
+		final ArithmeticContext context = context();
 		// return the internal constants if possible
 
 		// optimization
@@ -2411,23 +2729,72 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			// jump table, for speed
 			switch ((int) value) {
 			case 0:
-				return ZERO;
+				return context.zero;
 			case 1:
-				return ONE;
+				return context.one;
 			case -1:
-				return MINUS_ONE;
+				return context.minusOne;
 			case 2:
-				return TWO;
+				return context.two;
 			case 10:
-				return TEN;
+				return context.ten;
 			case 16:
-				return SIXTEEN;
+				return context.sixteen;
+			}
+		}
+
+		// optimization: small integers are interned.
+		if (context.longFastPathEnabled && value != Long.MIN_VALUE) {
+			final Rational result = internedLongRational(value, 1);
+			if (result != null) {
+				return result;
 			}
 		}
 
 		return new Rational(value);
 	}
 
+	/**
+	 * Build a Rational from long fix number integers representing a numerator
+	 * and denominator (which need not be normalized).
+	 * <p>
+	 * Unlike <CODE>new Rational(numerator, denominator)</CODE>, the canonical
+	 * (i.e. interned) instance for the value is returned, so that equal values
+	 * obtained this way are identical. Small values (see
+	 * {@link AICUtilConfiguration#getRationalInternGridBound()}) are returned
+	 * without allocation or locking.
+	 * 
+	 * @param numerator
+	 *        the rational's numerator.
+	 * @param denominator
+	 *        the rational's denominator (quotient).
+	 * @return the canonical rational for numerator/denominator.
+	 */
+	public static Rational valueOf(long numerator, long denominator) {
+		if (denominator == 0) {
+			throw new NumberFormatException("Denominator zero");
+		}
+
+		// optimization: normalize as longs and look in the intern grid first.
+		final ArithmeticContext context = context();
+		if (context.longFastPathEnabled && numerator != Long.MIN_VALUE && denominator != Long.MIN_VALUE) {
+			if (numerator == 0) {
+				return context.zero;
+			}
+			if (denominator < 0) {
+				numerator   = -numerator;
+				denominator = -denominator;
+			}
+			final long gcd = longGCD(Math.abs(numerator), denominator);
+			final Rational result = internedLongRational(numerator / gcd, denominator / gcd);
+			if (result != null) {
+				return result;
+			}
+		}
+
+		return new Rational(numerator, denominator).intern();
+	}
+
 	// note: byte/short/int implicitly upgraded to long,
 	// so strictly the additional implementations aren't needed;
 	// with unsigned (below) they however are
@@ -2474,7 +2841,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 * @return a rational representation of the given value.
 	 */
 	public static Rational valueOf(double value) {
-		return new Rational(value);
+		return valueOfDoubleBits(Double.doubleToRawLongBits(value));
 	}
 
 	/**
@@ -2503,7 +2870,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		final Rational b = valueOf(value);
 		// mind the long being unsigned with highest significant
 		// bit (bit#63) set (interpreted as negative by valueOf(long))
-		return (b.isNegative() ? b.add(TWO_POWER_64) : b);
+		return (b.isNegative() ? b.add(context().twoPower64) : b);
 	}
 
 	/**
@@ -2570,8 +2937,47 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 * @return a rational representation of the given value.
 	 */
 	public static Rational valueOfDoubleBits(long value) {
-		return fromIEEE754(new long[] { value, }, DOUBLE_FLOAT_FRACTION_SIZE,
-				DOUBLE_FLOAT_EXPONENT_SIZE);
+		// optimization: decompose the bits directly into an (odd) mantissa and a
+		// power of two, instead of going through fromIEEE754()'s rational arithmetic.
+		final int  rawExponent = (int) (value >>> DOUBLE_FLOAT_FRACTION_SIZE) & ((1 << DOUBLE_FLOAT_EXPONENT_SIZE) - 1);
+		final long rawFraction = value & ((1L << DOUBLE_FLOAT_FRACTION_SIZE) - 1);
+		final boolean negative = value < 0;
+
+		// check for Infinity and NaN (IEEE 754 rawExponent at its maximum)
+		if (rawExponent == (1 << DOUBLE_FLOAT_EXPONENT_SIZE) - 1) {
+			throw new NumberFormatException(rawFraction == 0 ? (negative ? "-Infinity" : "Infinity") : "NaN");
+		}
+		if (rawExponent == 0 && rawFraction == 0) {
+			return ZERO;
+		}
+
+		// handle subnormal numbers too (with rawExponent==0, whose exponent is one off)
+		long mantissa = rawExponent == 0 ? rawFraction : rawFraction | (1L << DOUBLE_FLOAT_FRACTION_SIZE);
+		int  exponent = (rawExponent == 0 ? 1 : rawExponent) - DOUBLE_FLOAT_EXPONENT_BIAS - DOUBLE_FLOAT_FRACTION_SIZE;
+		final int trailingZeros = Long.numberOfTrailingZeros(mantissa);
+		mantissa >>= trailingZeros;
+		exponent += trailingZeros;
+		if (negative) {
+			mantissa = -mantissa;
+		}
+
+		final Rational result;
+		if (exponent >= 0) {
+			if (exponent < Long.numberOfLeadingZeros(Math.abs(mantissa)) - 1) {
+				result = fromReducedLongs(mantissa << exponent, 1L);
+			}
+			else {
+				result = newFromCoprime(BigInteger.valueOf(mantissa).shiftLeft(exponent), BigInteger.ONE);
+			}
+		}
+		else if (-exponent < Long.SIZE - 1) {
+			// [an odd mantissa over a power of two is already reduced]
+			result = fromReducedLongs(mantissa, 1L << -exponent);
+		}
+		else {
+			result = newFromCoprime(BigInteger.valueOf(mantissa), BigInteger.ONE.shiftLeft(-exponent));
+		}
+		return result;
 	}
 
 	/**
@@ -2786,33 +3192,248 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	}
 
 	/**
-	 * Return an array of Rationals with both integer and fractional part.
+	 * The best rational approximation of this Rational with a denominator of
+	 * at most a given value, i.e. the closest such rational (the one with the
+	 * smaller denominator in case of a tie), obtained from the convergents and
+	 * semiconvergents of this Rational's continued fraction.
 	 * <p>
-	 * Integer part is returned at offset 0; fractional part at offset 1.
+	 * If this Rational's denominator is already within the bound, or this
+	 * Rational is an approximation (whose size is already bounded by its
+	 * precision), [as an optimization] this Rational is returned.
+	 * <p>
+	 * Possible loss of precision.
 	 * 
-     * @return an array of Rationals with both integer and fractional part.
+	 * @param maximumDenominator
+	 *        the largest denominator allowed (&gt;= 1).
+	 * @return the best approximation of this rational with a denominator of at
+	 *         most maximumDenominator.
 	 */
-	public Rational[] integerAndFractionalPart() {
-		// note: this duplicates fractionalPart() code, for speed.
+	// @PrecisionLoss
+	public Rational approximateWithMaxDenominator(BigIntegerNumber maximumDenominator) {
+		final BigInteger maximum = bigIntegerOf(maximumDenominator);
+		if (maximum.signum() <= 0) {
+			throw new IllegalArgumentException("Maximum denominator must be positive: " + maximumDenominator);
+		}
+		if (!isExact()) {
+			return this;
+		}
 
-		final Rational[] pp = new Rational[2];
-		final Rational ip = integerPart();
-		pp[0] = ip;
-		pp[1] = subtract(ip);
+		final BigInteger numerator   = exactNumerator();
+		final BigInteger denominator = exactDenominator();
+		if (denominator.compareTo(maximum) <= 0) {
+			return this;
+		}
 
-		return pp;
+		// convergents p/q of numerator/denominator, previous one in p0/q0.
+		BigInteger p0 = BigInteger.ZERO, q0 = BigInteger.ONE;
+		BigInteger p1 = BigInteger.ONE,  q1 = BigInteger.ZERO;
+		BigInteger dividend = numerator;
+		BigInteger divisor  = denominator;
+		while (true) {
+			final BigInteger[] quotientAndRemainder = floorDivideAndRemainder(dividend, divisor);
+			final BigInteger   term = quotientAndRemainder[0];
+			final BigInteger   q2   = q0.add(term.multiply(q1));
+			if (q2.compareTo(maximum) > 0) {
+				break;
+			}
+			final BigInteger p2 = p0.add(term.multiply(p1));
+			p0 = p1; q0 = q1;
+			p1 = p2; q1 = q2;
+			dividend = divisor;
+			divisor  = quotientAndRemainder[1];
+			// note: divisor never gets to zero, as the last convergent is numerator/denominator itself.
+		}
+
+		// the best approximation is either the last convergent within the bound
+		// or the largest semiconvergent within it.
+		final BigInteger largestTerm = maximum.subtract(q0).divide(q1);
+		final BigInteger semiconvergentNumerator   = p0.add(largestTerm.multiply(p1));
+		final BigInteger semiconvergentDenominator = q0.add(largestTerm.multiply(q1));
+		// compare |p1/q1 - n/d| with |sp/sq - n/d|, i.e. |p1*d - n*q1|*sq with |sp*d - n*sq|*q1.
+		final BigInteger convergentError     = p1.multiply(denominator).subtract(numerator.multiply(q1)).abs().multiply(semiconvergentDenominator);
+		final BigInteger semiconvergentError = semiconvergentNumerator.multiply(denominator).subtract(numerator.multiply(semiconvergentDenominator)).abs().multiply(q1);
+		final Rational result;
+		if (semiconvergentError.compareTo(convergentError) < 0) {
+			result = newFromCoprime(semiconvergentNumerator, semiconvergentDenominator);
+		}
+		else {
+			result = newFromCoprime(p1, q1);
+		}
+		return result;
 	}
-	
+
 	/**
-	 * Clone the current Rational.
-	 * 
-	 * @return {@inheritDoc}
+	 * The simplest rational (i.e. with the smallest denominator) within a
+	 * relative error of this Rational, i.e. in [this - eps*|this|, this +
+	 * eps*|this|], obtained by comparing the continued fractions of the
+	 * interval's bounds.
+	 * <p>
+	 * If this Rational is an integer or an approximation (whose size is
+	 * already bounded by its precision), or the relative error is zero, [as
+	 * an optimization] this Rational is returned. If the relative error is at
+	 * least one, the interval includes zero, which is then returned.
+	 * <p>
+	 * Possible loss of precision.
+	 * 
+	 * @param relativeError
+	 *        the largest relative error allowed (&gt;= 0).
+	 * @return the simplest rational within the given relative error of this
+	 *         rational.
+	 */
+	// @PrecisionLoss
+	public Rational approximateWithRelativeError(Rational relativeError) {
+		if (relativeError.signum() < 0) {
+			throw new IllegalArgumentException("Relative error must not be negative: " + relativeError);
+		}
+		if (relativeError.isZero()) {
+			return this;
+		}
+		if (relativeError.compareTo(ONE) >= 0) {
+			return ZERO;
+		}
+
+		final Rational result = approximateWithRelativeError(bigIntegerOf(relativeError.getNumerator()), bigIntegerOf(relativeError.getDenominator()));
+		return result;
+	}
+
+	/**
+	 * Return an array of Rationals with both integer and fractional part.
+	 * <p>
+	 * Integer part is returned at offset 0; fractional part at offset 1.
+	 * 
+     * @return an array of Rationals with both integer and fractional part.
+	 */
+	public Rational[] integerAndFractionalPart() {
+		// note: this duplicates fractionalPart() code, for speed.
+
+		final Rational[] pp = new Rational[2];
+		final Rational ip = integerPart();
+		pp[0] = ip;
+		pp[1] = subtract(ip);
+
+		return pp;
+	}
+	
+	/**
+	 * Clone the current Rational.
+	 * 
+	 * @return {@inheritDoc}
 	 */
 	@Override
 	public Rational clone() throws CloneNotSupportedException {
 		return (Rational) super.clone();
 	}
 	
+	/**
+	 * Indicates whether the results of arithmetic on the current thread are
+	 * currently left unreduced until their reduced form is needed, either
+	 * globally (see
+	 * {@link AICUtilConfiguration#isRationalLazyNormalizationEnabled()}) or
+	 * because the current thread is within
+	 * {@link #computeWithLazyNormalization(NullaryFunction)}.
+	 * 
+	 * @return true if lazy normalization is in effect for the current thread.
+	 */
+	public static boolean isLazyNormalizationEnabled() {
+		boolean result = LAZY_NORMALIZATION_ENABLED
+				|| (NUMBER_OF_ACTIVE_LAZY_NORMALIZATION_SCOPES.get() > 0 && LAZY_NORMALIZATION_SCOPE_DEPTH.get()[0] > 0);
+		return result;
+	}
+
+	/**
+	 * Perform a computation, on the current thread, in which the results of
+	 * add, subtract, multiply and divide are not reduced (i.e. the gcd of
+	 * their numerator and denominator is not divided out) until their reduced
+	 * form is needed by equals(), hashCode(), toString(), getNumerator(),
+	 * getDenominator(), serialization, etc. or until their size passes
+	 * {@link AICUtilConfiguration#getRationalLazyNormalizationThresholdInBits()}.
+	 * This avoids most gcd computations in long chains of arithmetic whose
+	 * intermediate values are immediately consumed. Scopes may be nested.
+	 * Note: only takes effect when rational approximation is disabled, as
+	 * deferring reduction would change how approximate values are rounded.
+	 * 
+	 * @param computation
+	 *        the computation to be performed.
+	 * @return the result of the computation.
+	 * @param <T> the type of the result of the computation.
+	 */
+	public static <T> T computeWithLazyNormalization(NullaryFunction<T> computation) {
+		int[] depth = LAZY_NORMALIZATION_SCOPE_DEPTH.get();
+		if (depth[0]++ == 0) {
+			NUMBER_OF_ACTIVE_LAZY_NORMALIZATION_SCOPES.incrementAndGet();
+		}
+		try {
+			T result = computation.apply();
+			return result;
+		}
+		finally {
+			if (--depth[0] == 0) {
+				NUMBER_OF_ACTIVE_LAZY_NORMALIZATION_SCOPES.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Perform a computation, on the current thread, in which the exact results
+	 * of add, subtract, multiply and divide whose denominators exceed a given
+	 * bit length are replaced by the simplest rational within a relative error
+	 * of 2^-precisionInBits (see
+	 * {@link #approximateWithRelativeError(Rational)}). This keeps the operands
+	 * of long iterative computations (e.g. refinement loops) from growing
+	 * without bound while, unlike approximate arithmetic, leaving numbers
+	 * outside of the computation, and small ones within it, exact. Scopes may
+	 * be nested, the innermost one being in effect.
+	 * Note: values held as longs are never approximated.
+	 * 
+	 * @param thresholdInBits
+	 *        the denominator bit length (&gt; 0) past which results are approximated.
+	 * @param precisionInBits
+	 *        the (&gt; 0) number of bits of relative precision kept by approximations.
+	 * @param computation
+	 *        the computation to be performed.
+	 * @return the result of the computation.
+	 * @param <T> the type of the result of the computation.
+	 */
+	public static <T> T computeWithBoundedArithmetic(int thresholdInBits, int precisionInBits, NullaryFunction<T> computation) {
+		if (thresholdInBits <= 0 || precisionInBits <= 0) {
+			throw new IllegalArgumentException("Bounded arithmetic threshold and precision must be positive: " + thresholdInBits + ", " + precisionInBits);
+		}
+		int[] scope = BOUNDED_ARITHMETIC_SCOPE.get();
+		int enclosingThresholdInBits = scope[0];
+		int enclosingPrecisionInBits = scope[1];
+		if (enclosingThresholdInBits == 0) {
+			NUMBER_OF_ACTIVE_BOUNDED_ARITHMETIC_SCOPES.incrementAndGet();
+		}
+		scope[0] = thresholdInBits;
+		scope[1] = precisionInBits;
+		try {
+			T result = computation.apply();
+			return result;
+		}
+		finally {
+			scope[0] = enclosingThresholdInBits;
+			scope[1] = enclosingPrecisionInBits;
+			if (enclosingThresholdInBits == 0) {
+				NUMBER_OF_ACTIVE_BOUNDED_ARITHMETIC_SCOPES.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Perform a computation with bounded arithmetic (see
+	 * {@link #computeWithBoundedArithmetic(int, int, NullaryFunction)}), with
+	 * the threshold and precision of {@link AICUtilConfiguration}.
+	 * 
+	 * @param computation
+	 *        the computation to be performed.
+	 * @return the result of the computation.
+	 * @param <T> the type of the result of the computation.
+	 */
+	public static <T> T computeWithBoundedArithmetic(NullaryFunction<T> computation) {
+		T result = computeWithBoundedArithmetic(BOUNDED_ARITHMETIC_THRESHOLD_IN_BITS, BOUNDED_ARITHMETIC_PRECISION_IN_BITS, computation);
+		return result;
+	}
+
 	public static void resetApproximationConfigurationFromAICUtilConfiguration() {
 		resetApproximationConfiguration(AICUtilConfiguration.isRationalApproximationEnabled(),
 										AICUtilConfiguration.getRationalApproximationPrecision(),
@@ -2820,50 +3441,151 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	}
 	
 	public static void resetApproximationConfiguration(boolean enabled, int precision, RoundingMode roundingMode) {
-		BigIntegerNumberFactory.resetApproximationConfiguration(enabled, precision, roundingMode);
+		// note: contexts are cached, so switching back to earlier settings reuses their constants and interned values.
+		ArithmeticContext context = ArithmeticContext.valueOf(enabled, precision, roundingMode);
+		ArithmeticContext.setDefault(context);
+		LAZY_NORMALIZATION_ENABLED           = AICUtilConfiguration.isRationalLazyNormalizationEnabled();
+		LAZY_NORMALIZATION_THRESHOLD_IN_BITS = AICUtilConfiguration.getRationalLazyNormalizationThresholdInBits();
+		BOUNDED_ARITHMETIC_ENABLED           = AICUtilConfiguration.isRationalBoundedArithmeticEnabled();
+		BOUNDED_ARITHMETIC_THRESHOLD_IN_BITS = AICUtilConfiguration.getRationalBoundedArithmeticThresholdInBits();
+		BOUNDED_ARITHMETIC_PRECISION_IN_BITS = AICUtilConfiguration.getRationalBoundedArithmeticPrecisionInBits();
 		
-		// Private Big Integer Numbers
-		BIG_INTEGER_ZERO         = BigIntegerNumberFactory.valueOf(0);
-		BIG_INTEGER_ONE          = BigIntegerNumberFactory.valueOf(1);
-		BIG_INTEGER_MINUS_ONE    = BigIntegerNumberFactory.valueOf(-1);
-        BIG_INTEGER_TWO          = BigIntegerNumberFactory.valueOf(2);
-        BIG_INTEGER_MINUS_TWO    = BigIntegerNumberFactory.valueOf(-2);
-        BIG_INTEGER_TEN          = BigIntegerNumberFactory.valueOf(10);
-        BIG_INTEGER_SIXTEEN      = BigIntegerNumberFactory.valueOf(16);
-        BIG_INTEGER_TWO_POWER_64 = BigIntegerNumberFactory.valueOf(2).pow(64);
-        
-        // Private Rationals
-        TWO                 = new Rational(2);
-        TEN                 = new Rational(10);
-        SIXTEEN             = new Rational(16);
-        TWO_POWER_64        = new Rational(BIG_INTEGER_TWO_POWER_64);
-        LOGARITHM_TEN_GUESS = new Rational(1741647, 524288);
-        LOGARITHM_SIXTEEN   = new Rational(4);
-        
-        // Private log() related constants
-    	BIGINT_POS_MAX_SMALL_INT_EXPONENT_VALUE = BigIntegerNumberFactory.valueOf(POS_MAX_SMALL_INT_EXPONENT_VALUE); 
-    	BIGINT_NEG_MAX_SMALL_INT_EXPONENT_VALUE = BigIntegerNumberFactory.valueOf(NEG_MAX_SMALL_INT_EXPONENT_VALUE);
-    	//		
-    	RATIONAL_POS_MAX_SMALL_INT_EXPONENT_VALUE = new Rational(BIGINT_POS_MAX_SMALL_INT_EXPONENT_VALUE);
-    	RATIONAL_LOG_DOUBLE_MAX_VALUE             = new Rational(""+Math.log(Double.MAX_VALUE));
-    	RATIONAL_DOUBLE_MAX_VALUE                 = new Rational(""+Double.MAX_VALUE);
-        
-        // Public Rationals	
-    	ZERO      = new Rational(0);
-    	ONE       = new Rational(1);
-    	MINUS_ONE = new Rational(-1);        
+		// Public Rationals
+		ZERO      = context.zero;
+		ONE       = context.one;
+		MINUS_ONE = context.minusOne;
+	}
+
+	/**
+	 * Writes this rational in a compact binary format that, unlike Java serialization,
+	 * takes only a few bytes for small values: a value held as longs is written as
+	 * two varints, others as their reduced numerator and denominator
+	 * (see {@link BigIntegerNumber#writeTo(DataOutput)}).
+	 * 
+	 * @param output
+	 *        the output to write to.
+	 * @throws IOException
+	 *         if the output cannot be written to.
+	 */
+	public void writeTo(DataOutput output) throws IOException {
+		NumberCodec.write(this, output);
+	}
+	
+	/**
+	 * Writes this rational in the format of {@link #writeTo(DataOutput)}.
+	 * 
+	 * @param buffer
+	 *        the buffer to write to.
+	 * @throws java.nio.BufferOverflowException
+	 *         if the buffer does not have enough space left.
+	 */
+	public void writeTo(ByteBuffer buffer) {
+		NumberCodec.write(this, buffer);
+	}
+	
+	/**
+	 * Reads a rational written by {@link #writeTo(DataOutput)}. Approximate numerators and
+	 * denominators are read in the representation they were written in.
+	 * 
+	 * @param input
+	 *        the input to read from.
+	 * @return the rational read.
+	 * @throws IOException
+	 *         if the input cannot be read or does not hold a valid rational.
+	 */
+	public static Rational readFrom(DataInput input) throws IOException {
+		Rational result = NumberCodec.readRational(input);
+		return result;
+	}
+	
+	/**
+	 * Reads a rational written by {@link #writeTo(ByteBuffer)}.
+	 * 
+	 * @param buffer
+	 *        the buffer to read from.
+	 * @return the rational read.
+	 * @throws java.nio.BufferUnderflowException
+	 *         if the buffer ends before the rational does.
+	 * @throws IllegalArgumentException
+	 *         if the buffer does not hold a valid rational.
+	 */
+	public static Rational readFrom(ByteBuffer buffer) {
+		Rational result = NumberCodec.readRational(buffer);
+		return result;
+	}
+
+	//
+	// PACKAGE METHODS (used by RationalAccumulator and NumberCodec)
+	//
+	
+	static boolean isLongFastPathEnabled() {
+		return context().longFastPathEnabled;
+	}
+	
+	boolean isHeldAsLongs() {
+		return isLong;
+	}
+	
+	long getLongNumerator() {
+		return longNumerator;
+	}
+	
+	long getLongDenominator() {
+		return longDenominator;
+	}
+	
+	/**
+	 * A Rational for a reduced long numerator and a positive long denominator,
+	 * held as longs without computing their gcd when the long fast path is enabled.
+	 */
+	static Rational fromReducedLongs(long numerator, long denominator) {
+		Rational result;
+		if (context().longFastPathEnabled && numerator != Long.MIN_VALUE) {
+			result = new Rational(numerator, numerator == 0 ? 1 : denominator, true);
+		}
+		else {
+			result = new Rational(numerator, denominator);
+		}
+		return result;
+	}
+	
+	/**
+	 * A Rational for a reduced numerator and a positive denominator, without computing their gcd.
+	 */
+	static Rational fromReduced(BigIntegerNumber numerator, BigIntegerNumber denominator) {
+		Rational result = new Rational(numerator, denominator, false);
+		return result;
 	}
 
 	//
 	// PRIVATE METHODS
 	//	
 
+	/**
+	 * The arithmetic context in which the current thread's operations take place.
+	 */
+	private static ArithmeticContext context() {
+		return ArithmeticContext.getCurrent();
+	}
+
 	/**
 	 * Normalize Rational. Denominator will be positive, numerator and
 	 * denominator will have no common divisor. BigIntegers -1, 0, 1 will be set
 	 * to constants for later comparison speed.
 	 */
 	private void normalize(boolean isGCDComputationRequired) {
+		if (ArithmeticStatistics.ENABLED && numerator != null && denominator != null) {
+			final long start = ArithmeticStatistics.startNormalization(Math.max(numerator.bitLength(), denominator.bitLength()));
+			normalizeWithoutStatistics(isGCDComputationRequired);
+			ArithmeticStatistics.endNormalization(start);
+		}
+		else {
+			normalizeWithoutStatistics(isGCDComputationRequired);
+		}
+	}
+
+	private void normalizeWithoutStatistics(boolean isGCDComputationRequired) {
+		final ArithmeticContext context = context();
 		// note: don't call anything that depends on a normalized this.
 		// i.e.: don't call most (or all) of the Rational methods.
 
@@ -2884,30 +3606,30 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		if (numeratorSignum == 0 && denominatorSignum == 0) {
 			// [typically not reached, due to earlier tests.]
 			// [both for speed]
-			numerator = BIG_INTEGER_ZERO;
-			denominator = BIG_INTEGER_ZERO;
+			numerator = context.bigIntegerZero;
+			denominator = context.bigIntegerZero;
 			return;
 		}
 
 		if (numeratorSignum == 0) {
-			denominator = BIG_INTEGER_ONE;
+			denominator = context.bigIntegerOne;
 			// [for speed]
-			numerator = BIG_INTEGER_ZERO;
+			numerator = context.bigIntegerZero;
 			return;
 		}
 
 		if (denominatorSignum == 0) {
 			// [typically not reached, due to earlier tests.]
-			numerator = BIG_INTEGER_ONE;
+			numerator = context.bigIntegerOne;
 			// [for speed]
-			denominator = BIG_INTEGER_ZERO;
+			denominator = context.bigIntegerZero;
 			return;
 		}
 
 		// optimization
 		// check the frequent case of denominator==1, for speed.
 		// note: this only covers the normalized-for-speed 1-case.
-		if (denominator == BIG_INTEGER_ONE) {
+		if (denominator == context.bigIntegerOne) {
 			// [for [later] speed]
 			numerator = bigIntegerValueOf(numerator);
 			return;
@@ -2916,7 +3638,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		// optimization
 		// check the symmetric case too, for speed.
 		// note: this only covers the normalized-for-speed 1-case.
-		if ((numerator == BIG_INTEGER_ONE || numerator == BIG_INTEGER_MINUS_ONE)
+		if ((numerator == context.bigIntegerOne || numerator == context.bigIntegerMinusOne)
 				&& denominatorSignum > 0) {
 			// [for [later] speed]
 			denominator = bigIntegerValueOf(denominator);
@@ -2945,6 +3667,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		}
 		
 		if (isGCDComputationRequired) {
+			if (ArithmeticStatistics.ENABLED) {
+				ArithmeticStatistics.record(Operation.GCD, Math.max(numeratorApart.bitLength(), denominatorApart.bitLength()));
+			}
 			final BigIntegerNumber gcd = numeratorApart.gcd(denominatorApart);
 	
 			// test: optimization (body: not)
@@ -2972,6 +3697,11 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		this.denominator = denominator;
 
 		normalize(isGCDComputationRequired);
+
+		// optimization: results that fit in longs are operated on as longs from now on.
+		if (context().longFastPathEnabled) {
+			toLongsIfPossible();
+		}
 	}
 
 	/**
@@ -2982,9 +3712,432 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			throw new NumberFormatException("null");
 		}
 
+		// optimization
+		if (that.isLong) {
+			this.isLong          = true;
+			this.longNumerator   = that.longNumerator;
+			this.longDenominator = that.longDenominator;
+			return;
+		}
+
 		normalizeFrom(that.numerator, that.denominator);
 	}
 
+	/**
+	 * Normalize the signs of a Rational computed under lazy normalization but
+	 * leave it unreduced, unless it is already known to be reduced, fits in
+	 * longs (in which case reducing is cheap) or has grown past
+	 * LAZY_NORMALIZATION_THRESHOLD_IN_BITS.
+	 */
+	private void normalizeLazilyFrom(BigIntegerNumber numerator, BigIntegerNumber denominator) {
+		final ArithmeticContext context = context();
+		this.numerator = numerator;
+		this.denominator = denominator;
+
+		normalize(false);
+
+		if (!bigIntegerIsOne(this.denominator)) {
+			if ((context.longFastPathEnabled && this.numerator.fitsInLong() && this.denominator.fitsInLong())
+					|| this.numerator.bitLength() > LAZY_NORMALIZATION_THRESHOLD_IN_BITS
+					|| this.denominator.bitLength() > LAZY_NORMALIZATION_THRESHOLD_IN_BITS) {
+				normalize(true);
+			}
+			else {
+				isReduced = false;
+				return;
+			}
+		}
+
+		if (context.longFastPathEnabled) {
+			toLongsIfPossible();
+		}
+	}
+
+	/**
+	 * Construct the result of an arithmetic operation, reducing it now unless
+	 * lazy normalization is in effect. Note: approximate numbers are bounded by
+	 * their precision (so their gcds are cheap) and deferring their reduction
+	 * would change how they are rounded, so they are always reduced.
+	 */
+	private static Rational newArithmeticResult(BigIntegerNumber numerator, BigIntegerNumber denominator) {
+		Rational result;
+		if (!context().isApproximationEnabled() && isLazyNormalizationEnabled()) {
+			result = new Rational();
+			result.normalizeLazilyFrom(numerator, denominator);
+		}
+		else {
+			result = new Rational(numerator, denominator);
+		}
+		// optimization: only look up the thread's scope if bounded arithmetic may be in effect.
+		if (BOUNDED_ARITHMETIC_ENABLED || NUMBER_OF_ACTIVE_BOUNDED_ARITHMETIC_SCOPES.get() > 0) {
+			result = bounded(result);
+		}
+		return result;
+	}
+
+	/**
+	 * The result of an arithmetic operation under the bounded arithmetic in
+	 * effect, if any (see computeWithBoundedArithmetic()).
+	 */
+	private static Rational bounded(Rational rational) {
+		final int[] scope = BOUNDED_ARITHMETIC_SCOPE.get();
+		final int thresholdInBits;
+		final int precisionInBits;
+		if (scope[0] > 0) {
+			thresholdInBits = scope[0];
+			precisionInBits = scope[1];
+		}
+		else if (BOUNDED_ARITHMETIC_ENABLED) {
+			thresholdInBits = BOUNDED_ARITHMETIC_THRESHOLD_IN_BITS;
+			precisionInBits = BOUNDED_ARITHMETIC_PRECISION_IN_BITS;
+		}
+		else {
+			return rational;
+		}
+		Rational result = rational;
+		if (!rational.isLong && rational.rawDenominator().bitLength() > thresholdInBits && rational.isExact()) {
+			result = rational.approximateWithRelativeError(BigInteger.ONE, BigInteger.ONE.shiftLeft(precisionInBits));
+		}
+		return result;
+	}
+
+	/**
+	 * Construct a Rational from a numerator and denominator that have the same
+	 * common divisors as this one's (e.g. when negating or inverting).
+	 */
+	private Rational newWithSameReduction(BigIntegerNumber numerator, BigIntegerNumber denominator) {
+		if (isReduced) {
+			return new Rational(numerator, denominator, false);
+		}
+		Rational result = new Rational();
+		result.numerator = numerator;
+		result.denominator = denominator;
+		result.normalize(false);
+		result.isReduced = false;
+		return result;
+	}
+
+	/**
+	 * The reduced form of this Rational (this, if it is already reduced).
+	 */
+	private Rational reduced() {
+		if (isReduced) {
+			return this;
+		}
+		Rational result = reducedForm;
+		if (result == null) {
+			result = new Rational(numerator, denominator);
+			reducedForm = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Numerator, which is not necessarily reduced.
+	 */
+	private BigIntegerNumber rawNumerator() {
+		BigIntegerNumber result = numerator;
+		if (result == null) {
+			// lazy init, as instances are immutable
+			result = bigIntegerValueOf(longNumerator);
+			numerator = result;
+		}
+		else if (isLong && !context().isRepresentationOf(result)) {
+			// values held as longs are exact in every context, so convert them for the
+			// caller's context, but never publish the conversion in the shared field.
+			result = bigIntegerValueOf(longNumerator);
+		}
+		return result;
+	}
+
+	/**
+	 * Denominator, which is not necessarily reduced.
+	 */
+	private BigIntegerNumber rawDenominator() {
+		BigIntegerNumber result = denominator;
+		if (result == null) {
+			// lazy init, as instances are immutable
+			result = bigIntegerValueOf(longDenominator);
+			denominator = result;
+		}
+		else if (isLong && !context().isRepresentationOf(result)) {
+			// values held as longs are exact in every context, so convert them for the
+			// caller's context, but never publish the conversion in the shared field.
+			result = bigIntegerValueOf(longDenominator);
+		}
+		return result;
+	}
+
+	/**
+	 * Only the reduced form of a Rational is ever serialized.
+	 */
+	private Object writeReplace() {
+		return reduced();
+	}
+
+	/**
+	 * Normalize Rational from long numerator and denominator (denominator must
+	 * not be zero), keeping it represented by longs. Returns false, leaving this
+	 * unchanged, if the long fast path is not enabled or the normalized values
+	 * would include Long.MIN_VALUE.
+	 */
+	private boolean normalizeFromLongs(long numerator, long denominator) {
+		if (!context().longFastPathEnabled || numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE) {
+			return false;
+		}
+
+		if (ArithmeticStatistics.ENABLED) {
+			ArithmeticStatistics.record(Operation.NORMALIZE, Math.max(ArithmeticStatistics.bitLength(numerator), ArithmeticStatistics.bitLength(denominator)));
+		}
+
+		if (numerator == 0) {
+			denominator = 1;
+		}
+		else {
+			if (denominator < 0) {
+				numerator   = -numerator;
+				denominator = -denominator;
+			}
+			final long gcd = longGCD(Math.abs(numerator), denominator);
+			// test: optimization (body: not)
+			if (gcd != 1) {
+				numerator   /= gcd;
+				denominator /= gcd;
+			}
+		}
+
+		this.isLong          = true;
+		this.longNumerator   = numerator;
+		this.longDenominator = denominator;
+		return true;
+	}
+
+	/**
+	 * Switch a normalized Rational to be represented by longs if its numerator
+	 * and denominator are integers that fit in them (neither being Long.MIN_VALUE).
+	 */
+	private void toLongsIfPossible() {
+		// note: approximate numbers need not be integers (e.g. logs) and
+		// so are not always exactly representable by longs.
+		if (denominator.signum() <= 0 || !numerator.fitsInLong() || !denominator.fitsInLong()) {
+			return;
+		}
+
+		final long longNumerator   = numerator.longValueExact();
+		final long longDenominator = denominator.longValueExact();
+		if (longNumerator == Long.MIN_VALUE || longDenominator == Long.MIN_VALUE) {
+			return;
+		}
+
+		// [the already created numerator and denominator are kept for later use]
+		this.isLong          = true;
+		this.longNumerator   = longNumerator;
+		this.longDenominator = longDenominator;
+	}
+
+	/**
+	 * Whether binary operations with another Rational can use the long fast path.
+	 */
+	private boolean isLongFastPathApplicable(Rational that) {
+		return context().longFastPathEnabled && isLong && that.isLong;
+	}
+
+	/**
+	 * Long fast path addition of two normalized long fractions (second numerator
+	 * may be the negation of a normalized one). Returns null on long overflow.
+	 */
+	private static Rational addLongs(long numerator1, long denominator1, long numerator2, long denominator2) {
+		final long[] numerator   = new long[1];
+		final long[] denominator = new long[1];
+		if (!addReducedLongs(numerator1, denominator1, numerator2, denominator2, numerator, denominator, 0)) {
+			return null;
+		}
+		return newLongRational(numerator[0], denominator[0]);
+	}
+
+	/**
+	 * Long fast path multiplication of two normalized long fractions (second
+	 * operand may be an inverted normalized one). Returns null on long overflow.
+	 */
+	private static Rational multiplyLongs(long numerator1, long denominator1, long numerator2, long denominator2) {
+		final long[] numerator   = new long[1];
+		final long[] denominator = new long[1];
+		if (!multiplyReducedLongs(numerator1, denominator1, numerator2, denominator2, numerator, denominator, 0)) {
+			return null;
+		}
+		return newLongRational(numerator[0], denominator[0]);
+	}
+
+	/**
+	 * Stores the reduced sum of two reduced long fractions (with positive
+	 * denominators) at the given index of the result arrays. Uses the common denominator gcd so that intermediate
+	 * values stay small.
+	 * 
+	 * @return false, leaving the result arrays unchanged, if the sum does not fit
+	 *         in longs (or its numerator would be Long.MIN_VALUE).
+	 */
+	static boolean addReducedLongs(long numerator1, long denominator1, long numerator2, long denominator2, long[] resultNumerators, long[] resultDenominators, int index) {
+		try {
+			long numerator;
+			long denominator;
+			if (denominator1 == denominator2) {
+				// optimization: common when adding values over the same denominator
+				numerator = Math.addExact(numerator1, numerator2);
+				if (numerator == Long.MIN_VALUE) {
+					return false;
+				}
+				final long gcd = longGCD(Math.abs(numerator), denominator1);
+				numerator   /= gcd;
+				denominator  = denominator1 / gcd;
+			}
+			else {
+				final long gcd = longGCD(denominator1, denominator2);
+				final long sum = Math.addExact(Math.multiplyExact(numerator1, denominator2 / gcd), Math.multiplyExact(numerator2, denominator1 / gcd));
+				if (sum == Long.MIN_VALUE) {
+					return false;
+				}
+				// only factors of gcd can be common to the sum and the denominator.
+				final long gcd2 = longGCD(Math.abs(sum), gcd);
+				numerator   = sum / gcd2;
+				denominator = Math.multiplyExact(denominator1 / gcd, denominator2 / gcd2);
+			}
+			resultNumerators[index]   = numerator;
+			resultDenominators[index] = numerator == 0 ? 1 : denominator;
+			return true;
+		} catch (ArithmeticException overflow) {
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the reduced product of two reduced long fractions (with positive
+	 * denominators) at the given index of the result arrays. Cross cancels
+	 * common factors so that the product is already reduced.
+	 * 
+	 * @return false, leaving the result arrays unchanged, if the product does not
+	 *         fit in longs (or a numerator is Long.MIN_VALUE).
+	 */
+	static boolean multiplyReducedLongs(long numerator1, long denominator1, long numerator2, long denominator2, long[] resultNumerators, long[] resultDenominators, int index) {
+		if (numerator1 == 0 || numerator2 == 0) {
+			resultNumerators[index]   = 0;
+			resultDenominators[index] = 1;
+			return true;
+		}
+		if (numerator1 == Long.MIN_VALUE || numerator2 == Long.MIN_VALUE) {
+			return false;
+		}
+		try {
+			final long gcd1 = longGCD(Math.abs(numerator1), denominator2);
+			final long gcd2 = longGCD(Math.abs(numerator2), denominator1);
+			final long numerator   = Math.multiplyExact(numerator1 / gcd1, numerator2 / gcd2);
+			final long denominator = Math.multiplyExact(denominator1 / gcd2, denominator2 / gcd1);
+			if (numerator == Long.MIN_VALUE) {
+				return false;
+			}
+			resultNumerators[index]   = numerator;
+			resultDenominators[index] = denominator;
+			return true;
+		} catch (ArithmeticException overflow) {
+			return false;
+		}
+	}
+
+	/**
+	 * Create (or get the interned instance of) a Rational from an already
+	 * normalized long numerator and denominator, or null if either is
+	 * Long.MIN_VALUE (which is not allowed so that long numerators can always
+	 * be negated).
+	 */
+	private static Rational newLongRational(long numerator, long denominator) {
+		if (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE) {
+			return null;
+		}
+		Rational result = internedLongRational(numerator, denominator);
+		if (result == null) {
+			result = new Rational(numerator, denominator, true);
+		}
+		return result;
+	}
+
+	/**
+	 * The canonical instance of an already normalized long numerator and
+	 * denominator (neither being Long.MIN_VALUE) from the intern grid, or null
+	 * if outside of it.
+	 */
+	private static Rational internedLongRational(long numerator, long denominator) {
+		final ArithmeticContext context = context();
+		final int index = context.internGridIndex(numerator, denominator);
+		if (index == -1) {
+			return null;
+		}
+		final AtomicReferenceArray<Rational> grid = context.internGrid;
+		Rational result = grid.get(index);
+		if (result == null) {
+			result = new Rational(numerator, denominator, true);
+			if (!grid.compareAndSet(index, null, result)) {
+				result = grid.get(index);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Record an operation with another Rational (or a unary one, if that is
+	 * this) and the larger bit length of their numerators and denominators.
+	 */
+	private void recordStatistics(Operation operation, Rational that) {
+		ArithmeticStatistics.record(operation, Math.max(bitLengthForStatistics(), that.bitLengthForStatistics()));
+	}
+
+	private int bitLengthForStatistics() {
+		final int result = isLong
+				? ArithmeticStatistics.bitLength(Math.abs(longNumerator) | longDenominator)
+				: Math.max(numerator.bitLength(), denominator.bitLength());
+		return result;
+	}
+
+	/**
+	 * Greatest common divisor of two non-negative longs (binary gcd), shared by
+	 * all long arithmetic in this package.
+	 */
+	static long longGCD(long a, long b) {
+		if (ArithmeticStatistics.ENABLED) {
+			ArithmeticStatistics.record(Operation.GCD, ArithmeticStatistics.bitLength(a | b));
+		}
+		if (a == 0) {
+			return b;
+		}
+		if (b == 0) {
+			return a;
+		}
+		// optimization: a first (Euclidean) step if the operands have very different sizes, as
+		// the binary algorithm would otherwise remove only about one bit of the larger per iteration.
+		if ((a >>> 8) > b) {
+			a %= b;
+			if (a == 0) {
+				return b;
+			}
+		}
+		else if ((b >>> 8) > a) {
+			b %= a;
+			if (b == 0) {
+				return a;
+			}
+		}
+		final int commonTwos = Long.numberOfTrailingZeros(a | b);
+		a >>= Long.numberOfTrailingZeros(a);
+		while (b != 0) {
+			b >>= Long.numberOfTrailingZeros(b);
+			if (a > b) {
+				final long t = b;
+				b = a;
+				a = t;
+			}
+			b -= a;
+		}
+		return a << commonTwos;
+	}
+
 	/**
 	 * Check constraints on radixes. Radix may not be negative or less than two.
 	 */
@@ -3093,6 +4246,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 * Proxy to BigInteger.valueOf(). Speeds up comparisons by using constants.
 	 */
 	private static BigIntegerNumber bigIntegerValueOf(long number) {
+		final ArithmeticContext context = context();
 		// return the internal constants used for checks if possible.
 
 		// optimization
@@ -3103,19 +4257,19 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			// jump table, for speed
 			switch ((int) number) {
 			case 0:
-				return BIG_INTEGER_ZERO;
+				return context.bigIntegerZero;
 			case 1:
-				return BIG_INTEGER_ONE;
+				return context.bigIntegerOne;
 			case -1:
-				return BIG_INTEGER_MINUS_ONE;
+				return context.bigIntegerMinusOne;
 			case 2:
-				return BIG_INTEGER_TWO;
+				return context.bigIntegerTwo;
 			case -2:
-				return BIG_INTEGER_MINUS_TWO;
+				return context.bigIntegerMinusTwo;
 			case 10:
-				return BIG_INTEGER_TEN;
+				return context.bigIntegerTen;
 			case 16:
-				return BIG_INTEGER_SIXTEEN;
+				return context.bigIntegerSixteen;
 			}
 		}
 
@@ -3127,6 +4281,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 * comparisons by using constants.
 	 */
 	private static BigIntegerNumber bigIntegerValueOf(BigIntegerNumber number) {
+		final ArithmeticContext context = context();
 		// note: these tests are quite expensive,
 		// so they should be minimized to a reasonable amount.
 
@@ -3136,40 +4291,40 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		// cheap tests first.
 
 		// optimization
-		if (number == BIG_INTEGER_ONE) {
+		if (number == context.bigIntegerOne) {
 			return number;
 		}
 
 		// optimization
-		if (number == BIG_INTEGER_ZERO) {
+		if (number == context.bigIntegerZero) {
 			// [typically not reached, since zero is handled specially.]
 			return number;
 		}
 
 		// optimization
-		if (number == BIG_INTEGER_MINUS_ONE) {
+		if (number == context.bigIntegerMinusOne) {
 			return number;
 		}
 
 		// more expensive tests later.
 
 		// optimization
-		if (number.equals(BIG_INTEGER_ONE)) {
-			return BIG_INTEGER_ONE;
+		if (number.equals(context.bigIntegerOne)) {
+			return context.bigIntegerOne;
 		}
 
 		// optimization
-		if (number.equals(BIG_INTEGER_ZERO)) {
+		if (number.equals(context.bigIntegerZero)) {
 			// [typically not reached from normalize().]
-			return BIG_INTEGER_ZERO;
+			return context.bigIntegerZero;
 		}
 
 		// optimization
-		if (number.equals(BIG_INTEGER_MINUS_ONE)) {
-			return BIG_INTEGER_MINUS_ONE;
+		if (number.equals(context.bigIntegerMinusOne)) {
+			return context.bigIntegerMinusOne;
 		}
 
-		// note: BIG_INTEGER_TWO et al. _not_ used for checks
+		// note: bigIntegerTwo et al. _not_ used for checks
 		// and therefore not replaced by constants_here_.
 		// this speeds up tests.
 
@@ -3177,10 +4332,240 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		return number;
 	}
 
+	/**
+	 * The simplest rational within a relative error of errorNumerator/errorDenominator
+	 * (in (0, 1)) of this Rational, this one if it is an integer or an approximation.
+	 */
+	private Rational approximateWithRelativeError(BigInteger errorNumerator, BigInteger errorDenominator) {
+		if (!isExact() || isInteger()) {
+			return this;
+		}
+
+		// the interval's bounds, for |this| = n/d and eps = en/ed, are n*(ed -+ en)/(d*ed).
+		final BigInteger numerator   = exactNumerator().abs();
+		final BigInteger denominator = exactDenominator();
+		BigInteger lowerNumerator   = numerator.multiply(errorDenominator.subtract(errorNumerator));
+		BigInteger lowerDenominator = denominator.multiply(errorDenominator);
+		BigInteger upperNumerator   = numerator.multiply(errorDenominator.add(errorNumerator));
+		BigInteger upperDenominator = lowerDenominator;
+
+		// follow the common continued fraction of the bounds until they part.
+		BigInteger p0 = BigInteger.ZERO, q0 = BigInteger.ONE;
+		BigInteger p1 = BigInteger.ONE,  q1 = BigInteger.ZERO;
+		while (true) {
+			final BigInteger[] lowerQuotientAndRemainder = lowerNumerator.divideAndRemainder(lowerDenominator);
+			final BigInteger   lowerQuotient             = lowerQuotientAndRemainder[0];
+			final BigInteger   upperQuotient             = upperNumerator.divide(upperDenominator);
+			final boolean      isLast;
+			final BigInteger   term;
+			if (lowerQuotientAndRemainder[1].signum() == 0) {
+				// the lower bound is the simplest rational from here on.
+				term   = lowerQuotient;
+				isLast = true;
+			}
+			else if (lowerQuotient.compareTo(upperQuotient) < 0) {
+				// the (integer) part following the lower bound's is in the interval.
+				term   = lowerQuotient.add(BigInteger.ONE);
+				isLast = true;
+			}
+			else {
+				term   = lowerQuotient;
+				isLast = false;
+			}
+			final BigInteger p2 = p0.add(term.multiply(p1));
+			final BigInteger q2 = q0.add(term.multiply(q1));
+			p0 = p1; q0 = q1;
+			p1 = p2; q1 = q2;
+			if (isLast) {
+				break;
+			}
+			// the remaining interval is [1/(upper - term), 1/(lower - term)].
+			final BigInteger upperRemainder = upperNumerator.subtract(term.multiply(upperDenominator));
+			upperNumerator   = lowerDenominator;
+			lowerNumerator   = upperDenominator;
+			upperDenominator = lowerQuotientAndRemainder[1];
+			lowerDenominator = upperRemainder;
+		}
+		final Rational result = newFromCoprime(signum() < 0 ? p1.negate() : p1, q1);
+		return result;
+	}
+
+	/**
+	 * The correctly rounded (round-half-even) double value of numerator/denominator,
+	 * for any (exact or approximate) numbers. Approximations are decomposed into
+	 * integer*10^decimalExponent or integer*2^binaryExponent.
+	 */
+	private static double doubleValueOfQuotient(BigIntegerNumber numerator, BigIntegerNumber denominator) {
+		final BigInteger[] integers        = new BigInteger[2];
+		final long[]       decimalExponent = new long[1];
+		final long[]       binaryExponent  = new long[1];
+		decompose(numerator,   0, 1,  integers, decimalExponent, binaryExponent);
+		decompose(denominator, 1, -1, integers, decimalExponent, binaryExponent);
+		BigInteger numeratorInteger   = integers[0];
+		BigInteger denominatorInteger = integers[1];
+		if (numeratorInteger.signum() == 0) {
+			return 0.0;
+		}
+		if (denominatorInteger.signum() < 0) {
+			numeratorInteger   = numeratorInteger.negate();
+			denominatorInteger = denominatorInteger.negate();
+		}
+
+		// optimization: results certainly out of the range of doubles are not computed
+		// (which also keeps 5^decimalExponent below from getting large).
+		final double log2 = numeratorInteger.bitLength() - denominatorInteger.bitLength() + decimalExponent[0] * LOG2_10 + binaryExponent[0];
+		if (log2 > DOUBLE_FLOAT_EXPONENT_BIAS + 3) {
+			return numeratorInteger.signum() * Double.POSITIVE_INFINITY;
+		}
+		if (log2 < -(DOUBLE_FLOAT_EXPONENT_BIAS + DOUBLE_FLOAT_FRACTION_SIZE + 3)) {
+			return numeratorInteger.signum() * 0.0;
+		}
+
+		// 10^k = 5^k * 2^k
+		final int k = (int) decimalExponent[0];
+		if (k > 0) {
+			numeratorInteger = numeratorInteger.multiply(FIVE.pow(k));
+		}
+		else if (k < 0) {
+			denominatorInteger = denominatorInteger.multiply(FIVE.pow(-k));
+		}
+		final double result = doubleValueOfQuotient(numeratorInteger, denominatorInteger, binaryExponent[0] + k);
+		return result;
+	}
+
+	/**
+	 * Decompose a number into an integer (stored in integers[index]) times
+	 * powers of ten and two (whose exponents, times exponentSign, are added to
+	 * decimalExponent[0] and binaryExponent[0]).
+	 */
+	private static void decompose(BigIntegerNumber number, int index, int exponentSign, BigInteger[] integers, long[] decimalExponent, long[] binaryExponent) {
+		if (number instanceof BigIntegerNumberHybrid) {
+			number = ((BigIntegerNumberHybrid) number).getValue();
+		}
+		if (number instanceof BigIntegerNumberExact) {
+			integers[index] = ((BigIntegerNumberExact) number).getBigInteger();
+		}
+		else if (number instanceof BigIntegerNumberApproximate) {
+			final BigDecimal value = ((BigIntegerNumberApproximate) number).getBigDecimal();
+			integers[index] = value.unscaledValue();
+			decimalExponent[0] -= exponentSign * (long) value.scale();
+		}
+		else {
+			// value = mantissa*2^(exponent-FRACTION_SIZE), exactly.
+			final BigIntegerNumberApproximateBinary binary = (BigIntegerNumberApproximateBinary) number;
+			integers[index] = BigInteger.valueOf(binary.getMantissa());
+			binaryExponent[0] += exponentSign * ((long) binary.getExponent() - BigIntegerNumberApproximateBinary.FRACTION_SIZE);
+		}
+	}
+
+	/**
+	 * The correctly rounded (round-half-even) double value of
+	 * numerator/denominator*2^binaryExponent (denominator positive).
+	 */
+	private static double doubleValueOfQuotient(BigInteger numerator, BigInteger denominator, long binaryExponent) {
+		final int signum = numerator.signum();
+		if (signum == 0) {
+			return 0.0;
+		}
+		final BigInteger magnitude = numerator.abs();
+
+		// scale so that the integer quotient has 55 or 56 bits, i.e. a 53 bit mantissa
+		// followed by at least 2 more bits for rounding (the remainder is the sticky bit).
+		final int scale = DOUBLE_FLOAT_MANTISSA_SIZE + 2 + denominator.bitLength() - magnitude.bitLength();
+		final BigInteger[] quotientAndRemainder = scale >= 0
+				? magnitude.shiftLeft(scale).divideAndRemainder(denominator)
+				: magnitude.divideAndRemainder(denominator.shiftLeft(-scale));
+		final long quotient     = quotientAndRemainder[0].longValue();
+		final boolean isInexact = quotientAndRemainder[1].signum() != 0;
+
+		// |numerator/denominator*2^binaryExponent| ~= quotient*2^(binaryExponent - scale), in [2^exponent, 2^(exponent+1)).
+		final int quotientBitLength = Long.SIZE - Long.numberOfLeadingZeros(quotient);
+		final long exponent = (long) quotientBitLength - 1 - scale + binaryExponent;
+		if (exponent > DOUBLE_FLOAT_EXPONENT_BIAS) {
+			return signum * Double.POSITIVE_INFINITY;
+		}
+		// bits to drop from the quotient: the ones beyond the mantissa, and more for subnormal numbers.
+		long dropped = quotientBitLength - DOUBLE_FLOAT_MANTISSA_SIZE;
+		if (exponent < 1 - DOUBLE_FLOAT_EXPONENT_BIAS) {
+			dropped += 1 - DOUBLE_FLOAT_EXPONENT_BIAS - exponent;
+		}
+		if (dropped > quotientBitLength) {
+			// underflow, below half the smallest subnormal number
+			return signum * 0.0;
+		}
+		final int  drop     = (int) dropped;
+		long       mantissa = quotient >>> drop;
+		final long halfBit  = 1L << (drop - 1);
+		if ((quotient & halfBit) != 0 && ((quotient & (halfBit - 1)) != 0 || isInexact || (mantissa & 1) != 0)) {
+			mantissa++;
+		}
+		// [the rounded mantissa times a power of two is exactly representable (or overflows to infinity)]
+		final double result = signum * Math.scalb((double) mantissa, (int) (drop - scale + binaryExponent));
+		return result;
+	}
+
+	/**
+	 * The BigInteger value of an integral BigIntegerNumber.
+	 */
+	private static BigInteger bigIntegerOf(BigIntegerNumber number) {
+		if (number instanceof BigIntegerNumberHybrid) {
+			number = ((BigIntegerNumberHybrid) number).getValue();
+		}
+		final BigInteger result;
+		if (number instanceof BigIntegerNumberExact) {
+			result = ((BigIntegerNumberExact) number).getBigInteger();
+		}
+		else if (number instanceof BigIntegerNumberApproximateBinary) {
+			result = ((BigIntegerNumberApproximateBinary) number).toBigIntegerNumberExact().getBigInteger();
+		}
+		else {
+			result = ((BigIntegerNumberApproximate) number).toBigIntegerNumberExact().getBigInteger();
+		}
+		return result;
+	}
+
+	/**
+	 * Numerator of an exact Rational, as a BigInteger (not necessarily reduced).
+	 */
+	private BigInteger exactNumerator() {
+		final BigInteger result = isLong ? BigInteger.valueOf(longNumerator) : bigIntegerOf(rawNumerator());
+		return result;
+	}
+
+	/**
+	 * Denominator of an exact Rational, as a BigInteger (not necessarily reduced).
+	 */
+	private BigInteger exactDenominator() {
+		final BigInteger result = isLong ? BigInteger.valueOf(longDenominator) : bigIntegerOf(rawDenominator());
+		return result;
+	}
+
+	/**
+	 * Division rounding towards negative infinity, so that the remainder is never negative (divisor must be positive).
+	 */
+	private static BigInteger[] floorDivideAndRemainder(BigInteger dividend, BigInteger divisor) {
+		final BigInteger[] result = dividend.divideAndRemainder(divisor);
+		if (result[1].signum() < 0) {
+			result[0] = result[0].subtract(BigInteger.ONE);
+			result[1] = result[1].add(divisor);
+		}
+		return result;
+	}
+
+	/**
+	 * A Rational from a numerator and a positive denominator known to be coprime.
+	 */
+	private static Rational newFromCoprime(BigInteger numerator, BigInteger denominator) {
+		final ArithmeticContext context = context();
+		final Rational result = new Rational(context.bigIntegerNumberValueOf(numerator), context.bigIntegerNumberValueOf(denominator), false);
+		return result;
+	}
+
 	/**
 	 * Proxy to (new BigInteger()). Speeds up comparisons by using constants.
 	 */
 	private static BigIntegerNumber bigIntegerValueOf(String strNumber, int radix) {
+		final ArithmeticContext context = context();
 		// note: mind the radix.
 		// however, 0/1/-1 are not a problem.
 
@@ -3189,22 +4574,22 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 
 		// optimization
 		if (strNumber.equals("1")) {
-			return BIG_INTEGER_ONE;
+			return context.bigIntegerOne;
 		}
 
 		// optimization
 		if (strNumber.equals("0")) {
-			return BIG_INTEGER_ZERO;
+			return context.bigIntegerZero;
 		}
 
 		// optimization
 		if (strNumber.equals("-1")) {
 			// typically not reached, due to [private] usage pattern,
 			// i.e. the sign is cut before
-			return BIG_INTEGER_MINUS_ONE;
+			return context.bigIntegerMinusOne;
 		}
 
-		// note: BIG_INTEGER_TWO et al. _not_ used for checks
+		// note: bigIntegerTwo et al. _not_ used for checks
 		// and therefore even less valuable.
 		// there's a tradeoff between speeds of these tests
 		// and being consistent in using all constants
@@ -3213,13 +4598,13 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		// optimization
 		if (radix > 2) {
 			if (strNumber.equals("2")) {
-				return BIG_INTEGER_TWO;
+				return context.bigIntegerTwo;
 			}
 
 			if (strNumber.equals("-2")) {
 				// typically not reached, due to [private] usage pattern,
 				// i.e. the sign is cut before
-				return BIG_INTEGER_MINUS_TWO;
+				return context.bigIntegerMinusTwo;
 			}
 		}
 
@@ -3227,17 +4612,17 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		if (strNumber.equals("10")) {
 			switch (radix) {
 			case 2:
-				return BIG_INTEGER_TWO;
+				return context.bigIntegerTwo;
 			case 10:
-				return BIG_INTEGER_TEN;
+				return context.bigIntegerTen;
 			case 16:
-				return BIG_INTEGER_SIXTEEN;
+				return context.bigIntegerSixteen;
 			}
 		}
 
 		// optimization
 		if (radix == 10 && strNumber.equals("16")) {
-			return BIG_INTEGER_SIXTEEN;
+			return context.bigIntegerSixteen;
 		}
 
 		// note: not directly finding the other [radix'] representations
@@ -3264,7 +4649,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	private static boolean bigIntegerIsZero(BigIntegerNumber n) {
 		// optimization first test is for speed.
-		if (n == BIG_INTEGER_ZERO) {
+		if (n == context().bigIntegerZero) {
 			return true;
 		}
 
@@ -3276,25 +4661,27 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 * One (1) value predicate. [For convenience and speed.]
 	 */
 	private static boolean bigIntegerIsOne(BigIntegerNumber n) {
+		final ArithmeticContext context = context();
 		// optimization first test is for speed.
-		if (n == BIG_INTEGER_ONE) {
+		if (n == context.bigIntegerOne) {
 			return true;
 		}
 
-		return bigIntegerEquals(n, BIG_INTEGER_ONE);
+		return bigIntegerEquals(n, context.bigIntegerOne);
 	}
 
 	/**
 	 * Minus-one (-1) value predicate. [For convenience and speed.]
 	 */
 	private static boolean bigIntegerIsMinusOne(BigIntegerNumber n) {
+		final ArithmeticContext context = context();
 		// optimization
 		// first test is for speed.
-		if (n == BIG_INTEGER_MINUS_ONE) {
+		if (n == context.bigIntegerMinusOne) {
 			return true;
 		}
 
-		return bigIntegerEquals(n, BIG_INTEGER_MINUS_ONE);
+		return bigIntegerEquals(n, context.bigIntegerMinusOne);
 	}
 
 	/**
@@ -3311,9 +4698,10 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 * optimized.
 	 */
 	private static BigIntegerNumber bigIntegerMultiply(BigIntegerNumber n, BigIntegerNumber m) {
+		final ArithmeticContext context = context();
 		// optimization: one or both operands are zero.
 		if (bigIntegerIsZero(n) || bigIntegerIsZero(m)) {
-			return BIG_INTEGER_ZERO;
+			return context.bigIntegerZero;
 		}
 
 		// optimization: second operand is one (i.e. neutral element).
@@ -3331,7 +4719,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			// optimization
 			if (bigIntegerIsMinusOne(n)) {
 				// typically not reached due to earlier test(s)
-				return BIG_INTEGER_ONE;
+				return context.bigIntegerOne;
 			}
 
 			return n.negate();
@@ -3351,6 +4739,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 * Proxy to BigInteger.pow(). For speed.
 	 */
 	private static BigIntegerNumber bigIntegerPower(BigIntegerNumber n, int exponent) {
+		final ArithmeticContext context = context();
 		// generally expecting exponent>=0
 		// (there's nor much use in inverting in the integer domain)
 		// the checks for exponent<0 below are done all the same
@@ -3363,7 +4752,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 				// pattern
 				throw new ArithmeticException("zero exp zero");
 			}
-			return BIG_INTEGER_ONE;
+			return context.bigIntegerOne;
 		case 1:
 			return n;
 		}
@@ -3372,17 +4761,17 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		if (bigIntegerIsZero(n) && exponent > 0) {
 			// note: exponent==0 already handled above
 			// typically not reached, due to earlier test
-			return BIG_INTEGER_ZERO;
+			return context.bigIntegerZero;
 		}
 
 		// optimization
 		if (bigIntegerIsOne(n)) {
-			return BIG_INTEGER_ONE;
+			return context.bigIntegerOne;
 		}
 
 		// optimization
 		if (bigIntegerIsMinusOne(n)) {
-			return (exponent % 2 == 0 ? BIG_INTEGER_ONE : BIG_INTEGER_MINUS_ONE);
+			return (exponent % 2 == 0 ? context.bigIntegerOne : context.bigIntegerMinusOne);
 		}
 
 		return n.pow(exponent);
@@ -3393,6 +4782,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	// @PrecisionLoss
 	private static int bigIntegerLogarithm2(BigIntegerNumber n) {
+		final ArithmeticContext context = context();
 		if (bigIntegerIsZero(n)) {
 			// [typically not reached, due to [private] usage pattern]
 			throw new ArithmeticException("logarithm of zero");
@@ -3409,16 +4799,16 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			exponent = 0;
 		}
 
-		BigIntegerNumber p = BIG_INTEGER_TWO.pow(exponent + 1);
+		BigIntegerNumber p = context.bigIntegerTwo.pow(exponent + 1);
 		while (n.compareTo(p) >= 0) {
 			// typically not reached
-			p = p.multiply(BIG_INTEGER_TWO);
+			p = p.multiply(context.bigIntegerTwo);
 			exponent++;
 		}
-		p = p.divide(BIG_INTEGER_TWO);
+		p = p.divide(context.bigIntegerTwo);
 		while (n.compareTo(p) < 0) {
 			// typically not reached
-			p = p.divide(BIG_INTEGER_TWO);
+			p = p.divide(context.bigIntegerTwo);
 			exponent--;
 		}
 
@@ -3468,7 +4858,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			}
 			// mind the long (value0[i]) being unsigned
 			fraction0 = fraction0.add(valueOfUnsigned(value0[i])).divide(
-					TWO_POWER_64);
+					context().twoPower64);
 			fractionSize -= 64;
 			i--;
 		}
@@ -3596,7 +4986,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		BigIntegerNumber mantissa = value.bigIntegerValue();
 		// adjust after [unfortunate] mantissa rounding
 		if (upper.compareTo(mantissa) <= 0) {
-			mantissa = mantissa.divide(BIG_INTEGER_TWO);
+			mantissa = mantissa.divide(context().bigIntegerTwo);
 			exponent++;
 		}
 
@@ -3606,7 +4996,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		int fractionSize1 = fractionSize;
 		while (fractionSize1 >= 64) {
 			final BigIntegerNumber[] divrem = mantissa
-					.divideAndRemainder(BIG_INTEGER_TWO_POWER_64);
+					.divideAndRemainder(context().bigIntegerTwoPower64);
 			// [according to BigInteger javadoc] this takes the least
 			// significant 64 bits;
 			// i.e. in this case the long is considered unsigned, as we want it
@@ -3920,6 +5310,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	// @PrecisionLoss
 	private int logarithm(int base) {
+		final ArithmeticContext context = context();
 		// optimization
 		if (base == 2) {
 			return logarithm2();
@@ -3954,13 +5345,13 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		// initial guess
 		// [base 2 handled earlier]
 		// [unusual bases are handled a bit less performant]
-		final Rational lbase = (base == 10 ? LOGARITHM_TEN_GUESS
-				: base == 16 ? LOGARITHM_SIXTEEN : valueOf(ilog2(base)));
+		final Rational lbase = (base == 10 ? context.logarithmTenGuess
+				: base == 16 ? context.logarithmSixteen : valueOf(ilog2(base)));
 		int n = valueOf(a.logarithm2()).divide(lbase).intValue();
 		a = a.divide(bbase.pow(n));
 
 		// note that these steps are needed anyway:
-		// LOGARITHM_TEN_GUESS above e.g. is (as the name suggests)
+		// logarithmTenGuess above e.g. is (as the name suggests)
 		// a guess only (since most logarithms usually can't be expressed
 		// as rationals generally); odd bases or off even worse
 		while (a.compareTo(bbase) >= 0) {
@@ -4024,9 +5415,9 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 			return ZERO;
 		}
 
-		return new Rational(bigIntegerMultiply(numerator, that.denominator)
-				.remainder(bigIntegerMultiply(denominator, that.numerator)),
-				bigIntegerMultiply(denominator, that.denominator));
+		return new Rational(bigIntegerMultiply(getNumerator(), that.getDenominator())
+				.remainder(bigIntegerMultiply(getDenominator(), that.getNumerator())),
+				bigIntegerMultiply(getDenominator(), that.getDenominator()));
 	}
 
 	/**
@@ -4036,17 +5427,18 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 	 */
 	// @PrecisionLoss
 	private BigIntegerNumber roundToBigInteger(int roundMode) {
+		final ArithmeticContext context = context();
 		// note: remainder and its duplicate are calculated for all cases.
 
-		BigIntegerNumber numerator = this.numerator;
-		final BigIntegerNumber denominator = this.denominator;
+		BigIntegerNumber numerator = getNumerator();
+		final BigIntegerNumber denominator = getDenominator();
 
 		final int signum = numerator.signum();
 
 		// optimization
 		if (signum == 0) {
 			// [typically not reached due to earlier test for integerp]
-			return BIG_INTEGER_ZERO;
+			return context.bigIntegerZero;
 		}
 
 		// keep info on the sign
@@ -4073,7 +5465,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		}
 
 		boolean up = false;
-		final int comp = r.multiply(BIG_INTEGER_TWO).compareTo(denominator);
+		final int comp = r.multiply(context.bigIntegerTwo).compareTo(denominator);
 
 		switch (roundMode) {
 
@@ -4122,12 +5514,12 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		// neighbor.
 		case ROUND_HALF_EVEN:
 			up = (comp != 0 ? comp > 0 : !bigIntegerIsZero(dv
-					.remainder(BIG_INTEGER_TWO)));
+					.remainder(context.bigIntegerTwo)));
 			break;
 
 		case ROUND_HALF_ODD:
 			up = (comp != 0 ? comp > 0 : bigIntegerIsZero(dv
-					.remainder(BIG_INTEGER_TWO)));
+					.remainder(context.bigIntegerTwo)));
 			break;
 
 		// Rounding mode to assert that the requested operation has an exact
@@ -4147,7 +5539,7 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 		}
 
 		if (up) {
-			dv = dv.add(BIG_INTEGER_ONE);
+			dv = dv.add(context.bigIntegerOne);
 		}
 
 		if (!isPositive) {
@@ -4160,58 +5552,17 @@ public class Rational extends Number implements Cloneable, Comparable<Object> {
 }
 
 class BigIntegerNumberFactory {
-	static boolean     APPROXIMATION_ENABLED;
-	static MathContext APPROXIMATION_MATH_CONTEXT;
+	// note: creates numbers under the current ArithmeticContext.
 	
-	public static void resetApproximationConfiguration(boolean enabled, int precision, RoundingMode roundingMode) {
-		APPROXIMATION_ENABLED = enabled;		
-		APPROXIMATION_MATH_CONTEXT = new MathContext(precision, roundingMode);
-	}
-		
 	public static BigIntegerNumber valueOf(long l) {
-		BigIntegerNumber result;
-
-		if (APPROXIMATION_ENABLED) {
-			result = new BigIntegerNumberApproximate(l, APPROXIMATION_MATH_CONTEXT);
-		}
-		else {
-			result = new BigIntegerNumberExact(l);
-		}
-		
-		return result;
+		return ArithmeticContext.getCurrent().bigIntegerNumberValueOf(l);
 	}
 	
 	public static BigIntegerNumber valueOf(String strNumber, int radix) {
-		BigIntegerNumber result;
-	
-		if (APPROXIMATION_ENABLED) {
-			result = new BigIntegerNumberApproximate(strNumber, radix, APPROXIMATION_MATH_CONTEXT);
-		}
-		else {
-			result = new BigIntegerNumberExact(strNumber, radix);
-		}
-				
-		return result;
+		return ArithmeticContext.getCurrent().bigIntegerNumberValueOf(strNumber, radix);
 	}
 	
 	public static Rational rationalValueOf(BigDecimal bigDecimal) {
-		Rational result;
-		
-		if (APPROXIMATION_ENABLED) {
-			result = new Rational(new BigIntegerNumberApproximate(bigDecimal, APPROXIMATION_MATH_CONTEXT));
-		}
-		else {
-			if (bigDecimal.scale() <= 0) {
-				result = new Rational(new BigIntegerNumberExact(bigDecimal.toBigIntegerExact()));
-			}
-			else {
-				BigIntegerNumberExact numerator   = new BigIntegerNumberExact(bigDecimal.scaleByPowerOfTen(bigDecimal.scale()).toBigIntegerExact());
-				BigIntegerNumberExact denominator = new BigIntegerNumberExact(BigDecimal.ONE.scaleByPowerOfTen(bigDecimal.scale()).toBigIntegerExact());
-				
-				result = new Rational(numerator, denominator);
-			}
-		}
-		
-		return result;
+		return ArithmeticContext.getCurrent().rationalValueOf(bigDecimal);
 	}
 }
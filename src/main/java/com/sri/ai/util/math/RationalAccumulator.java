@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A mutable accumulator of sums and products of {@link Rational}s, intended
+ * for long running folds (e.g. summing very many probabilities) where
+ * allocating and normalizing a new immutable Rational at each step would
+ * dominate the cost.<br>
+ * <br>
+ * While the pending numerator and denominator fit in longs they are operated
+ * on directly (and kept reduced, which keeps them small). Once they no longer
+ * fit they are held as {@link BigIntegerNumber}s
+ * and only reduced once their size exceeds a (configurable) number of bits.
+ * In all cases the value is fully normalized when {@link #toRational()} is
+ * called.<br>
+ * <br>
+ * <b>Note:</b> instances are not thread safe.
+ */
+@Beta
+public class RationalAccumulator {
+	/**
+	 * The default size, in bits, that the pending numerator or denominator
+	 * may grow to before they are reduced by their gcd.
+	 */
+	public static final int DEFAULT_NORMALIZATION_THRESHOLD_IN_BITS = 512;
+	//
+	private int normalizationThresholdInBits;
+	// Representation while the pending value fits in longs
+	private boolean isLong;
+	private long longNumerator;
+	private long longDenominator; // always > 0
+	// Representation once the pending value no longer fits in longs
+	private BigIntegerNumber numerator;
+	private BigIntegerNumber denominator; // always > 0
+	// Scratch space for the results of long operations
+	private final long[] longResultNumerator   = new long[1];
+	private final long[] longResultDenominator = new long[1];
+	
+	/**
+	 * Construct an accumulator initialized to zero, using the default normalization threshold.
+	 */
+	public RationalAccumulator() {
+		this(Rational.ZERO, DEFAULT_NORMALIZATION_THRESHOLD_IN_BITS);
+	}
+	
+	/**
+	 * Construct an accumulator initialized to the given value, using the default normalization threshold.
+	 * 
+	 * @param initialValue
+	 *        the initial value of the accumulator.
+	 */
+	public RationalAccumulator(Rational initialValue) {
+		this(initialValue, DEFAULT_NORMALIZATION_THRESHOLD_IN_BITS);
+	}
+	
+	/**
+	 * Construct an accumulator initialized to the given value.
+	 * 
+	 * @param initialValue
+	 *        the initial value of the accumulator.
+	 * @param normalizationThresholdInBits
+	 *        the size, in bits, that the pending numerator or denominator may grow to before
+	 *        they are reduced by their gcd (must be positive).
+	 */
+	public RationalAccumulator(Rational initialValue, int normalizationThresholdInBits) {
+		if (normalizationThresholdInBits <= 0) {
+			throw new IllegalArgumentException("normalizationThresholdInBits must be positive: " + normalizationThresholdInBits);
+		}
+		this.normalizationThresholdInBits = normalizationThresholdInBits;
+		reset(initialValue);
+	}
+	
+	/**
+	 * Reset the accumulator to zero so that it can be reused.
+	 * 
+	 * @return this accumulator.
+	 */
+	public RationalAccumulator reset() {
+		return reset(Rational.ZERO);
+	}
+	
+	/**
+	 * Reset the accumulator to the given value so that it can be reused.
+	 * 
+	 * @param value
+	 *        the new value of the accumulator.
+	 * @return this accumulator.
+	 */
+	public RationalAccumulator reset(Rational value) {
+		if (value.isHeldAsLongs() && Rational.isLongFastPathEnabled()) {
+			setLongs(value.getLongNumerator(), value.getLongDenominator());
+		}
+		else {
+			setBigIntegerNumbers(value.getNumerator(), value.getDenominator());
+		}
+		return this;
+	}
+	
+	/**
+	 * 
+	 * @return true if the current value of the accumulator is zero.
+	 */
+	public boolean isZero() {
+		boolean result = isLong ? longNumerator == 0 : numerator.signum() == 0;
+		return result;
+	}
+	
+	/**
+	 * Add a rational to the accumulator.
+	 * 
+	 * @param that
+	 *        the value to be added.
+	 * @return this accumulator.
+	 */
+	public RationalAccumulator add(Rational that) {
+		if (isLong && that.isHeldAsLongs() && addLongs(that.getLongNumerator(), that.getLongDenominator())) {
+			return this;
+		}
+		addBigIntegerNumbers(that.getNumerator(), that.getDenominator());
+		return this;
+	}
+	
+	/**
+	 * Add a long to the accumulator.
+	 * 
+	 * @param that
+	 *        the value to be added.
+	 * @return this accumulator.
+	 */
+	public RationalAccumulator add(long that) {
+		if (isLong && addLongs(that, 1L)) {
+			return this;
+		}
+		final ArithmeticContext context = ArithmeticContext.getCurrent();
+		addBigIntegerNumbers(context.bigIntegerNumberValueOf(that), context.bigIntegerOne);
+		return this;
+	}
+	
+	/**
+	 * Add a fraction of longs to the accumulator.
+	 * 
+	 * @param thatNumerator
+	 *        the numerator of the value to be added.
+	 * @param thatDenominator
+	 *        the denominator of the value to be added, positive and without common divisors with thatNumerator.
+	 * @return this accumulator.
+	 */
+	RationalAccumulator add(long thatNumerator, long thatDenominator) {
+		if (isLong && addLongs(thatNumerator, thatDenominator)) {
+			return this;
+		}
+		final ArithmeticContext context = ArithmeticContext.getCurrent();
+		addBigIntegerNumbers(context.bigIntegerNumberValueOf(thatNumerator), context.bigIntegerNumberValueOf(thatDenominator));
+		return this;
+	}
+	
+	/**
+	 * Add (the exact rational value of) a double to the accumulator.
+	 * 
+	 * @param that
+	 *        the value to be added.
+	 * @return this accumulator.
+	 */
+	public RationalAccumulator add(double that) {
+		return add(Rational.valueOf(that));
+	}
+	
+	/**
+	 * Multiply the accumulator by a rational.
+	 * 
+	 * @param that
+	 *        the value to multiply by.
+	 * @return this accumulator.
+	 */
+	public RationalAccumulator multiply(Rational that) {
+		if (isLong && that.isHeldAsLongs() && multiplyLongs(that.getLongNumerator(), that.getLongDenominator())) {
+			return this;
+		}
+		multiplyBigIntegerNumbers(that.getNumerator(), that.getDenominator());
+		return this;
+	}
+	
+	/**
+	 * Multiply the accumulator by a long.
+	 * 
+	 * @param that
+	 *        the value to multiply by.
+	 * @return this accumulator.
+	 */
+	public RationalAccumulator multiply(long that) {
+		if (isLong && multiplyLongs(that, 1L)) {
+			return this;
+		}
+		final ArithmeticContext context = ArithmeticContext.getCurrent();
+		multiplyBigIntegerNumbers(context.bigIntegerNumberValueOf(that), context.bigIntegerOne);
+		return this;
+	}
+	
+	/**
+	 * Multiply the accumulator by (the exact rational value of) a double.
+	 * 
+	 * @param that
+	 *        the value to multiply by.
+	 * @return this accumulator.
+	 */
+	public RationalAccumulator multiply(double that) {
+		return multiply(Rational.valueOf(that));
+	}
+	
+	/**
+	 * Normalize the accumulated value and return it as a Rational. The
+	 * accumulator can continue to be used afterwards.
+	 * 
+	 * @return the accumulated value.
+	 */
+	public Rational toRational() {
+		Rational result;
+		if (isLong) {
+			result = new Rational(longNumerator, longDenominator);
+		}
+		else {
+			result = new Rational(numerator, denominator);
+		}
+		// keep the normalized form, so that subsequent operations start from it.
+		reset(result);
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		return toRational().toString();
+	}
+	
+	//
+	// PRIVATE
+	//
+	private void setLongs(long numerator, long denominator) {
+		this.isLong          = true;
+		this.longNumerator   = numerator;
+		this.longDenominator = denominator;
+		this.numerator       = null;
+		this.denominator     = null;
+	}
+	
+	private void setBigIntegerNumbers(BigIntegerNumber numerator, BigIntegerNumber denominator) {
+		this.isLong      = false;
+		this.numerator   = numerator;
+		this.denominator = denominator;
+	}
+	
+	private boolean addLongs(long thatNumerator, long thatDenominator) {
+		boolean result = Rational.addReducedLongs(longNumerator, longDenominator, thatNumerator, thatDenominator, longResultNumerator, longResultDenominator, 0);
+		if (result) {
+			longNumerator   = longResultNumerator[0];
+			longDenominator = longResultDenominator[0];
+		}
+		return result;
+	}
+	
+	private boolean multiplyLongs(long thatNumerator, long thatDenominator) {
+		boolean result = Rational.multiplyReducedLongs(longNumerator, longDenominator, thatNumerator, thatDenominator, longResultNumerator, longResultDenominator, 0);
+		if (result) {
+			longNumerator   = longResultNumerator[0];
+			longDenominator = longResultDenominator[0];
+		}
+		return result;
+	}
+	
+	private void addBigIntegerNumbers(BigIntegerNumber thatNumerator, BigIntegerNumber thatDenominator) {
+		promoteToBigIntegerNumbers();
+		if (denominator.equals(thatDenominator)) {
+			numerator = numerator.add(thatNumerator);
+		}
+		else {
+			numerator   = numerator.multiply(thatDenominator).add(thatNumerator.multiply(denominator));
+			denominator = denominator.multiply(thatDenominator);
+		}
+		normalizeIfThresholdExceeded();
+	}
+	
+	private void multiplyBigIntegerNumbers(BigIntegerNumber thatNumerator, BigIntegerNumber thatDenominator) {
+		promoteToBigIntegerNumbers();
+		numerator   = numerator.multiply(thatNumerator);
+		denominator = denominator.multiply(thatDenominator);
+		normalizeIfThresholdExceeded();
+	}
+	
+	private void promoteToBigIntegerNumbers() {
+		if (isLong) {
+			final ArithmeticContext context = ArithmeticContext.getCurrent();
+			setBigIntegerNumbers(context.bigIntegerNumberValueOf(longNumerator), context.bigIntegerNumberValueOf(longDenominator));
+		}
+	}
+	
+	private void normalizeIfThresholdExceeded() {
+		if (numerator.signum() == 0) {
+			reset(Rational.ZERO);
+		}
+		else if (numerator.bitLength() > normalizationThresholdInBits || denominator.bitLength() > normalizationThresholdInBits) {
+			// Note: will return to operating on longs if the normalized value fits.
+			reset(new Rational(numerator, denominator));
+		}
+	}
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * An immutable real number given by a {@link Rational} value together with a
+ * double interval enclosing it, for deciding predicates (signs, comparisons,
+ * threshold checks) on the results of long computations without computing
+ * their exact values, i.e. the "filtered exact computation" of computational
+ * geometry.<br>
+ * <br>
+ * Arithmetic operations only compute the (outward rounded) interval of their
+ * result, and defer the exact computation. Predicates are decided from the
+ * intervals when these do not overlap (or do not contain zero), and only
+ * otherwise compute (and keep) the exact values involved. So that
+ * computing an exact value never recurses too deeply, chains of more than
+ * {@link #MAXIMUM_DEFERRED_DEPTH} deferred operations are computed as they
+ * are built.<br>
+ * <br>
+ * <b>Note:</b> deferred exact values are computed in the
+ * {@link ArithmeticContext} current when they are needed, and the intervals
+ * enclose the results of exact arithmetic, so this is intended for exact
+ * contexts. Also, dividing by a value whose interval contains zero (but which
+ * is not known to be zero) only throws an ArithmeticException when the exact
+ * value of the quotient is needed.
+ */
+@Beta
+public final class RationalInterval implements Comparable<RationalInterval> {
+	/**
+	 * The maximum length of a chain of deferred operations.
+	 */
+	public static final int MAXIMUM_DEFERRED_DEPTH = 64;
+	//
+	private static final double MAXIMUM_EXACT_LONG = 1L << 53;
+	//
+	public static final RationalInterval ZERO = valueOf(0);
+	public static final RationalInterval ONE  = valueOf(1);
+	//
+	private enum DeferredOperation {
+		ADD, SUBTRACT, MULTIPLY, DIVIDE
+	}
+	//
+	private final double       lowerBound;
+	private final double       upperBound;
+	private final int          depth;
+	private volatile Rational  exactValue;
+	// the deferred operation computing exactValue, released once it is computed (guarded by this)
+	private DeferredOperation  operation;
+	private RationalInterval   left;
+	private RationalInterval   right;
+	
+	/**
+	 * @param value
+	 *        a rational.
+	 * @return the given rational with an interval enclosing it.
+	 */
+	public static RationalInterval valueOf(Rational value) {
+		double lowerBound;
+		double upperBound;
+		if (value.isHeldAsLongs() && isExactlyRepresentable(value.getLongNumerator(), value.getLongDenominator())) {
+			lowerBound = upperBound = ((double) value.getLongNumerator()) / value.getLongDenominator();
+		}
+		else {
+			// [doubleValue() is correctly rounded, so within an ulp]
+			final double approximation = value.doubleValue();
+			lowerBound = Math.nextDown(approximation);
+			upperBound = Math.nextUp(approximation);
+		}
+		return new RationalInterval(lowerBound, upperBound, value);
+	}
+	
+	public static RationalInterval valueOf(long value) {
+		return valueOf(Rational.valueOf(value));
+	}
+	
+	/**
+	 * @param value
+	 *        a finite double.
+	 * @return the (exact rational value of the) given double.
+	 */
+	public static RationalInterval valueOf(double value) {
+		return new RationalInterval(value, value, Rational.valueOf(value));
+	}
+	
+	/**
+	 * @return a lower bound of this value (possibly negative infinity).
+	 */
+	public double getLowerBound() {
+		return lowerBound;
+	}
+	
+	/**
+	 * @return an upper bound of this value (possibly positive infinity).
+	 */
+	public double getUpperBound() {
+		return upperBound;
+	}
+	
+	/**
+	 * @return the exact value, computing it if it has not been yet.
+	 */
+	public Rational getExactValue() {
+		Rational result = exactValue;
+		if (result == null) {
+			result = computeExactValue();
+		}
+		return result;
+	}
+	
+	/**
+	 * @return whether the exact value has been computed (e.g. to check how often predicates need it).
+	 */
+	public boolean isExactValueComputed() {
+		return exactValue != null;
+	}
+	
+	public RationalInterval add(RationalInterval that) {
+		return new RationalInterval(
+				lowerBoundOfSum(lowerBound, that.lowerBound),
+				upperBoundOfSum(upperBound, that.upperBound),
+				DeferredOperation.ADD, this, that);
+	}
+	
+	public RationalInterval subtract(RationalInterval that) {
+		return new RationalInterval(
+				lowerBoundOfSum(lowerBound, -that.upperBound),
+				upperBoundOfSum(upperBound, -that.lowerBound),
+				DeferredOperation.SUBTRACT, this, that);
+	}
+	
+	public RationalInterval multiply(RationalInterval that) {
+		final double lower = Math.min(
+				Math.min(lowerBoundOfProduct(lowerBound, that.lowerBound), lowerBoundOfProduct(lowerBound, that.upperBound)),
+				Math.min(lowerBoundOfProduct(upperBound, that.lowerBound), lowerBoundOfProduct(upperBound, that.upperBound)));
+		final double upper = Math.max(
+				Math.max(upperBoundOfProduct(lowerBound, that.lowerBound), upperBoundOfProduct(lowerBound, that.upperBound)),
+				Math.max(upperBoundOfProduct(upperBound, that.lowerBound), upperBoundOfProduct(upperBound, that.upperBound)));
+		return new RationalInterval(lower, upper, DeferredOperation.MULTIPLY, this, that);
+	}
+	
+	/**
+	 * @param that
+	 *        the divisor.
+	 * @return the quotient of this by that.
+	 * @throws ArithmeticException
+	 *         if that is known to be zero.
+	 */
+	public RationalInterval divide(RationalInterval that) {
+		if (that.lowerBound == 0 && that.upperBound == 0) {
+			throw new ArithmeticException("division by zero");
+		}
+		double lower = Double.NEGATIVE_INFINITY;
+		double upper = Double.POSITIVE_INFINITY;
+		if (that.lowerBound > 0 || that.upperBound < 0) {
+			final double quotient1 = lowerBound / that.lowerBound;
+			final double quotient2 = lowerBound / that.upperBound;
+			final double quotient3 = upperBound / that.lowerBound;
+			final double quotient4 = upperBound / that.upperBound;
+			// [NaNs, from infinite bounds, leave the quotient unbounded]
+			if (!(Double.isNaN(quotient1) || Double.isNaN(quotient2) || Double.isNaN(quotient3) || Double.isNaN(quotient4))) {
+				lower = Math.nextDown(Math.min(Math.min(quotient1, quotient2), Math.min(quotient3, quotient4)));
+				upper = Math.nextUp(Math.max(Math.max(quotient1, quotient2), Math.max(quotient3, quotient4)));
+			}
+		}
+		return new RationalInterval(lower, upper, DeferredOperation.DIVIDE, this, that);
+	}
+	
+	public RationalInterval negate() {
+		return ZERO.subtract(this);
+	}
+	
+	/**
+	 * @return -1, 0 or 1 as this value is negative, zero or positive.
+	 */
+	public int signum() {
+		int result;
+		if (lowerBound > 0) {
+			result = 1;
+		}
+		else if (upperBound < 0) {
+			result = -1;
+		}
+		else if (lowerBound == 0 && upperBound == 0) {
+			result = 0;
+		}
+		else {
+			result = getExactValue().signum();
+		}
+		return result;
+	}
+	
+	public boolean isPositive() {
+		return signum() > 0;
+	}
+	
+	public boolean isNegative() {
+		return signum() < 0;
+	}
+	
+	public boolean isZero() {
+		return signum() == 0;
+	}
+	
+	@Override
+	public int compareTo(RationalInterval that) {
+		int result;
+		if (lowerBound > that.upperBound) {
+			result = 1;
+		}
+		else if (upperBound < that.lowerBound) {
+			result = -1;
+		}
+		else if (lowerBound == upperBound && that.lowerBound == that.upperBound) {
+			// [both are exactly known doubles, and not less nor greater than each other]
+			result = 0;
+		}
+		else {
+			result = getExactValue().compareTo(that.getExactValue());
+		}
+		return result;
+	}
+	
+	/**
+	 * Compares this to a rational (e.g. a threshold).
+	 * 
+	 * @param that
+	 *        a rational.
+	 * @return a negative integer, zero, or a positive integer as this value is
+	 *         less than, equal to, or greater than the given rational.
+	 */
+	public int compareTo(Rational that) {
+		return compareTo(valueOf(that));
+	}
+	
+	/**
+	 * Note: equality (and the hash code) is that of the exact values, which are computed.
+	 */
+	@Override
+	public boolean equals(Object object) {
+		boolean result = object == this
+				|| (object instanceof RationalInterval
+						&& lowerBound <= ((RationalInterval) object).upperBound
+						&& upperBound >= ((RationalInterval) object).lowerBound
+						&& getExactValue().equals(((RationalInterval) object).getExactValue()));
+		return result;
+	}
+	
+	@Override
+	public int hashCode() {
+		return getExactValue().hashCode();
+	}
+	
+	@Override
+	public String toString() {
+		String result = "[" + lowerBound + ", " + upperBound + "]";
+		Rational exactValue = this.exactValue;
+		if (exactValue != null) {
+			result = exactValue + " in " + result;
+		}
+		return result;
+	}
+	
+	//
+	// PRIVATE
+	//
+	private RationalInterval(double lowerBound, double upperBound, Rational exactValue) {
+		this.lowerBound = lowerBound;
+		this.upperBound = upperBound;
+		this.depth      = 0;
+		this.exactValue = exactValue;
+	}
+	
+	private RationalInterval(double lowerBound, double upperBound, DeferredOperation operation, RationalInterval left, RationalInterval right) {
+		this.lowerBound = lowerBound;
+		this.upperBound = upperBound;
+		this.operation  = operation;
+		this.left       = left;
+		this.right      = right;
+		int depth = 1 + Math.max(left.depth, right.depth);
+		if (depth > MAXIMUM_DEFERRED_DEPTH) {
+			// note: the operands' depths are at most MAXIMUM_DEFERRED_DEPTH, bounding the recursion.
+			computeExactValue();
+			depth = 0;
+		}
+		this.depth = depth;
+	}
+	
+	private synchronized Rational computeExactValue() {
+		Rational result = exactValue;
+		if (result == null) {
+			final Rational leftValue  = left.getExactValue();
+			final Rational rightValue = right.getExactValue();
+			switch (operation) {
+			case ADD:
+				result = leftValue.add(rightValue);
+				break;
+			case SUBTRACT:
+				result = leftValue.subtract(rightValue);
+				break;
+			case MULTIPLY:
+				result = leftValue.multiply(rightValue);
+				break;
+			default:
+				result = leftValue.divide(rightValue);
+			}
+			exactValue = result;
+			// the operands are no longer needed
+			operation = null;
+			left      = null;
+			right     = null;
+		}
+		return result;
+	}
+	
+	/**
+	 * Whether n/d (d > 0) is exactly a double, i.e. n fits in a double's
+	 * mantissa and d is a power of two.
+	 */
+	private static boolean isExactlyRepresentable(long numerator, long denominator) {
+		return Math.abs(numerator) <= MAXIMUM_EXACT_LONG && (denominator & (denominator - 1)) == 0;
+	}
+	
+	/**
+	 * A lower bound of the sum of two lower bounds (which may be negative infinity).
+	 */
+	private static double lowerBoundOfSum(double a, double b) {
+		final double sum = a + b;
+		double result;
+		if (Double.isInfinite(a) || Double.isInfinite(b)) {
+			result = a == Double.NEGATIVE_INFINITY || b == Double.NEGATIVE_INFINITY ? Double.NEGATIVE_INFINITY : sum;
+		}
+		else if (sum == Double.POSITIVE_INFINITY) {
+			result = Double.MAX_VALUE;
+		}
+		else if (sum == Double.NEGATIVE_INFINITY) {
+			result = sum;
+		}
+		else {
+			// the rounding error of the sum (Knuth's TwoSum)
+			result = roundingErrorOfSum(a, b, sum) < 0 ? Math.nextDown(sum) : sum;
+		}
+		return result;
+	}
+	
+	/**
+	 * An upper bound of the sum of two upper bounds (which may be positive infinity).
+	 */
+	private static double upperBoundOfSum(double a, double b) {
+		return -lowerBoundOfSum(-a, -b);
+	}
+	
+	/**
+	 * The exact value of a + b minus its rounded value sum.
+	 */
+	private static double roundingErrorOfSum(double a, double b, double sum) {
+		final double bVirtual = sum - a;
+		final double aVirtual = sum - bVirtual;
+		return (a - aVirtual) + (b - bVirtual);
+	}
+	
+	/**
+	 * A lower bound of the product of two bounds, where 0 times an infinite
+	 * (i.e. absent) bound is 0.
+	 */
+	private static double lowerBoundOfProduct(double a, double b) {
+		double result = (a == 0 || b == 0) ? 0 : Math.nextDown(a*b);
+		return result;
+	}
+	
+	/**
+	 * An upper bound of the product of two bounds, where 0 times an infinite
+	 * (i.e. absent) bound is 0.
+	 */
+	private static double upperBoundOfProduct(double a, double b) {
+		double result = (a == 0 || b == 0) ? 0 : Math.nextUp(a*b);
+		return result;
+	}
+}
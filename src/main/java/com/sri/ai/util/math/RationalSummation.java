@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.AICUtilConfiguration;
+
+/**
+ * Tree shaped (pairwise) summation of {@link Rational}s.<br>
+ * <br>
+ * Summing left to right lets the denominator of the running sum grow as the
+ * product of all the (distinct) denominators seen so far, so that each
+ * addition is slower than the last. Summing pairwise instead keeps the
+ * operands of each addition about the same size, and the two halves of a
+ * range can be summed independently, on a {@link ForkJoinPool} when the range
+ * is large enough (see
+ * {@link AICUtilConfiguration#getRationalParallelSummationThreshold()}).<br>
+ * <br>
+ * Within each leaf range terms sharing a denominator are first grouped and
+ * their numerators summed (see {@link RationalAccumulator}), so that only one
+ * term per distinct denominator takes part in the pairwise reduction.<br>
+ * <br>
+ * Parallel summation runs in the {@link ArithmeticContext} that is current in
+ * the calling thread.
+ */
+@Beta
+public final class RationalSummation {
+	/**
+	 * The size of the ranges whose terms are grouped by denominator before being summed pairwise.
+	 */
+	public static final int LEAF_SIZE = 1024;
+	
+	/**
+	 * Sum the given numbers (which must be {@link Rational}s) pairwise,
+	 * in parallel if there are at least
+	 * {@link AICUtilConfiguration#getRationalParallelSummationThreshold()} of them.
+	 * 
+	 * @param numbers
+	 *        the rationals to be summed.
+	 * @return the sum of the given numbers.
+	 */
+	public static Rational sum(Collection<? extends Number> numbers) {
+		return sum(numbers, AICUtilConfiguration.getRationalParallelSummationThreshold());
+	}
+	
+	/**
+	 * Sum the given numbers (which must be {@link Rational}s) pairwise.
+	 * 
+	 * @param numbers
+	 *        the rationals to be summed.
+	 * @param parallelThreshold
+	 *        ranges of at least this many terms are split in two halves that are
+	 *        summed in parallel (<= 0 means the summation is sequential).
+	 * @return the sum of the given numbers.
+	 */
+	public static Rational sum(Collection<? extends Number> numbers, int parallelThreshold) {
+		Rational[] terms = new Rational[numbers.size()];
+		int i = 0;
+		for (Number number : numbers) {
+			terms[i++] = (Rational) number;
+		}
+		
+		Rational result;
+		if (parallelThreshold > 0 && terms.length >= parallelThreshold) {
+			ArithmeticContext context = ArithmeticContext.getCurrent();
+			result = ForkJoinPool.commonPool().invoke(new SumTask(terms, 0, terms.length, Math.max(parallelThreshold, 2 * LEAF_SIZE), context));
+		}
+		else {
+			result = sum(terms, 0, terms.length);
+		}
+		return result;
+	}
+	
+	//
+	// PRIVATE
+	//
+	private RationalSummation() {
+	}
+	
+	@SuppressWarnings("serial")
+	private static class SumTask extends RecursiveTask<Rational> {
+		private Rational[]         terms;
+		private int                from;
+		private int                to;
+		private int                parallelThreshold;
+		private ArithmeticContext  context;
+		
+		public SumTask(Rational[] terms, int from, int to, int parallelThreshold, ArithmeticContext context) {
+			this.terms             = terms;
+			this.from              = from;
+			this.to                = to;
+			this.parallelThreshold = parallelThreshold;
+			this.context           = context;
+		}
+		
+		@Override
+		protected Rational compute() {
+			Rational result;
+			if (to - from < parallelThreshold) {
+				result = context.compute(() -> sum(terms, from, to));
+			}
+			else {
+				int middle = (from + to) >>> 1;
+				SumTask left  = new SumTask(terms, from, middle, parallelThreshold, context);
+				SumTask right = new SumTask(terms, middle, to, parallelThreshold, context);
+				left.fork();
+				Rational rightSum = right.compute();
+				Rational leftSum  = left.join();
+				result = context.compute(() -> leftSum.add(rightSum));
+			}
+			return result;
+		}
+	}
+	
+	private static Rational sum(Rational[] terms, int from, int to) {
+		Rational result;
+		if (to - from <= LEAF_SIZE) {
+			result = pairwiseSum(sumsByDenominator(terms, from, to));
+		}
+		else {
+			int middle = (from + to) >>> 1;
+			result = sum(terms, from, middle).add(sum(terms, middle, to));
+		}
+		return result;
+	}
+	
+	private static List<Rational> sumsByDenominator(Rational[] terms, int from, int to) {
+		// note: keys are Longs for denominators held as longs and BigIntegerNumbers otherwise.
+		Map<Object, RationalAccumulator> sums = new LinkedHashMap<Object, RationalAccumulator>();
+		for (int i = from; i < to; i++) {
+			Rational term = terms[i];
+			if (!term.isZero()) {
+				Object denominator = term.isHeldAsLongs() ? (Object) term.getLongDenominator() : term.getDenominator();
+				RationalAccumulator sum = sums.get(denominator);
+				if (sum == null) {
+					sums.put(denominator, new RationalAccumulator(term));
+				}
+				else {
+					sum.add(term);
+				}
+			}
+		}
+		List<Rational> result = new ArrayList<Rational>(sums.size());
+		for (RationalAccumulator sum : sums.values()) {
+			result.add(sum.toRational());
+		}
+		return result;
+	}
+	
+	private static Rational pairwiseSum(List<Rational> terms) {
+		Rational result;
+		int size = terms.size();
+		if (size == 0) {
+			result = Rational.ZERO;
+		}
+		else {
+			// reduce in place, adding neighbors, until a single term remains.
+			Rational[] sums = terms.toArray(new Rational[size]);
+			while (size > 1) {
+				int half = size >>> 1;
+				for (int i = 0; i < half; i++) {
+					sums[i] = sums[2 * i].add(sums[2 * i + 1]);
+				}
+				if ((size & 1) == 1) {
+					sums[half] = sums[size - 1];
+					half++;
+				}
+				size = half;
+			}
+			result = sums[0];
+		}
+		return result;
+	}
+}
@@ -0,0 +1,488 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.util.math;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.AICUtilConfiguration;
+
+/**
+ * An immutable vector of {@link Rational}s with element-wise ({@link #add(RationalVector)},
+ * {@link #scale(Rational)}, {@link #normalize()}) and reduction ({@link #sum()},
+ * {@link #dot(RationalVector)}) operations, for applying the same operation to
+ * many values (e.g. normalizing a distribution) without a boxed Rational per
+ * element and per step.<br>
+ * <br>
+ * Elements are stored as arrays of (reduced) long numerators and denominators,
+ * and operated on as longs while results fit in them. Elements that do not fit
+ * (or approximations) are kept as Rationals in a side table, allocated only if
+ * some element needs it, and operated on as Rationals.<br>
+ * <br>
+ * Operations on vectors with at least
+ * {@link AICUtilConfiguration#getRationalVectorParallelThreshold()} elements
+ * are split into ranges run on the common {@link ForkJoinPool}, in the
+ * {@link ArithmeticContext} current in the calling thread.
+ */
+@Beta
+public final class RationalVector {
+	/**
+	 * Ranges smaller than this are never split for parallel execution.
+	 */
+	public static final int MINIMUM_PARALLEL_RANGE_SIZE = 1024;
+	//
+	private final int    size;
+	private final long[] numerators;
+	private final long[] denominators; // > 0, or 0 for elements held in overflow
+	private Rational[]   overflow;     // null until an element does not fit in longs
+	
+	/**
+	 * Make a vector of the given numbers (which must be {@link Rational}s).
+	 * 
+	 * @param numbers
+	 *        the elements of the vector.
+	 * @return a vector of the given numbers, in iteration order.
+	 */
+	public static RationalVector valueOf(Collection<? extends Number> numbers) {
+		RationalVector result = new RationalVector(numbers.size());
+		int i = 0;
+		for (Number number : numbers) {
+			result.set(i++, (Rational) number);
+		}
+		return result;
+	}
+	
+	/**
+	 * Make a vector of the given rationals.
+	 * 
+	 * @param rationals
+	 *        the elements of the vector.
+	 * @return a vector of the given rationals.
+	 */
+	public static RationalVector valueOf(Rational... rationals) {
+		RationalVector result = new RationalVector(rationals.length);
+		for (int i = 0; i < rationals.length; i++) {
+			result.set(i, rationals[i]);
+		}
+		return result;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @param index
+	 *        an index in [0, size()).
+	 * @return the element at the given index.
+	 */
+	public Rational get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		Rational result = denominators[index] == 0 ? overflow[index] : Rational.fromReducedLongs(numerators[index], denominators[index]);
+		return result;
+	}
+	
+	public List<Rational> toList() {
+		List<Rational> result = new ArrayList<Rational>(size);
+		for (int i = 0; i < size; i++) {
+			result.add(get(i));
+		}
+		return result;
+	}
+	
+	/**
+	 * Element-wise addition, in parallel if this vector has at least
+	 * {@link AICUtilConfiguration#getRationalVectorParallelThreshold()} elements.
+	 * 
+	 * @param that
+	 *        a vector of the same size.
+	 * @return the vector of the sums of the elements of this and that.
+	 */
+	public RationalVector add(RationalVector that) {
+		return add(that, AICUtilConfiguration.getRationalVectorParallelThreshold());
+	}
+	
+	/**
+	 * Element-wise addition.
+	 * 
+	 * @param that
+	 *        a vector of the same size.
+	 * @param parallelThreshold
+	 *        the size from which the addition is run in parallel (<= 0 means it is sequential).
+	 * @return the vector of the sums of the elements of this and that.
+	 */
+	public RationalVector add(RationalVector that, int parallelThreshold) {
+		checkSameSize(that);
+		RationalVector result = new RationalVector(size);
+		forEachRange(parallelThreshold, (from, to) -> {
+			final boolean longFastPathEnabled = Rational.isLongFastPathEnabled();
+			for (int i = from; i < to; i++) {
+				if (!(longFastPathEnabled && denominators[i] != 0 && that.denominators[i] != 0
+						&& Rational.addReducedLongs(numerators[i], denominators[i], that.numerators[i], that.denominators[i], result.numerators, result.denominators, i))) {
+					result.set(i, get(i).add(that.get(i)));
+				}
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Multiplication by a scalar, in parallel if this vector has at least
+	 * {@link AICUtilConfiguration#getRationalVectorParallelThreshold()} elements.
+	 * 
+	 * @param factor
+	 *        the value to multiply the elements by.
+	 * @return the vector of the products of the elements of this by factor.
+	 */
+	public RationalVector scale(Rational factor) {
+		return scale(factor, AICUtilConfiguration.getRationalVectorParallelThreshold());
+	}
+	
+	/**
+	 * Multiplication by a scalar.
+	 * 
+	 * @param factor
+	 *        the value to multiply the elements by.
+	 * @param parallelThreshold
+	 *        the size from which the multiplication is run in parallel (<= 0 means it is sequential).
+	 * @return the vector of the products of the elements of this by factor.
+	 */
+	public RationalVector scale(Rational factor, int parallelThreshold) {
+		final boolean isFactorHeldAsLongs = factor.isHeldAsLongs();
+		final long    factorNumerator     = factor.getLongNumerator();
+		final long    factorDenominator   = factor.getLongDenominator();
+		RationalVector result = new RationalVector(size);
+		forEachRange(parallelThreshold, (from, to) -> {
+			final boolean longFastPathEnabled = isFactorHeldAsLongs && Rational.isLongFastPathEnabled();
+			for (int i = from; i < to; i++) {
+				if (!(longFastPathEnabled && denominators[i] != 0
+						&& Rational.multiplyReducedLongs(numerators[i], denominators[i], factorNumerator, factorDenominator, result.numerators, result.denominators, i))) {
+					result.set(i, get(i).multiply(factor));
+				}
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Divides the elements by their sum, so that they sum to one (e.g. for
+	 * normalizing a distribution), in parallel if this vector has at least
+	 * {@link AICUtilConfiguration#getRationalVectorParallelThreshold()} elements.
+	 * 
+	 * @return the vector of the elements of this divided by their sum.
+	 * @throws ArithmeticException
+	 *         if the elements sum to zero.
+	 */
+	public RationalVector normalize() {
+		return normalize(AICUtilConfiguration.getRationalVectorParallelThreshold());
+	}
+	
+	/**
+	 * Divides the elements by their sum, so that they sum to one.
+	 * 
+	 * @param parallelThreshold
+	 *        the size from which the summation and division are run in parallel (<= 0 means they are sequential).
+	 * @return the vector of the elements of this divided by their sum.
+	 * @throws ArithmeticException
+	 *         if the elements sum to zero.
+	 */
+	public RationalVector normalize(int parallelThreshold) {
+		Rational sum = sum(parallelThreshold);
+		if (sum.isZero()) {
+			throw new ArithmeticException("cannot normalize a vector whose elements sum to zero");
+		}
+		RationalVector result = scale(sum.invert(), parallelThreshold);
+		return result;
+	}
+	
+	/**
+	 * The sum of the elements, computed in parallel if this vector has at least
+	 * {@link AICUtilConfiguration#getRationalVectorParallelThreshold()} elements.
+	 * 
+	 * @return the sum of the elements.
+	 */
+	public Rational sum() {
+		return sum(AICUtilConfiguration.getRationalVectorParallelThreshold());
+	}
+	
+	/**
+	 * The sum of the elements.
+	 * 
+	 * @param parallelThreshold
+	 *        the size from which the summation is run in parallel (<= 0 means it is sequential).
+	 * @return the sum of the elements.
+	 */
+	public Rational sum(int parallelThreshold) {
+		Rational result = reduceRanges(parallelThreshold, (from, to) -> {
+			final boolean longFastPathEnabled = Rational.isLongFastPathEnabled();
+			RationalAccumulator sum = new RationalAccumulator();
+			for (int i = from; i < to; i++) {
+				if (longFastPathEnabled && denominators[i] != 0) {
+					sum.add(numerators[i], denominators[i]);
+				}
+				else {
+					sum.add(get(i));
+				}
+			}
+			return sum.toRational();
+		});
+		return result;
+	}
+	
+	/**
+	 * The dot product of this and another vector, computed in parallel if this
+	 * vector has at least
+	 * {@link AICUtilConfiguration#getRationalVectorParallelThreshold()} elements.
+	 * 
+	 * @param that
+	 *        a vector of the same size.
+	 * @return the sum of the products of the elements of this and that.
+	 */
+	public Rational dot(RationalVector that) {
+		return dot(that, AICUtilConfiguration.getRationalVectorParallelThreshold());
+	}
+	
+	/**
+	 * The dot product of this and another vector.
+	 * 
+	 * @param that
+	 *        a vector of the same size.
+	 * @param parallelThreshold
+	 *        the size from which the computation is run in parallel (<= 0 means it is sequential).
+	 * @return the sum of the products of the elements of this and that.
+	 */
+	public Rational dot(RationalVector that, int parallelThreshold) {
+		checkSameSize(that);
+		Rational result = reduceRanges(parallelThreshold, (from, to) -> {
+			final boolean longFastPathEnabled = Rational.isLongFastPathEnabled();
+			final long[] productNumerator   = new long[1];
+			final long[] productDenominator = new long[1];
+			RationalAccumulator sum = new RationalAccumulator();
+			for (int i = from; i < to; i++) {
+				if (longFastPathEnabled && denominators[i] != 0 && that.denominators[i] != 0
+						&& Rational.multiplyReducedLongs(numerators[i], denominators[i], that.numerators[i], that.denominators[i], productNumerator, productDenominator, 0)) {
+					sum.add(productNumerator[0], productDenominator[0]);
+				}
+				else {
+					sum.add(get(i).multiply(that.get(i)));
+				}
+			}
+			return sum.toRational();
+		});
+		return result;
+	}
+	
+	@Override
+	public boolean equals(Object object) {
+		if (object == this) {
+			return true;
+		}
+		if (!(object instanceof RationalVector) || ((RationalVector) object).size != size) {
+			return false;
+		}
+		RationalVector that = (RationalVector) object;
+		for (int i = 0; i < size; i++) {
+			if (denominators[i] != 0 && that.denominators[i] != 0) {
+				if (numerators[i] != that.numerators[i] || denominators[i] != that.denominators[i]) {
+					return false;
+				}
+			}
+			else if (!get(i).equals(that.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public int hashCode() {
+		int result = 1;
+		for (int i = 0; i < size; i++) {
+			result = 31*result + get(i).hashCode();
+		}
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		return toList().toString();
+	}
+	
+	//
+	// PRIVATE
+	//
+	@FunctionalInterface
+	private interface RangeProcedure {
+		void apply(int from, int to);
+	}
+	
+	@FunctionalInterface
+	private interface RangeFunction {
+		Rational apply(int from, int to);
+	}
+	
+	private RationalVector(int size) {
+		this.size         = size;
+		this.numerators   = new long[size];
+		this.denominators = new long[size];
+	}
+	
+	/**
+	 * Sets an element of a vector under construction. Note: synchronized as
+	 * ranges of a vector are set in parallel and the overflow side table is
+	 * allocated on demand (which is rare).
+	 */
+	private void set(int index, Rational value) {
+		if (value.isHeldAsLongs()) {
+			numerators[index]   = value.getLongNumerator();
+			denominators[index] = value.getLongDenominator();
+		}
+		else {
+			setOverflow(index, value);
+		}
+	}
+	
+	private synchronized void setOverflow(int index, Rational value) {
+		if (overflow == null) {
+			overflow = new Rational[size];
+		}
+		overflow[index]     = value;
+		denominators[index] = 0;
+	}
+	
+	private void checkSameSize(RationalVector that) {
+		if (that.size != size) {
+			throw new IllegalArgumentException("vectors of different sizes: " + size + " and " + that.size);
+		}
+	}
+	
+	private void forEachRange(int parallelThreshold, RangeProcedure procedure) {
+		if (parallelThreshold > 0 && size >= parallelThreshold) {
+			ArithmeticContext context = ArithmeticContext.getCurrent();
+			ForkJoinPool.commonPool().invoke(new RangeAction(procedure, 0, size, Math.max(parallelThreshold, MINIMUM_PARALLEL_RANGE_SIZE), context));
+		}
+		else {
+			procedure.apply(0, size);
+		}
+	}
+	
+	private Rational reduceRanges(int parallelThreshold, RangeFunction function) {
+		Rational result;
+		if (parallelThreshold > 0 && size >= parallelThreshold) {
+			ArithmeticContext context = ArithmeticContext.getCurrent();
+			result = ForkJoinPool.commonPool().invoke(new RangeTask(function, 0, size, Math.max(parallelThreshold, MINIMUM_PARALLEL_RANGE_SIZE), context));
+		}
+		else {
+			result = function.apply(0, size);
+		}
+		return result;
+	}
+	
+	@SuppressWarnings("serial")
+	private static class RangeAction extends RecursiveAction {
+		private RangeProcedure    procedure;
+		private int               from;
+		private int               to;
+		private int               parallelThreshold;
+		private ArithmeticContext context;
+		
+		public RangeAction(RangeProcedure procedure, int from, int to, int parallelThreshold, ArithmeticContext context) {
+			this.procedure         = procedure;
+			this.from              = from;
+			this.to                = to;
+			this.parallelThreshold = parallelThreshold;
+			this.context           = context;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from < parallelThreshold) {
+				context.compute(() -> {
+					procedure.apply(from, to);
+					return null;
+				});
+			}
+			else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RangeAction(procedure, from, middle, parallelThreshold, context), new RangeAction(procedure, middle, to, parallelThreshold, context));
+			}
+		}
+	}
+	
+	@SuppressWarnings("serial")
+	private static class RangeTask extends RecursiveTask<Rational> {
+		private RangeFunction     function;
+		private int               from;
+		private int               to;
+		private int               parallelThreshold;
+		private ArithmeticContext context;
+		
+		public RangeTask(RangeFunction function, int from, int to, int parallelThreshold, ArithmeticContext context) {
+			this.function          = function;
+			this.from              = from;
+			this.to                = to;
+			this.parallelThreshold = parallelThreshold;
+			this.context           = context;
+		}
+		
+		@Override
+		protected Rational compute() {
+			Rational result;
+			if (to - from < parallelThreshold) {
+				result = context.compute(() -> function.apply(from, to));
+			}
+			else {
+				int middle = (from + to) >>> 1;
+				RangeTask left  = new RangeTask(function, from, middle, parallelThreshold, context);
+				RangeTask right = new RangeTask(function, middle, to, parallelThreshold, context);
+				left.fork();
+				Rational rightResult = right.compute();
+				Rational leftResult  = left.join();
+				result = context.compute(() -> leftResult.add(rightResult));
+			}
+			return result;
+		}
+	}
+}
@@ -38,10 +38,14 @@
 package com.sri.ai.util.rangeoperation.library.operators;
 
 import com.google.common.annotations.Beta;
+import com.sri.ai.util.math.Rational;
+import com.sri.ai.util.math.RationalAccumulator;
 import com.sri.ai.util.rangeoperation.core.AbstractAggregateOperator;
 
 /**
- * A summation aggregate operator over numbers.
+ * A summation aggregate operator over numbers, whose result is a double once incremented.
+ * Consecutive {@link Rational}s are summed exactly (and only converted to a double
+ * when another kind of number is incremented by, or the result is requested).
  * TODO: extend it to arbitrarily nested lists of numbers.
  * 
  * @author braz
@@ -49,18 +53,48 @@ import com.sri.ai.util.rangeoperation.core.AbstractAggregateOperator;
 @Beta
 public class Sum extends AbstractAggregateOperator<Number, Number> {
 	
+	private RationalAccumulator rationalSum = new RationalAccumulator();
+	private boolean             hasRationalSum;
+	private double              doubleSum;
+	private boolean             resultIsUpToDate;
+	
 	@Override
 	public void initialize() {
-		result = 0;
+		rationalSum.reset();
+		hasRationalSum   = false;
+		doubleSum        = 0;
+		result           = 0;
+		resultIsUpToDate = true;
 	}
 	
 	@Override
 	public void increment(Number another) {
-		try {
-			result = result.doubleValue() + another.doubleValue();
+		if (another instanceof Rational) {
+			rationalSum.add((Rational) another);
+			hasRationalSum = true;
+		}
+		else {
+			addRationalSumToDoubleSum();
+			doubleSum += another.doubleValue();
+		}
+		resultIsUpToDate = false;
+	}
+	
+	@Override
+	public Number getResult() {
+		if (!resultIsUpToDate) {
+			addRationalSumToDoubleSum();
+			result = doubleSum;
+			resultIsUpToDate = true;
 		}
-		catch (ClassCastException e) {
-			throw new Error("com.sri.ai.util.rangeoperation.library.operators.Sum applied to non-Number object " + another);
+		return result;
+	}
+	
+	private void addRationalSumToDoubleSum() {
+		if (hasRationalSum) {
+			doubleSum += rationalSum.toRational().doubleValue();
+			rationalSum.reset();
+			hasRationalSum = false;
 		}
 	}
-}
\ No newline at end of file
+}
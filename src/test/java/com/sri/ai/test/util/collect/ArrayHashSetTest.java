@@ -42,13 +42,21 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import com.sri.ai.util.Util;
 import com.sri.ai.util.collect.ArrayHashSet;
+import com.sri.ai.util.collect.ArrayHashSet.RemovalPolicy;
 import com.sri.ai.util.collect.BackListIterator;
 
 public class ArrayHashSetTest {
@@ -188,4 +196,112 @@ public class ArrayHashSetTest {
 
 		assertEquals(Util.list("information", "tree", "almond"), Util.listFrom(new BackListIterator<String>(set.listIterator(set.size())))); // tests back-iteration order
 	}
+
+	@Test
+	public void testRemovalPreservingOrder() {
+		Random random = new Random(0);
+		ArrayHashSet<Integer> set = new ArrayHashSet<Integer>(RemovalPolicy.PRESERVE_ORDER);
+		LinkedHashSet<Integer> expected = new LinkedHashSet<Integer>();
+		for (int i = 0; i != 20000; i++) {
+			Integer element = random.nextInt(500);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.add(element), set.add(element));
+			}
+			else {
+				assertEquals(expected.remove(element), set.remove(element));
+			}
+			assertEquals(expected.size(), set.size());
+			if (i % 100 == 0) {
+				assertEquals(new ArrayList<Integer>(expected), Util.listFrom(set.iterator()));
+				assertEquals(new ArrayList<Integer>(expected), Util.list(set.toArray()));
+				List<Integer> expectedList = new ArrayList<Integer>(expected);
+				for (int j = 0; j != expectedList.size(); j++) {
+					assertEquals(expectedList.get(j), set.get(j));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSwapRemoval() {
+		Random random = new Random(0);
+		ArrayHashSet<Integer> set = new ArrayHashSet<Integer>(RemovalPolicy.SWAP_WITH_LAST);
+		HashSet<Integer> expected = new HashSet<Integer>();
+		for (int i = 0; i != 20000; i++) {
+			Integer element = random.nextInt(500);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.add(element), set.add(element));
+			}
+			else {
+				assertEquals(expected.remove(element), set.remove(element));
+			}
+			assertEquals(expected.size(), set.size());
+			if (i % 100 == 0) {
+				assertEquals(expected, set);
+				assertEquals(expected, new HashSet<Integer>(Util.listFrom(set.iterator())));
+				for (int j = 0; j != set.size(); j++) {
+					assertTrue(set.contains(set.get(j)));
+				}
+			}
+		}
+		set.clear();
+		set.add(1);
+		set.add(2);
+		set.add(3);
+		set.remove(1);
+		assertEquals(Util.list(3, 2), Util.listFrom(set.iterator()));
+	}
+
+	@Test
+	public void testIteratorModifications() {
+		for (RemovalPolicy removalPolicy : RemovalPolicy.values()) {
+			ArrayHashSet<Integer> set = new ArrayHashSet<Integer>(removalPolicy);
+			for (int i = 0; i != 100; i++) {
+				set.add(i);
+			}
+			// removes multiples of 3, and adds their negatives in their place.
+			List<Integer> visited = new ArrayList<Integer>();
+			ListIterator<Integer> iterator = set.listIterator();
+			while (iterator.hasNext()) {
+				Integer element = iterator.next();
+				visited.add(element);
+				if (element % 3 == 0) {
+					iterator.remove();
+					iterator.add(-element - 1);
+				}
+			}
+			assertEquals(100, visited.size());
+			assertEquals(100, set.size());
+			for (int i = 0; i != 100; i++) {
+				assertTrue(visited.contains(i));
+				assertEquals(i % 3 != 0, set.contains(i));
+				assertEquals(i % 3 == 0, set.contains(-i - 1));
+			}
+			if (removalPolicy == RemovalPolicy.PRESERVE_ORDER) {
+				for (int i = 0; i != 100; i++) {
+					assertEquals(Integer.valueOf(i % 3 == 0 ? -i - 1 : i), set.get(i));
+				}
+			}
+			
+			// removes everything while iterating backwards.
+			iterator = set.listIterator(set.size());
+			while (iterator.hasPrevious()) {
+				iterator.previous();
+				iterator.remove();
+			}
+			assertTrue(set.isEmpty());
+			assertEquals(Util.list(), Util.listFrom(set.iterator()));
+			
+			set.add(1);
+			iterator = set.listIterator();
+			set.add(2);
+			try {
+				iterator.next();
+				fail("Should have thrown a ConcurrentModificationException");
+			}
+			catch (ConcurrentModificationException e) {
+				// good, did what it had to do
+			}
+		}
+	}
 }
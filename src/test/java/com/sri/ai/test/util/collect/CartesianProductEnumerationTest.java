@@ -42,6 +42,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -221,4 +222,23 @@ public class CartesianProductEnumerationTest {
 		Assert.assertEquals(Arrays.asList("list_1_Element_1", "list_2_Element_1", "list_3_Element_1"), row);
 		Assert.assertFalse(cpe.hasMoreElements());
 	}
+
+	@Test
+	public void testStream() {
+		List<List<Integer>> listOfListsOfElements = new ArrayList<List<Integer>>();
+		listOfListsOfElements.add(Arrays.asList(1, 2, 3));
+		listOfListsOfElements.add(Arrays.asList(4, 5));
+		listOfListsOfElements.add(Arrays.asList(6, 7, 8, 9));
+		
+		for (boolean enumerateFastestFromRightToLeft : new boolean[] { true, false }) {
+			List<List<Integer>> expected = new ArrayList<List<Integer>>();
+			CartesianProductEnumeration<Integer> cpe = new CartesianProductEnumeration<Integer>(listOfListsOfElements, enumerateFastestFromRightToLeft);
+			while (cpe.hasMoreElements()) {
+				expected.add(new ArrayList<Integer>(cpe.nextElement()));
+			}
+			Assert.assertEquals(expected, cpe.stream(false).collect(Collectors.toList()));
+			Assert.assertEquals(expected, cpe.stream(true).collect(Collectors.toList()));
+			Assert.assertEquals(24, cpe.stream(true).filter(element -> element.get(0) < 4).count());
+		}
+	}
 }
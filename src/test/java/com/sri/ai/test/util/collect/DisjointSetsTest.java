@@ -38,6 +38,11 @@
 package com.sri.ai.test.util.collect;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -169,4 +174,78 @@ public class DisjointSetsTest {
 		Assert.assertEquals(disjSets.find("b"), disjSets.find("c"));
 		Assert.assertEquals(disjSets.find("c"), disjSets.find("d"));
 	}
+
+	@Test
+	public void testFindRepresentativeAndSameSet() {
+		DisjointSets<String> disjSets = new DisjointSets<String>(
+				"a", "b", "c", "d");
+		Assert.assertEquals("a", disjSets.findRepresentative("a"));
+		Assert.assertNull(disjSets.findRepresentative("e"));
+		Assert.assertNull(disjSets.find("e"));
+		Assert.assertFalse(disjSets.sameSet("a", "b"));
+		
+		disjSets.union("a", "b");
+		disjSets.union("c", "d");
+		Assert.assertTrue(disjSets.sameSet("a", "b"));
+		Assert.assertTrue(disjSets.sameSet("d", "c"));
+		Assert.assertFalse(disjSets.sameSet("a", "c"));
+		Assert.assertEquals(disjSets.findRepresentative("a"), disjSets.findRepresentative("b"));
+		Assert.assertNotEquals(disjSets.findRepresentative("a"), disjSets.findRepresentative("c"));
+		Assert.assertEquals(new LinkedHashSet<String>(Arrays.asList("a", "b")), disjSets.find("b"));
+		Assert.assertEquals(2, disjSets.getDisjointSets().size());
+		Assert.assertEquals(disjSets.find("c"), disjSets.getElementToDisjointSet().get("d"));
+		
+		disjSets.clear();
+		Assert.assertEquals(0, disjSets.numberDisjointSets());
+		Assert.assertNull(disjSets.findRepresentative("a"));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testSameSetIllegalArgumentException() {
+		DisjointSets<String> disjSets = new DisjointSets<String>(
+				"a");
+		disjSets.sameSet("a", "b");
+	}
+	
+	@Test
+	public void testRandomUnions() {
+		Random random = new Random(0);
+		int numberOfElements = 2000;
+		DisjointSets<Integer> disjSets = new DisjointSets<Integer>();
+		// naive reference: the label of each element, relabeling one of the sets at each union.
+		Map<Integer, Integer> labels = new HashMap<Integer, Integer>();
+		for (int i = 0; i != numberOfElements; i++) {
+			disjSets.makeSet(i);
+			labels.put(i, i);
+		}
+		int numberOfLabels = numberOfElements;
+		for (int step = 0; step != 3000; step++) {
+			Integer element1 = random.nextInt(numberOfElements);
+			Integer element2 = random.nextInt(numberOfElements);
+			Assert.assertEquals(labels.get(element1).equals(labels.get(element2)), disjSets.sameSet(element1, element2));
+			if (random.nextBoolean()) {
+				disjSets.union(element1, element2);
+				Integer label1 = labels.get(element1);
+				Integer label2 = labels.get(element2);
+				if ( ! label1.equals(label2)) {
+					numberOfLabels--;
+					for (Map.Entry<Integer, Integer> entry : labels.entrySet()) {
+						if (entry.getValue().equals(label2)) {
+							entry.setValue(label1);
+						}
+					}
+				}
+			}
+			Assert.assertEquals(numberOfLabels, disjSets.numberDisjointSets());
+		}
+		Set<Set<Integer>> disjointSets = disjSets.getDisjointSets();
+		Assert.assertEquals(numberOfLabels, disjointSets.size());
+		for (Set<Integer> set : disjointSets) {
+			Integer label = labels.get(set.iterator().next());
+			for (Integer element : set) {
+				Assert.assertEquals(label, labels.get(element));
+			}
+			Assert.assertEquals(set, disjSets.find(set.iterator().next()));
+		}
+	}
 }
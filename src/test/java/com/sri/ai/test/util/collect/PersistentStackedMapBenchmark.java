@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.collect;
+
+import java.util.Map;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.Timer;
+import com.sri.ai.util.collect.PersistentStackedMap;
+import com.sri.ai.util.collect.StackedHashMap;
+
+/**
+ * A simple (non JUnit) benchmark comparing {@link StackedHashMap} and {@link PersistentStackedMap}
+ * chains of increasing depths, each scope adding a few entries, on
+ * building the chain, looking up all keys (plus as many misses), computing the size
+ * and iterating over the entries of the top scope. Run it with:<br>
+ * <pre>
+ * java -cp ... com.sri.ai.test.util.collect.PersistentStackedMapBenchmark [entriesPerScope] [numberOfRounds]
+ * </pre>
+ */
+@Beta
+public class PersistentStackedMapBenchmark {
+	
+	private static final int[] DEPTHS = { 1, 10, 100, 1000 };
+	
+	private static final int DEFAULT_ENTRIES_PER_SCOPE = 4;
+	private static final int DEFAULT_NUMBER_OF_ROUNDS  = 3;
+	
+	public static void main(String[] args) {
+		int entriesPerScope = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ENTRIES_PER_SCOPE;
+		int numberOfRounds  = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUMBER_OF_ROUNDS;
+		
+		System.out.println(entriesPerScope + " entries per scope (best of " + numberOfRounds + " rounds, ms):");
+		for (int depth : DEPTHS) {
+			// keeps the total amount of work roughly independent of the depth.
+			int repetitions = Math.max(1, 100000/(depth*entriesPerScope));
+			long[] bestStacked    = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+			long[] bestPersistent = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+			for (int round = 0; round < numberOfRounds; round++) {
+				run(depth, entriesPerScope, repetitions, false, bestStacked);
+				run(depth, entriesPerScope, repetitions, true,  bestPersistent);
+			}
+			System.out.println("  depth " + depth + " (" + repetitions + " repetitions):");
+			System.out.println("    build:   stacked = " + bestStacked[0] + ", persistent = " + bestPersistent[0]);
+			System.out.println("    get:     stacked = " + bestStacked[1] + ", persistent = " + bestPersistent[1]);
+			System.out.println("    size:    stacked = " + bestStacked[2] + ", persistent = " + bestPersistent[2]);
+			System.out.println("    iterate: stacked = " + bestStacked[3] + ", persistent = " + bestPersistent[3]);
+		}
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static void run(int depth, int entriesPerScope, int repetitions, boolean persistent, long[] best) {
+		@SuppressWarnings("unchecked")
+		Map<Integer, Integer>[] tops = (Map<Integer, Integer>[]) new Map<?, ?>[repetitions];
+		best[0] = Math.min(best[0], Timer.time(() -> buildAll(tops, depth, entriesPerScope, persistent)));
+		best[1] = Math.min(best[1], Timer.time(() -> sumOfLookups(tops, depth*entriesPerScope)));
+		best[2] = Math.min(best[2], Timer.time(() -> sumOfSizes(tops)));
+		best[3] = Math.min(best[3], Timer.time(() -> sumOfValues(tops)));
+	}
+	
+	private static int buildAll(Map<Integer, Integer>[] tops, int depth, int entriesPerScope, boolean persistent) {
+		for (int i = 0; i < tops.length; i++) {
+			tops[i] = build(depth, entriesPerScope, persistent);
+		}
+		return tops.length;
+	}
+	
+	private static int sumOfLookups(Map<Integer, Integer>[] tops, int numberOfKeys) {
+		// samples about a thousand keys, half of them misses, since each lookup costs up to depth probes in StackedHashMaps.
+		int step = Math.max(1, numberOfKeys/500);
+		int result = 0;
+		for (Map<Integer, Integer> top : tops) {
+			for (int key = -numberOfKeys; key < numberOfKeys; key += step) {
+				if (top.containsKey(key)) {
+					result += top.get(key);
+				}
+			}
+		}
+		return result;
+	}
+	
+	private static int sumOfSizes(Map<Integer, Integer>[] tops) {
+		int result = 0;
+		for (Map<Integer, Integer> top : tops) {
+			result += top.size();
+		}
+		return result;
+	}
+	
+	private static int sumOfValues(Map<Integer, Integer>[] tops) {
+		int result = 0;
+		for (Map<Integer, Integer> top : tops) {
+			for (Map.Entry<Integer, Integer> entry : top.entrySet()) {
+				result += entry.getValue();
+			}
+		}
+		return result;
+	}
+	
+	private static Map<Integer, Integer> build(int depth, int entriesPerScope, boolean persistent) {
+		Map<Integer, Integer> result = persistent ? new PersistentStackedMap<Integer, Integer>() : new StackedHashMap<Integer, Integer>();
+		int key = 0;
+		for (int level = 0; level < depth; level++) {
+			if (level > 0) {
+				result = persistent ? ((PersistentStackedMap<Integer, Integer>) result).push() : new StackedHashMap<Integer, Integer>(result);
+			}
+			for (int i = 0; i < entriesPerScope; i++) {
+				result.put(key, key);
+				key++;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.collect;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sri.ai.util.collect.PersistentStackedMap;
+
+public class PersistentStackedMapTest {
+
+	@Test
+	public void test() {
+		PersistentStackedMap<String, Integer> base = new PersistentStackedMap<String, Integer>();
+		base.put("abc", 123);
+		base.put("ghi", null);
+		PersistentStackedMap<String, Integer> map = base.push();
+		map.put("def", 456);
+		Assert.assertSame(base, map.getBase());
+		Assert.assertSame(base, map.pop());
+		Assert.assertEquals(1, map.getDepth());
+		Assert.assertEquals(Integer.valueOf(123), map.get("abc"));
+		Assert.assertEquals(Integer.valueOf(456), map.get("def"));
+		map.put("abc", 789);
+		Assert.assertEquals(Integer.valueOf(789), map.get("abc"));
+		Assert.assertEquals(Integer.valueOf(123), base.get("abc"));
+		Assert.assertNull(map.get("ghi"));
+		Assert.assertTrue(map.containsKey("ghi"));
+		Assert.assertFalse(map.containsKey("jkl"));
+		Assert.assertEquals(3, map.size());
+		Assert.assertEquals(2, base.size());
+
+		Map<String, Integer> regular = new LinkedHashMap<String, Integer>();
+		regular.put("def", 456);
+		regular.put("abc", 789);
+		regular.put("ghi", null);
+		Assert.assertEquals(regular, map);
+		Assert.assertEquals(map, regular);
+		Assert.assertEquals(regular.hashCode(), map.hashCode());
+		Assert.assertEquals(regular.keySet(), map.keySet());
+		Assert.assertEquals(regular.entrySet(), map.entrySet());
+		
+		Map<String, Integer> top = new HashMap<String, Integer>();
+		top.put("def", 456);
+		top.put("abc", 789);
+		Assert.assertEquals(top, map.getTop());
+		
+		// removals and clearing affect the scope only.
+		Assert.assertEquals(Integer.valueOf(789), map.remove("abc"));
+		Assert.assertFalse(map.containsKey("abc"));
+		Assert.assertTrue(base.containsKey("abc"));
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertEquals(2, base.size());
+	}
+
+	@Test
+	public void testNonPersistentBase() {
+		Map<String, Integer> base = new HashMap<String, Integer>();
+		base.put("abc", 123);
+		Map<String, Integer> top = new HashMap<String, Integer>();
+		top.put("def", 456);
+		PersistentStackedMap<String, Integer> map = new PersistentStackedMap<String, Integer>(top, base);
+		Assert.assertEquals(2, map.size());
+		Assert.assertEquals(top, map.getTop());
+		Assert.assertEquals(base, map.getBase());
+		
+		Map<String, Integer> otherBase = new HashMap<String, Integer>();
+		otherBase.put("ghi", 789);
+		map.setBase(otherBase);
+		Assert.assertFalse(map.containsKey("abc"));
+		Assert.assertEquals(Integer.valueOf(456), map.get("def"));
+		Assert.assertEquals(Integer.valueOf(789), map.get("ghi"));
+		
+		map.setTop(base);
+		Assert.assertEquals(Integer.valueOf(123), map.get("abc"));
+		Assert.assertFalse(map.containsKey("def"));
+		Assert.assertEquals(2, map.size());
+	}
+
+	@Test
+	public void testCollisions() {
+		PersistentStackedMap<CollidingKey, Integer> map = new PersistentStackedMap<CollidingKey, Integer>();
+		Map<CollidingKey, Integer> regular = new HashMap<CollidingKey, Integer>();
+		for (int i = 0; i != 100; i++) {
+			CollidingKey key = new CollidingKey(i);
+			map.put(key, i);
+			regular.put(key, i);
+		}
+		map.put(null, -1);
+		regular.put(null, -1);
+		Assert.assertEquals(regular, map);
+		for (int i = 0; i < 100; i += 2) {
+			Assert.assertEquals(Integer.valueOf(i), map.remove(new CollidingKey(i)));
+			regular.remove(new CollidingKey(i));
+		}
+		Assert.assertNull(map.remove(new CollidingKey(0)));
+		Assert.assertEquals(regular, map);
+		Assert.assertEquals(Integer.valueOf(-1), map.get(null));
+	}
+
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(0);
+		PersistentStackedMap<Integer, Integer> map = new PersistentStackedMap<Integer, Integer>();
+		Map<Integer, Integer> regular = new HashMap<Integer, Integer>();
+		PersistentStackedMap<Integer, Integer> snapshot = null;
+		Map<Integer, Integer> regularSnapshot = null;
+		for (int i = 0; i != 20000; i++) {
+			Integer key = random.nextInt(2000) - 1000;
+			switch (random.nextInt(4)) {
+			case 0:
+				Assert.assertEquals(regular.remove(key), map.remove(key));
+				break;
+			case 1:
+				Assert.assertEquals(regular.get(key), map.get(key));
+				Assert.assertEquals(regular.containsKey(key), map.containsKey(key));
+				break;
+			default:
+				Integer value = random.nextInt(10);
+				Assert.assertEquals(regular.put(key, value), map.put(key, value));
+			}
+			Assert.assertEquals(regular.size(), map.size());
+			if (i % 1000 == 0) {
+				Assert.assertEquals(regular, map);
+				if (snapshot != null) {
+					Assert.assertEquals(regularSnapshot, snapshot);
+					Map<Integer, Integer> differences = new HashMap<Integer, Integer>();
+					for (Map.Entry<Integer, Integer> entry : regular.entrySet()) {
+						if ( ! entry.getValue().equals(regularSnapshot.get(entry.getKey()))) {
+							differences.put(entry.getKey(), entry.getValue());
+						}
+					}
+					Assert.assertEquals(differences, map.getTop());
+				}
+				snapshot = map;
+				regularSnapshot = new HashMap<Integer, Integer>(regular);
+				map = map.push();
+			}
+		}
+		Assert.assertEquals(regular, map);
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		PersistentStackedMap<Integer, Integer> map = new PersistentStackedMap<Integer, Integer>();
+		for (int i = 0; i != 1000; i++) {
+			map.put(i, i);
+		}
+		int count = 0;
+		for (Iterator<Integer> iterator = map.keySet().iterator(); iterator.hasNext(); ) {
+			Integer key = iterator.next();
+			if (key % 3 == 0) {
+				iterator.remove();
+			}
+			count++;
+		}
+		Assert.assertEquals(1000, count);
+		Assert.assertEquals(666, map.size());
+		Assert.assertFalse(map.containsKey(999));
+		Assert.assertTrue(map.containsKey(998));
+	}
+
+	@Test
+	public void testDeepStack() {
+		PersistentStackedMap<Integer, Integer> map = new PersistentStackedMap<Integer, Integer>();
+		for (int depth = 0; depth != 1000; depth++) {
+			map.put(depth, depth);
+			map = map.push();
+		}
+		Assert.assertEquals(1000, map.getDepth());
+		Assert.assertEquals(1000, map.size());
+		Assert.assertTrue(map.getTop().isEmpty());
+		for (int i = 0; i != 500; i++) {
+			map = map.pop();
+		}
+		// the scope at depth 500 is the one where 500 was put.
+		Assert.assertEquals(501, map.size());
+		Assert.assertEquals(Integer.valueOf(500), map.get(500));
+		Assert.assertFalse(map.containsKey(501));
+		Assert.assertEquals(1, map.getTop().size());
+	}
+
+	private static class CollidingKey {
+		private final int id;
+
+		CollidingKey(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return id % 3;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof CollidingKey && ((CollidingKey) other).id == id;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.collect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sri.ai.util.collect.ImmutableStackedLinkedList;
+import com.sri.ai.util.collect.PersistentVector;
+import com.sri.ai.util.collect.StackedLinkedList;
+
+public class PersistentVectorTest {
+
+	@Test
+	public void testCopyOf() {
+		for (int size : new int[] { 0, 1, 31, 32, 33, 1024, 1025, 40000 }) {
+			List<Integer> list = range(0, size);
+			PersistentVector<Integer> vector = PersistentVector.copyOf(list);
+			Assert.assertEquals(size, vector.size());
+			Assert.assertEquals(list, vector);
+			Assert.assertEquals(vector, list);
+			Assert.assertEquals(list.hashCode(), vector.hashCode());
+			Assert.assertArrayEquals(list.toArray(), vector.toArray());
+			Assert.assertSame(vector, PersistentVector.copyOf(vector));
+			if (size > 0) {
+				Assert.assertEquals(Integer.valueOf(size - 1), vector.get(size - 1));
+				Assert.assertEquals(size - 1, vector.indexOf(size - 1));
+			}
+		}
+	}
+
+	@Test
+	public void testAppendAndPrepend() {
+		PersistentVector<Integer> vector = PersistentVector.empty();
+		List<Integer> list = new ArrayList<Integer>();
+		List<PersistentVector<Integer>> versions = new ArrayList<PersistentVector<Integer>>();
+		List<List<Integer>> expectedVersions = new ArrayList<List<Integer>>();
+		for (int i = 0; i != 5000; i++) {
+			if (i % 3 == 0) {
+				vector = vector.prepend(i);
+				list.add(0, i);
+			}
+			else {
+				vector = vector.append(i);
+				list.add(i);
+			}
+			if (i % 500 == 0) {
+				versions.add(vector);
+				expectedVersions.add(new ArrayList<Integer>(list));
+			}
+		}
+		Assert.assertEquals(list, vector);
+		for (int i = 0; i != list.size(); i++) {
+			Assert.assertEquals(list.get(i), vector.get(i));
+		}
+		// earlier versions are unaffected.
+		Assert.assertEquals(expectedVersions, versions);
+	}
+
+	@Test
+	public void testReplaceAndSubList() {
+		Random random = new Random(0);
+		List<Integer> list = range(0, 3000);
+		PersistentVector<Integer> original = PersistentVector.copyOf(list);
+		PersistentVector<Integer> vector = original;
+		for (int i = 0; i != 1000; i++) {
+			int index = random.nextInt(list.size());
+			vector = vector.replace(index, -i);
+			list.set(index, -i);
+		}
+		Assert.assertEquals(list, vector);
+		Assert.assertEquals(range(0, 3000), original);
+		
+		PersistentVector<Integer> subList = vector.subList(1000, 2100);
+		Assert.assertEquals(list.subList(1000, 2100), subList);
+		Assert.assertEquals(list.subList(1500, 1600), subList.subList(500, 600));
+		PersistentVector<Integer> extended = subList.append(42).prepend(43);
+		List<Integer> expected = new ArrayList<Integer>(list.subList(1000, 2100));
+		expected.add(42);
+		expected.add(0, 43);
+		Assert.assertEquals(expected, extended);
+		Assert.assertEquals(list, vector);
+		Assert.assertTrue(vector.subList(5, 5).isEmpty());
+	}
+
+	@Test
+	public void testExceptions() {
+		PersistentVector<Integer> vector = PersistentVector.copyOf(Arrays.asList(1, 2, 3));
+		try {
+			vector.get(3);
+			Assert.fail("IndexOutOfBoundsException expected");
+		}
+		catch (IndexOutOfBoundsException exception) {
+			// expected
+		}
+		try {
+			vector.subList(2, 4);
+			Assert.fail("IndexOutOfBoundsException expected");
+		}
+		catch (IndexOutOfBoundsException exception) {
+			// expected
+		}
+		try {
+			vector.add(4);
+			Assert.fail("UnsupportedOperationException expected");
+		}
+		catch (UnsupportedOperationException exception) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testImmutableStackedLinkedList() {
+		List<Integer> expected = range(0, 10);
+		List<Integer> list = new ArrayList<Integer>(expected);
+		for (int i = 10; i != 5000; i++) {
+			list = new ImmutableStackedLinkedList<Integer>(i, list);
+			expected.add(i);
+		}
+		Assert.assertEquals(5000, list.size());
+		Assert.assertEquals(Integer.valueOf(2500), list.get(2500));
+		Assert.assertEquals(4321, list.indexOf(4321));
+		Assert.assertEquals(4321, list.lastIndexOf(4321));
+		Assert.assertEquals(-1, list.indexOf(5000));
+		Assert.assertTrue(list.contains(7));
+		Assert.assertEquals(expected, list);
+		Assert.assertEquals(expected.toString(), list.toString());
+		Assert.assertArrayEquals(expected.toArray(), list.toArray());
+		Assert.assertArrayEquals(expected.toArray(new Integer[0]), list.toArray(new Integer[0]));
+		Assert.assertEquals(expected.subList(100, 200), list.subList(100, 200));
+		ListIterator<Integer> iterator = list.listIterator(list.size());
+		Assert.assertEquals(Integer.valueOf(4999), iterator.previous());
+		
+		// the base shares its elements with the extended list.
+		List<Integer> base = ((ImmutableStackedLinkedList<Integer>) list).getBase();
+		Assert.assertEquals(expected.subList(0, 4999), base);
+		ImmutableStackedLinkedList<Integer> other = new ImmutableStackedLinkedList<Integer>(Arrays.asList(-1, -2), base);
+		Assert.assertEquals(Integer.valueOf(-2), other.get(5000));
+		Assert.assertEquals(Integer.valueOf(4998), other.get(4998));
+		Assert.assertEquals(Integer.valueOf(4999), list.get(4999));
+		
+		StackedLinkedList<Integer> mutable = new StackedLinkedList<Integer>(list);
+		mutable.add(5000);
+		Assert.assertEquals(Integer.valueOf(2500), mutable.get(2500));
+		Assert.assertEquals(Integer.valueOf(5000), mutable.get(5000));
+		Assert.assertEquals(5001, mutable.size());
+	}
+
+	@Test
+	public void testDeepStackedLinkedList() {
+		List<Integer> bottom = new ArrayList<Integer>(Arrays.asList(-1));
+		StackedLinkedList<Integer> lowest = new StackedLinkedList<Integer>(bottom);
+		StackedLinkedList<Integer> list = lowest;
+		for (int i = 0; i != 100000; i++) {
+			list.add(i);
+			list = new StackedLinkedList<Integer>(list);
+		}
+		Assert.assertEquals(100001, list.size());
+		Assert.assertEquals(Integer.valueOf(-1), list.get(0));
+		Assert.assertEquals(Integer.valueOf(50000), list.get(50001));
+		
+		// changes to lists below are seen.
+		lowest.set(1, 100);
+		bottom.add(-2);
+		Assert.assertEquals(100002, list.size());
+		Assert.assertEquals(Integer.valueOf(-2), list.get(1));
+		Assert.assertEquals(Integer.valueOf(100), list.get(2));
+		Assert.assertEquals(Integer.valueOf(99999), list.get(100001));
+	}
+
+	@Test
+	public void testImmutableStackedLinkedListOnNonStackedBase() {
+		ImmutableStackedLinkedList<String> list = new ImmutableStackedLinkedList<String>(Arrays.asList("c", "d"), Arrays.asList("a", "b"));
+		Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), list);
+		Assert.assertEquals("c", list.get(2));
+		Assert.assertEquals(Arrays.asList("b", "c"), list.subList(1, 3));
+		Assert.assertEquals(Collections.emptyList(), new ImmutableStackedLinkedList<String>(Collections.<String>emptyList(), Collections.<String>emptyList()));
+	}
+
+	private static List<Integer> range(int from, int to) {
+		List<Integer> result = new ArrayList<Integer>();
+		for (int i = from; i != to; i++) {
+			result.add(i);
+		}
+		return result;
+	}
+}
@@ -37,18 +37,25 @@
  */
 package com.sri.ai.test.util.collect;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.sri.ai.util.collect.AbstractStackedMap;
 import com.sri.ai.util.collect.StackedHashMap;
+import com.sri.ai.util.collect.StackedTreeMap;
 
 public class StackedMapTest {
 
@@ -78,6 +85,11 @@ public class StackedMapTest {
 
 		other.put("This is ", 0);
 	}
+	
+	@After
+	public void tearDown() {
+		AbstractStackedMap.resetCompactionPolicyFromAICUtilConfiguration();
+	}
 
 	@Test
 	public void test() {
@@ -127,4 +139,171 @@ public class StackedMapTest {
 		Assert.assertEquals(cloneValues, regularValues);
 		Assert.assertEquals(clone.hashCode(), regular.hashCode());
 	}
+
+	@Test
+	public void testCompactionFollowsChangesThroughTopMaps() {
+		AbstractStackedMap.resetCompactionPolicyFromAICUtilConfiguration();
+		AbstractStackedMap.resetCompactionStatistics();
+		AbstractStackedMap<String, Integer> map = new StackedHashMap<String, Integer>();
+		map.put("key", 0);
+		map.put("other", 0);
+		AbstractStackedMap<String, Integer> lowest = map;
+		for (int i = 0; i != 100; i++) {
+			map = new StackedHashMap<String, Integer>(map);
+		}
+		for (int i = 0; i != 1000; i++) {
+			Assert.assertEquals(Integer.valueOf(0), map.get("key"));
+		}
+		Assert.assertTrue(AbstractStackedMap.getNumberOfCompactions() > 0);
+		
+		// changes through the top maps of lower layers invalidate snapshots, however they are made.
+		lowest.getTop().put("key", 1);
+		Assert.assertEquals(Integer.valueOf(1), map.get("key"));
+		compactAgain(map, "key");
+		lowest.getTop().entrySet().iterator().next().setValue(2);
+		Assert.assertEquals(Integer.valueOf(2), map.get("key"));
+		compactAgain(map, "key");
+		lowest.getTop().keySet().remove("other");
+		Assert.assertFalse(map.containsKey("other"));
+		compactAgain(map, "key");
+		lowest.getTop().values().clear();
+		Assert.assertFalse(map.containsKey("key"));
+	}
+
+	@Test
+	public void testSharedTopMapsAreNotCompacted() {
+		AbstractStackedMap.setCompactionPolicy(0, 1);
+		Map<String, Integer> sharedTop = new HashMap<String, Integer>();
+		sharedTop.put("shared", 0);
+		AbstractStackedMap<String, Integer> map = new StackedHashMap<String, Integer>();
+		for (int i = 0; i != 10; i++) {
+			map.put("key" + i, i);
+			map = i == 4 ? new StackedHashMap<String, Integer>(sharedTop, map) : new StackedHashMap<String, Integer>(map);
+		}
+		compactAgain(map, "key0");
+		
+		// direct changes to a shared top map are seen, as lookups probe it.
+		sharedTop.put("shared", 1);
+		sharedTop.put("key0", -1);
+		Assert.assertEquals(Integer.valueOf(1), map.get("shared"));
+		Assert.assertEquals(Integer.valueOf(-1), map.get("key0"));
+		Assert.assertEquals(Integer.valueOf(9), map.get("key9"));
+		Assert.assertEquals(11, map.size());
+	}
+
+	@Test
+	public void testConcurrentLookups() throws Exception {
+		AbstractStackedMap.setCompactionPolicy(4, 1);
+		AbstractStackedMap<Integer, Integer> chain = new StackedHashMap<Integer, Integer>();
+		for (int i = 0; i != 64; i++) {
+			chain.put(i, i);
+			chain = new StackedHashMap<Integer, Integer>(chain);
+		}
+		final AbstractStackedMap<Integer, Integer> map = chain;
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int thread = 0; thread != 8; thread++) {
+				results.add(executor.submit(() -> {
+					for (int i = 0; i != 10000; i++) {
+						if ( ! Integer.valueOf(i % 64).equals(map.get(i % 64)) || map.containsKey(-1)) {
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				Assert.assertTrue(result.get());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static <K, V> void compactAgain(Map<K, V> map, K key) {
+		long compactions = AbstractStackedMap.getNumberOfCompactions();
+		for (int i = 0; i != 100000 && AbstractStackedMap.getNumberOfCompactions() == compactions; i++) {
+			map.get(key);
+		}
+		Assert.assertTrue(AbstractStackedMap.getNumberOfCompactions() > compactions);
+	}
+
+	@Test
+	public void testCompaction() {
+		AbstractStackedMap.setCompactionPolicy(4, 0);
+		AbstractStackedMap.resetCompactionStatistics();
+		Map<String, Integer> bottom = new HashMap<String, Integer>();
+		bottom.put("bottom", -1);
+		AbstractStackedMap<String, Integer> map = new StackedHashMap<String, Integer>(bottom);
+		for (int i = 0; i != 10; i++) {
+			map.put("key" + i, i);
+			map = new StackedHashMap<String, Integer>(map);
+		}
+		for (int i = 0; i != 100; i++) {
+			Assert.assertEquals(Integer.valueOf(i % 10), map.get("key" + (i % 10)));
+		}
+		Assert.assertEquals(1, AbstractStackedMap.getNumberOfCompactions());
+		Assert.assertEquals(10, AbstractStackedMap.getNumberOfCompactedLayers());
+		Assert.assertTrue(AbstractStackedMap.getNumberOfLookupsThroughCompactions() > 0);
+		Assert.assertEquals(9*AbstractStackedMap.getNumberOfLookupsThroughCompactions(), AbstractStackedMap.getNumberOfProbesSavedByCompactions());
+		
+		// the bottom map is not part of the snapshot.
+		Assert.assertEquals(Integer.valueOf(-1), map.get("bottom"));
+		bottom.put("bottom", -2);
+		Assert.assertEquals(Integer.valueOf(-2), map.get("bottom"));
+		Assert.assertEquals(0, AbstractStackedMap.getNumberOfInvalidatedCompactions());
+		
+		// changes to lower layers invalidate the snapshot.
+		AbstractStackedMap<String, Integer> middle = (AbstractStackedMap<String, Integer>) ((AbstractStackedMap<String, Integer>) map.getBase()).getBase();
+		middle.put("key3", 33);
+		Assert.assertEquals(Integer.valueOf(33), map.get("key3"));
+		Assert.assertEquals(1, AbstractStackedMap.getNumberOfInvalidatedCompactions());
+		middle.remove("key1");
+		Assert.assertFalse(map.containsKey("key1"));
+		Assert.assertEquals(10, map.size());
+		
+		// changes to the top map itself do not.
+		for (int i = 0; i != 100; i++) {
+			map.put("top", i);
+			Assert.assertEquals(Integer.valueOf(4), map.get("key4"));
+		}
+		long compactions = AbstractStackedMap.getNumberOfCompactions();
+		Assert.assertEquals(Integer.valueOf(4), map.get("key4"));
+		Assert.assertEquals(compactions, AbstractStackedMap.getNumberOfCompactions());
+		Assert.assertEquals(11, map.size());
+		Assert.assertTrue(map.keySet().contains("bottom"));
+	}
+
+	@Test
+	public void testCompactionAfterSetBase() {
+		AbstractStackedMap.setCompactionPolicy(0, 1);
+		AbstractStackedMap<Integer, Integer> map = new StackedTreeMap<Integer, Integer>();
+		AbstractStackedMap<Integer, Integer> middle = null;
+		for (int i = 0; i != 10; i++) {
+			map.put(i, i);
+			map = new StackedTreeMap<Integer, Integer>(map);
+			if (i == 4) {
+				middle = map;
+			}
+		}
+		for (int i = 0; i != 100; i++) {
+			Assert.assertEquals(Integer.valueOf(i % 10), map.get(i % 10));
+		}
+		
+		// moving a lower layer to another chain makes the snapshot follow the new chain.
+		AbstractStackedMap<Integer, Integer> otherChain = new StackedTreeMap<Integer, Integer>(new StackedTreeMap<Integer, Integer>());
+		otherChain.put(0, 100);
+		middle.setBase(otherChain);
+		Assert.assertEquals(Integer.valueOf(100), map.get(0));
+		Assert.assertFalse(map.containsKey(1));
+		for (int i = 0; i != 100; i++) {
+			Assert.assertEquals(Integer.valueOf(5), map.get(5));
+		}
+		otherChain.put(0, 200);
+		Assert.assertEquals(Integer.valueOf(200), map.get(0));
+		otherChain.getBase().put(-1, -1);
+		Assert.assertEquals(Integer.valueOf(-1), map.get(-1));
+	}
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sri.ai.util.base.NullaryFunction;
+import com.sri.ai.util.math.ArithmeticContext;
+import com.sri.ai.util.math.BigIntegerNumberApproximate;
+import com.sri.ai.util.math.BigIntegerNumberExact;
+import com.sri.ai.util.math.Rational;
+
+public class ArithmeticContextTest {
+	
+	private static final int APPROXIMATE_PRECISION = 10;
+
+	@Test
+	public void testContextsAreCanonical() {
+		Assert.assertSame(ArithmeticContext.exact(), ArithmeticContext.exact());
+		Assert.assertSame(ArithmeticContext.approximate(APPROXIMATE_PRECISION, RoundingMode.HALF_EVEN), ArithmeticContext.approximate(APPROXIMATE_PRECISION, RoundingMode.HALF_EVEN));
+		Assert.assertNotSame(ArithmeticContext.approximate(APPROXIMATE_PRECISION, RoundingMode.HALF_EVEN), ArithmeticContext.approximate(APPROXIMATE_PRECISION, RoundingMode.HALF_UP));
+		Assert.assertFalse(ArithmeticContext.exact().isApproximationEnabled());
+		Assert.assertTrue(ArithmeticContext.approximate(APPROXIMATE_PRECISION, RoundingMode.HALF_EVEN).isApproximationEnabled());
+		Assert.assertEquals(APPROXIMATE_PRECISION, ArithmeticContext.approximate(APPROXIMATE_PRECISION, RoundingMode.HALF_EVEN).getMathContext().getPrecision());
+		Assert.assertSame(ArithmeticContext.fromAICUtilConfiguration(), ArithmeticContext.getDefault());
+	}
+	
+	@Test
+	public void testCompute() {
+		final ArithmeticContext exact       = ArithmeticContext.exact();
+		final ArithmeticContext approximate = ArithmeticContext.approximate(APPROXIMATE_PRECISION, RoundingMode.HALF_EVEN);
+		final ArithmeticContext defaultContext = ArithmeticContext.getDefault();
+		
+		Assert.assertSame(defaultContext, ArithmeticContext.getCurrent());
+		Rational exactValue = exact.compute(new NullaryFunction<Rational>() {
+			@Override
+			public Rational apply() {
+				Assert.assertSame(exact, ArithmeticContext.getCurrent());
+				// nested computations restore the enclosing context
+				Rational approximateValue = approximate.compute(new NullaryFunction<Rational>() {
+					@Override
+					public Rational apply() {
+						Assert.assertSame(approximate, ArithmeticContext.getCurrent());
+						return sumOfPowersOfOneThird();
+					}
+				});
+				Assert.assertTrue(approximateValue.getNumerator() instanceof BigIntegerNumberApproximate);
+				Assert.assertSame(exact, ArithmeticContext.getCurrent());
+				return sumOfPowersOfOneThird();
+			}
+		});
+		Assert.assertSame(defaultContext, ArithmeticContext.getCurrent());
+		Assert.assertTrue(exactValue.getNumerator() instanceof BigIntegerNumberExact);
+		Assert.assertEquals(expectedSumOfPowersOfOneThird(), exactValue);
+		
+		// the context is restored on exceptions too
+		try {
+			exact.compute(new NullaryFunction<Rational>() {
+				@Override
+				public Rational apply() {
+					throw new IllegalStateException();
+				}
+			});
+			Assert.fail("exception expected");
+		}
+		catch (IllegalStateException illegalStateException) {
+			// expected
+		}
+		Assert.assertSame(defaultContext, ArithmeticContext.getCurrent());
+	}
+	
+	@Test
+	public void testConcurrentContexts() throws Exception {
+		final ArithmeticContext exact       = ArithmeticContext.exact();
+		final ArithmeticContext approximate = ArithmeticContext.approximate(APPROXIMATE_PRECISION, RoundingMode.HALF_EVEN);
+		final Rational expected = expectedSumOfPowersOfOneThird();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < 8; i++) {
+				final ArithmeticContext context = i % 2 == 0 ? exact : approximate;
+				results.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						return context.compute(new NullaryFunction<Boolean>() {
+							@Override
+							public Boolean apply() {
+								boolean result = true;
+								for (int j = 0; j < 50; j++) {
+									Rational sum = sumOfPowersOfOneThird();
+									if (context == exact) {
+										result = result && sum.equals(expected) && sum.getNumerator() instanceof BigIntegerNumberExact;
+									}
+									else {
+										result = result && Math.abs(sum.doubleValue() - expected.doubleValue()) < 1e-8 && sum.getNumerator() instanceof BigIntegerNumberApproximate;
+									}
+								}
+								return result;
+							}
+						});
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				Assert.assertTrue(result.get());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static Rational sumOfPowersOfOneThird() {
+		Rational oneThird = new Rational(1, 3);
+		Rational power    = Rational.ONE;
+		Rational result   = new Rational(0);
+		for (int i = 1; i <= 60; i++) {
+			power  = power.multiply(oneThird);
+			result = result.add(power);
+		}
+		return result;
+	}
+	
+	private static Rational expectedSumOfPowersOfOneThird() {
+		// (1 - 3^-60)/2, computed exactly
+		return ArithmeticContext.exact().compute(new NullaryFunction<Rational>() {
+			@Override
+			public Rational apply() {
+				return Rational.ONE.subtract(new Rational(3).pow(-60)).divide(new Rational(2));
+			}
+		});
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.lang.management.ManagementFactory;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sri.ai.util.math.ArithmeticStatistics;
+import com.sri.ai.util.math.ArithmeticStatistics.Operation;
+import com.sri.ai.util.math.ArithmeticStatistics.Snapshot;
+import com.sri.ai.util.math.Rational;
+
+public class ArithmeticStatisticsTest {
+	
+	@Before
+	public void setUp() {
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision(), RoundingMode.HALF_EVEN);
+		ArithmeticStatistics.reset();
+		ArithmeticStatistics.setNormalizationSamplingInterval(1);
+	}
+	
+	@After
+	public void tearDown() {
+		ArithmeticStatistics.reset();
+		ArithmeticStatistics.resetFromAICUtilConfiguration();
+		ArithmeticStatistics.unregisterMBean();
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	@Test
+	public void testNothingIsRecordedWhenDisabled() {
+		ArithmeticStatistics.setEnabled(false);
+		Rational oneThird = new Rational(1, 3);
+		oneThird.add(oneThird).multiply(oneThird).divide(new Rational(7)).pow(3).compareTo(oneThird);
+		
+		Snapshot snapshot = ArithmeticStatistics.snapshot();
+		for (Operation operation : Operation.values()) {
+			Assert.assertEquals(operation.toString(), 0, snapshot.getCount(operation));
+		}
+		Assert.assertEquals(0, snapshot.getNumberOfSampledNormalizations());
+	}
+	
+	@Test
+	public void testOperationsAreCounted() {
+		ArithmeticStatistics.setEnabled(true);
+		Rational oneThird = new Rational(1, 3);
+		Rational twoFifths = new Rational(2, 5);
+		ArithmeticStatistics.reset();
+		
+		oneThird.add(twoFifths);
+		oneThird.subtract(twoFifths);
+		oneThird.multiply(twoFifths);
+		oneThird.divide(twoFifths);
+		oneThird.divide(twoFifths);
+		oneThird.pow(5);
+		oneThird.compareTo(twoFifths);
+		
+		Snapshot snapshot = ArithmeticStatistics.snapshot();
+		Assert.assertEquals(2, snapshot.getCount(Operation.ADD));
+		Assert.assertEquals(1, snapshot.getCount(Operation.MULTIPLY));
+		Assert.assertEquals(2, snapshot.getCount(Operation.DIVIDE));
+		Assert.assertEquals(1, snapshot.getCount(Operation.POW));
+		Assert.assertTrue(snapshot.getCount(Operation.COMPARE) >= 1);
+		Assert.assertTrue(snapshot.getCount(Operation.GCD) >= 1);
+		
+		// the snapshot does not change with later operations
+		oneThird.add(twoFifths);
+		Assert.assertEquals(2, snapshot.getCount(Operation.ADD));
+		Assert.assertEquals(3, ArithmeticStatistics.snapshot().getCount(Operation.ADD));
+	}
+	
+	@Test
+	public void testBitLengthHistograms() {
+		ArithmeticStatistics.setEnabled(true);
+		// 2^100 + 1 has 101 bits, which falls in bucket 7, i.e. [64, 128)
+		Rational large = new Rational(2).pow(100).add(1);
+		Rational small = new Rational(3, 7);
+		ArithmeticStatistics.reset();
+		
+		large.multiply(large);
+		small.multiply(small);
+		small.multiply(large);
+		
+		long[] histogram = ArithmeticStatistics.snapshot().getBitLengthHistogram(Operation.MULTIPLY);
+		Assert.assertEquals(ArithmeticStatistics.NUMBER_OF_BIT_LENGTH_BUCKETS, histogram.length);
+		Assert.assertEquals(2, histogram[7]);
+		// 3/7 has 3 bits, in bucket 2, i.e. [2, 4)
+		Assert.assertEquals(1, histogram[2]);
+		Assert.assertEquals(3, sum(histogram));
+	}
+	
+	@Test
+	public void testNormalizationsAreSampled() {
+		ArithmeticStatistics.setEnabled(true);
+		Rational large = new Rational(3).pow(200);
+		ArithmeticStatistics.reset();
+		
+		Rational sum = Rational.ZERO;
+		for (int i = 1; i <= 100; i++) {
+			sum = sum.add(large.divide(i));
+		}
+		
+		Snapshot snapshot = ArithmeticStatistics.snapshot();
+		Assert.assertTrue(snapshot.getCount(Operation.NORMALIZE) > 0);
+		Assert.assertTrue(snapshot.getNumberOfSampledNormalizations() > 0);
+		Assert.assertTrue(snapshot.getNumberOfSampledNormalizations() <= snapshot.getCount(Operation.NORMALIZE));
+		Assert.assertTrue(snapshot.getMaximumSampledNormalizationTimeInNanoseconds() <= snapshot.getTotalSampledNormalizationTimeInNanoseconds());
+		Assert.assertTrue(snapshot.getMeanSampledNormalizationTimeInNanoseconds() <= snapshot.getMaximumSampledNormalizationTimeInNanoseconds());
+		
+		ArithmeticStatistics.reset();
+		ArithmeticStatistics.setNormalizationSamplingInterval(0);
+		large.divide(7);
+		snapshot = ArithmeticStatistics.snapshot();
+		Assert.assertTrue(snapshot.getCount(Operation.NORMALIZE) > 0);
+		Assert.assertEquals(0, snapshot.getNumberOfSampledNormalizations());
+	}
+	
+	@Test
+	public void testConcurrentCounting() throws InterruptedException {
+		ArithmeticStatistics.setEnabled(true);
+		final int numberOfThreads   = 4;
+		final int numberOfAdditions = 10000;
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < numberOfThreads; t++) {
+			threads.add(new Thread(() -> {
+				Rational sum = Rational.ZERO;
+				Rational term = new Rational(1, 3);
+				for (int i = 0; i < numberOfAdditions; i++) {
+					sum = sum.add(term);
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(numberOfThreads*numberOfAdditions, ArithmeticStatistics.snapshot().getCount(Operation.ADD));
+	}
+	
+	@Test
+	public void testMBean() throws Exception {
+		ArithmeticStatistics.setEnabled(true);
+		ArithmeticStatistics.registerMBean();
+		// registering twice is harmless
+		ArithmeticStatistics.registerMBean();
+		new Rational(1, 3).add(new Rational(1, 5));
+		
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(ArithmeticStatistics.OBJECT_NAME);
+		Assert.assertTrue(server.isRegistered(name));
+		Assert.assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+		TabularData counts = (TabularData) server.getAttribute(name, "Counts");
+		Assert.assertEquals(Long.valueOf(1), counts.get(new Object[] { Operation.ADD.name() }).get("value"));
+		
+		server.invoke(name, "reset", new Object[0], new String[0]);
+		Assert.assertEquals(0, ArithmeticStatistics.snapshot().getCount(Operation.ADD));
+		
+		ArithmeticStatistics.unregisterMBean();
+		Assert.assertFalse(server.isRegistered(name));
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static long sum(long[] values) {
+		long result = 0;
+		for (long value : values) {
+			result += value;
+		}
+		return result;
+	}
+}
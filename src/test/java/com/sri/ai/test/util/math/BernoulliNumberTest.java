@@ -37,12 +37,21 @@
  */
 package com.sri.ai.test.util.math;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.sri.ai.util.math.ArithmeticContext;
 import com.sri.ai.util.math.BernoulliNumber;
 import com.sri.ai.util.math.Rational;
 
@@ -110,4 +119,70 @@ public class BernoulliNumberTest {
 			Assert.assertEquals(expected.get(n), BernoulliNumber.computeSecond(n+2));
 		}
 	}
+	
+	@Test
+	public void testVonStaudtClausenDenominators() {
+		// the denominator of B_2k is the product of the primes p such that p - 1 divides 2k.
+		ArithmeticContext.exact().compute(() -> {
+			for (int n = 2; n <= 200; n += 2) {
+				BigInteger expected = BigInteger.ONE;
+				for (int p = 2; p <= n + 1; p++) {
+					if (BigInteger.valueOf(p).isProbablePrime(50) && n % (p - 1) == 0) {
+						expected = expected.multiply(BigInteger.valueOf(p));
+					}
+				}
+				Assert.assertEquals(expected.toString(), BernoulliNumber.computeFirst(n).getDenominator().toString());
+				Assert.assertEquals(n % 4 == 0 ? -1 : 1, BernoulliNumber.computeSecond(n).signum());
+			}
+			return null;
+		});
+		Assert.assertTrue(BernoulliNumber.getTableSize() > 200);
+	}
+	
+	@Test
+	public void testConcurrentComputation() throws Exception {
+		List<Rational> expected = ArithmeticContext.exact().compute(() -> {
+			List<Rational> result = new ArrayList<Rational>();
+			for (int n = 0; n <= 300; n++) {
+				result.add(BernoulliNumber.computeFirst(n));
+			}
+			return result;
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < 8; i++) {
+				final int offset = i;
+				futures.add(executor.submit(() -> ArithmeticContext.exact().compute(() -> {
+					for (int n = 300 - offset; n >= 0; n -= 7) {
+						Assert.assertEquals(expected.get(n), BernoulliNumber.computeFirst(n));
+					}
+					return true;
+				})));
+			}
+			for (Future<Boolean> future : futures) {
+				Assert.assertTrue(future.get());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testSaveAndLoadTable() throws IOException {
+		BernoulliNumber.precompute(100);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BernoulliNumber.saveTable(bytes);
+		int size = BernoulliNumber.getTableSize();
+		// loading a table that is not larger than the current one leaves it unchanged
+		BernoulliNumber.loadTable(new ByteArrayInputStream(bytes.toByteArray()));
+		Assert.assertEquals(size, BernoulliNumber.getTableSize());
+		Assert.assertEquals(new Rational(854513, 138), BernoulliNumber.computeFirst(22));
+	}
+	
+	@Test(expected=IOException.class)
+	public void testLoadInvalidTable() throws IOException {
+		BernoulliNumber.loadTable(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+	}
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sri.ai.util.AICUtilConfiguration;
+import com.sri.ai.util.base.NullaryFunction;
+import com.sri.ai.util.math.ArithmeticContext;
+import com.sri.ai.util.math.BigIntegerNumber;
+import com.sri.ai.util.math.BigIntegerNumberApproximate;
+import com.sri.ai.util.math.BigIntegerNumberApproximateBinary;
+import com.sri.ai.util.math.BigIntegerNumberExact;
+import com.sri.ai.util.math.Rational;
+
+public class BigIntegerNumberApproximateBinaryTest {
+	
+	// i.e. a relative error of 2^-63 per operation, with some slack for the number of operations
+	private static final double RELATIVE_ERROR = 1e-18;
+	
+	@Test
+	public void testArithmeticAgainstBigInteger() {
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			BigInteger a = new BigInteger(1 + random.nextInt(300), random);
+			BigInteger b = new BigInteger(1 + random.nextInt(300), random);
+			if (random.nextBoolean()) {
+				a = a.negate();
+			}
+			BigIntegerNumber binaryA = new BigIntegerNumberApproximateBinary(a);
+			BigIntegerNumber binaryB = new BigIntegerNumberApproximateBinary(b);
+			
+			assertClose(a, binaryA);
+			assertClose(a.multiply(b), binaryA.multiply(binaryB));
+			assertClose(a.pow(3), binaryA.pow(3));
+			assertClose(a.negate(), binaryA.negate());
+			assertClose(a.abs(), binaryA.abs());
+			Assert.assertEquals(a.signum(), binaryA.signum());
+			Assert.assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(binaryA.compareTo(binaryB)));
+			// large quotients are close too (their truncation being negligible)
+			if (a.bitLength() > b.bitLength() + Long.SIZE && b.signum() != 0) {
+				assertClose(a.divide(b), binaryA.divide(binaryB));
+			}
+			// no cancellation, so the result is close in relative terms too
+			if (a.signum() == b.signum()) {
+				assertClose(a.add(b), binaryA.add(binaryB));
+			}
+			else {
+				assertClose(a.subtract(b), binaryA.subtract(binaryB));
+			}
+		}
+	}
+	
+	@Test
+	public void testExactOnLongs() {
+		long[] values = new long[] {0, 1, -1, 2, 3, 10, 1L << 52, (1L << 53) - 1, -(1L << 53) + 1, (1L << 53) + 1, (1L << 62) + 1, Long.MAX_VALUE, Long.MIN_VALUE + 1, Long.MIN_VALUE};
+		for (long value : values) {
+			BigIntegerNumber binary = new BigIntegerNumberApproximateBinary(value);
+			Assert.assertTrue(binary.fitsInLong());
+			Assert.assertEquals(value, binary.longValueExact());
+			Assert.assertEquals(Long.toString(value), binary.toString(10));
+			Assert.assertEquals(BigInteger.valueOf(value).bitLength(), binary.bitLength());
+		}
+		Assert.assertFalse(new BigIntegerNumberApproximateBinary(BigInteger.ONE.shiftLeft(63)).fitsInLong());
+		Assert.assertEquals(new BigIntegerNumberApproximateBinary(BigInteger.ONE.shiftLeft(64)), new BigIntegerNumberApproximateBinary(BigInteger.ONE.shiftLeft(64).add(BigInteger.ONE)));
+		Assert.assertEquals(1, new BigIntegerNumberApproximateBinary(Long.MAX_VALUE).add(new BigIntegerNumberApproximateBinary(-(Long.MAX_VALUE - 1))).longValueExact());
+		
+		for (int i = -300; i <= 300; i++) {
+			for (int j = -300; j <= 300; j++) {
+				BigIntegerNumber binaryI = new BigIntegerNumberApproximateBinary(i);
+				BigIntegerNumber binaryJ = new BigIntegerNumberApproximateBinary(j);
+				Assert.assertEquals(BigInteger.valueOf(i).gcd(BigInteger.valueOf(j)).longValue(), binaryI.gcd(binaryJ).longValueExact());
+				if (j != 0) {
+					BigIntegerNumber[] quotientAndRemainder = binaryI.divideAndRemainder(binaryJ);
+					Assert.assertEquals(i / j, quotientAndRemainder[0].intValueExact());
+					Assert.assertEquals(i % j, quotientAndRemainder[1].intValueExact());
+					Assert.assertEquals(i / j, binaryI.divide(binaryJ).intValueExact());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testLargeDivideAndGCD() {
+		BigIntegerNumber twoPower100 = new BigIntegerNumberApproximateBinary(2).pow(100);
+		BigIntegerNumber three       = new BigIntegerNumberApproximateBinary(3);
+		Assert.assertEquals(twoPower100, twoPower100.multiply(three).divide(three));
+		Assert.assertEquals(twoPower100, twoPower100.multiply(three).gcd(twoPower100.multiply(new BigIntegerNumberApproximateBinary(5))));
+		Assert.assertEquals(0, three.divide(twoPower100).signum());
+		BigIntegerNumber[] quotientAndRemainder = twoPower100.add(three).divideAndRemainder(twoPower100);
+		Assert.assertEquals(1, quotientAndRemainder[0].intValueExact());
+	}
+	
+	@Test
+	public void testNoOverflowOrUnderflow() {
+		// 100000! overflows doubles many times over
+		BigIntegerNumber factorial = new BigIntegerNumberApproximateBinary(1);
+		double logFactorial = 0;
+		for (int i = 2; i <= 100000; i++) {
+			factorial = factorial.multiply(new BigIntegerNumberApproximateBinary(i));
+			logFactorial += Math.log(i);
+		}
+		Assert.assertEquals(1.0, factorial.log(MathContext.DECIMAL64).doubleValue() / logFactorial, 1e-12);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, factorial.doubleValue(), 0);
+		Assert.assertEquals(new BigIntegerNumberApproximateBinary(BigInteger.ONE.shiftLeft(1000000)), new BigIntegerNumberApproximateBinary(2).pow(1000000));
+		
+		// and so does this rational, in both directions
+		Rational value = ArithmeticContext.approximateBinaryFloat().compute(new NullaryFunction<Rational>() {
+			@Override
+			public Rational apply() {
+				Rational half   = new Rational(1, 2);
+				Rational result = Rational.ONE;
+				for (int i = 0; i < 5000; i++) {
+					result = result.multiply(half);
+				}
+				result = result.multiply(new Rational(3).pow(5000)).divide(new Rational(3, 2).pow(5000));
+				return result;
+			}
+		});
+		Assert.assertEquals(1.0, value.doubleValue(), 1e-10);
+	}
+	
+	@Test(expected=ArithmeticException.class)
+	public void testExponentOverflow() {
+		new BigIntegerNumberApproximateBinary(3).pow(Integer.MAX_VALUE);
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void testLogOfZero() {
+		new BigIntegerNumberApproximateBinary(0).log(MathContext.DECIMAL64);
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void testLogOfNegative() {
+		new BigIntegerNumberApproximateBinary(-3).log(MathContext.DECIMAL64);
+	}
+	
+	@Test
+	public void testConversions() {
+		BigInteger big = BigInteger.TEN.pow(400).add(BigInteger.valueOf(12345));
+		BigIntegerNumberApproximateBinary binary = new BigIntegerNumberApproximateBinary(big);
+		assertClose(big, new BigIntegerNumberApproximateBinary(big.toString(16), 16));
+		assertClose(big, new BigIntegerNumberApproximateBinary(new BigDecimal(big)));
+		assertClose(BigInteger.TEN.pow(5000), new BigIntegerNumberApproximateBinary(new BigDecimal("1E+5000")));
+		Assert.assertEquals(0.25, new BigIntegerNumberApproximateBinary(new BigDecimal("0.25")).doubleValue(), 0);
+		Assert.assertTrue(new BigIntegerNumberApproximateBinary(new BigDecimal("1E-5000")).log(MathContext.DECIMAL64).doubleValue() < -11512);
+		
+		// interoperates with the other representations
+		BigIntegerNumber exact       = new BigIntegerNumberExact(big);
+		BigIntegerNumber approximate = new BigIntegerNumberApproximate(new BigDecimal(big), MathContext.DECIMAL128);
+		Assert.assertEquals(0, binary.compareTo(exact));
+		Assert.assertEquals(0, binary.compareTo(approximate));
+		// exact arithmetic on the binary value round trips
+		Assert.assertEquals(binary, new BigIntegerNumberApproximateBinary(new BigInteger(exact.subtract(exact).add(binary).toString(10))));
+		assertClose(big.multiply(BigInteger.valueOf(2)), exact.add(binary));
+		assertClose(big.multiply(BigInteger.valueOf(2)), approximate.add(binary));
+		
+		Assert.assertEquals("1.0000000000000000000E+400", binary.toString());
+		Assert.assertEquals("3.3333333333333333332E-9", new BigIntegerNumberApproximateBinary(new BigDecimal("0.0000000033333333333333333333333333")).toString());
+	}
+	
+	@Test
+	public void testSelectionByConfiguration() {
+		Assert.assertFalse(ArithmeticContext.fromAICUtilConfiguration().isBinaryFloatEnabled());
+		AICUtilConfiguration.setProperty(AICUtilConfiguration.KEY_RATIONAL_APPROXIMATION_BINARY_FLOAT_ENABLED, Boolean.TRUE.toString());
+		try {
+			ArithmeticContext context = ArithmeticContext.fromAICUtilConfiguration();
+			Assert.assertTrue(context.isBinaryFloatEnabled());
+			Assert.assertFalse(context.isLongFastPathEnabled());
+			Assert.assertFalse(ArithmeticContext.exact().isBinaryFloatEnabled());
+			Rational third = context.compute(new NullaryFunction<Rational>() {
+				@Override
+				public Rational apply() {
+					return new Rational(1, 3).add(new Rational(1, 6)).multiply(new Rational(2, 3));
+				}
+			});
+			Assert.assertTrue(third.getNumerator() instanceof BigIntegerNumberApproximateBinary);
+			Assert.assertEquals(1.0 / 3, third.doubleValue(), 1e-15);
+		}
+		finally {
+			AICUtilConfiguration.setProperty(AICUtilConfiguration.KEY_RATIONAL_APPROXIMATION_BINARY_FLOAT_ENABLED, AICUtilConfiguration.DEFAULT_VALUE_RATIONAL_APPROXIMATION_BINARY_FLOAT_ENABLED.toString());
+		}
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static void assertClose(BigInteger expected, BigIntegerNumber actual) {
+		if (expected.signum() == 0) {
+			Assert.assertEquals(0, actual.signum());
+		}
+		else {
+			BigDecimal expectedValue = new BigDecimal(expected);
+			BigDecimal actualValue   = new BigDecimal(actual.toString());
+			double relativeError = expectedValue.subtract(actualValue).divide(expectedValue, MathContext.DECIMAL64).abs().doubleValue();
+			Assert.assertTrue("expected "+expected+" but was "+actual, relativeError <= RELATIVE_ERROR);
+		}
+	}
+}
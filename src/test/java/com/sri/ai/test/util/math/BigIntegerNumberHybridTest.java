@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.BigInteger;
+import java.math.MathContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sri.ai.util.base.NullaryFunction;
+import com.sri.ai.util.math.ArithmeticContext;
+import com.sri.ai.util.math.BigIntegerNumber;
+import com.sri.ai.util.math.BigIntegerNumberApproximate;
+import com.sri.ai.util.math.BigIntegerNumberExact;
+import com.sri.ai.util.math.BigIntegerNumberHybrid;
+import com.sri.ai.util.math.Multinomial;
+import com.sri.ai.util.math.Rational;
+
+public class BigIntegerNumberHybridTest {
+	
+	private static final int         LIMIT        = 256;
+	private static final MathContext MATH_CONTEXT = MathContext.DECIMAL128;
+
+	@Test
+	public void testDegradesPastLimit() {
+		BigIntegerNumber two = hybrid(2);
+		BigIntegerNumber value = two.pow(LIMIT - 1);
+		Assert.assertTrue(value.isExact());
+		Assert.assertEquals(LIMIT, value.bitLength());
+		
+		BigIntegerNumber doubled = value.multiply(two);
+		Assert.assertFalse(doubled.isExact());
+		Assert.assertTrue(((BigIntegerNumberHybrid) doubled).getValue() instanceof BigIntegerNumberApproximate);
+		Assert.assertEquals(0, doubled.compareTo(new BigIntegerNumberExact(BigInteger.ONE.shiftLeft(LIMIT))));
+		
+		// approximations are contagious
+		Assert.assertFalse(doubled.subtract(doubled).isExact());
+		Assert.assertFalse(doubled.divide(value).isExact());
+		Assert.assertEquals(2, doubled.divide(value).intValueExact());
+		
+		// but exact values stay exact, even when intermediate results are large
+		Assert.assertTrue(value.divide(two.pow(200)).isExact());
+		Assert.assertEquals(BigInteger.ONE.shiftLeft(LIMIT - 1).subtract(BigInteger.ONE).toString(), value.subtract(hybrid(1)).toString(10));
+		Assert.assertTrue(hybrid(12).gcd(hybrid(18)).isExact());
+		Assert.assertEquals(6, hybrid(12).gcd(hybrid(18)).intValueExact());
+	}
+	
+	@Test
+	public void testLargePowersAreApproximatedUpFront() {
+		// 3^100000000 exactly would take a long time
+		BigIntegerNumber power = hybrid(3).pow(100000000);
+		Assert.assertFalse(power.isExact());
+		double expectedLog = 100000000 * Math.log(3);
+		Assert.assertEquals(1.0, power.log(MathContext.DECIMAL64).doubleValue() / expectedLog, 1e-12);
+		
+		Assert.assertTrue(hybrid(1).pow(100000000).isExact());
+		Assert.assertTrue(hybrid(-1).pow(100000001).isExact());
+		Assert.assertEquals(-1, hybrid(-1).pow(100000001).intValueExact());
+	}
+	
+	@Test
+	public void testInteroperability() {
+		BigIntegerNumber exact       = new BigIntegerNumberExact(1000);
+		BigIntegerNumber approximate = new BigIntegerNumberApproximate(1000, MATH_CONTEXT);
+		BigIntegerNumber hybrid      = hybrid(1000);
+		Assert.assertEquals(0, exact.compareTo(hybrid));
+		Assert.assertEquals(0, approximate.compareTo(hybrid));
+		Assert.assertEquals(0, hybrid.compareTo(exact));
+		Assert.assertEquals(0, hybrid.compareTo(approximate));
+		Assert.assertEquals(exact.add(exact), exact.add(hybrid));
+		Assert.assertEquals(approximate.add(approximate), approximate.add(hybrid));
+		Assert.assertFalse(hybrid.add(approximate).isExact());
+		Assert.assertTrue(hybrid.add(exact).isExact());
+	}
+	
+	@Test
+	public void testRationalsInHybridContext() {
+		ArithmeticContext hybridContext = ArithmeticContext.hybrid(LIMIT, MATH_CONTEXT.getPrecision(), MATH_CONTEXT.getRoundingMode());
+		Assert.assertEquals(LIMIT, hybridContext.getHybridExactBitLengthLimit());
+		Assert.assertFalse(hybridContext.isApproximationEnabled());
+		
+		final Rational exactChoose = ArithmeticContext.exact().compute(new NullaryFunction<Rational>() {
+			@Override
+			public Rational apply() {
+				return new Multinomial(new int[] {300, 300, 300}).choose();
+			}
+		});
+		Assert.assertTrue(exactChoose.isExact());
+		
+		hybridContext.compute(new NullaryFunction<Void>() {
+			@Override
+			public Void apply() {
+				Rational small = new Rational(1, 3).add(new Rational(1, 6));
+				Assert.assertTrue(small.isExact());
+				Assert.assertEquals(new Rational(1, 2), small);
+				
+				Rational large = new Rational(2, 3).pow(1000);
+				Assert.assertFalse(large.isExact());
+				Assert.assertTrue(large.multiply(new Rational(3, 2).pow(1000)).subtract(Rational.ONE).abs().compareTo(new Rational(1, 1000000)) < 0);
+				
+				// exploding counts
+				Rational choose = new Multinomial(new int[] {300, 300, 300}).choose();
+				Assert.assertFalse(choose.isExact());
+				Assert.assertEquals(1.0, choose.divide(exactChoose).doubleValue(), 1e-20);
+				Assert.assertTrue(new Multinomial(new int[] {3, 4, 5}).choose().isExact());
+				return null;
+			}
+		});
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static BigIntegerNumber hybrid(long value) {
+		return new BigIntegerNumberHybrid(new BigIntegerNumberExact(value), LIMIT, MATH_CONTEXT);
+	}
+}
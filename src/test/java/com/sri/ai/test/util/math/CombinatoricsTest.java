@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sri.ai.util.Util;
+import com.sri.ai.util.math.ArithmeticContext;
+import com.sri.ai.util.math.Combinatorics;
+import com.sri.ai.util.math.Multinomial;
+import com.sri.ai.util.math.Rational;
+
+public class CombinatoricsTest {
+	
+	@Before
+	public void setUp() {
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision(), MathContext.DECIMAL128.getRoundingMode());
+	}
+
+	@After
+	public void tearDown() {
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+
+	@Test
+	public void testFactorial() {
+		Assert.assertEquals(Rational.ONE, Combinatorics.factorial(0));
+		Assert.assertEquals(Rational.ONE, Combinatorics.factorial(1));
+		Assert.assertEquals(new Rational(3628800), Combinatorics.factorial(10));
+		Assert.assertEquals(Util.factorial(21), Combinatorics.factorial(21));
+		// from the table and from prime exponents
+		Assert.assertEquals(Util.factorial(1023), Combinatorics.factorial(1023));
+		Assert.assertEquals(Util.factorial(1024), Combinatorics.factorial(1024));
+		Assert.assertEquals(Util.factorial(2500), Combinatorics.factorial(2500));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testIllegalFactorial() {
+		Combinatorics.factorial(-1);
+	}
+
+	@Test
+	public void testBinomial() {
+		for (int n = 0; n <= 60; n++) {
+			for (int k = 0; k <= n; k++) {
+				Assert.assertEquals(Util.binomialCoefficient(n, k), Combinatorics.binomial(n, k));
+			}
+		}
+		Assert.assertEquals(Util.binomialCoefficient(3000, 1234), Combinatorics.binomial(3000, 1234));
+		Assert.assertEquals(Rational.ZERO, Combinatorics.binomial(10, 11));
+		Assert.assertEquals(Rational.ZERO, Combinatorics.binomial(10, -1));
+	}
+
+	@Test
+	public void testMultinomial() {
+		Assert.assertEquals(Rational.ONE, Combinatorics.multinomial());
+		Assert.assertEquals(Rational.ONE, Combinatorics.multinomial(0, 7, 0));
+		Assert.assertEquals(new Rational(1260), Combinatorics.multinomial(4, 3, 2));
+		Assert.assertEquals(new Rational(1260), Combinatorics.multinomial(new int[] { 9, 4, 3, 2, 9 }, 1, 4));
+		Assert.assertEquals(Util.factorial(900).divide(Util.factorial(300).pow(3)), Combinatorics.multinomial(300, 300, 300));
+		Assert.assertEquals(Util.factorial(1500).divide(Util.factorial(700).multiply(Util.factorial(799))), Combinatorics.multinomial(700, 1, 799));
+		
+		// approximate context
+		Rational exact = Combinatorics.multinomial(300, 300, 300);
+		Rational approximate = ArithmeticContext.approximate(MathContext.DECIMAL64.getPrecision(), MathContext.DECIMAL64.getRoundingMode()).compute(() -> Combinatorics.multinomial(300, 300, 300));
+		Assert.assertFalse(approximate.isExact());
+		Assert.assertTrue(exact.subtract(approximate).abs().divide(exact).compareTo(new Rational(1, 1000000000000L)) < 0);
+	}
+
+	@Test
+	public void testLegendreExponent() {
+		Assert.assertEquals(97, Combinatorics.legendreExponent(100, 2));
+		Assert.assertEquals(24, Combinatorics.legendreExponent(100, 5));
+		Assert.assertEquals(1, Combinatorics.legendreExponent(100, 97));
+		Assert.assertEquals(0, Combinatorics.legendreExponent(96, 97));
+	}
+
+	@Test
+	public void testLogFactorialAndLogMultinomial() {
+		double logFactorial = 0;
+		for (int n = 0; n <= 5000; n++) {
+			if (n > 0) {
+				logFactorial += Math.log(n);
+			}
+			Assert.assertEquals(logFactorial, Combinatorics.logFactorial(n), Math.max(1.0, logFactorial) * 1e-12);
+		}
+		Assert.assertEquals(Math.log(1260), Combinatorics.logMultinomial(4, 3, 2), 1e-12);
+		double expected = Combinatorics.multinomial(300, 300, 300).getNumerator().log(MathContext.DECIMAL64).doubleValue();
+		Assert.assertEquals(expected, Combinatorics.logMultinomial(300, 300, 300), expected * 1e-12);
+		Assert.assertEquals(expected, new Multinomial(new int[] { 300, 300, 300 }).logChoose(), expected * 1e-12);
+	}
+
+	@Test
+	public void testConcurrentTableGrowth() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Rational>> futures = new ArrayList<Future<Rational>>();
+			for (int i = 0; i < 16; i++) {
+				final int n = 200 + 50 * i;
+				futures.add(executor.submit(() -> ArithmeticContext.exact().compute(() -> Combinatorics.factorial(n).divide(Combinatorics.factorial(n - 1)))));
+			}
+			for (int i = 0; i < 16; i++) {
+				Assert.assertEquals(new Rational(200 + 50 * i), futures.get(i).get());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sri.ai.util.math.LogRational;
+import com.sri.ai.util.math.Rational;
+
+public class LogRationalTest {
+	
+	private static final double EPSILON = 1e-12;
+
+	@Test
+	public void testConversions() {
+		Assert.assertSame(LogRational.ZERO, LogRational.valueOf(0.0));
+		Assert.assertSame(LogRational.ZERO, LogRational.valueOf(Rational.ZERO));
+		Assert.assertTrue(LogRational.valueOf(Rational.ONE).isOne());
+		Assert.assertEquals(0.25, LogRational.valueOf(new Rational(1, 4)).doubleValue(), EPSILON);
+		Assert.assertEquals(-3.5, LogRational.valueOf(-3.5).doubleValue(), EPSILON);
+		Assert.assertEquals(Math.log(0.25), LogRational.valueOf(0.25).getLogMagnitude(), EPSILON);
+		
+		Assert.assertEquals(new Rational(1, 4), LogRational.valueOf(new Rational(1, 4)).toRational());
+		Assert.assertEquals(new Rational(-6), LogRational.valueOf(-6.0).toRational());
+		Assert.assertEquals(Rational.ZERO, LogRational.ZERO.toRational());
+		
+		// Magnitudes outside the range of doubles
+		Rational tiny = new Rational(1, 3).pow(2000);
+		LogRational logTiny = LogRational.valueOf(tiny);
+		Assert.assertEquals(-2000 * Math.log(3), logTiny.getLogMagnitude(), 1e-9);
+		Assert.assertEquals(0.0, logTiny.doubleValue(), 0.0);
+		Rational backToRational = logTiny.toRational();
+		Assert.assertEquals(1.0, backToRational.divide(tiny).doubleValue(), 1e-9);
+		Assert.assertEquals(2000 * Math.log(3), LogRational.valueOf(tiny.invert()).getLogMagnitude(), 1e-9);
+	}
+	
+	@Test
+	public void testMultiplicativeOperations() {
+		LogRational half  = LogRational.valueOf(0.5);
+		LogRational third = LogRational.valueOf(new Rational(1, 3));
+		Assert.assertEquals(1.0 / 6, half.multiply(third).doubleValue(), EPSILON);
+		Assert.assertEquals(1.5, half.divide(third).doubleValue(), EPSILON);
+		Assert.assertEquals(-1.5, half.negate().divide(third).doubleValue(), EPSILON);
+		Assert.assertEquals(3.0, third.invert().doubleValue(), EPSILON);
+		Assert.assertEquals(0.125, half.pow(3).doubleValue(), EPSILON);
+		Assert.assertEquals(-0.125, half.negate().pow(3).doubleValue(), EPSILON);
+		Assert.assertEquals(0.25, half.negate().pow(2).doubleValue(), EPSILON);
+		Assert.assertEquals(Math.sqrt(0.5), half.pow(0.5).doubleValue(), EPSILON);
+		Assert.assertSame(LogRational.ONE, half.pow(0));
+		Assert.assertSame(LogRational.ZERO, half.multiply(LogRational.ZERO));
+		
+		// a long chain of small probabilities does not underflow
+		LogRational product = LogRational.ONE;
+		for (int i = 0; i < 10000; i++) {
+			product = product.multiply(third);
+		}
+		Assert.assertEquals(-10000 * Math.log(3), product.getLogMagnitude(), 1e-8);
+	}
+	
+	@Test(expected = ArithmeticException.class)
+	public void testDivisionByZero() {
+		LogRational.ONE.divide(LogRational.ZERO);
+	}
+	
+	@Test(expected = ArithmeticException.class)
+	public void testNegativeBaseFractionalExponent() {
+		LogRational.MINUS_ONE.pow(0.5);
+	}
+	
+	@Test
+	public void testAdditiveOperations() {
+		LogRational half    = LogRational.valueOf(0.5);
+		LogRational quarter = LogRational.valueOf(0.25);
+		Assert.assertEquals(0.75, half.add(quarter).doubleValue(), EPSILON);
+		Assert.assertEquals(0.25, half.subtract(quarter).doubleValue(), EPSILON);
+		Assert.assertEquals(-0.25, quarter.subtract(half).doubleValue(), EPSILON);
+		Assert.assertEquals(-0.75, half.negate().add(quarter.negate()).doubleValue(), EPSILON);
+		Assert.assertSame(LogRational.ZERO, half.subtract(half));
+		Assert.assertSame(half, half.add(LogRational.ZERO));
+		Assert.assertSame(half, LogRational.ZERO.add(half));
+		
+		// log-sum-exp of values far below Double.MIN_VALUE
+		LogRational a = LogRational.fromLog(-5000);
+		LogRational b = LogRational.fromLog(-5000 + Math.log(3));
+		Assert.assertEquals(-5000 + Math.log(4), a.add(b).getLogMagnitude(), 1e-9);
+		Assert.assertEquals(-5000 + Math.log(2), b.subtract(a).getLogMagnitude(), 1e-9);
+		Assert.assertEquals(-1, a.subtract(b).signum());
+	}
+	
+	@Test
+	public void testComparisons() {
+		LogRational half    = LogRational.valueOf(0.5);
+		LogRational quarter = LogRational.valueOf(0.25);
+		Assert.assertTrue(half.compareTo(quarter) > 0);
+		Assert.assertTrue(half.negate().compareTo(quarter.negate()) < 0);
+		Assert.assertTrue(quarter.negate().compareTo(LogRational.ZERO) < 0);
+		Assert.assertEquals(0, LogRational.ZERO.compareTo(LogRational.fromLog(0, 12)));
+		Assert.assertEquals(half, LogRational.valueOf(new Rational(1, 2)));
+		Assert.assertEquals(half.hashCode(), LogRational.valueOf(new Rational(1, 2)).hashCode());
+		Assert.assertNotEquals(half, half.negate());
+		Assert.assertEquals("exp(0.0)", LogRational.ONE.toString());
+		Assert.assertEquals("-exp(0.0)", LogRational.MINUS_ONE.toString());
+		Assert.assertEquals("0", LogRational.ZERO.toString());
+	}
+}
@@ -38,11 +38,18 @@
 package com.sri.ai.test.util.math;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.sri.ai.util.math.MixedRadixNumber;
+import com.sri.ai.util.math.MixedRadixSpliterator;
 
 /**
  * @author Ciaran O'Reilly
@@ -352,4 +359,75 @@ public class MixedRadixNumberTest {
 		Assert.assertEquals(0, mrn.getCurrentNumeralValue(1));
 		Assert.assertEquals(0, mrn.getCurrentNumeralValue(2));
 	}
+
+	@Test
+	public void testLongAndBigIntegerBackedValues() {
+		MixedRadixNumber small = new MixedRadixNumber(BigInteger.ZERO, new int[] { 3, 1, 4, 2 });
+		Assert.assertTrue(small.isHeldAsLong());
+		for (int value = 0; value <= 23; value++) {
+			Assert.assertEquals(value, small.longValue());
+			Assert.assertEquals(BigInteger.valueOf(value), small.getValue());
+			Assert.assertEquals(BigInteger.valueOf(value), small.getValueFor(small.getCurrentNumeralValues()));
+			Assert.assertEquals(value < 23, small.increment());
+		}
+		while (small.decrement()) {
+		}
+		Assert.assertEquals(0, small.longValue());
+		
+		// 2^64 values do not fit in a long
+		int[] radices = new int[64];
+		Arrays.fill(radices, 2);
+		MixedRadixNumber large = new MixedRadixNumber(BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE), radices);
+		Assert.assertFalse(large.isHeldAsLong());
+		Assert.assertTrue(large.increment());
+		Assert.assertEquals(BigInteger.ONE.shiftLeft(63), large.getValue());
+		Assert.assertEquals(1, large.getCurrentNumeralValue(0));
+		Assert.assertEquals(0, large.getCurrentNumeralValue(63));
+		
+		// 2^63 - 1 values still do
+		int[] largestLongRadices = new int[] { 49, 73, 127, 337, 92737, 649657 };
+		MixedRadixNumber largestLong = new MixedRadixNumber(BigInteger.valueOf(Long.MAX_VALUE - 1), largestLongRadices);
+		Assert.assertTrue(largestLong.isHeldAsLong());
+		Assert.assertEquals(Long.MAX_VALUE - 1, largestLong.longValue());
+		Assert.assertFalse(largestLong.canIncrement());
+		Assert.assertTrue(largestLong.decrement());
+		Assert.assertEquals(BigInteger.valueOf(Long.MAX_VALUE - 2), largestLong.getValueFor(largestLong.getCurrentNumeralValues()));
+	}
+
+	@Test
+	public void testSpliterator() {
+		int[] radices = new int[] { 3, 4, 5, 6 };
+		List<String> expected = new ArrayList<String>();
+		MixedRadixNumber mrn = new MixedRadixNumber(BigInteger.ZERO, radices);
+		do {
+			expected.add(Arrays.toString(mrn.getCurrentNumeralValues()));
+		} while (mrn.increment());
+		
+		Spliterator<int[]> spliterator = new MixedRadixSpliterator(radices);
+		Assert.assertEquals(360, spliterator.estimateSize());
+		Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.ORDERED));
+		Spliterator<int[]> prefix = spliterator.trySplit();
+		Assert.assertEquals(180, prefix.estimateSize());
+		Assert.assertEquals(180, spliterator.estimateSize());
+		List<String> actual = new ArrayList<String>();
+		prefix.forEachRemaining(numerals -> actual.add(Arrays.toString(numerals)));
+		while (spliterator.tryAdvance(numerals -> actual.add(Arrays.toString(numerals)))) {
+		}
+		Assert.assertEquals(expected, actual);
+		
+		Assert.assertEquals(expected, StreamSupport.stream(new MixedRadixSpliterator(radices), true).map(Arrays::toString).collect(Collectors.toList()));
+		Assert.assertEquals(expected.subList(100, 200), StreamSupport.stream(new MixedRadixSpliterator(BigInteger.valueOf(100), BigInteger.valueOf(200), radices), true).map(Arrays::toString).collect(Collectors.toList()));
+		Assert.assertEquals(Arrays.asList("[2, 3, 4, 5]"), StreamSupport.stream(new MixedRadixSpliterator(new MixedRadixNumber(new int[] { 2, 3, 4, 5 }, radices)), true).map(Arrays::toString).collect(Collectors.toList()));
+		
+		// more values than fit in a long
+		int[] largeRadices = new int[100];
+		Arrays.fill(largeRadices, 2);
+		Spliterator<int[]> large = new MixedRadixSpliterator(largeRadices);
+		Assert.assertFalse(large.hasCharacteristics(Spliterator.SIZED));
+		Spliterator<int[]> largePrefix = large.trySplit();
+		Assert.assertFalse(largePrefix.hasCharacteristics(Spliterator.SIZED));
+		int[] first = new int[1];
+		Assert.assertTrue(large.tryAdvance(numerals -> first[0] = numerals[0]));
+		Assert.assertEquals(1, first[0]);
+	}
 }
@@ -59,15 +59,24 @@ package com.sri.ai.test.util.math;
 import static com.sri.ai.util.Util.factorial;
 import static com.sri.ai.util.Util.mapIntoList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
 import com.google.common.primitives.Longs;
 import com.sri.ai.util.math.Multinomial;
 import com.sri.ai.util.math.MultinomialIterator;
+import com.sri.ai.util.math.MultinomialSpliterator;
 import com.sri.ai.util.math.Rational;
 
 public class MultinomialTest {
@@ -205,5 +214,64 @@ public class MultinomialTest {
 //			return result;
 //		});
 	}
-
+	
+	@Test
+	public void testRankAndUnrank() {
+		for (int m = 1; m <= 4; m++) {
+			Multinomial multinomial = new Multinomial(7, m);
+			long rank = 0;
+			do {
+				assertEquals(BigInteger.valueOf(rank), multinomial.rank());
+				assertEquals(BigInteger.valueOf(rank), Multinomial.rank(multinomial.getClassSizes()));
+				assertEquals(Arrays.toString(multinomial.getClassSizes()), Arrays.toString(Multinomial.unrank(BigInteger.valueOf(rank), 7, m)));
+				rank++;
+			} while (multinomial.iterate());
+			assertEquals(BigInteger.valueOf(rank), Multinomial.numberOfDistributions(7, m));
+		}
+		
+		int[] counters = new int[] { 100, 0, 37, 250, 13 };
+		assertEquals(Arrays.toString(counters), Arrays.toString(Multinomial.unrank(Multinomial.rank(counters), 400, 5)));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testIllegalUnrank() {
+		Multinomial.unrank(Multinomial.numberOfDistributions(7, 3), 7, 3);
+	}
+	
+	@Test
+	public void testSpliterator() {
+		List<String> expected = new ArrayList<String>();
+		List<Rational> expectedCoefficients = new ArrayList<Rational>();
+		Multinomial multinomial = new Multinomial(12, 4);
+		do {
+			expected.add(Arrays.toString(multinomial.getClassSizes()));
+			expectedCoefficients.add(multinomial.choose());
+		} while (multinomial.iterate());
+		
+		assertEquals(expected, MultinomialIterator.stream(12, 4, false).map(mValue -> Arrays.toString(mValue.getClassSizes())).collect(Collectors.toList()));
+		assertEquals(expected, MultinomialIterator.stream(12, 4, true).map(mValue -> Arrays.toString(mValue.getClassSizes())).collect(Collectors.toList()));
+		assertEquals(expectedCoefficients, MultinomialIterator.stream(12, 4, true).map(Multinomial::choose).collect(Collectors.toList()));
+		
+		Spliterator<Multinomial> spliterator = new MultinomialSpliterator(BigInteger.valueOf(100), BigInteger.valueOf(200), 12, 4);
+		assertEquals(100, spliterator.estimateSize());
+		Spliterator<Multinomial> prefix = spliterator.trySplit();
+		assertEquals(50, prefix.estimateSize());
+		List<String> actual = new ArrayList<String>();
+		prefix.forEachRemaining(mValue -> actual.add(Arrays.toString(mValue.getClassSizes())));
+		while (spliterator.tryAdvance(mValue -> actual.add(Arrays.toString(mValue.getClassSizes())))) {
+		}
+		assertEquals(expected.subList(100, 200), actual);
+		assertNull(new MultinomialSpliterator(0, 1).trySplit());
+		
+		// coefficients of a larger space, in an approximate context, sum to m^n
+		Rational.resetApproximationConfiguration(true, MathContext.DECIMAL128.getPrecision(), MathContext.DECIMAL128.getRoundingMode());
+		try {
+			Rational sum = MultinomialIterator.stream(200, 3, true).map(Multinomial::choose).reduce(Rational.ZERO, Rational::add);
+			Rational threeToTheTwoHundred = new Rational(3).pow(200);
+			assertTrue(sum.subtract(threeToTheTwoHundred).abs().compareTo(threeToTheTwoHundred.divide(new Rational(10).pow(25))) < 0);
+		}
+		finally {
+			Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+		}
+	}
 }
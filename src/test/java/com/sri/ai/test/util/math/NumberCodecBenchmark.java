@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Random;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.Timer;
+import com.sri.ai.util.math.Rational;
+
+/**
+ * A simple (non JUnit) benchmark writing and reading random exact {@link Rational}s
+ * with {@link Rational#writeTo(java.io.DataOutput)} and {@link Rational#readFrom(java.io.DataInput)}
+ * against Java serialization, reporting times and sizes. Run it with:<br>
+ * <pre>
+ * java -Xmx2g -cp ... com.sri.ai.test.util.math.NumberCodecBenchmark [numberOfRationals] [numberOfRounds]
+ * </pre>
+ */
+@Beta
+public class NumberCodecBenchmark {
+	
+	private static final int DEFAULT_NUMBER_OF_RATIONALS = 1000000;
+	private static final int DEFAULT_NUMBER_OF_ROUNDS    = 3;
+	
+	public static void main(String[] args) throws IOException {
+		int numberOfRationals = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_RATIONALS;
+		int numberOfRounds    = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUMBER_OF_ROUNDS;
+		
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision(), MathContext.DECIMAL128.getRoundingMode());
+		
+		run("small (long) rationals",          numberOfRounds, randomRationals(numberOfRationals, 30));
+		run("large (up to 256 bit) rationals", numberOfRounds, randomRationals(numberOfRationals, 256));
+		
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static void run(String name, int numberOfRounds, Rational[] rationals) throws IOException {
+		byte[] codecBytes         = writeWithCodec(rationals);
+		byte[] serializationBytes = writeWithSerialization(rationals);
+		long bestCodecWrite         = Long.MAX_VALUE;
+		long bestCodecRead          = Long.MAX_VALUE;
+		long bestSerializationWrite = Long.MAX_VALUE;
+		long bestSerializationRead  = Long.MAX_VALUE;
+		for (int round = 0; round < numberOfRounds; round++) {
+			bestCodecWrite         = Math.min(bestCodecWrite,         Timer.time(() -> writeWithCodec(rationals).length));
+			bestCodecRead          = Math.min(bestCodecRead,          Timer.time(() -> readWithCodec(codecBytes, rationals.length).length));
+			bestSerializationWrite = Math.min(bestSerializationWrite, Timer.time(() -> writeWithSerialization(rationals).length));
+			bestSerializationRead  = Math.min(bestSerializationRead,  Timer.time(() -> readWithSerialization(serializationBytes, rationals.length).length));
+		}
+		System.out.println(rationals.length + " " + name + " (best of " + numberOfRounds + " rounds):");
+		System.out.println("  codec:         write = " + bestCodecWrite + "ms, read = " + bestCodecRead + "ms, size = " + codecBytes.length + " bytes");
+		System.out.println("  serialization: write = " + bestSerializationWrite + "ms, read = " + bestSerializationRead + "ms, size = " + serializationBytes.length + " bytes");
+	}
+	
+	private static byte[] writeWithCodec(Rational[] rationals) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream(bytes);
+			for (Rational rational : rationals) {
+				rational.writeTo(output);
+			}
+			output.flush();
+			return bytes.toByteArray();
+		}
+		catch (IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+	
+	private static Rational[] readWithCodec(byte[] bytes, int numberOfRationals) {
+		try {
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+			Rational[] result = new Rational[numberOfRationals];
+			for (int i = 0; i < numberOfRationals; i++) {
+				result[i] = Rational.readFrom(input);
+			}
+			return result;
+		}
+		catch (IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+	
+	private static byte[] writeWithSerialization(Rational[] rationals) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream output = new ObjectOutputStream(bytes);
+			for (Rational rational : rationals) {
+				// note: unshared, as the codec does not share repeated values either.
+				output.writeUnshared(rational);
+			}
+			output.flush();
+			return bytes.toByteArray();
+		}
+		catch (IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+	
+	private static Rational[] readWithSerialization(byte[] bytes, int numberOfRationals) {
+		try {
+			ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			Rational[] result = new Rational[numberOfRationals];
+			for (int i = 0; i < numberOfRationals; i++) {
+				result[i] = (Rational) input.readUnshared();
+			}
+			return result;
+		}
+		catch (IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+		catch (ClassNotFoundException classNotFoundException) {
+			throw new IllegalStateException(classNotFoundException);
+		}
+	}
+	
+	private static Rational[] randomRationals(int numberOfRationals, int maximumBitLength) {
+		Random random = new Random(numberOfRationals);
+		Rational[] result = new Rational[numberOfRationals];
+		for (int i = 0; i < numberOfRationals; i++) {
+			BigInteger numerator   = new BigInteger(1 + random.nextInt(maximumBitLength), random);
+			BigInteger denominator = new BigInteger(1 + random.nextInt(maximumBitLength), random).add(BigInteger.ONE);
+			if (random.nextBoolean()) {
+				numerator = numerator.negate();
+			}
+			result[i] = new Rational(numerator + "/" + denominator);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.sri.ai.util.math.ArithmeticContext;
+import com.sri.ai.util.math.BigIntegerNumber;
+import com.sri.ai.util.math.Rational;
+
+@RunWith(Parameterized.class)
+public class NumberCodecTest {
+
+	@Parameters(name = "{index}: context = {0}")
+	public static Collection<Object[]> data() {
+		return Arrays.asList(new Object[][] { 
+			{ "exact" }, { "approximate" }, { "binary" }, { "hybrid" } 
+		});
+	}
+	
+	@Parameter
+	public String contextName;
+	
+	private ArithmeticContext context() {
+		ArithmeticContext result;
+		if (contextName.equals("exact")) {
+			result = ArithmeticContext.exact();
+		}
+		else if (contextName.equals("approximate")) {
+			result = ArithmeticContext.approximate(MathContext.DECIMAL128.getPrecision(), RoundingMode.HALF_EVEN);
+		}
+		else if (contextName.equals("binary")) {
+			result = ArithmeticContext.approximateBinaryFloat();
+		}
+		else {
+			result = ArithmeticContext.hybrid(128, MathContext.DECIMAL64.getPrecision(), RoundingMode.HALF_UP);
+		}
+		return result;
+	}
+	
+	private List<Rational> values() {
+		return context().compute(() -> {
+			List<Rational> result = new ArrayList<Rational>();
+			result.add(new Rational(0));
+			result.add(new Rational(1));
+			result.add(new Rational(-1));
+			result.add(new Rational(1, 3));
+			result.add(new Rational(-22, 7));
+			result.add(new Rational(Long.MAX_VALUE, 3));
+			result.add(new Rational(Long.MIN_VALUE));
+			result.add(new Rational(2).pow(200).add(new Rational(1)).divide(new Rational(3).pow(50)));
+			result.add(new Rational(-7).pow(333).divide(new Rational(10).pow(40)));
+			result.add(new Rational(1, 1000).pow(100));
+			result.add(new Rational(2).pow(new Rational(1, 2)));
+			result.add(new Rational(0.1));
+			Random random = new Random(1);
+			for (int i = 0; i < 100; i++) {
+				Rational product = new Rational(1);
+				for (int j = random.nextInt(10); j > 0; j--) {
+					product = product.multiply(new Rational(random.nextLong(), 1 + (random.nextLong() & Long.MAX_VALUE)));
+				}
+				result.add(product);
+			}
+			return result;
+		});
+	}
+	
+	@Test
+	public void testDataOutputRoundTrip() throws IOException {
+		List<Rational> values = values();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		for (Rational value : values) {
+			// note: values held as longs are written as such whatever the context.
+			value.writeTo(output);
+		}
+		output.flush();
+		
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		context().compute(() -> {
+			for (Rational value : values) {
+				try {
+					assertSameRepresentation(value, Rational.readFrom(input));
+				}
+				catch (IOException ioException) {
+					throw new AssertionError(ioException);
+				}
+			}
+			return null;
+		});
+		Assert.assertEquals(-1, input.read());
+	}
+	
+	@Test
+	public void testByteBufferRoundTrip() {
+		List<Rational> values = values();
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+		context().compute(() -> {
+			for (Rational value : values) {
+				value.writeTo(buffer);
+				value.getNumerator().writeTo(buffer);
+			}
+			return null;
+		});
+		buffer.flip();
+		context().compute(() -> {
+			for (Rational value : values) {
+				assertSameRepresentation(value, Rational.readFrom(buffer));
+				BigIntegerNumber numerator = BigIntegerNumber.readFrom(buffer);
+				Assert.assertEquals(value.getNumerator().getClass(), numerator.getClass());
+				Assert.assertEquals(value.getNumerator(), numerator);
+			}
+			return null;
+		});
+		Assert.assertFalse(buffer.hasRemaining());
+	}
+	
+	@Test
+	public void testSmallValuesAreCompact() {
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		context().compute(() -> {
+			new Rational(1, 3).writeTo(buffer);
+			return null;
+		});
+		// note: binary float contexts don't hold values as longs, and so write 1/3 as two approximations.
+		Assert.assertEquals(contextName.equals("binary") ? 21 : 3, buffer.position());
+	}
+	
+	@Test
+	public void testInvalidInput() throws IOException {
+		try {
+			Rational.readFrom(new DataInputStream(new ByteArrayInputStream(new byte[] { 9 })));
+			Assert.fail("IOException should have been thrown");
+		}
+		catch (IOException ioException) {
+			// expected
+		}
+		try {
+			// denominator 0
+			Rational.readFrom(ByteBuffer.wrap(new byte[] { 0, 2, 0 }));
+			Assert.fail("IllegalArgumentException should have been thrown");
+		}
+		catch (IllegalArgumentException illegalArgumentException) {
+			// expected
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		context().compute(() -> new Rational(2).pow(100).divide(new Rational(3))).writeTo(buffer);
+		byte[] truncated = Arrays.copyOf(buffer.array(), buffer.position() - 1);
+		try {
+			Rational.readFrom(new DataInputStream(new ByteArrayInputStream(truncated)));
+			Assert.fail("EOFException should have been thrown");
+		}
+		catch (EOFException eofException) {
+			// expected
+		}
+		try {
+			Rational.readFrom(ByteBuffer.wrap(truncated));
+			Assert.fail("BufferUnderflowException should have been thrown");
+		}
+		catch (BufferUnderflowException bufferUnderflowException) {
+			// expected
+		}
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static void assertSameRepresentation(Rational expected, Rational actual) {
+		Assert.assertEquals(expected, actual);
+		Assert.assertEquals(expected.toString(), actual.toString());
+		Assert.assertEquals(expected.isExact(), actual.isExact());
+		Assert.assertEquals(expected.getNumerator().getClass(),   actual.getNumerator().getClass());
+		Assert.assertEquals(expected.getDenominator().getClass(), actual.getDenominator().getClass());
+		Assert.assertEquals(expected.getNumerator(),   actual.getNumerator());
+		Assert.assertEquals(expected.getDenominator(), actual.getDenominator());
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.sri.ai.util.Util;
+import com.sri.ai.util.math.Rational;
+import com.sri.ai.util.math.RationalAccumulator;
+
+@RunWith(Parameterized.class)
+public class RationalAccumulatorTest {
+
+	@Parameters(name = "{index}: approx = {0}")
+	public static Collection<Object[]> data() {
+		return Arrays.asList(new Object[][] { { Boolean.FALSE }, { Boolean.TRUE } });				
+	}
+	
+	@Parameter
+	public Boolean approximate;
+	
+	@Before
+	public void setUp() {
+		Rational.resetApproximationConfiguration(approximate, MathContext.DECIMAL128.getPrecision()+1, RoundingMode.HALF_EVEN);
+	}
+
+	@After
+	public void tearDown() {
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	@Test
+	public void testAdd() {
+		RationalAccumulator accumulator = new RationalAccumulator();
+		Assert.assertTrue(accumulator.isZero());
+		Assert.assertEquals(Rational.ZERO, accumulator.toRational());
+		
+		accumulator.add(new Rational(1, 3)).add(new Rational(1, 6)).add(2).add(0.25);
+		Assert.assertEquals(new Rational(11, 4), accumulator.toRational());
+		
+		accumulator.add(new Rational(-11, 4));
+		Assert.assertTrue(accumulator.isZero());
+		
+		// Overflowing longs
+		accumulator.reset().add(Long.MAX_VALUE).add(Long.MAX_VALUE);
+		Assert.assertEquals(new Rational(Long.MAX_VALUE).multiply(2), accumulator.toRational());
+		accumulator.add(new Rational(Long.MAX_VALUE).multiply(-2));
+		Assert.assertEquals(Rational.ZERO, accumulator.toRational());
+	}
+	
+	@Test
+	public void testMultiply() {
+		RationalAccumulator accumulator = new RationalAccumulator(Rational.ONE);
+		accumulator.multiply(new Rational(2, 3)).multiply(new Rational(9, 4)).multiply(-2).multiply(0.5);
+		Assert.assertEquals(new Rational(-3, 2), accumulator.toRational());
+		
+		accumulator.multiply(0);
+		Assert.assertTrue(accumulator.isZero());
+		Assert.assertEquals(Rational.ZERO, accumulator.toRational());
+		
+		Rational expected = Rational.ONE;
+		accumulator.reset(Rational.ONE);
+		for (int i = 1; i <= 40; i++) {
+			expected = expected.multiply(new Rational(i, i + 1));
+			accumulator.multiply(new Rational(i, i + 1));
+		}
+		Assert.assertEquals(new Rational(1, 41), expected);
+		Assert.assertEquals(expected, accumulator.toRational());
+	}
+	
+	@Test
+	public void testAgreesWithRationalArithmetic() {
+		Random random = new Random(7);
+		for (int threshold : new int[] {1, 64, RationalAccumulator.DEFAULT_NORMALIZATION_THRESHOLD_IN_BITS}) {
+			RationalAccumulator sum     = new RationalAccumulator(Rational.ZERO, threshold);
+			RationalAccumulator product = new RationalAccumulator(Rational.ONE, threshold);
+			Rational expectedSum     = Rational.ZERO;
+			Rational expectedProduct = Rational.ONE;
+			for (int i = 0; i < 200; i++) {
+				Rational value = new Rational(random.nextInt(2001) - 1000, random.nextInt(1000) + 1);
+				sum.add(value);
+				expectedSum = expectedSum.add(value);
+				if (i < 20 && !value.isZero()) {
+					product.multiply(value);
+					expectedProduct = expectedProduct.multiply(value);
+				}
+			}
+			assertEqualsUpToApproximation(expectedSum, sum.toRational());
+			assertEqualsUpToApproximation(expectedProduct, product.toRational());
+		}
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testIllegalThreshold() {
+		new RationalAccumulator(Rational.ZERO, 0);
+	}
+	
+	@Test
+	public void testUtilArbitraryPrecision() {
+		List<Number> numbers = new ArrayList<Number>();
+		for (int i = 1; i <= 100; i++) {
+			numbers.add(new Rational(1, i * (i + 1)));
+		}
+		// telescoping sum: 1/(i(i+1)) = 1/i - 1/(i+1)
+		Assert.assertEquals(new Rational(100, 101), Util.sumArbitraryPrecision(numbers));
+		
+		numbers.clear();
+		for (int i = 1; i <= 100; i++) {
+			numbers.add(new Rational(i + 1, i));
+		}
+		Assert.assertEquals(new Rational(101), Util.productArbitraryPrecision(numbers));
+		
+		numbers.add(1, Rational.ZERO);
+		Assert.assertEquals(Rational.ZERO, Util.productArbitraryPrecision(numbers));
+	}
+	
+	//
+	// PRIVATE
+	//
+	private void assertEqualsUpToApproximation(Rational expected, Rational actual) {
+		if (approximate) {
+			// Note: intermediate roundings will differ as the order of normalization differs.
+			Assert.assertEquals(expected.doubleValue(), actual.doubleValue(), Math.abs(expected.doubleValue()) * 1e-12);
+		}
+		else {
+			Assert.assertEquals(expected, actual);
+		}
+	}
+}
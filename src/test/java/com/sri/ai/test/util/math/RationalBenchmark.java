@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.util.Random;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.AICUtilConfiguration;
+import com.sri.ai.util.Timer;
+import com.sri.ai.util.math.Rational;
+
+/**
+ * A simple (non JUnit) benchmark for {@link Rational} arithmetic on small
+ * fractions, comparing the long-backed fast path against the
+ * BigIntegerNumber-only representation, under both exact and approximate
+ * configurations, as well as the decimal and binary float approximate
+ * representations on very large magnitudes. Run it with a warmed up JVM, e.g.:<br>
+ * <pre>
+ * java -cp ... com.sri.ai.test.util.math.RationalBenchmark [numberOfOperations] [numberOfRounds]
+ * </pre>
+ */
+@Beta
+public class RationalBenchmark {
+	
+	private static final int DEFAULT_NUMBER_OF_OPERATIONS = 2000000;
+	private static final int DEFAULT_NUMBER_OF_ROUNDS     = 5;
+	
+	public static void main(String[] args) {
+		int numberOfOperations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_OPERATIONS;
+		int numberOfRounds     = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUMBER_OF_ROUNDS;
+		
+		int precision = AICUtilConfiguration.getRationalApproximationPrecision();
+		for (boolean approximate : new boolean[] {false, true}) {
+			for (boolean longFastPath : new boolean[] {false, true}) {
+				AICUtilConfiguration.setProperty(AICUtilConfiguration.KEY_RATIONAL_LONG_FAST_PATH_ENABLED, Boolean.toString(longFastPath));
+				Rational.resetApproximationConfiguration(approximate, precision, AICUtilConfiguration.getRationalApproximationRoundingMode());
+				
+				Rational[] operands = makeOperands(numberOfOperations);
+				long best = Long.MAX_VALUE;
+				for (int round = 0; round < numberOfRounds; round++) {
+					long time = Timer.time(() -> mixedWorkload(operands));
+					best = Math.min(best, time);
+				}
+				System.out.println("approximate=" + approximate + ", long fast path=" + longFastPath + ": best of " + numberOfRounds + " rounds of " + numberOfOperations + " mixed operations = " + best + "ms");
+			}
+		}
+		
+		AICUtilConfiguration.setProperty(AICUtilConfiguration.KEY_RATIONAL_LONG_FAST_PATH_ENABLED, AICUtilConfiguration.DEFAULT_VALUE_RATIONAL_LONG_FAST_PATH_ENABLED.toString());
+		
+		int numberOfLargeMagnitudeOperations = numberOfOperations / 100;
+		for (boolean binaryFloat : new boolean[] {false, true}) {
+			AICUtilConfiguration.setProperty(AICUtilConfiguration.KEY_RATIONAL_APPROXIMATION_BINARY_FLOAT_ENABLED, Boolean.toString(binaryFloat));
+			Rational.resetApproximationConfiguration(true, precision, AICUtilConfiguration.getRationalApproximationRoundingMode());
+			
+			long best = Long.MAX_VALUE;
+			for (int round = 0; round < numberOfRounds; round++) {
+				long time = Timer.time(() -> largeMagnitudeWorkload(numberOfLargeMagnitudeOperations));
+				best = Math.min(best, time);
+			}
+			System.out.println("approximate=true, binary float=" + binaryFloat + ": best of " + numberOfRounds + " rounds of " + numberOfLargeMagnitudeOperations + " large magnitude operations = " + best + "ms");
+		}
+		
+		AICUtilConfiguration.setProperty(AICUtilConfiguration.KEY_RATIONAL_APPROXIMATION_BINARY_FLOAT_ENABLED, AICUtilConfiguration.DEFAULT_VALUE_RATIONAL_APPROXIMATION_BINARY_FLOAT_ENABLED.toString());
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static Rational[] makeOperands(int numberOfOperations) {
+		Random random = new Random(1);
+		Rational[] result = new Rational[numberOfOperations + 1];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = new Rational(random.nextInt(2001) - 1000, random.nextInt(1000) + 1);
+		}
+		return result;
+	}
+	
+	private static Rational mixedWorkload(Rational[] operands) {
+		Rational result = Rational.ZERO;
+		int      comparisons = 0;
+		for (int i = 0; i < operands.length - 1; i++) {
+			Rational a = operands[i];
+			Rational b = operands[i + 1];
+			switch (i % 5) {
+			case 0:
+				result = a.add(b);
+				break;
+			case 1:
+				result = a.subtract(b);
+				break;
+			case 2:
+				result = a.multiply(b);
+				break;
+			case 3:
+				result = b.isZero() ? a : a.divide(b);
+				break;
+			default:
+				comparisons += a.compareTo(b);
+			}
+		}
+		if (comparisons == Integer.MIN_VALUE) {
+			// only here so the comparisons are not optimized away
+			System.out.println(comparisons);
+		}
+		return result;
+	}
+	
+	private static Rational largeMagnitudeWorkload(int numberOfOperations) {
+		// sums of ever larger counts, e.g. as in counting the models of large formulas.
+		Rational count  = Rational.ONE;
+		Rational result = Rational.ZERO;
+		for (int i = 1; i <= numberOfOperations; i++) {
+			count  = count.multiply(Rational.valueOf(i + 1000));
+			result = result.add(count.divide(Rational.valueOf(i)));
+		}
+		return result;
+	}
+}
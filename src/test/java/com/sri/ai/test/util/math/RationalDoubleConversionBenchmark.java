@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Random;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.Timer;
+import com.sri.ai.util.math.Rational;
+
+/**
+ * A simple (non JUnit) benchmark of {@link Rational#doubleValue()} and
+ * {@link Rational#valueOf(double)} on random exact and approximate rationals.
+ * Run it with:<br>
+ * <pre>
+ * java -cp ... com.sri.ai.test.util.math.RationalDoubleConversionBenchmark [numberOfRationals] [numberOfRounds]
+ * </pre>
+ */
+@Beta
+public class RationalDoubleConversionBenchmark {
+	
+	private static final int DEFAULT_NUMBER_OF_RATIONALS = 1000000;
+	private static final int DEFAULT_NUMBER_OF_ROUNDS    = 3;
+	
+	public static void main(String[] args) {
+		int numberOfRationals = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_RATIONALS;
+		int numberOfRounds    = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUMBER_OF_ROUNDS;
+		
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision(), MathContext.DECIMAL128.getRoundingMode());
+		run("exact small (long) rationals",          numberOfRounds, randomRationals(numberOfRationals, 60));
+		run("exact large (up to 512 bit) rationals", numberOfRounds, randomRationals(numberOfRationals, 512));
+		
+		Rational.resetApproximationConfiguration(true, MathContext.DECIMAL128.getPrecision(), MathContext.DECIMAL128.getRoundingMode());
+		run("approximate (DECIMAL128) rationals",    numberOfRounds, randomRationals(numberOfRationals, 512));
+		
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static void run(String name, int numberOfRounds, Rational[] rationals) {
+		double[] doubles = new double[rationals.length];
+		for (int i = 0; i < rationals.length; i++) {
+			doubles[i] = rationals[i].doubleValue();
+		}
+		long bestDoubleValue = Long.MAX_VALUE;
+		long bestValueOf     = Long.MAX_VALUE;
+		for (int round = 0; round < numberOfRounds; round++) {
+			bestDoubleValue = Math.min(bestDoubleValue, Timer.time(() -> sumOfDoubleValues(rationals)));
+			bestValueOf     = Math.min(bestValueOf,     Timer.time(() -> numberOfIntegers(doubles)));
+		}
+		System.out.println(rationals.length + " " + name + " (best of " + numberOfRounds + " rounds):");
+		System.out.println("  doubleValue:     " + bestDoubleValue + "ms");
+		System.out.println("  valueOf(double): " + bestValueOf + "ms");
+	}
+	
+	private static double sumOfDoubleValues(Rational[] rationals) {
+		double result = 0;
+		for (Rational rational : rationals) {
+			result += rational.doubleValue();
+		}
+		return result;
+	}
+	
+	private static int numberOfIntegers(double[] doubles) {
+		int result = 0;
+		for (double value : doubles) {
+			if (Rational.valueOf(value).isInteger()) {
+				result++;
+			}
+		}
+		return result;
+	}
+	
+	private static Rational[] randomRationals(int numberOfRationals, int maximumBitLength) {
+		Random random = new Random(numberOfRationals);
+		Rational[] result = new Rational[numberOfRationals];
+		for (int i = 0; i < numberOfRationals; i++) {
+			BigInteger numerator   = new BigInteger(1 + random.nextInt(maximumBitLength), random);
+			BigInteger denominator = new BigInteger(1 + random.nextInt(maximumBitLength), random).add(BigInteger.ONE);
+			if (random.nextBoolean()) {
+				numerator = numerator.negate();
+			}
+			result[i] = new Rational(numerator + "/" + denominator);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Random;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.Timer;
+import com.sri.ai.util.math.Rational;
+import com.sri.ai.util.math.RationalInterval;
+
+/**
+ * A simple (non JUnit) benchmark comparing the sign of 2x2 determinants
+ * (a*d - b*c) of random exact rationals computed with {@link Rational}s
+ * against the same computed with {@link RationalInterval}s, which only need
+ * the exact values when the determinant is (close to) zero. Run it with:<br>
+ * <pre>
+ * java -cp ... com.sri.ai.test.util.math.RationalIntervalBenchmark [numberOfDeterminants] [maximumBitLength] [numberOfRounds]
+ * </pre>
+ */
+@Beta
+public class RationalIntervalBenchmark {
+	
+	private static final int DEFAULT_NUMBER_OF_DETERMINANTS = 100000;
+	private static final int DEFAULT_MAXIMUM_BIT_LENGTH     = 256;
+	private static final int DEFAULT_NUMBER_OF_ROUNDS       = 3;
+	
+	public static void main(String[] args) {
+		int numberOfDeterminants = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_DETERMINANTS;
+		int maximumBitLength     = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAXIMUM_BIT_LENGTH;
+		int numberOfRounds       = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_NUMBER_OF_ROUNDS;
+		
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision(), MathContext.DECIMAL128.getRoundingMode());
+		
+		Random random = new Random(numberOfDeterminants);
+		Rational[][] entries = new Rational[numberOfDeterminants][4];
+		for (int i = 0; i < numberOfDeterminants; i++) {
+			for (int j = 0; j < 4; j++) {
+				entries[i][j] = randomRational(random, maximumBitLength);
+			}
+			// one in ten determinants is zero, which filtering cannot decide.
+			if (i % 10 == 0) {
+				entries[i][3] = entries[i][1].multiply(entries[i][2]).divide(entries[i][0]);
+			}
+		}
+		
+		long bestExact    = Long.MAX_VALUE;
+		long bestFiltered = Long.MAX_VALUE;
+		for (int round = 0; round < numberOfRounds; round++) {
+			bestExact    = Math.min(bestExact,    Timer.time(() -> sumOfExactSigns(entries)));
+			bestFiltered = Math.min(bestFiltered, Timer.time(() -> sumOfFilteredSigns(entries)));
+		}
+		if (sumOfExactSigns(entries) != sumOfFilteredSigns(entries)) {
+			throw new IllegalStateException("exact and filtered signs differ");
+		}
+		System.out.println(numberOfDeterminants + " determinants of rationals of up to " + maximumBitLength + " bits (best of " + numberOfRounds + " rounds):");
+		System.out.println("  exact = " + bestExact + "ms, filtered = " + bestFiltered + "ms");
+		
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static int sumOfExactSigns(Rational[][] entries) {
+		int result = 0;
+		for (Rational[] abcd : entries) {
+			result += abcd[0].multiply(abcd[3]).subtract(abcd[1].multiply(abcd[2])).signum();
+		}
+		return result;
+	}
+	
+	private static int sumOfFilteredSigns(Rational[][] entries) {
+		int result = 0;
+		for (Rational[] abcd : entries) {
+			RationalInterval a = RationalInterval.valueOf(abcd[0]);
+			RationalInterval b = RationalInterval.valueOf(abcd[1]);
+			RationalInterval c = RationalInterval.valueOf(abcd[2]);
+			RationalInterval d = RationalInterval.valueOf(abcd[3]);
+			result += a.multiply(d).subtract(b.multiply(c)).signum();
+		}
+		return result;
+	}
+	
+	private static Rational randomRational(Random random, int maximumBitLength) {
+		BigInteger numerator   = new BigInteger(1 + random.nextInt(maximumBitLength), random).add(BigInteger.ONE);
+		BigInteger denominator = new BigInteger(1 + random.nextInt(maximumBitLength), random).add(BigInteger.ONE);
+		if (random.nextBoolean()) {
+			numerator = numerator.negate();
+		}
+		return new Rational(numerator + "/" + denominator);
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sri.ai.util.math.Rational;
+import com.sri.ai.util.math.RationalInterval;
+
+public class RationalIntervalTest {
+	
+	@Before
+	public void setUp() {
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision(), RoundingMode.HALF_EVEN);
+	}
+	
+	@After
+	public void tearDown() {
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	@Test
+	public void testValueOf() {
+		RationalInterval oneHalf = RationalInterval.valueOf(new Rational(1, 2));
+		Assert.assertEquals(0.5, oneHalf.getLowerBound(), 0);
+		Assert.assertEquals(0.5, oneHalf.getUpperBound(), 0);
+		
+		RationalInterval oneThird = RationalInterval.valueOf(new Rational(1, 3));
+		Assert.assertTrue(oneThird.getLowerBound() < 1.0/3 && 1.0/3 < oneThird.getUpperBound());
+		Assert.assertEquals(new Rational(1, 3), oneThird.getExactValue());
+		
+		RationalInterval large = RationalInterval.valueOf(new Rational(10).pow(400));
+		Assert.assertEquals(Double.MAX_VALUE, large.getLowerBound(), 0);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, large.getUpperBound(), 0);
+		
+		Assert.assertEquals(0.1, RationalInterval.valueOf(0.1).getLowerBound(), 0);
+		Assert.assertEquals(Rational.valueOf(0.1), RationalInterval.valueOf(0.1).getExactValue());
+		Assert.assertEquals("1/2 in [0.5, 0.5]", oneHalf.toString());
+		Assert.assertEquals("[0.75, 0.75]", oneHalf.add(RationalInterval.valueOf(0.25)).toString());
+	}
+	
+	@Test
+	public void testIntervalsEncloseExactValues() {
+		Random random = new Random(1);
+		for (int i = 0; i < 2000; i++) {
+			RationalInterval expression = randomExpression(random, 4);
+			Rational exact;
+			try {
+				exact = expression.getExactValue();
+			}
+			catch (ArithmeticException divisionByZero) {
+				continue;
+			}
+			assertEncloses(expression, exact);
+		}
+	}
+	
+	@Test
+	public void testPredicatesAreFilteredWhenDecidable() {
+		RationalInterval oneThird = RationalInterval.valueOf(new Rational(1, 3));
+		RationalInterval twoSevenths = RationalInterval.valueOf(new Rational(2, 7));
+		
+		RationalInterval difference = oneThird.subtract(twoSevenths);
+		Assert.assertEquals(1, difference.signum());
+		Assert.assertTrue(difference.isPositive());
+		Assert.assertFalse(difference.isZero());
+		Assert.assertFalse(difference.isExactValueComputed());
+		
+		RationalInterval product = oneThird.multiply(twoSevenths).negate();
+		Assert.assertTrue(product.isNegative());
+		Assert.assertTrue(product.compareTo(difference) < 0);
+		Assert.assertTrue(difference.compareTo(product) > 0);
+		Assert.assertTrue(product.compareTo(new Rational(-1, 10)) > 0);
+		Assert.assertTrue(product.compareTo(new Rational(-1, 11)) < 0);
+		Assert.assertFalse(product.isExactValueComputed());
+		
+		RationalInterval quotient = oneThird.divide(twoSevenths);
+		Assert.assertTrue(quotient.compareTo(RationalInterval.ONE) > 0);
+		Assert.assertFalse(quotient.isExactValueComputed());
+		Assert.assertEquals(new Rational(7, 6), quotient.getExactValue());
+		Assert.assertTrue(quotient.isExactValueComputed());
+		
+		// exact zeros and doubles need no exact computation either
+		Assert.assertTrue(RationalInterval.ONE.subtract(RationalInterval.ONE).isZero());
+		Assert.assertEquals(0, RationalInterval.valueOf(0.5).add(RationalInterval.valueOf(0.25)).compareTo(RationalInterval.valueOf(0.75)));
+		Assert.assertFalse(RationalInterval.valueOf(0.5).add(RationalInterval.valueOf(0.25)).isExactValueComputed());
+	}
+	
+	@Test
+	public void testAmbiguousPredicatesAreExact() {
+		RationalInterval oneThird = RationalInterval.valueOf(new Rational(1, 3));
+		RationalInterval sum = oneThird.add(oneThird).add(oneThird);
+		
+		RationalInterval difference = sum.subtract(RationalInterval.ONE);
+		Assert.assertTrue(difference.getLowerBound() < 0 && 0 < difference.getUpperBound());
+		Assert.assertEquals(0, difference.signum());
+		Assert.assertTrue(difference.isExactValueComputed());
+		Assert.assertEquals(0, sum.compareTo(RationalInterval.ONE));
+		Assert.assertEquals(sum, RationalInterval.ONE);
+		Assert.assertEquals(sum.hashCode(), RationalInterval.ONE.hashCode());
+		
+		// a difference far below double precision
+		RationalInterval tiny = RationalInterval.valueOf(new Rational(1).divide(new Rational(10).pow(30)));
+		RationalInterval almostOne = RationalInterval.ONE.add(tiny);
+		Assert.assertEquals(1, almostOne.compareTo(RationalInterval.ONE));
+		Assert.assertEquals(-1, RationalInterval.ONE.subtract(almostOne).signum());
+	}
+	
+	@Test
+	public void testLongChains() {
+		RationalInterval sum = RationalInterval.ZERO;
+		Rational exact = Rational.ZERO;
+		for (int i = 1; i <= 5000; i++) {
+			RationalInterval term = RationalInterval.valueOf(new Rational(1, i % 97 + 1));
+			sum = sum.add(term);
+			exact = exact.add(new Rational(1, i % 97 + 1));
+		}
+		Assert.assertEquals(exact, sum.getExactValue());
+		assertEncloses(sum, exact);
+		Assert.assertEquals(1, sum.compareTo(new Rational(100)));
+	}
+	
+	@Test
+	public void testDivisionByZero() {
+		try {
+			RationalInterval.ONE.divide(RationalInterval.ZERO);
+			Assert.fail("ArithmeticException should have been thrown");
+		}
+		catch (ArithmeticException arithmeticException) {
+			// expected
+		}
+		
+		// not known to be zero until computed
+		RationalInterval oneThird = RationalInterval.valueOf(new Rational(1, 3));
+		RationalInterval zero = oneThird.add(oneThird).add(oneThird).subtract(RationalInterval.ONE);
+		RationalInterval quotient = RationalInterval.ONE.divide(zero);
+		Assert.assertEquals(Double.NEGATIVE_INFINITY, quotient.getLowerBound(), 0);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, quotient.getUpperBound(), 0);
+		try {
+			quotient.signum();
+			Assert.fail("ArithmeticException should have been thrown");
+		}
+		catch (ArithmeticException arithmeticException) {
+			// expected
+		}
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static void assertEncloses(RationalInterval interval, Rational exact) {
+		if (!Double.isInfinite(interval.getLowerBound())) {
+			Assert.assertTrue(interval + " does not enclose " + exact, Rational.valueOf(interval.getLowerBound()).compareTo(exact) <= 0);
+		}
+		if (!Double.isInfinite(interval.getUpperBound())) {
+			Assert.assertTrue(interval + " does not enclose " + exact, Rational.valueOf(interval.getUpperBound()).compareTo(exact) >= 0);
+		}
+	}
+	
+	private static RationalInterval randomExpression(Random random, int depth) {
+		RationalInterval result;
+		if (depth == 0 || random.nextInt(4) == 0) {
+			switch (random.nextInt(4)) {
+			case 0:
+				result = RationalInterval.valueOf(random.nextInt(21) - 10);
+				break;
+			case 1:
+				result = RationalInterval.valueOf(new Rational(random.nextLong(), 1 + (random.nextLong() >>> 1)));
+				break;
+			case 2:
+				result = RationalInterval.valueOf(new Rational(2).pow(random.nextInt(2200) - 1100).multiply(new Rational(random.nextInt(2001) - 1000, 1 + random.nextInt(1000))));
+				break;
+			default:
+				result = RationalInterval.valueOf(random.nextGaussian());
+			}
+		}
+		else {
+			RationalInterval left  = randomExpression(random, depth - 1);
+			RationalInterval right = randomExpression(random, depth - 1);
+			switch (random.nextInt(4)) {
+			case 0:
+				result = left.add(right);
+				break;
+			case 1:
+				result = left.subtract(right);
+				break;
+			case 2:
+				result = left.multiply(right);
+				break;
+			default:
+				result = right.isZero() ? left.negate() : left.divide(right);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.MathContext;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.AICUtilConfiguration;
+import com.sri.ai.util.Timer;
+import com.sri.ai.util.base.NullaryFunction;
+import com.sri.ai.util.math.BernoulliNumber;
+import com.sri.ai.util.math.Multinomial;
+import com.sri.ai.util.math.Rational;
+
+/**
+ * A simple (non JUnit) benchmark comparing eager normalization of
+ * {@link Rational}s against lazy normalization (see
+ * {@link Rational#computeWithLazyNormalization(NullaryFunction)}) on
+ * {@link Multinomial#choose()} and {@link BernoulliNumber#computeFirst(int)}.
+ * Lazy normalization only applies to exact rationals, so approximation is
+ * disabled while running. Run it with:<br>
+ * <pre>
+ * java -cp ... com.sri.ai.test.util.math.RationalNormalizationBenchmark [numberOfRounds]
+ * </pre>
+ */
+@Beta
+public class RationalNormalizationBenchmark {
+	
+	private static final int DEFAULT_NUMBER_OF_ROUNDS = 5;
+	
+	public static void main(String[] args) {
+		int numberOfRounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_ROUNDS;
+		
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision(), MathContext.DECIMAL128.getRoundingMode());
+		
+		run("Multinomial.choose()", numberOfRounds, () -> multinomialChooseWorkload());
+		run("BernoulliNumber.computeFirst()", numberOfRounds, () -> bernoulliWorkload());
+		
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static void run(String name, int numberOfRounds, NullaryFunction<Integer> workload) {
+		long bestEager = Long.MAX_VALUE;
+		long bestLazy  = Long.MAX_VALUE;
+		for (int round = 0; round < numberOfRounds; round++) {
+			bestEager = Math.min(bestEager, Timer.time(workload));
+			bestLazy  = Math.min(bestLazy,  Timer.time(() -> Rational.computeWithLazyNormalization(workload)));
+		}
+		System.out.println(name + " (best of " + numberOfRounds + " rounds): eager = " + bestEager + "ms, lazy = " + bestLazy + "ms"
+				+ " (" + AICUtilConfiguration.KEY_RATIONAL_LAZY_NORMALIZATION_THRESHOLD_IN_BITS + " = " + AICUtilConfiguration.getRationalLazyNormalizationThresholdInBits() + ")");
+	}
+	
+	private static Integer multinomialChooseWorkload() {
+		int result = 0;
+		for (int n = 50; n <= 150; n += 25) {
+			Multinomial multinomial = new Multinomial(n, 3);
+			do {
+				// note: hashCode() requires the reduced form, so that its cost is included.
+				result += multinomial.choose().hashCode();
+			} while (multinomial.iterate());
+		}
+		return result;
+	}
+	
+	private static Integer bernoulliWorkload() {
+		int result = 0;
+		for (int n = 22; n <= 120; n += 2) {
+			result += BernoulliNumber.computeFirst(n).hashCode();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.Timer;
+import com.sri.ai.util.math.Rational;
+
+/**
+ * A simple (non JUnit) benchmark sorting random exact {@link Rational}s with
+ * the tiered {@link Rational#compareTo(Rational)} (signs, bit length bounds
+ * and double estimates before cross multiplying) against a comparator that
+ * always cross multiplies. Run it with:<br>
+ * <pre>
+ * java -Xmx2g -cp ... com.sri.ai.test.util.math.RationalSortBenchmark [numberOfRationals] [numberOfRounds]
+ * </pre>
+ */
+@Beta
+public class RationalSortBenchmark {
+	
+	private static final int DEFAULT_NUMBER_OF_RATIONALS = 1000000;
+	private static final int DEFAULT_NUMBER_OF_ROUNDS    = 3;
+	
+	private static final Comparator<Rational> CROSS_MULTIPLYING_COMPARATOR = (a, b) -> a.getNumerator().multiply(b.getDenominator()).compareTo(b.getNumerator().multiply(a.getDenominator()));
+	
+	public static void main(String[] args) {
+		int numberOfRationals = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_RATIONALS;
+		int numberOfRounds    = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUMBER_OF_ROUNDS;
+		
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision(), MathContext.DECIMAL128.getRoundingMode());
+		
+		run("small (long) rationals",          numberOfRounds, randomRationals(numberOfRationals, 30));
+		run("large (up to 256 bit) rationals", numberOfRounds, randomRationals(numberOfRationals, 256));
+		
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static void run(String name, int numberOfRounds, Rational[] rationals) {
+		long bestTiered        = Long.MAX_VALUE;
+		long bestCrossMultiply = Long.MAX_VALUE;
+		for (int round = 0; round < numberOfRounds; round++) {
+			Rational[] tiered        = rationals.clone();
+			Rational[] crossMultiply = rationals.clone();
+			bestTiered        = Math.min(bestTiered,        Timer.time(() -> { Arrays.sort(tiered); return tiered.length; }));
+			bestCrossMultiply = Math.min(bestCrossMultiply, Timer.time(() -> { Arrays.sort(crossMultiply, CROSS_MULTIPLYING_COMPARATOR); return crossMultiply.length; }));
+		}
+		System.out.println("sorting " + rationals.length + " " + name + " (best of " + numberOfRounds + " rounds): tiered compareTo = " + bestTiered + "ms, cross multiply = " + bestCrossMultiply + "ms");
+	}
+	
+	private static Rational[] randomRationals(int numberOfRationals, int maximumBitLength) {
+		Random random = new Random(numberOfRationals);
+		Rational[] result = new Rational[numberOfRationals];
+		for (int i = 0; i < numberOfRationals; i++) {
+			BigInteger numerator   = new BigInteger(1 + random.nextInt(maximumBitLength), random);
+			BigInteger denominator = new BigInteger(1 + random.nextInt(maximumBitLength), random).add(BigInteger.ONE);
+			if (random.nextBoolean()) {
+				numerator = numerator.negate();
+			}
+			result[i] = new Rational(numerator + "/" + denominator);
+		}
+		return result;
+	}
+}
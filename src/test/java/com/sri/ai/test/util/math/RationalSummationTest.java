@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.sri.ai.util.Util;
+import com.sri.ai.util.math.ArithmeticContext;
+import com.sri.ai.util.math.Rational;
+import com.sri.ai.util.math.RationalAccumulator;
+import com.sri.ai.util.math.RationalSummation;
+
+@RunWith(Parameterized.class)
+public class RationalSummationTest {
+
+	@Parameters(name = "{index}: approx = {0}")
+	public static Collection<Object[]> data() {
+		return Arrays.asList(new Object[][] { { Boolean.FALSE }, { Boolean.TRUE } });				
+	}
+	
+	@Parameter
+	public Boolean approximate;
+	
+	@Before
+	public void setUp() {
+		Rational.resetApproximationConfiguration(approximate, MathContext.DECIMAL128.getPrecision()+1, RoundingMode.HALF_EVEN);
+	}
+
+	@After
+	public void tearDown() {
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	@Test
+	public void testSequentialAndParallelSums() {
+		List<Rational> numbers = new ArrayList<Rational>();
+		for (int i = 1; i <= 10000; i++) {
+			numbers.add(new Rational(1, i * (i + 1)));
+		}
+		// telescoping sum: 1/(i(i+1)) = 1/i - 1/(i+1)
+		Rational expected = new Rational(10000, 10001);
+		assertEqualsUpToApproximation(expected, RationalSummation.sum(numbers, 0));
+		assertEqualsUpToApproximation(expected, RationalSummation.sum(numbers, 1));
+		assertEqualsUpToApproximation(expected, RationalSummation.sum(numbers, 3000));
+		
+		Assert.assertEquals(Rational.ZERO, RationalSummation.sum(Collections.<Rational>emptyList(), 0));
+		Assert.assertEquals(Rational.ZERO, RationalSummation.sum(Arrays.asList(Rational.ZERO, Rational.ZERO), 0));
+		Assert.assertEquals(new Rational(7, 3), RationalSummation.sum(Arrays.asList(new Rational(7, 3)), 0));
+	}
+	
+	@Test
+	public void testSharedDenominators() {
+		Random random = new Random(1);
+		List<Rational> numbers = new ArrayList<Rational>();
+		RationalAccumulator expected = new RationalAccumulator();
+		for (int i = 0; i < 5000; i++) {
+			Rational number;
+			if (i % 3 == 0) {
+				// large denominators, shared by all terms
+				number = new Rational(random.nextInt(1000) - 500 + "/340282366920938463463374607431768211457");
+			}
+			else {
+				number = new Rational(random.nextInt(1000) - 500, 1 + random.nextInt(12));
+			}
+			numbers.add(number);
+			expected.add(number);
+		}
+		assertEqualsUpToApproximation(expected.toRational(), RationalSummation.sum(numbers, 0));
+		assertEqualsUpToApproximation(expected.toRational(), RationalSummation.sum(numbers, 2048));
+	}
+	
+	@Test
+	public void testParallelSumUsesCallersContext() {
+		List<Rational> numbers = ArithmeticContext.exact().compute(() -> {
+			List<Rational> result = new ArrayList<Rational>();
+			for (int i = 1; i <= 3000; i++) {
+				result.add(new Rational(1, i));
+			}
+			return result;
+		});
+		Rational expected = ArithmeticContext.exact().compute(() -> {
+			RationalAccumulator result = new RationalAccumulator();
+			numbers.forEach(result::add);
+			return result.toRational();
+		});
+		Rational actual   = ArithmeticContext.exact().compute(() -> RationalSummation.sum(numbers, 2048));
+		Assert.assertTrue(actual.isExact());
+		Assert.assertEquals(expected, actual);
+	}
+	
+	@Test
+	public void testUtilArbitraryPrecision() {
+		List<Number> numbers = new ArrayList<Number>();
+		for (int i = 1; i <= 5000; i++) {
+			numbers.add(new Rational(1, i * (i + 1)));
+		}
+		// large enough to be summed pairwise
+		assertEqualsUpToApproximation(new Rational(5000, 5001), Util.sumArbitraryPrecision(numbers));
+	}
+	
+	//
+	// PRIVATE
+	//
+	private void assertEqualsUpToApproximation(Rational expected, Rational actual) {
+		if (approximate) {
+			// Note: intermediate roundings will differ as the order of summation differs.
+			Assert.assertEquals(expected.doubleValue(), actual.doubleValue(), Math.abs(expected.doubleValue()) * 1e-12);
+		}
+		else {
+			Assert.assertEquals(expected, actual);
+		}
+	}
+}
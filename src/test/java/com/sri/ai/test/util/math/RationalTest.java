@@ -56,10 +56,13 @@
 */
 package com.sri.ai.test.util.math;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -70,6 +73,8 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
 
+import com.sri.ai.util.AICUtilConfiguration;
+import com.sri.ai.util.math.ArithmeticContext;
 import com.sri.ai.util.math.Rational;
 
 /**
@@ -128,6 +133,285 @@ public class RationalTest {
 		Assert.assertEquals(new Rational(7*7, 13*13), eSevenThirteenths.multiply(aSevenThirteenths));
 	}
 
+	@Test
+	public void testHashCodeIndependentOfContext() {
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision()+1, MathContext.DECIMAL128.getRoundingMode());
+		Rational eThreeSevenths = new Rational(3, 7);
+		Rational eLarge         = new Rational("12345678901234567890123/7");
+		Rational.resetApproximationConfiguration(true, MathContext.DECIMAL128.getPrecision()+1, MathContext.DECIMAL128.getRoundingMode());
+		Rational aThreeSevenths = new Rational(3, 7);
+		Rational aLarge         = new Rational("12345678901234567890123/7");
+		
+		Assert.assertEquals(eThreeSevenths, aThreeSevenths);
+		Assert.assertEquals(eThreeSevenths.hashCode(), aThreeSevenths.hashCode());
+		Assert.assertEquals(eLarge, aLarge);
+		Assert.assertEquals(eLarge.hashCode(), aLarge.hashCode());
+		// values held as longs are still equal to (and hash the same as) the ones created under another context.
+		Assert.assertEquals(new Rational(6, 14), eThreeSevenths);
+		Assert.assertEquals(new Rational(6, 14).hashCode(), eThreeSevenths.hashCode());
+	}
+
+	@Test
+	public void testLongFastPathOverflowPromotion() {
+		Rational max = new Rational(Long.MAX_VALUE);
+		Rational min = new Rational(Long.MIN_VALUE);
+		
+		Assert.assertEquals(new Rational("9223372036854775808"), max.add(1));
+		Assert.assertEquals(new Rational("-9223372036854775809"), min.subtract(1));
+		Assert.assertEquals(new Rational("9223372036854775808"), min.negate());
+		Assert.assertEquals(new Rational("9223372036854775808"), min.abs());
+		Assert.assertEquals(new Rational("85070591730234615847396907784232501249"), max.multiply(max));
+		Assert.assertEquals(new Rational("-1/9223372036854775808"), min.invert());
+		Assert.assertEquals(new Rational("18446744073709551614/3"), max.divide(new Rational(3, 2)));
+		Assert.assertEquals(new Rational(2L * 3L * 5L, 7L).multiply(new Rational(7L, 2L * 3L * 5L)), Rational.ONE);
+		
+		// Cross products that overflow a long when comparing
+		Rational a = new Rational(Long.MAX_VALUE, 3);
+		Rational b = new Rational(Long.MAX_VALUE - 1, 2);
+		Assert.assertTrue(a.compareTo(b) < 0);
+		Assert.assertTrue(b.compareTo(a) > 0);
+		Assert.assertTrue(a.add(b).subtract(b).equals(a));
+		
+		// Results that come back into long range are equal (and hash the same) as those that never left it
+		Rational backInRange = max.add(1).subtract(2);
+		Assert.assertEquals(new Rational(Long.MAX_VALUE - 1), backInRange);
+		Assert.assertEquals(new Rational(Long.MAX_VALUE - 1).hashCode(), backInRange.hashCode());
+		Assert.assertEquals(new Rational("6/4"), new Rational(3, 2));
+		Assert.assertEquals(new Rational("6/4").hashCode(), new Rational(3, 2).hashCode());
+		
+		// sums whose cross-summed numerator is exactly Long.MIN_VALUE
+		Rational minusTwoToThe62Thirds = new Rational(-(1L << 62), 3);
+		Assert.assertEquals(new Rational("-9223372036854775808/3"), minusTwoToThe62Thirds.add(minusTwoToThe62Thirds));
+		Assert.assertEquals(new Rational("-9223372036854775808/3"), minusTwoToThe62Thirds.subtract(minusTwoToThe62Thirds.negate()));
+	}
+	
+	@Test
+	public void testLongFastPathAgreesWithBigIntegerArithmetic() {
+		java.util.Random random = new java.util.Random(42);
+		for (int i = 0; i < 1000; i++) {
+			long n1 = random.nextInt(2001) - 1000;
+			long d1 = random.nextInt(1000) + 1;
+			long n2 = random.nextInt(2001) - 1000;
+			long d2 = random.nextInt(1000) + 1;
+			Rational r1 = new Rational(n1, d1);
+			Rational r2 = new Rational(n2, d2);
+			BigInteger bn1 = BigInteger.valueOf(n1), bd1 = BigInteger.valueOf(d1), bn2 = BigInteger.valueOf(n2), bd2 = BigInteger.valueOf(d2);
+			
+			Assert.assertEquals(new Rational(bn1.multiply(bd2).add(bn2.multiply(bd1)) + "/" + bd1.multiply(bd2)), r1.add(r2));
+			Assert.assertEquals(new Rational(bn1.multiply(bd2).subtract(bn2.multiply(bd1)) + "/" + bd1.multiply(bd2)), r1.subtract(r2));
+			Assert.assertEquals(new Rational(bn1.multiply(bn2) + "/" + bd1.multiply(bd2)), r1.multiply(r2));
+			if (n2 != 0) {
+				Assert.assertEquals(new Rational(bn1.multiply(bd2) + "/" + bd1.multiply(bn2)), r1.divide(r2));
+			}
+			Assert.assertEquals(Integer.signum(bn1.multiply(bd2).compareTo(bn2.multiply(bd1))), Integer.signum(r1.compareTo(r2)));
+		}
+	}
+
+	@Test
+	public void testTieredCompareToAgreesWithCrossMultiplication() {
+		// tiered comparison only applies to exact values.
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision()+1, MathContext.DECIMAL128.getRoundingMode());
+		java.util.Random random = new java.util.Random(7);
+		for (int i = 0; i < 2000; i++) {
+			BigInteger bn1 = new BigInteger(1 + random.nextInt(200), random);
+			BigInteger bd1 = new BigInteger(1 + random.nextInt(200), random).add(BigInteger.ONE);
+			BigInteger bn2, bd2;
+			switch (i % 4) {
+			case 0: // unrelated values
+				bn2 = new BigInteger(1 + random.nextInt(200), random);
+				bd2 = new BigInteger(1 + random.nextInt(200), random).add(BigInteger.ONE);
+				break;
+			case 1: // values beyond a double estimate's resolution apart
+				bn2 = bn1.shiftLeft(100).add(BigInteger.ONE);
+				bd2 = bd1.shiftLeft(100);
+				break;
+			case 2: // equal values in unreduced form
+				bn2 = bn1.multiply(BigInteger.valueOf(6));
+				bd2 = bd1.multiply(BigInteger.valueOf(6));
+				break;
+			default: // powers of two
+				bn2 = BigInteger.ONE.shiftLeft(random.nextInt(200));
+				bd2 = BigInteger.ONE.shiftLeft(random.nextInt(200));
+				bn1 = bn2.multiply(bd1).shiftLeft(random.nextInt(3)).shiftRight(1).divide(bd2).add(BigInteger.valueOf(random.nextInt(3) - 1));
+			}
+			if (random.nextBoolean()) {
+				bn1 = bn1.negate();
+				bn2 = bn2.negate();
+			}
+			Rational r1 = new Rational(bn1 + "/" + bd1);
+			Rational r2 = new Rational(bn2 + "/" + bd2);
+			int expected = Integer.signum(bn1.multiply(bd2).compareTo(bn2.multiply(bd1)));
+			Assert.assertEquals(r1 + " vs " + r2, expected, Integer.signum(r1.compareTo(r2)));
+			Assert.assertEquals(r2 + " vs " + r1, -expected, Integer.signum(r2.compareTo(r1)));
+		}
+		
+		// extreme magnitudes, out of double's range
+		Rational huge = new Rational(BigInteger.ONE.shiftLeft(2000).add(BigInteger.ONE) + "/3");
+		Rational hugeNeighbor = new Rational(BigInteger.ONE.shiftLeft(2000) + "/3");
+		Assert.assertTrue(huge.compareTo(hugeNeighbor) > 0);
+		Assert.assertTrue(huge.invert().compareTo(hugeNeighbor.invert()) < 0);
+		Assert.assertTrue(huge.negate().compareTo(hugeNeighbor.negate()) < 0);
+		Assert.assertTrue(huge.invert().compareTo(Rational.ZERO) > 0);
+		Assert.assertTrue(new Rational(Long.MIN_VALUE, 3).compareTo(new Rational(Long.MIN_VALUE + 1, 3)) < 0);
+	}
+
+	@Test
+	public void testLazyNormalization() throws Exception {
+		Assert.assertFalse(Rational.isLazyNormalizationEnabled());
+		
+		Rational eagerHarmonic = harmonic(60);
+		Rational lazyHarmonic  = Rational.computeWithLazyNormalization(() -> {
+			Assert.assertTrue(Rational.isLazyNormalizationEnabled());
+			// nested scopes
+			Rational result = Rational.computeWithLazyNormalization(() -> harmonic(60));
+			Assert.assertTrue(Rational.isLazyNormalizationEnabled());
+			return result;
+		});
+		Assert.assertFalse(Rational.isLazyNormalizationEnabled());
+		Assert.assertEquals(eagerHarmonic, lazyHarmonic);
+		Assert.assertEquals(lazyHarmonic, eagerHarmonic);
+		Assert.assertEquals(eagerHarmonic.hashCode(), lazyHarmonic.hashCode());
+		Assert.assertEquals(eagerHarmonic.toString(), lazyHarmonic.toString());
+		Assert.assertEquals(eagerHarmonic.getNumerator(), lazyHarmonic.getNumerator());
+		Assert.assertEquals(eagerHarmonic.getDenominator(), lazyHarmonic.getDenominator());
+		
+		// Unreduced values that are equal to one, minus one and an integer
+		Rational large = new Rational("123456789012345678901234567/2");
+		Rational one   = Rational.computeWithLazyNormalization(() -> large.multiply(large.invert()));
+		Assert.assertTrue(one.isOne());
+		Assert.assertTrue(one.negate().isMinusOne());
+		Assert.assertTrue(one.isInteger());
+		Assert.assertEquals(Rational.ONE, one);
+		Assert.assertEquals(Rational.ONE.hashCode(), one.hashCode());
+		Rational lazyTwo = Rational.computeWithLazyNormalization(() -> large.add(large).divide(large));
+		Assert.assertEquals(new Rational(2), lazyTwo);
+		Assert.assertEquals(0, lazyTwo.compareTo(new Rational(2)));
+		Assert.assertTrue(lazyTwo.compareTo(one) > 0);
+		Assert.assertEquals("2", lazyTwo.toString());
+		
+		// Only the reduced form is serialized
+		Rational unreduced = Rational.computeWithLazyNormalization(() -> large.multiply(new Rational("3/123456789012345678901234567")));
+		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+		try (java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(bytes)) {
+			out.writeObject(unreduced);
+		}
+		try (java.io.ObjectInputStream in = new java.io.ObjectInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray()))) {
+			Rational deserialized = (Rational) in.readObject();
+			Assert.assertEquals(new Rational(3, 2), deserialized);
+			Assert.assertEquals("3/2", deserialized.toString());
+		}
+	}
+	
+	@Test
+	public void testApproximateWithMaxDenominator() {
+		Rational pi = new Rational("314159265358979/100000000000000");
+		Assert.assertEquals(new Rational(3),        pi.approximateWithMaxDenominator(new Rational(1).getNumerator()));
+		Assert.assertEquals(new Rational(22, 7),    pi.approximateWithMaxDenominator(new Rational(7).getNumerator()));
+		// a semiconvergent, between the convergents 22/7 and 333/106
+		Assert.assertEquals(new Rational(311, 99),  pi.approximateWithMaxDenominator(new Rational(100).getNumerator()));
+		Assert.assertEquals(new Rational(355, 113), pi.approximateWithMaxDenominator(new Rational(1000).getNumerator()));
+		Assert.assertEquals(new Rational(-355, 113), pi.negate().approximateWithMaxDenominator(new Rational(1000).getNumerator()));
+		Rational third = new Rational(1, 3).add(new Rational(1, 1000));
+		Assert.assertEquals(new Rational(1, 3),     third.approximateWithMaxDenominator(new Rational(100).getNumerator()));
+		Assert.assertEquals(new Rational(223, 667), third.approximateWithMaxDenominator(new Rational(999).getNumerator()));
+		// already within the bound
+		Assert.assertSame(pi, pi.approximateWithMaxDenominator(new Rational(100000000000000L).getNumerator()));
+		
+		try {
+			pi.approximateWithMaxDenominator(new Rational(0).getNumerator());
+			Assert.fail("IllegalArgumentException should have been thrown");
+		}
+		catch (IllegalArgumentException illegalArgumentException) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testApproximateWithRelativeError() {
+		Rational pi = new Rational("314159265358979/100000000000000");
+		Assert.assertEquals(new Rational(22, 7),    pi.approximateWithRelativeError(new Rational(1, 1000)));
+		Assert.assertEquals(new Rational(355, 113), pi.approximateWithRelativeError(new Rational(1, 10000000)));
+		Assert.assertEquals(new Rational(-22, 7),   pi.negate().approximateWithRelativeError(new Rational(1, 1000)));
+		Assert.assertEquals(new Rational(3),        pi.approximateWithRelativeError(new Rational(1, 10)));
+		Assert.assertEquals(Rational.ZERO,          pi.approximateWithRelativeError(Rational.ONE));
+		Assert.assertSame(pi, pi.approximateWithRelativeError(Rational.ZERO));
+		Rational seven = new Rational(7);
+		Assert.assertSame(seven, seven.approximateWithRelativeError(new Rational(1, 2)));
+		// the bounds are included
+		Assert.assertEquals(new Rational(1, 2), new Rational(3, 5).approximateWithRelativeError(new Rational(1, 6)));
+		
+		try {
+			pi.approximateWithRelativeError(new Rational(-1, 2));
+			Assert.fail("IllegalArgumentException should have been thrown");
+		}
+		catch (IllegalArgumentException illegalArgumentException) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testBoundedArithmetic() {
+		Rational exact   = harmonic(300);
+		Rational bounded = Rational.computeWithBoundedArithmetic(64, 60, () -> {
+			// nested scopes, the innermost one being in effect
+			Rational result = Rational.computeWithBoundedArithmetic(() -> harmonic(300));
+			if (!approximate) {
+				Assert.assertTrue(result.getDenominator().bitLength() <= AICUtilConfiguration.getRationalBoundedArithmeticThresholdInBits());
+			}
+			return harmonic(300);
+		});
+		// note: approximations are already bounded by their precision, and are left as they are.
+		if (!approximate) {
+			Assert.assertTrue(bounded.getDenominator().bitLength() <= 64);
+		}
+		Assert.assertTrue(bounded.subtract(exact).abs().compareTo(exact.divide(new Rational(2).pow(50))) < 0);
+		// outside of the scope, arithmetic is exact again
+		Assert.assertEquals(exact, harmonic(300));
+		
+		try {
+			Rational.computeWithBoundedArithmetic(0, 60, () -> harmonic(3));
+			Assert.fail("IllegalArgumentException should have been thrown");
+		}
+		catch (IllegalArgumentException illegalArgumentException) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testInterning() {
+		Assert.assertSame(Rational.ZERO, Rational.valueOf(0, 5));
+		Assert.assertSame(Rational.ONE, Rational.valueOf(7, 7));
+		Assert.assertSame(Rational.MINUS_ONE, Rational.valueOf(3, -3));
+		Assert.assertSame(Rational.ONE, Rational.valueOf(1));
+		
+		Assert.assertSame(Rational.valueOf(1, 2), Rational.valueOf(2, 4));
+		Assert.assertSame(Rational.valueOf(-1, 2), Rational.valueOf(2, -4));
+		Assert.assertSame(Rational.valueOf(255, 256), Rational.valueOf(510, 512));
+		Assert.assertSame(Rational.valueOf(200), Rational.valueOf(200, 1));
+		Assert.assertEquals(new Rational(-255, 256), Rational.valueOf(-255, 256));
+		
+		// small results of arithmetic are the interned instances
+		Assert.assertSame(Rational.valueOf(5, 6), Rational.valueOf(1, 2).add(Rational.valueOf(1, 3)));
+		Assert.assertSame(Rational.valueOf(1, 6), Rational.valueOf(1, 2).multiply(Rational.valueOf(1, 3)));
+		Assert.assertSame(Rational.valueOf(-3, 7), Rational.valueOf(3, 7).negate());
+		Assert.assertSame(Rational.valueOf(7, 3), Rational.valueOf(3, 7).invert());
+		
+		// larger values are interned too
+		Rational large = Rational.valueOf(1000003, 1000033);
+		Assert.assertSame(large, Rational.valueOf(2000006, 2000066));
+		Assert.assertSame(large, new Rational(1000003, 1000033).intern());
+		Assert.assertNotSame(large, new Rational(1000003, 1000033));
+		Assert.assertEquals(large, new Rational(1000003, 1000033));
+		Rational veryLarge = new Rational("123456789012345678901234567890/7");
+		Assert.assertSame(veryLarge.intern(), new Rational("123456789012345678901234567890/7").intern());
+		Assert.assertSame(Rational.valueOf(Long.MIN_VALUE, 1), new Rational(Long.MIN_VALUE).intern());
+	}
+	
+	@Test(expected = NumberFormatException.class)
+	public void testInterningZeroDenominator() {
+		Rational.valueOf(1, 0);
+	}
+	
 	@Test
 	public void testDefaultRadix() {
 		Assert.assertEquals(10, Rational.DEFAULT_RADIX);
@@ -1586,22 +1870,24 @@ public class RationalTest {
 		// note that the (double)x==(double)y test yields true for 0.0==-0.0
 		Assert.assertTrue(Rational.valueOf(Double.MIN_VALUE).divide(2).doubleValue() == 0.0);
 		Assert.assertTrue(Rational.valueOf(Double.MIN_VALUE).divide(4).doubleValue() == 0.0);
-		Assert.assertTrue(Rational.valueOf(Double.MIN_VALUE).divide(Rational.valueOf(1.2)).doubleValue() == 0.0);
+		Assert.assertTrue(Rational.valueOf(Double.MIN_VALUE).divide(Rational.valueOf(2.5)).doubleValue() == 0.0);
+		// (correctly rounded: more than half the smallest subnormal value rounds up to it)
+		Assert.assertTrue(Rational.valueOf(Double.MIN_VALUE).divide(Rational.valueOf(1.2)).doubleValue() == Double.MIN_VALUE);
 		Assert.assertTrue(Rational.valueOf(Double.MIN_VALUE).divide(16).doubleValue() == 0.0);
 		// returning -0.0 (signed zero)
 		Assert.assertTrue(Rational.valueOf(-Double.MIN_VALUE).divide(2).doubleValue() == -0.0);
 		Assert.assertTrue(Rational.valueOf(-Double.MIN_VALUE).divide(4).doubleValue() == -0.0);
-		Assert.assertTrue(Rational.valueOf(-Double.MIN_VALUE).divide(Rational.valueOf(1.2)).doubleValue() == -0.0);
+		Assert.assertTrue(Rational.valueOf(-Double.MIN_VALUE).divide(Rational.valueOf(2.5)).doubleValue() == -0.0);
 		Assert.assertTrue(Rational.valueOf(-Double.MIN_VALUE).divide(16).doubleValue() == -0.0);
 
 		// signed underflow, alternative tests
 		Assert.assertTrue(String.valueOf(Rational.valueOf(Double.MIN_VALUE).divide(2).doubleValue()).equals("0.0"));
 		Assert.assertTrue(String.valueOf(Rational.valueOf(Double.MIN_VALUE).divide(4).doubleValue()).equals("0.0"));
-		Assert.assertTrue(String.valueOf(Rational.valueOf(Double.MIN_VALUE).divide(Rational.valueOf(1.2)).doubleValue()).equals("0.0"));
+		Assert.assertTrue(String.valueOf(Rational.valueOf(Double.MIN_VALUE).divide(Rational.valueOf(2.5)).doubleValue()).equals("0.0"));
 		Assert.assertTrue(String.valueOf(Rational.valueOf(Double.MIN_VALUE).divide(16).doubleValue()).equals("0.0"));
 		Assert.assertTrue(String.valueOf(Rational.valueOf(-Double.MIN_VALUE).divide(2).doubleValue()).equals("-0.0"));
 		Assert.assertTrue(String.valueOf(Rational.valueOf(-Double.MIN_VALUE).divide(4).doubleValue()).equals("-0.0"));
-		Assert.assertTrue(String.valueOf(Rational.valueOf(-Double.MIN_VALUE).divide(Rational.valueOf(1.2)).doubleValue()).equals("-0.0"));
+		Assert.assertTrue(String.valueOf(Rational.valueOf(-Double.MIN_VALUE).divide(Rational.valueOf(2.5)).doubleValue()).equals("-0.0"));
 		Assert.assertTrue(String.valueOf(Rational.valueOf(-Double.MIN_VALUE).divide(16).doubleValue()).equals("-0.0"));
 
 		// ulp
@@ -1823,6 +2109,81 @@ public class RationalTest {
 		Rational.valueOf(Float.NaN);
 	}
 	
+	@Test
+	public void testValueOfDoubleBitsExhaustively() {
+		// every exponent (subnormal ones included), with extreme and random mantissas, against the exact decimal expansion of the double.
+		ArithmeticContext.exact().compute(() -> {
+			Random random = new Random(1);
+			for (long rawExponent = 0; rawExponent < 2047; rawExponent++) {
+				long[] fractions = { 0, 1, 2, 0xFFFFFFFFFFFFFL, 0x8000000000000L, random.nextLong() & 0xFFFFFFFFFFFFFL, random.nextLong() & 0xFFFFFFFFFFFFFL };
+				for (long fraction : fractions) {
+					for (long sign = 0; sign <= 1; sign++) {
+						double value = Double.longBitsToDouble(sign << 63 | rawExponent << 52 | fraction);
+						BigDecimal exact = new BigDecimal(value);
+						Rational expected = exact.scale() > 0
+								? new Rational(exact.unscaledValue().toString() + "/" + BigInteger.TEN.pow(exact.scale()))
+								: new Rational(exact.toBigIntegerExact().toString());
+						Rational actual = Rational.valueOf(value);
+						Assert.assertEquals(expected, actual);
+						Assert.assertEquals(expected, new Rational(value));
+						Assert.assertEquals(value == 0 ? 0.0 : value, actual.doubleValue(), 0.0);
+						Assert.assertEquals(Double.doubleToLongBits(value == 0 ? 0.0 : value), actual.doubleBitsValue());
+					}
+				}
+			}
+			return null;
+		});
+	}
+	
+	@Test
+	public void testDoubleValueIsCorrectlyRounded() {
+		ArithmeticContext.exact().compute(() -> {
+			Random random = new Random(2);
+			for (int i = 0; i < 20000; i++) {
+				Rational value;
+				switch (i % 4) {
+				case 0: // long sized
+					value = new Rational(random.nextLong() >> random.nextInt(64), 1 + ((random.nextLong() >>> 1) >> random.nextInt(63)));
+					break;
+				case 1: // large, down to subnormal and up to infinite doubles
+					BigInteger numerator   = new BigInteger(1 + random.nextInt(1500), random).subtract(BigInteger.ONE.shiftLeft(random.nextInt(100)));
+					BigInteger denominator = new BigInteger(1 + random.nextInt(1500), random).add(BigInteger.ONE);
+					value = new Rational(numerator + "/" + denominator);
+					break;
+				default: // exactly halfway between two doubles, or next to it
+					double d = Double.longBitsToDouble(random.nextLong());
+					if (Double.isNaN(d) || Double.isInfinite(d)) {
+						d = Double.MAX_VALUE;
+					}
+					value = Rational.valueOf(d).add(Rational.valueOf(Math.ulp(d)).divide(2));
+					if (i % 4 == 3) {
+						value = value.add(new Rational(random.nextBoolean() ? 1 : -1, 3).multiply(Rational.valueOf(Double.MIN_VALUE)));
+					}
+				}
+				assertCorrectlyRounded(value, value.doubleValue());
+				assertCorrectlyRounded(value.negate(), value.negate().doubleValue());
+			}
+			
+			// boundaries
+			Rational maximum     = Rational.valueOf(Double.MAX_VALUE);
+			Rational halfMaxUlp  = Rational.valueOf(Math.ulp(Double.MAX_VALUE)).divide(2);
+			Assert.assertEquals(Double.MAX_VALUE,         maximum.add(halfMaxUlp).subtract(Rational.valueOf(Double.MIN_VALUE)).doubleValue(), 0.0);
+			Assert.assertEquals(Double.POSITIVE_INFINITY, maximum.add(halfMaxUlp).doubleValue(), 0.0);
+			Assert.assertEquals(Double.NEGATIVE_INFINITY, maximum.add(halfMaxUlp).negate().doubleValue(), 0.0);
+			Rational halfMinimum = Rational.valueOf(Double.MIN_VALUE).divide(2);
+			Assert.assertEquals(0.0,              halfMinimum.doubleValue(), 0.0);
+			Assert.assertEquals(Double.MIN_VALUE, halfMinimum.add(new Rational(1, 3).multiply(halfMinimum)).doubleValue(), 0.0);
+			Assert.assertEquals(Double.doubleToLongBits(-0.0), halfMinimum.negate().doubleBitsValue());
+			Assert.assertEquals(Double.MIN_NORMAL, Rational.valueOf(Double.MIN_NORMAL).subtract(halfMinimum).doubleValue(), 0.0);
+			// ties to even
+			Assert.assertEquals(1.0,               Rational.ONE.add(Rational.valueOf(Math.ulp(1.0)).divide(2)).doubleValue(), 0.0);
+			Assert.assertEquals(1.0 + 2*Math.ulp(1.0), Rational.ONE.add(Rational.valueOf(Math.ulp(1.0)).multiply(new Rational(3, 2))).doubleValue(), 0.0);
+			Assert.assertEquals(9007199254740992.0, new Rational(9007199254740993L).doubleValue(), 0.0);
+			Assert.assertEquals(1.0 / 3.0, new Rational(1, 3).doubleValue(), 0.0);
+			return null;
+		});
+	}
+	
 	@Test
 	public void testValueOfBits() {
 		// half (5 exponent bits)
@@ -1952,4 +2313,38 @@ public class RationalTest {
 		Assert.assertTrue(!Rational.valueOfDoubleBits(Rational.valueOf("0.1").doubleBitsValue()).equals(Rational.valueOf("0.1")));
 		Assert.assertTrue(!Rational.valueOfQuadBits(Rational.valueOf("0.1").quadBitsValue()).equals(Rational.valueOf("0.1")));
 	}
+	
+	//
+	// PRIVATE
+	//
+	/**
+	 * Checks that result is value rounded to the nearest double, ties to even, with the exact midpoints between doubles.
+	 */
+	private static void assertCorrectlyRounded(Rational value, double result) {
+		Rational magnitude = value.abs();
+		double   absolute  = Math.abs(result);
+		if (Double.isInfinite(absolute)) {
+			Rational overflow = Rational.valueOf(Double.MAX_VALUE).add(Rational.valueOf(Math.ulp(Double.MAX_VALUE)).divide(2));
+			Assert.assertTrue(magnitude.compareTo(overflow) >= 0);
+		}
+		else {
+			boolean  isEven   = (Double.doubleToLongBits(absolute) & 1) == 0;
+			Rational rounded  = Rational.valueOf(absolute);
+			Rational upper    = Rational.valueOf(Math.ulp(absolute)).divide(2).add(rounded);
+			Rational lower    = absolute == 0 ? Rational.ZERO : rounded.add(Rational.valueOf(Math.nextDown(absolute))).divide(2);
+			int      vsUpper  = magnitude.compareTo(upper);
+			int      vsLower  = magnitude.compareTo(lower);
+			Assert.assertTrue(value + " rounded to " + result, vsUpper < 0 || (vsUpper == 0 && isEven));
+			Assert.assertTrue(value + " rounded to " + result, vsLower > 0 || (vsLower == 0 && isEven) || absolute == 0);
+		}
+		Assert.assertTrue(value.signum() * result >= 0);
+	}
+	
+	private static Rational harmonic(int n) {
+		Rational result = Rational.ZERO;
+		for (int i = 1; i <= n; i++) {
+			result = result.add(new Rational(1, i));
+		}
+		return result;
+	}
 }
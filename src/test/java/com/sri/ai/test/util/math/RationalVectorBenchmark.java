@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.annotations.Beta;
+import com.sri.ai.util.AICUtilConfiguration;
+import com.sri.ai.util.Timer;
+import com.sri.ai.util.Util;
+import com.sri.ai.util.math.Rational;
+import com.sri.ai.util.math.RationalVector;
+
+/**
+ * A simple (non JUnit) benchmark comparing {@link RationalVector#normalize()} and
+ * {@link RationalVector#dot(RationalVector)} against the same computations on
+ * lists of {@link Rational}s (with {@link Util#sumArbitraryPrecision(java.util.Collection)}
+ * and {@link Util#mapIntoList(java.util.Collection, com.google.common.base.Function)}),
+ * on a random distribution. Run it with:<br>
+ * <pre>
+ * java -cp ... com.sri.ai.test.util.math.RationalVectorBenchmark [size] [numberOfRounds]
+ * </pre>
+ */
+@Beta
+public class RationalVectorBenchmark {
+	
+	private static final int DEFAULT_SIZE             = 1000000;
+	private static final int DEFAULT_NUMBER_OF_ROUNDS = 3;
+	
+	public static void main(String[] args) {
+		int size           = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+		int numberOfRounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUMBER_OF_ROUNDS;
+		
+		Rational.resetApproximationConfiguration(false, MathContext.DECIMAL128.getPrecision(), MathContext.DECIMAL128.getRoundingMode());
+		
+		Random random = new Random(size);
+		List<Rational> weights = new ArrayList<Rational>(size);
+		List<Rational> values  = new ArrayList<Rational>(size);
+		for (int i = 0; i < size; i++) {
+			weights.add(new Rational(1 + random.nextInt(1000), 1024));
+			values.add(new Rational(random.nextInt(100), 1 + random.nextInt(10)));
+		}
+		RationalVector weightsVector = RationalVector.valueOf(weights);
+		RationalVector valuesVector  = RationalVector.valueOf(values);
+		int parallelThreshold = AICUtilConfiguration.getRationalVectorParallelThreshold();
+		
+		long bestListNormalize             = Long.MAX_VALUE;
+		long bestVectorNormalize           = Long.MAX_VALUE;
+		long bestParallelVectorNormalize   = Long.MAX_VALUE;
+		long bestListDot                   = Long.MAX_VALUE;
+		long bestVectorDot                 = Long.MAX_VALUE;
+		long bestParallelVectorDot         = Long.MAX_VALUE;
+		for (int round = 0; round < numberOfRounds; round++) {
+			bestListNormalize           = Math.min(bestListNormalize,           Timer.time(() -> normalize(weights).size()));
+			bestVectorNormalize         = Math.min(bestVectorNormalize,         Timer.time(() -> weightsVector.normalize(0).size()));
+			bestParallelVectorNormalize = Math.min(bestParallelVectorNormalize, Timer.time(() -> weightsVector.normalize(parallelThreshold).size()));
+			bestListDot                 = Math.min(bestListDot,                 Timer.time(() -> dot(weights, values)));
+			bestVectorDot               = Math.min(bestVectorDot,               Timer.time(() -> weightsVector.dot(valuesVector, 0)));
+			bestParallelVectorDot       = Math.min(bestParallelVectorDot,       Timer.time(() -> weightsVector.dot(valuesVector, parallelThreshold)));
+		}
+		System.out.println("distribution of " + size + " entries (best of " + numberOfRounds + " rounds):");
+		System.out.println("  normalize: list = " + bestListNormalize + "ms, vector = " + bestVectorNormalize + "ms, parallel vector = " + bestParallelVectorNormalize + "ms");
+		System.out.println("  dot:       list = " + bestListDot + "ms, vector = " + bestVectorDot + "ms, parallel vector = " + bestParallelVectorDot + "ms");
+		
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	//
+	// PRIVATE
+	//
+	private static List<Rational> normalize(List<Rational> weights) {
+		Rational sum = Util.sumArbitraryPrecision(new ArrayList<Number>(weights));
+		List<Rational> result = Util.mapIntoList(weights, weight -> weight.divide(sum));
+		return result;
+	}
+	
+	private static Rational dot(List<Rational> values1, List<Rational> values2) {
+		Rational result = Rational.ZERO;
+		for (int i = 0; i < values1.size(); i++) {
+			result = result.add(values1.get(i).multiply(values2.get(i)));
+		}
+		return result;
+	}
+}
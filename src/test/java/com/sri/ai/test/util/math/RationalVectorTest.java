@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.math;
+
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.sri.ai.util.math.Rational;
+import com.sri.ai.util.math.RationalVector;
+
+@RunWith(Parameterized.class)
+public class RationalVectorTest {
+
+	@Parameters(name = "{index}: approx = {0}")
+	public static Collection<Object[]> data() {
+		return Arrays.asList(new Object[][] { { Boolean.FALSE }, { Boolean.TRUE } });				
+	}
+	
+	@Parameter
+	public Boolean approximate;
+	
+	@Before
+	public void setUp() {
+		Rational.resetApproximationConfiguration(approximate, MathContext.DECIMAL128.getPrecision()+1, RoundingMode.HALF_EVEN);
+	}
+
+	@After
+	public void tearDown() {
+		Rational.resetApproximationConfigurationFromAICUtilConfiguration();
+	}
+	
+	@Test
+	public void testValueOf() {
+		List<Rational> rationals = randomRationals(new Random(1), 1000, Long.MAX_VALUE);
+		RationalVector vector = RationalVector.valueOf(rationals);
+		Assert.assertEquals(rationals.size(), vector.size());
+		Assert.assertEquals(rationals, vector.toList());
+		for (int i = 0; i < rationals.size(); i++) {
+			Assert.assertEquals(rationals.get(i), vector.get(i));
+		}
+		Assert.assertEquals(vector, RationalVector.valueOf(rationals.toArray(new Rational[rationals.size()])));
+		Assert.assertEquals(vector.hashCode(), RationalVector.valueOf(rationals).hashCode());
+		Assert.assertEquals("[1/2, -3, 0]", RationalVector.valueOf(new Rational(1, 2), new Rational(-3), new Rational(0)).toString());
+		Assert.assertEquals(0, RationalVector.valueOf().size());
+		
+		try {
+			vector.get(rationals.size());
+			Assert.fail("IndexOutOfBoundsException should have been thrown");
+		}
+		catch (IndexOutOfBoundsException indexOutOfBoundsException) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testAdd() {
+		Random random = new Random(2);
+		for (int parallelThreshold : new int[] { 0, 1 }) {
+			List<Rational> rationals1 = randomRationals(random, 5000, Long.MAX_VALUE);
+			List<Rational> rationals2 = randomRationals(random, 5000, Long.MAX_VALUE);
+			RationalVector sum = RationalVector.valueOf(rationals1).add(RationalVector.valueOf(rationals2), parallelThreshold);
+			for (int i = 0; i < rationals1.size(); i++) {
+				Assert.assertEquals(rationals1.get(i).add(rationals2.get(i)), sum.get(i));
+			}
+		}
+		Assert.assertEquals(RationalVector.valueOf(new Rational(1, 2), new Rational(Long.MAX_VALUE - 1)),
+				RationalVector.valueOf(new Rational(1, 3), new Rational(Long.MAX_VALUE)).add(RationalVector.valueOf(new Rational(1, 6), new Rational(-1))));
+		
+		try {
+			RationalVector.valueOf(new Rational(1)).add(RationalVector.valueOf(new Rational(1), new Rational(2)));
+			Assert.fail("IllegalArgumentException should have been thrown");
+		}
+		catch (IllegalArgumentException illegalArgumentException) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testScale() {
+		Random random = new Random(3);
+		List<Rational> rationals = randomRationals(random, 5000, Long.MAX_VALUE);
+		RationalVector vector = RationalVector.valueOf(rationals);
+		for (Rational factor : new Rational[] { new Rational(0), new Rational(-7, 3), new Rational(Long.MAX_VALUE, 3), new Rational(2).pow(100).add(1).divide(5) }) {
+			for (int parallelThreshold : new int[] { 0, 1 }) {
+				RationalVector product = vector.scale(factor, parallelThreshold);
+				for (int i = 0; i < rationals.size(); i++) {
+					Assert.assertEquals(rationals.get(i).multiply(factor), product.get(i));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testSumAndDot() {
+		Random random = new Random(4);
+		// note: denominators are kept small, as otherwise the sums' denominators
+		// grow as the product of thousands of longs.
+		List<Rational> rationals1 = randomRationals(random, 5000, 1000);
+		List<Rational> rationals2 = randomRationals(random, 5000, 1000);
+		RationalVector vector1 = RationalVector.valueOf(rationals1);
+		RationalVector vector2 = RationalVector.valueOf(rationals2);
+		
+		Rational expectedSum = new Rational(0);
+		Rational expectedDot = new Rational(0);
+		for (int i = 0; i < rationals1.size(); i++) {
+			expectedSum = expectedSum.add(rationals1.get(i));
+			expectedDot = expectedDot.add(rationals1.get(i).multiply(rationals2.get(i)));
+		}
+		for (int parallelThreshold : new int[] { 0, 1 }) {
+			assertEquals(expectedSum, vector1.sum(parallelThreshold));
+			assertEquals(expectedDot, vector1.dot(vector2, parallelThreshold));
+		}
+		Assert.assertTrue(RationalVector.valueOf().sum().isZero());
+	}
+	
+	@Test
+	public void testNormalize() {
+		List<Rational> rationals = new ArrayList<Rational>();
+		Random random = new Random(5);
+		for (int i = 0; i < 5000; i++) {
+			rationals.add(new Rational(random.nextInt(1000), 1 + random.nextInt(1000)));
+		}
+		for (int parallelThreshold : new int[] { 0, 1 }) {
+			RationalVector normalized = RationalVector.valueOf(rationals).normalize(parallelThreshold);
+			assertEquals(new Rational(1), normalized.sum());
+			// proportions are kept
+			assertEquals(rationals.get(1).divide(rationals.get(0)), normalized.get(1).divide(normalized.get(0)));
+		}
+		Assert.assertEquals(RationalVector.valueOf(new Rational(1, 4), new Rational(0), new Rational(3, 4)),
+				RationalVector.valueOf(new Rational(1, 3), new Rational(0), new Rational(1)).normalize());
+		
+		try {
+			RationalVector.valueOf(new Rational(1), new Rational(-1)).normalize();
+			Assert.fail("ArithmeticException should have been thrown");
+		}
+		catch (ArithmeticException arithmeticException) {
+			// expected
+		}
+	}
+	
+	//
+	// PRIVATE
+	//
+	private void assertEquals(Rational expected, Rational actual) {
+		if (approximate) {
+			// the order in which approximations are summed can change how they are rounded.
+			Assert.assertTrue(expected + " != " + actual, expected.subtract(actual).abs().compareTo(expected.abs().multiply(new Rational(1, 1000000000))) <= 0);
+		}
+		else {
+			Assert.assertEquals(expected, actual);
+		}
+	}
+	
+	private static List<Rational> randomRationals(Random random, int size, long maximumDenominator) {
+		List<Rational> result = new ArrayList<Rational>(size);
+		for (int i = 0; i < size; i++) {
+			Rational rational;
+			switch (random.nextInt(4)) {
+			case 0:
+				rational = new Rational(random.nextInt(100) - 50, 1 + random.nextInt(20));
+				break;
+			case 1:
+				rational = new Rational(random.nextLong() / 2, 1 + (random.nextLong() >>> 1) % maximumDenominator);
+				break;
+			case 2:
+				rational = new Rational(2).pow(70 + random.nextInt(30)).add(random.nextInt(1000)).divide(1 + random.nextInt(1000));
+				break;
+			default:
+				rational = new Rational(random.nextInt(7) - 3);
+			}
+			result.add(rational);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013, SRI International
+ * All rights reserved.
+ * Licensed under the The BSD 3-Clause License;
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ * 
+ * http://opensource.org/licenses/BSD-3-Clause
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the aic-util nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, 
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sri.ai.test.util.rangeoperation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sri.ai.util.math.Rational;
+import com.sri.ai.util.rangeoperation.library.operators.Sum;
+
+public class SumTest {
+
+	@Test
+	public void testRationals() {
+		Sum sum = new Sum();
+		sum.initialize();
+		for (int i = 0; i != 3; i++) {
+			sum.increment(new Rational(1, 3));
+		}
+		// the result is a double even when all numbers are rationals, which are summed exactly.
+		Assert.assertEquals(Double.valueOf(1.0), sum.getResult());
+		sum.increment(new Rational(1, 10));
+		Assert.assertEquals(Double.valueOf(1.1), sum.getResult());
+	}
+
+	@Test
+	public void testMixedNumbers() {
+		Sum sum = new Sum();
+		sum.initialize();
+		Assert.assertEquals(0, sum.getResult().intValue());
+		sum.increment(new Rational(1, 2));
+		sum.increment(2);
+		sum.increment(new Rational(1, 4));
+		sum.increment(0.25);
+		sum.increment(new Rational(1, 3));
+		sum.increment(new Rational(2, 3));
+		Assert.assertEquals(Double.valueOf(4.0), sum.getResult());
+		
+		sum.initialize();
+		sum.increment(1.5);
+		Assert.assertEquals(Double.valueOf(1.5), sum.getResult());
+	}
+}